@@ -37,6 +37,7 @@ import org.neo4j.consistency.store.CacheSmallStoresRecordAccess;
 import org.neo4j.consistency.store.DirectRecordAccess;
 import org.neo4j.consistency.store.RecordAccess;
 import org.neo4j.helpers.progress.ProgressMonitorFactory;
+import org.neo4j.io.pagecache.monitoring.PageCursorOrigin;
 import org.neo4j.kernel.api.direct.DirectStoreAccess;
 import org.neo4j.kernel.configuration.Config;
 import org.neo4j.kernel.impl.api.CountsAccessor;
@@ -85,6 +86,20 @@ public class FullCheck
 
     ConsistencySummaryStatistics execute( DirectStoreAccess stores, Log log, Monitor reportMonitor )
             throws ConsistencyCheckIncompleteException
+    {
+        PageCursorOrigin previousOrigin = PageCursorOrigin.CONSISTENCY_CHECK.enter();
+        try
+        {
+            return runChecks( stores, log, reportMonitor );
+        }
+        finally
+        {
+            previousOrigin.enter();
+        }
+    }
+
+    private ConsistencySummaryStatistics runChecks( DirectStoreAccess stores, Log log, Monitor reportMonitor )
+            throws ConsistencyCheckIncompleteException
     {
         ConsistencySummaryStatistics summary = new ConsistencySummaryStatistics();
         InconsistencyReport report = new InconsistencyReport( new InconsistencyMessageLogger( log ), summary );
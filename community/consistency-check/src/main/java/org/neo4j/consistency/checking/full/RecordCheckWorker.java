@@ -23,6 +23,8 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.neo4j.io.pagecache.monitoring.PageCursorOrigin;
+
 /**
  * Base class for workers that processes records during consistency check.
  */
@@ -58,6 +60,8 @@ public class RecordCheckWorker<RECORD> implements Runnable
         // explicitly on creating the threads... which should be much better, although hard with
         // the current design due to the state living inside ThreadLocal which makes it depend
         // on the actual and correct thread making the call... which is what we do here.
+        // The workers have threads of their own, so there is no origin to restore afterwards.
+        PageCursorOrigin.CONSISTENCY_CHECK.enter();
         awaitMyTurnToInitialize();
 
         // This was the first record, the first record processing has now happened and so we
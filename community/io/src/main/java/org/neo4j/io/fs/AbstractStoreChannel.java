@@ -101,6 +101,18 @@ public class AbstractStoreChannel implements StoreChannel{
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void preallocate( long position, long length ) throws IOException
+    {
+        // Only a hint, a channel that cannot reserve space simply allocates on write.
+    }
+
+    @Override
+    public void punchHole( long position, long length ) throws IOException
+    {
+        // Only a hint, a channel that cannot give back space keeps it.
+    }
+
     @Override
     public boolean isOpen()
     {
@@ -0,0 +1,94 @@
+package org.neo4j.io.fs;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*DRAM locks of one nvm file, they are not persistent since nothing is in flight after a restart
+ *the table lock guards the block table and the file size, it is held shared by reads and by writes that stay
+ *within allocated blocks, and exclusive by everything that changes the table or the size
+ *under the shared table lock every block maps to one of STRIPES read write locks, so readers and writers
+ *of disjoint extents do not contend, stripes are always taken in ascending order so they cannot deadlock
+ */
+class ExtentLocks{
+    private static final int STRIPES = Long.SIZE;//one bit per stripe in the masks below
+    private static final int STRIPE_MASK = STRIPES - 1;
+
+    /*keyed by persistent identity, so every proxy of the same file shares the same locks
+     *an entry lives as long as someone holds it, every open channel holds one reference and so does every
+     *operation on the file while it runs, the last release drops it, so the map only knows files in use
+     *an unlinked file keeps its locks until its channels are closed, a new file at the same path is another key
+     */
+    private static final ConcurrentHashMap<NvmFilDir, ExtentLocks> LOCKS = new ConcurrentHashMap<>();
+
+    private final ReentrantReadWriteLock table = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock[] stripes = new ReentrantReadWriteLock[STRIPES];
+    //advisory whole file lock, see StoreChannel.tryLock()
+    private final AtomicBoolean fileLock = new AtomicBoolean();
+    //only read and written within LOCKS.compute, which serializes them per file
+    private int references;
+
+    private ExtentLocks(){
+        for(int i=0; i<STRIPES; i++){
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    //the locks of nvmFilDir, every acquire must be matched by one release
+    static ExtentLocks acquire(NvmFilDir nvmFilDir){
+        return LOCKS.compute(nvmFilDir, (key, locks) -> {
+            ExtentLocks current = locks == null ? new ExtentLocks() : locks;
+            current.references++;
+            return current;
+        });
+    }
+
+    static void release(NvmFilDir nvmFilDir){
+        LOCKS.computeIfPresent(nvmFilDir, (key, locks) -> --locks.references == 0 ? null : locks);
+    }
+
+    ReentrantReadWriteLock table(){
+        return table;
+    }
+
+    //lock the stripes of blocks [firstBlock, lastBlock], the shared table lock must be held, returns what to pass to unlockExtent
+    long lockExtent(int firstBlock, int lastBlock, boolean write){
+        long mask = stripeMask(firstBlock, lastBlock);
+        for(int i=0; i<STRIPES; i++){
+            if((mask & (1L << i)) != 0){
+                if(write){stripes[i].writeLock().lock();}
+                else{stripes[i].readLock().lock();}
+            }
+        }
+        return mask;
+    }
+
+    void unlockExtent(long mask, boolean write){
+        for(int i=STRIPES-1; i>=0; i--){
+            if((mask & (1L << i)) != 0){
+                if(write){stripes[i].writeLock().unlock();}
+                else{stripes[i].readLock().unlock();}
+            }
+        }
+    }
+
+    private static long stripeMask(int firstBlock, int lastBlock){
+        if(lastBlock - firstBlock >= STRIPE_MASK){
+            return -1L;
+        }
+        long mask = 0;
+        for(int block=firstBlock; block<=lastBlock; block++){
+            mask |= 1L << (block & STRIPE_MASK);
+        }
+        return mask;
+    }
+
+    boolean tryLockFile(){
+        return fileLock.compareAndSet(false, true);
+    }
+
+    //false if the lock was not held
+    boolean unlockFile(){
+        return fileLock.compareAndSet(true, false);
+    }
+}
@@ -49,6 +49,14 @@ public interface FileSystemAbstraction {
 
     void truncate( File path, long size ) throws IOException;
 
+    /*the operating system file that holds the contents of fileName, for page swappers that access it without going
+     *through this abstraction, by memory mapping it or with direct io
+     *null if the contents are not kept in an operating system file, like those of the nvm file system
+     */
+    default File nativeFile( File fileName ){
+        return null;
+    }
+
     interface ThirdPartyFileSystem extends Closeable
     {
         void close();
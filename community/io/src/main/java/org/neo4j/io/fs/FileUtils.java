@@ -1,7 +1,6 @@
 package org.neo4j.io.fs;
 
 
-import javax.xml.bind.DatatypeConverter;
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
@@ -14,27 +13,13 @@ import static java.nio.file.StandardOpenOption.*;
 
 public class FileUtils {
 
-    //parent itself child
+    //unlinking file from its parent releases the whole subtree
     private static void deleteNvmFilDir(File file) throws IOException {
-        if ( !NvmFilDir.exists(file) )
+        if ( !NvmFilDir.exists(file) || getCanonicalParentSafely(file) == null )
         {
             return;
         }
-        File parentDirectory = getCanonicalParentSafely(file);
-        NvmFilDir.getNvmFilDir(parentDirectory).decreaseLocalIndex(file);
-
-        //NvmFilDir.removeNvmFilDir(file); //is included in the loop underneath
-        if(NvmFilDir.isFile(file) || NvmFilDir.isEmpty(file)){
-            NvmFilDir.removeNvmFilDir(file); //is included in the loop underneath
-            return;
-        }
-
-        for(String key: NvmFilDir.getNvmFilDirDirectory(null)){
-            if(key.startsWith(file.getCanonicalPath())){
-                NvmFilDir.removeNvmFilDir(new File(key));
-            }
-        }
-
+        NvmFilDir.removeNvmFilDir(file);
     }
 
     //delete the directory(file)'s content including itself
@@ -71,7 +56,6 @@ public class FileUtils {
         renameNvmFilDir(toMove, target);
     }
 
-    //parent itself child
     private static void renameNvmFilDir(File src, File dst) throws IOException {
         if (!NvmFilDir.exists(src)) {
             throw new FileNotFoundException("Source file[" + src.getCanonicalPath() + "] not found");
@@ -79,61 +63,37 @@ public class FileUtils {
         if (NvmFilDir.exists(dst)) {
             throw new FileNotFoundException("Target file[" + dst.getCanonicalPath() + "] already exists");
         }
-        NvmFilDir.getNvmFilDir(getCanonicalParentSafely(src)).decreaseLocalIndex(src);
-        nvmMkDirs(getCanonicalParentSafely(dst), false, true);
-        NvmFilDir.getNvmFilDir(getCanonicalParentSafely(dst)).increaseLocalIndex(dst);
-
-        //NvmFilDir srcFilDir = NvmFilDir.getNvmFilDir(src);//is included in the loop underneath
-        //srcFilDir.renameSelf(src, dst);//index changed from src to dst, inner globalId changed too
-
-        if(dst.getCanonicalPath().startsWith(src.getCanonicalPath())){
+        if(isSameOrBelow(dst, src)){
             throw new IOException("Don't move a directory to a sub directory!");
         }
-        if(NvmFilDir.isFile(src) || NvmFilDir.isEmpty(src)){
-            NvmFilDir srcFilDir = NvmFilDir.getNvmFilDir(src);//is included in the loop underneath
-            srcFilDir.renameSelf(src, dst);//index changed from src to dst, inner globalId changed too
-            return;
-        }
-        for(String key: NvmFilDir.getNvmFilDirDirectory(null)){
-            if(key.startsWith(src.getCanonicalPath())){
-                NvmFilDir subFilDir = NvmFilDir.getNvmFilDir(new File(key));
-                subFilDir.renameSelf(new File(key), new File(dst, key.substring(src.getCanonicalPath().length())));
-            }
-        }
+        nvmMkDirs(getCanonicalParentSafely(dst), false, true);
+        NvmFilDir.renameNvmFilDir(src, dst);
     }
 
-    //mk current layer then make or prove higher and finally connect them
+    //make or prove the higher layers, then make and connect the current one
     public static void nvmMkDirs(File file, boolean isFile, boolean isDirectory) {
-        if(!nvmMkFilDir(file, isFile, isDirectory)){
+        if(file == null || NvmFilDir.exists(file)){
             return;
         }
-        File parentFile = null;
         try {
-            parentFile = getCanonicalParentSafely(file);
+            File parentFile = getCanonicalParentSafely(file);
+            if(parentFile != null && !NvmFilDir.exists(parentFile)){
+                nvmMkDirs(parentFile, false, true);
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
-        if(parentFile==null){return;}//reach the top layer of nvm file system
-        if(!NvmFilDir.exists(parentFile)){
-            nvmMkDirs(parentFile, false, true);
-        }
-        NvmFilDir.getNvmFilDir(parentFile).increaseLocalIndex(file);
+        nvmMkFilDir(file, isFile, isDirectory);
     }
 
-    //if already exists, MkFilDir failed
+    //if already exists, MkFilDir failed, the parent directory must exist
     public static boolean nvmMkFilDir(File file, boolean isFile, boolean isDirectory) {
-        if(NvmFilDir.exists(file)){
-            return false;
-        }
-
-        NvmFilDir nfd = null;
         try {
-            nfd = new NvmFilDir(file.getCanonicalPath(), isFile, isDirectory);
+            return NvmFilDir.createNvmFilDir(file, isFile, isDirectory);
         } catch (IOException e) {
             e.printStackTrace();
+            return false;
         }
-        nfd.force(true);
-        return true;
     }
 
     /*specified moveFile, targetDirectory must exist, so renameTo only, keep its origin name*/
@@ -199,29 +159,25 @@ public class FileUtils {
             throw new FileNotFoundException("Target file[" + dstFile.getCanonicalPath() + "] already exists");
         }
         nvmMkDirs(getCanonicalParentSafely(dstFile), false, true);
-        NvmFilDir.getNvmFilDir(getCanonicalParentSafely(dstFile)).increaseLocalIndex(dstFile);
-
-        //NvmFilDir.copyNvmFilDir(srcFile, dstFile); //is included in the loop underneath
+        NvmFilDir.copyNvmFilDir(srcFile, dstFile, filter);
+    }
 
-        if(NvmFilDir.isFile(srcFile) || NvmFilDir.isEmpty(srcFile)){
-            NvmFilDir.copyNvmFilDir(srcFile, dstFile); //is included in the loop underneath
+    //ensure src and dst already exist, merge src's content into dst without replacing anything
+    private static void copyDirectoryContent(File srcDirectory, File dstDirectory, FileFilter filter) throws IOException{
+        File[] subs = NvmFilDir.listLocalFiles(srcDirectory, null);
+        if(subs == null){
             return;
         }
-
-        for(String key: NvmFilDir.getNvmFilDirDirectory(null)){
-            if(key.startsWith(srcFile.getCanonicalPath()) && (filter==null || filter.accept(new File(key)))){
-                NvmFilDir.copyNvmFilDir(new File(key), new File(dstFile, key.substring(srcFile.getCanonicalPath().length())) );
+        for(File sub: subs){
+            if(filter != null && !filter.accept(sub)){
+                continue;
             }
-        }
-    }
-
-    //ensure src and dst already exist
-    private static void copyDirectoryContent(File srcDirectory, File dstDirectory, FileFilter filter) throws IOException{
-        for(String key: NvmFilDir.getNvmFilDirDirectory(srcDirectory.getCanonicalPath())){
-            if(key.startsWith(srcDirectory.getCanonicalPath())
-                    && !NvmFilDir.exists(new File(dstDirectory, key.substring(srcDirectory.getCanonicalPath().length())))
-                    && (filter==null || filter.accept(new File(key)))){
-                NvmFilDir.copyNvmFilDir(new File(key), new File(dstDirectory, key.substring(srcDirectory.getCanonicalPath().length())) );
+            File dstSub = new File(dstDirectory, sub.getName());
+            if(!NvmFilDir.exists(dstSub)){
+                NvmFilDir.copyNvmFilDir(sub, dstSub, filter);
+            }
+            else if(!NvmFilDir.isFile(sub) && !NvmFilDir.isFile(dstSub)){
+                copyDirectoryContent(sub, dstSub, filter);
             }
         }
     }
@@ -259,6 +215,7 @@ public class FileUtils {
             throw new IllegalArgumentException(
                     "Source file must be a file, not " + srcFile.getCanonicalPath());
         }
+        nvmMkDirs(getCanonicalParentSafely(dstFile), false, true);
         NvmFilDir.copyNvmFilDir(srcFile, dstFile);
     }
 
@@ -276,14 +233,9 @@ public class FileUtils {
     /*override or append, create if not exist, createNewFile need its ParentFile exist*/
     public static void writeToFile( File target, String text, boolean append ) throws IOException
     {
-        if(!NvmFilDir.exists(target)){
-            nvmMkDirs(getCanonicalParentSafely(target), false, true);
-            NvmFilDir.putNvmFilDir(target, new NvmFilDir(target.getCanonicalPath(), true, false));
-            NvmFilDir.getNvmFilDir(getCanonicalParentSafely(target)).increaseLocalIndex(target);
-        }
+        nvmMkDirs(target, true, false);
         if(NvmFilDir.isFile(target)){
-            String temp = new String(text.getBytes(),StandardCharsets.UTF_8);
-            NvmFilDir.getNvmFilDir(target).write(DatatypeConverter.printHexBinary(temp.getBytes()), append);
+            NvmFilDir.getNvmFilDir(target).write(text.getBytes(StandardCharsets.UTF_8), append);
             //NvmFilDir.getNvmFilDir(target).write(new String(text.getBytes(),StandardCharsets.UTF_8), append);
         }
     }
@@ -351,8 +303,7 @@ public class FileUtils {
             throw new IllegalArgumentException(
                     "Source must be a file, not " + file.getCanonicalPath());
         }
-        String temp = NvmFilDir.getNvmFilDir(file).readAll();
-        return (new String(DatatypeConverter.parseHexBinary(temp), charset)+"\n");
+        return (new String(NvmFilDir.getNvmFilDir(file).readAll(), charset)+"\n");
         //return (new String(NvmFilDir.getNvmFilDir(file).readAll().getBytes(), charset)+"\n");
     }
 
@@ -443,12 +394,21 @@ public class FileUtils {
 
 
     private static File getCanonicalParentSafely(File file) throws IOException {
-        if(file.getCanonicalFile().getParentFile()==null || file==null){
+        if(file==null){
             return null;
         }
         return file.getCanonicalFile().getParentFile();
     }
 
+    private static boolean isSameOrBelow(File file, File directory) throws IOException {
+        for(File current = file.getCanonicalFile(); current != null; current = current.getParentFile()){
+            if(current.equals(directory.getCanonicalFile())){
+                return true;
+            }
+        }
+        return false;
+    }
+
 
 
 
@@ -535,7 +495,7 @@ public class FileUtils {
 
 
     public static void printDirectory(){
-        NvmFilDir.PrintDirectory(NvmFilDir.class);
+        NvmFilDir.PrintDirectory();
     }
 
 
@@ -2,94 +2,149 @@ package org.neo4j.io.fs;
 
 import lib.util.persistent.ObjectDirectory;
 import lib.util.persistent.ObjectPointer;
+import lib.util.persistent.PersistentArrayList;
+import lib.util.persistent.PersistentArrays;
+import lib.util.persistent.PersistentByteArray;
+import lib.util.persistent.PersistentInteger;
 import lib.util.persistent.PersistentObject;
+import lib.util.persistent.PersistentSIHashMap;
 import lib.util.persistent.PersistentString;
+import lib.util.persistent.Transaction;
 import lib.util.persistent.types.BooleanField;
+import lib.util.persistent.types.LongField;
+import lib.util.persistent.types.ObjectField;
 import lib.util.persistent.types.ObjectType;
-import lib.util.persistent.types.StringField;
 
 import java.io.File;
+import java.io.FileFilter;
+import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
 
 import static lib.util.persistent.Util.persistent;
 
+/*the nvm file system is a persistent tree rooted at ROOT_KEY in the ObjectDirectory
+ *each directory keeps a map from child name to child, so a NvmFilDir is an inode and its name only lives in the parent
+ *lookups walk the tree from the root, list, rename and delete only touch the parent's map
+ */
 public class NvmFilDir  extends PersistentObject{
-    private static final StringField GLOBALID = new StringField();
-    private static final StringField LOCALINDEX = new StringField();
-    private static final StringField FILECONTENT = new StringField();
+    private static final String ROOT_KEY = "NvmFilDirRoot";
+    /*version of the persistent layout below ROOT_KEY, kept next to it in the ObjectDirectory
+     *bump it whenever the fields of NvmFilDir or the shape of the tree change
+     *1: tree of child maps rooted at ROOT_KEY, content in BLOCKTABLE
+     */
+    private static final String LAYOUT_VERSION_KEY = "NvmFilDirLayoutVersion";
+    private static final int LAYOUT_VERSION = 1;
+    private static final Pattern SEPARATOR = Pattern.compile(Pattern.quote(File.separator));
+
+    /*file content is kept in fixed-size blocks, BLOCKTABLE[i] covers [i*BLOCK_SIZE, (i+1)*BLOCK_SIZE)
+     *a null entry is a hole, no nvm is spent on it until it is written or preallocated and it reads as zeroes
+     */
+    static final int BLOCK_SHIFT = 16;
+    static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    private static final byte[] ZEROES = new byte[BLOCK_SIZE];
+    //per thread staging for buffers without an accessible array and for whole blocks, so bulk copies do not allocate
+    private static final ThreadLocal<byte[]> STAGING = ThreadLocal.withInitial(() -> new byte[BLOCK_SIZE]);
+
+    //PCJ declares the collection TYPE constants with raw element types, so the fields can only be typed raw
+    @SuppressWarnings("rawtypes")
+    private static final ObjectField<PersistentSIHashMap> CHILDREN = new ObjectField<>(PersistentSIHashMap.TYPE);
+    @SuppressWarnings("rawtypes")
+    private static final ObjectField<PersistentArrayList> BLOCKTABLE = new ObjectField<>(PersistentArrayList.TYPE);
+    private static final LongField FILESIZE = new LongField();
     private static final BooleanField ISFILE = new BooleanField();
     private static final BooleanField ISDIRECTORY = new BooleanField();
-    //private static ReentrantLock Lock = new ReentrantLock();
 
-    private static final ObjectType<NvmFilDir> TYPE = ObjectType.withFields(NvmFilDir.class, GLOBALID, LOCALINDEX, FILECONTENT, ISFILE, ISDIRECTORY);
-    //only this param about File is String, convert to canonicalPath before pass in
-    public NvmFilDir(String uniqueFileName, boolean isFile, boolean isDirectory){
+    private static final ObjectType<NvmFilDir> TYPE = ObjectType.withFields(NvmFilDir.class, CHILDREN, BLOCKTABLE, FILESIZE, ISFILE, ISDIRECTORY);
+    //not reachable until linked under its parent, see createNvmFilDir
+    public NvmFilDir(boolean isFile, boolean isDirectory){
         super(TYPE);
-        setGlobalId(uniqueFileName);
-        setLocalIndex("");
-        setFileContent("");
+        setChildren(isDirectory ? new PersistentSIHashMap<>() : null);
+        setBlockTable(new PersistentArrayList<>());
+        setFileSize(0);
         setIsFile(isFile);
         setIsDirectory(isDirectory);
-        ObjectDirectory.put(getGlobalId(), this);
     }
 
     private NvmFilDir(ObjectPointer<NvmFilDir> p){
         super(p);
     }
-    //copy
+    //copy, blocks and children are duplicated so that src and dst do not share content
     public NvmFilDir(NvmFilDir nvmFilDir){
+        this(nvmFilDir, null, null);
+    }
+
+    //copy, skipping the children (and their subtrees) of file that the filter does not accept
+    private NvmFilDir(NvmFilDir nvmFilDir, File file, FileFilter filter){
         super(TYPE);
-        setGlobalId(nvmFilDir.getGlobalId());
-        setLocalIndex(nvmFilDir.getLocalIndex());
-        setFileContent(nvmFilDir.getFileContent());
+        PersistentSIHashMap<PersistentString, NvmFilDir> srcChildren = nvmFilDir.getChildren();
+        if(srcChildren != null){
+            PersistentSIHashMap<PersistentString, NvmFilDir> children = new PersistentSIHashMap<>();
+            for(Map.Entry<PersistentString, NvmFilDir> child: srcChildren.entrySet()){
+                File childFile = file == null ? null : new File(file, child.getKey().toString());
+                if(filter == null || filter.accept(childFile)){
+                    children.put(child.getKey(), new NvmFilDir(child.getValue(), childFile, filter));
+                }
+            }
+            setChildren(children);
+        }
+        //exclusive, so no write can be half way through a block while it is copied
+        ExtentLocks srcLocks = ExtentLocks.acquire(nvmFilDir);
+        srcLocks.table().writeLock().lock();
+        try{
+            PersistentArrayList<PersistentByteArray> blocks = new PersistentArrayList<>();
+            byte[] staging = STAGING.get();
+            for(PersistentByteArray block: nvmFilDir.getBlockTable()){
+                if(block != null){
+                    PersistentArrays.toByteArray(block, 0, staging, 0, BLOCK_SIZE);
+                }
+                blocks.add(block == null ? null : new PersistentByteArray(staging));
+            }
+            setBlockTable(blocks);
+            setFileSize(nvmFilDir.getFileSize());
+        }
+        finally{
+            srcLocks.table().writeLock().unlock();
+            ExtentLocks.release(nvmFilDir);
+        }
         setIsFile(nvmFilDir.getIsFile());
         setIsDirectory(nvmFilDir.getIsDirectory());
     }
 
-    private void setGlobalId(String globalId){
-        setObjectField(GLOBALID, persistent(globalId));
+    private void setChildren(PersistentSIHashMap<PersistentString, NvmFilDir> children){
+        setObjectField(CHILDREN, children);
     }
 
-    private String getGlobalId(){
-        return getObjectField(GLOBALID).toString();
+    //null for files
+    @SuppressWarnings("unchecked")
+    private PersistentSIHashMap<PersistentString, NvmFilDir> getChildren(){
+        return (PersistentSIHashMap<PersistentString, NvmFilDir>) getObjectField(CHILDREN);
     }
 
 
-    private void setLocalIndex(String localIndex){
-        //synchronized(LOCALINDEX) {
-
-            setObjectField(LOCALINDEX, persistent(localIndex));
-        //}
+    private void setBlockTable(PersistentArrayList<PersistentByteArray> blockTable){
+        setObjectField(BLOCKTABLE, blockTable);
     }
 
-    private String getLocalIndex(){
-        //synchronized(LOCALINDEX) {
-
-            return getObjectField(LOCALINDEX).toString();
-        //}
+    @SuppressWarnings("unchecked")
+    private PersistentArrayList<PersistentByteArray> getBlockTable(){
+        return (PersistentArrayList<PersistentByteArray>) getObjectField(BLOCKTABLE);
     }
 
 
-    private void setFileContent(String fileContent){
-        //synchronized (FILECONTENT) {
-            System.out.println("Write " + getGlobalId() + " From DRAM To NVM");
-            System.out.println(fileContent);
-            setObjectField(FILECONTENT, persistent(fileContent));
-        //}
+    private void setFileSize(long fileSize){
+        setLongField(FILESIZE, fileSize);
     }
 
-    private String getFileContent(){
-        //synchronized (FILECONTENT) {
-            System.out.println("Read " + getGlobalId() + " From NVM To DRAM");
-            System.out.println(getObjectField(FILECONTENT).toString());
-            return getObjectField(FILECONTENT).toString();
-        //}
+    private long getFileSize(){
+        return getLongField(FILESIZE);
     }
 
 
@@ -115,101 +170,416 @@ public class NvmFilDir  extends PersistentObject{
     /*above set/get method*/
 
 
-    public int write(String src, int position){
-        int positionLocal = position * 2;
-        if(src.length() == 0 || positionLocal < 0){return 0;}
-        String originContent = getFileContent();
-        int offset = positionLocal - originContent.length();
-        if(offset > 0){
-            setFileContent(originContent + new String(new byte[offset])+ src);
+    //make the block table reach blockIndex, the entries added are holes
+    private void ensureBlocks(PersistentArrayList<PersistentByteArray> blocks, int blockIndex){
+        while(blocks.size() <= blockIndex){
+            blocks.add(null);
         }
-        else{
-            if(positionLocal+src.length()<=originContent.length()){
-                setFileContent(originContent.substring(0, positionLocal) + src + originContent.substring(positionLocal + src.length()));
+    }
+
+    //allocate the block at blockIndex if it is a hole, new blocks are zeroed by the allocator
+    private PersistentByteArray allocateBlock(PersistentArrayList<PersistentByteArray> blocks, int blockIndex){
+        PersistentByteArray block = blocks.get(blockIndex);
+        if(block == null){
+            block = new PersistentByteArray(BLOCK_SIZE);
+            blocks.set(blockIndex, block);
+        }
+        return block;
+    }
+
+    /*write the remaining bytes of src to the file at position, as one failure-atomic transaction
+     *after a crash either every block covered and the new size are there, or none of them
+     */
+    public int write(ByteBuffer src, long position){
+        return (int) write(new ByteBuffer[]{src}, 0, 1, position);
+    }
+
+    /*write the remaining bytes of srcs[offset..offset+length) back to back from position, in one transaction
+     *so a run of pages is persisted all or nothing
+     *a write that stays within the file and its allocated blocks only locks the stripes of its extent, so writes
+     *to disjoint extents run side by side, anything that grows the file or allocates takes the table exclusively
+     */
+    public long write(ByteBuffer[] srcs, int offset, int length, long position){
+        ExtentLocks locks = ExtentLocks.acquire(this);
+        try{
+            return write(srcs, offset, length, position, locks);
+        }
+        finally{
+            ExtentLocks.release(this);
+        }
+    }
+
+    private long write(ByteBuffer[] srcs, int offset, int length, long position, ExtentLocks locks){
+        int[] starts = new int[length];
+        long remaining = 0;
+        for(int i=0; i<length; i++){
+            starts[i] = srcs[offset+i].position();
+            remaining += srcs[offset+i].remaining();
+        }
+        final long total = remaining;
+        if(total <= 0 || position < 0){return 0;}
+        long end = position + total;
+        int firstBlock = (int) (position >>> BLOCK_SHIFT);
+        int lastBlock = Math.toIntExact((end - 1) >>> BLOCK_SHIFT);
+        locks.table().readLock().lock();
+        try{
+            PersistentByteArray[] extent = inPlaceBlocks(position, end, firstBlock, lastBlock);
+            if(extent != null){
+                long stripes = locks.lockExtent(firstBlock, lastBlock, true);
+                try{
+                    //the blocks were resolved up front, so the transaction locks none but them
+                    return Transaction.run(() -> {
+                        long written = 0;
+                        for(int i=0; i<length; i++){
+                            ByteBuffer src = srcs[offset+i];
+                            src.position(starts[i]);//a retried transaction starts over from the same bytes
+                            written += writeInPlace(src, position + written, extent, firstBlock);
+                        }
+                        return written;
+                    });
+                }
+                finally{
+                    locks.unlockExtent(stripes, true);
+                }
+            }
+        }
+        finally{
+            locks.table().readLock().unlock();
+        }
+        locks.table().writeLock().lock();
+        try{
+            return Transaction.run(() -> {
+                long written = 0;
+                for(int i=0; i<length; i++){
+                    ByteBuffer src = srcs[offset+i];
+                    src.position(starts[i]);
+                    written += writeBlocks(src, position + written);
+                }
+                return written;
+            }, this);
+        }
+        finally{
+            locks.table().writeLock().unlock();
+        }
+    }
+
+    /*the blocks of [position, end) if they can be written in place, null if the write grows the file,
+     *hits a hole or covers a whole block, which is cheaper to replace, the table lock must be held
+     */
+    private PersistentByteArray[] inPlaceBlocks(long position, long end, int firstBlock, int lastBlock){
+        if(end > getFileSize()){return null;}
+        PersistentArrayList<PersistentByteArray> blocks = getBlockTable();
+        PersistentByteArray[] extent = new PersistentByteArray[lastBlock - firstBlock + 1];
+        for(int blockIndex=firstBlock; blockIndex<=lastBlock; blockIndex++){
+            long blockStart = (long) blockIndex << BLOCK_SHIFT;
+            if(position <= blockStart && end >= blockStart + BLOCK_SIZE){return null;}
+            PersistentByteArray block = blocks.get(blockIndex);
+            if(block == null){return null;}
+            extent[blockIndex - firstBlock] = block;
+        }
+        return extent;
+    }
+
+    //copy the remaining bytes of src into the already allocated extent, must be called within a transaction
+    private static int writeInPlace(ByteBuffer src, long position, PersistentByteArray[] extent, int firstBlock){
+        int length = src.remaining();
+        long filePosition = position;
+        while(src.hasRemaining()){
+            int blockOffset = (int) (filePosition & BLOCK_MASK);
+            int chunk = Math.min(BLOCK_SIZE - blockOffset, src.remaining());
+            copyIn(src, extent[(int) (filePosition >>> BLOCK_SHIFT) - firstBlock], blockOffset, chunk);
+            filePosition += chunk;
+        }
+        return length;
+    }
+
+    /*only the blocks covered are touched, bytes move straight from the buffer into the blocks,
+     *heap and direct buffers alike, must be called within a transaction holding the table lock exclusively
+     *writing beyond the end of file leaves the gap as holes instead of allocating it
+     */
+    private int writeBlocks(ByteBuffer src, long position){
+        int length = src.remaining();
+        if(length <= 0 || position < 0){return 0;}
+        PersistentArrayList<PersistentByteArray> blocks = getBlockTable();
+        long end = position + length;
+        ensureBlocks(blocks, Math.toIntExact((end - 1) >>> BLOCK_SHIFT));
+        long filePosition = position;
+        while(filePosition < end){
+            int blockIndex = (int) (filePosition >>> BLOCK_SHIFT);
+            int blockOffset = (int) (filePosition & BLOCK_MASK);
+            int chunk = (int) Math.min(BLOCK_SIZE - blockOffset, end - filePosition);
+            if(chunk == BLOCK_SIZE){
+                //whole block overwritten, replace it instead of copying into the old one
+                byte[] staging = STAGING.get();
+                src.get(staging);
+                blocks.set(blockIndex, new PersistentByteArray(staging));
+            }
+            else{
+                copyIn(src, allocateBlock(blocks, blockIndex), blockOffset, chunk);
+            }
+            filePosition += chunk;
+        }
+        if(end > getFileSize()){
+            setFileSize(end);
+        }
+        return length;
+    }
+
+    public int write(byte[] src, int offset, int length, long position){
+        return write(ByteBuffer.wrap(src, offset, length), position);
+    }
+
+    /*read at most dst.remaining() bytes at position into dst, -1 if position is at or beyond the end of file
+     *only the stripes of the extent read are locked, shared
+     */
+    public int read(ByteBuffer dst, long position){
+        ExtentLocks locks = ExtentLocks.acquire(this);
+        locks.table().readLock().lock();
+        try{
+            long fileSize = getFileSize();
+            if(position >= fileSize || position < 0){return -1;}
+            int length = dst.remaining();
+            if(length <= 0){return 0;}
+            long end = Math.min(fileSize, position + length);
+            long stripes = locks.lockExtent((int) (position >>> BLOCK_SHIFT), (int) ((end - 1) >>> BLOCK_SHIFT), false);
+            try{
+                return readBlocks(dst, position, end);
+            }
+            finally{
+                locks.unlockExtent(stripes, false);
+            }
+        }
+        finally{
+            locks.table().readLock().unlock();
+            ExtentLocks.release(this);
+        }
+    }
+
+    private int readBlocks(ByteBuffer dst, long position, long end){
+        PersistentArrayList<PersistentByteArray> blocks = getBlockTable();
+        long filePosition = position;
+        while(filePosition < end){
+            int blockIndex = (int) (filePosition >>> BLOCK_SHIFT);
+            int blockOffset = (int) (filePosition & BLOCK_MASK);
+            int chunk = (int) Math.min(BLOCK_SIZE - blockOffset, end - filePosition);
+            PersistentByteArray block = blockIndex < blocks.size() ? blocks.get(blockIndex) : null;
+            if(block == null){
+                dst.put(ZEROES, 0, chunk);
             }
             else{
-                setFileContent(originContent.substring(0, positionLocal) + src);
+                copyOut(block, blockOffset, dst, chunk);
             }
+            filePosition += chunk;
+        }
+        return (int) (end - position);
+    }
+
+    /*move chunk bytes from src into block at blockOffset with one bulk copy instead of one persistent store per byte
+     *heap buffers are copied from their array directly, anything else goes through the staging array
+     *must be called within a transaction
+     */
+    private static void copyIn(ByteBuffer src, PersistentByteArray block, int blockOffset, int chunk){
+        if(src.hasArray()){
+            PersistentArrays.fromByteArray(src.array(), src.arrayOffset() + src.position(), block, blockOffset, chunk);
+            src.position(src.position() + chunk);
+        }
+        else{
+            byte[] staging = STAGING.get();
+            src.get(staging, 0, chunk);
+            PersistentArrays.fromByteArray(staging, 0, block, blockOffset, chunk);
         }
-        return src.length()/2;
     }
 
-    public void write(String text, boolean append){
-        if(append){
-            write(text, getFileContent().length()/2);
+    //move chunk bytes at blockOffset of block into dst with one bulk copy
+    private static void copyOut(PersistentByteArray block, int blockOffset, ByteBuffer dst, int chunk){
+        if(dst.hasArray()){
+            PersistentArrays.toByteArray(block, blockOffset, dst.array(), dst.arrayOffset() + dst.position(), chunk);
+            dst.position(dst.position() + chunk);
         }
         else{
-            write(text, 0);
+            byte[] staging = STAGING.get();
+            PersistentArrays.toByteArray(block, blockOffset, staging, 0, chunk);
+            dst.put(staging, 0, chunk);
         }
     }
 
-    public String readAll(){
-            return getFileContent();
+    public int read(byte[] dst, int offset, int length, long position){
+        return read(ByteBuffer.wrap(dst, offset, length), position);
     }
 
+    public void write(byte[] content, boolean append){
+        write(content, 0, content.length, append ? getSize() : 0);
+    }
+
+    public byte[] readAll(){
+            byte[] content = new byte[Math.toIntExact(getSize())];
+            read(content, 0, content.length, 0);
+            return content;
+    }
 
 
-    public void truncate(int size){
-            String originContent = getFileContent();
-            setFileContent(originContent.substring(0, size*2));
+
+    public void truncate(long size){
+            ExtentLocks locks = ExtentLocks.acquire(this);
+            locks.table().writeLock().lock();
+            try{
+                if(size < 0 || size >= getFileSize()){return;}
+                Transaction.run(() -> truncateBlocks(size), this);
+            }
+            finally{
+                locks.table().writeLock().unlock();
+                ExtentLocks.release(this);
+            }
+    }
+
+    private void truncateBlocks(long size){
+            PersistentArrayList<PersistentByteArray> blocks = getBlockTable();
+            int keepBlocks = Math.toIntExact((size + BLOCK_MASK) >>> BLOCK_SHIFT);
+            while(blocks.size() > keepBlocks){
+                blocks.remove(blocks.size() - 1);
+            }
+            //zero the cut off tail of the last block, so later growth reads zeroes
+            int tailOffset = (int) (size & BLOCK_MASK);
+            PersistentByteArray last = tailOffset == 0 ? null : blocks.get(keepBlocks - 1);
+            if(last != null){
+                PersistentArrays.fromByteArray(ZEROES, 0, last, tailOffset, BLOCK_SIZE - tailOffset);
+            }
+            setFileSize(size);
+    }
+
+    /*allocate every hole in [position, position+length), so later writes there do not have to allocate
+     *the file size is left alone, the space only becomes file content when it is written
+     */
+    public void preallocate(long position, long length){
+            if(position < 0 || length <= 0){return;}
+            ExtentLocks locks = ExtentLocks.acquire(this);
+            locks.table().writeLock().lock();
+            try{
+                Transaction.run(() -> {
+                    PersistentArrayList<PersistentByteArray> blocks = getBlockTable();
+                    int lastBlock = Math.toIntExact((position + length - 1) >>> BLOCK_SHIFT);
+                    ensureBlocks(blocks, lastBlock);
+                    for(int i=(int) (position >>> BLOCK_SHIFT); i<=lastBlock; i++){
+                        allocateBlock(blocks, i);
+                    }
+                }, this);
+            }
+            finally{
+                locks.table().writeLock().unlock();
+                ExtentLocks.release(this);
+            }
     }
 
-    public String read(int length, int position){
-        int positionLocal = position * 2;
-        int lengthLocal = length * 2;
-        String originContent = getFileContent();
-            if (positionLocal >= originContent.length() || positionLocal < 0 || lengthLocal <= 0) {
-                return "";
+    /*deallocate [position, position+length), blocks covered entirely become holes, partially covered ones are zeroed
+     *the file size is left alone, the range reads as zeroes afterwards
+     */
+    public void punchHole(long position, long length){
+            if(position < 0 || length <= 0){return;}
+            ExtentLocks locks = ExtentLocks.acquire(this);
+            locks.table().writeLock().lock();
+            try{
+                Transaction.run(() -> {
+                    PersistentArrayList<PersistentByteArray> blocks = getBlockTable();
+                    long end = Math.min(position + length, (long) blocks.size() << BLOCK_SHIFT);
+                    long filePosition = position;
+                    while(filePosition < end){
+                        int blockIndex = (int) (filePosition >>> BLOCK_SHIFT);
+                        int blockOffset = (int) (filePosition & BLOCK_MASK);
+                        int chunk = (int) Math.min(BLOCK_SIZE - blockOffset, end - filePosition);
+                        PersistentByteArray block = blocks.get(blockIndex);
+                        if(chunk == BLOCK_SIZE){
+                            blocks.set(blockIndex, null);
+                        }
+                        else if(block != null){
+                            PersistentArrays.fromByteArray(ZEROES, 0, block, blockOffset, chunk);
+                        }
+                        filePosition += chunk;
+                    }
+                }, this);
             }
-            if (positionLocal + lengthLocal <= originContent.length()) {
-                return originContent.substring(positionLocal, positionLocal + lengthLocal);
-            } else {
-                return originContent.substring(positionLocal);
+            finally{
+                locks.table().writeLock().unlock();
+                ExtentLocks.release(this);
             }
     }
 
     public long getSize(){
-            return getFileContent().length()/2;
+            ExtentLocks locks = ExtentLocks.acquire(this);
+            locks.table().readLock().lock();
+            try{
+                return getFileSize();
+            }
+            finally{
+                locks.table().readLock().unlock();
+                ExtentLocks.release(this);
+            }
     }
-    //remained to complete
+    /*deliberately a no-op, every write is flushed and fenced when its transaction commits, before write returns
+     *so there is nothing left to make durable, and the directory tree is updated transactionally as well
+     */
     public void force(boolean metadata){
-            //if (ObjectDirectory.get(getGlobalId(), NvmFilDir.class) == null) {
-                //ObjectDirectory.put(getGlobalId(), this);
-            //}
-
-            //PrintDirectory(NvmFilDir.class);
     }
 
 
 
-    //"/"not used in file's name
-    public void increaseLocalIndex(File newLocalSub){
-            setLocalIndex(getLocalIndex()+"/"+newLocalSub.getName());
+    /*below are the directory methods, children are keyed by their name*/
+    private NvmFilDir getChild(String name){
+            PersistentSIHashMap<PersistentString, NvmFilDir> children = getChildren();
+            return children == null ? null : children.get(name, PersistentString.class);
+    }
+
+    private void putChild(String name, NvmFilDir child) throws IOException{
+            PersistentSIHashMap<PersistentString, NvmFilDir> children = getChildren();
+            if(children == null){
+                throw new IOException("Not a directory, cannot add " + name);
+            }
+            children.put(persistent(name), child);
     }
 
-    public void decreaseLocalIndex(File oldLocalSub){
-            setLocalIndex(getLocalIndex().replace(("/" + oldLocalSub.getName()), ""));
+    private NvmFilDir removeChild(String name){
+            PersistentSIHashMap<PersistentString, NvmFilDir> children = getChildren();
+            return children == null ? null : children.remove(persistent(name));
     }
-    //remove the first "/"
+
+    //null if there are no children
     public String[] getSubList(){
-            if (getLocalIndex().length() == 0) {
+            PersistentSIHashMap<PersistentString, NvmFilDir> children = getChildren();
+            if (children == null || children.isEmpty()) {
                 return null;
             }
-            return getLocalIndex().substring(1).split("/");
-    }
-
-    public void renameSelf(File src, File dst) throws IOException{
-            setGlobalId(dst.getCanonicalPath());
-            NvmFilDir.putNvmFilDir(dst, NvmFilDir.removeNvmFilDir(src));
+            List<String> names = new ArrayList<>(children.size());
+            for(PersistentString name: children.keySet()){
+                names.add(name.toString());
+            }
+            return names.toArray(new String[names.size()]);
     }
 
+    /*advisory lock on the whole file, held until unlock(), it does not keep anyone from reading or writing
+     *a held lock keeps its own reference to the locks of the file
+     */
     public boolean tryLock(){
-        //return Lock.tryLock();
-        return true;
+        if(ExtentLocks.acquire(this).tryLockFile()){
+            return true;
+        }
+        ExtentLocks.release(this);
+        return false;
     }
 
     public void unlock(){
-        //Lock.unlock();
+        ExtentLocks locks = ExtentLocks.acquire(this);
+        if(locks.unlockFile()){
+            ExtentLocks.release(this);
+        }
+        ExtentLocks.release(this);
+    }
+
+    //held by every channel open on this file, so its locks live as long as the channel
+    void acquireLocks(){
+        ExtentLocks.acquire(this);
+    }
+
+    void releaseLocks(){
+        ExtentLocks.release(this);
     }
 
 
@@ -219,123 +589,246 @@ public class NvmFilDir  extends PersistentObject{
 
 
 
-    public static boolean exists(File file)  {
+    private static volatile NvmFilDir root;
+
+    /*DRAM cache of resolved entries, so that hits cost neither a getCanonicalPath() syscall nor a tree walk
+     *only paths that are their own canonical path are cached, so no symlinked alias can go stale
+     *entries are invalidated for the whole subtree whenever a path is unlinked or relinked
+     *written while synchronized(NvmFilDir.class), read lock free
+     */
+    private static final ConcurrentSkipListMap<String, NvmFilDir> resolved = new ConcurrentSkipListMap<>();
+
+    /*the root always exists, it is created on first use together with the layout version
+     *a heap written with another layout is refused instead of being read with the wrong field offsets
+     */
+    private static NvmFilDir getRoot(){
+        NvmFilDir current = root;
+        if(current == null){
+            synchronized(NvmFilDir.class){
+                current = root;
+                if(current == null){
+                    current = ObjectDirectory.get(ROOT_KEY, NvmFilDir.class);
+                    if(current == null){
+                        checkNoPreviousLayout();
+                        NvmFilDir created = new NvmFilDir(false, true);
+                        Transaction.run(() -> {
+                            ObjectDirectory.put(ROOT_KEY, created);
+                            ObjectDirectory.put(LAYOUT_VERSION_KEY, new PersistentInteger(LAYOUT_VERSION));
+                        });
+                        current = created;
+                    }
+                    else{
+                        checkLayoutVersion();
+                    }
+                    root = current;
+                }
+            }
+        }
+        return current;
+    }
 
-        try {
-            return (ObjectDirectory.get(file.getCanonicalPath(), NvmFilDir.class)!=null);
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+    //a root without a version was written before the version was kept, with the same layout as version 1
+    private static void checkLayoutVersion(){
+        PersistentInteger version = ObjectDirectory.get(LAYOUT_VERSION_KEY, PersistentInteger.class);
+        if(version == null){
+            ObjectDirectory.put(LAYOUT_VERSION_KEY, new PersistentInteger(LAYOUT_VERSION));
+        }
+        else if(version.intValue() != LAYOUT_VERSION){
+            throw new IllegalStateException("The nvm file system in the persistent heap has layout version " +
+                    version + ", this version only reads layout version " + LAYOUT_VERSION +
+                    ", the heap has to be recreated and the store copied in again");
+        }
+    }
+
+    //the layout before version 1 kept every file under its canonical path as its own ObjectDirectory key
+    private static void checkNoPreviousLayout(){
+        for(PersistentString key: ObjectDirectory.getDirectory()){
+            if(key.toString().startsWith(File.separator)){
+                throw new IllegalStateException("The persistent heap holds nvm files in the layout from before " +
+                        "layout version " + LAYOUT_VERSION + ", found " + key + ", this version cannot read them, " +
+                        "the heap has to be recreated and the store copied in again");
+            }
         }
     }
 
+    //on a miss, resolve and cache while holding the lock, so an unlink cannot slip in between
+    private static synchronized NvmFilDir resolve(File file) throws IOException{
+        String absolutePath = file.getAbsolutePath();
+        String canonicalPath = file.getCanonicalPath();
+        NvmFilDir nvmFilDir = lookup(canonicalPath);
+        if(nvmFilDir != null && absolutePath.equals(canonicalPath)){
+            resolved.put(canonicalPath, nvmFilDir);
+        }
+        return nvmFilDir;
+    }
+
+    //forget canonicalFile and everything below it, must be called while synchronized(NvmFilDir.class)
+    private static void invalidate(File canonicalFile){
+        String path = canonicalFile.getPath();
+        resolved.remove(path);
+        resolved.subMap(path + File.separator, path + File.separator + Character.MAX_VALUE).clear();
+    }
+
+    //walk down from the root, one child map lookup per path element
+    private static NvmFilDir lookup(String canonicalPath){
+        NvmFilDir current = getRoot();
+        for(String name: SEPARATOR.split(canonicalPath)){
+            if(name.isEmpty()){continue;}
+            current = current.getChild(name);
+            if(current == null){
+                return null;
+            }
+        }
+        return current;
+    }
 
-    public static NvmFilDir removeNvmFilDir(File file) throws IOException{
+    private static NvmFilDir lookupParent(File canonicalFile) throws IOException{
+        File parent = canonicalFile.getParentFile();
+        if(parent == null){
+            throw new IOException("The root directory has no parent");
+        }
+        NvmFilDir parentNvmFilDir = lookup(parent.getPath());
+        if(parentNvmFilDir == null){
+            throw new FileNotFoundException("Parent directory[" + parent.getPath() + "] not found");
+        }
+        return parentNvmFilDir;
+    }
+
+    public static boolean exists(File file)  {
+
+        return getNvmFilDir(file) != null;
+    }
+
+    /*unlink file from its parent, the subtree goes with it
+     *channels still open on a removed file keep its locks until they are closed
+     */
+    public static synchronized NvmFilDir removeNvmFilDir(File file) throws IOException{
+        return unlinkNvmFilDir(file);
+    }
 
-        return ObjectDirectory.remove(file.getCanonicalPath(), NvmFilDir.class);
+    private static NvmFilDir unlinkNvmFilDir(File file) throws IOException{
+        File canonicalFile = file.getCanonicalFile();
+        invalidate(canonicalFile);
+        return lookupParent(canonicalFile).removeChild(canonicalFile.getName());
     }
 
     public static NvmFilDir getNvmFilDir(File file) {
 
+        NvmFilDir cached = resolved.get(file.getAbsolutePath());
+        if(cached != null){
+            return cached;
+        }
         try {
-            return ObjectDirectory.get(file.getCanonicalPath(), NvmFilDir.class);
+            return resolve(file);
         } catch (IOException e) {
             e.printStackTrace();
             return null;
         }
     }
 
-    public static void putNvmFilDir(File file, NvmFilDir nvmFilDir) throws IOException{
+    //link nvmFilDir under the parent of file, which must exist, replacing whatever was there
+    public static synchronized void putNvmFilDir(File file, NvmFilDir nvmFilDir) throws IOException{
+        File canonicalFile = file.getCanonicalFile();
+        invalidate(canonicalFile);
+        lookupParent(canonicalFile).putChild(canonicalFile.getName(), nvmFilDir);
+    }
 
-        ObjectDirectory.put(file.getCanonicalPath(), nvmFilDir);
-        //PrintDirectory(NvmFilDir.class);
+    //if already exists, create failed, the parent must exist
+    public static synchronized boolean createNvmFilDir(File file, boolean isFile, boolean isDirectory) throws IOException{
+        if(exists(file)){
+            return false;
+        }
+        putNvmFilDir(file, new NvmFilDir(isFile, isDirectory));
+        return true;
+    }
+
+    /*relink src under the parent of dst, which must exist
+     *link and unlink are one transaction, so after a crash the file is under exactly one of its two names
+     */
+    public static synchronized void renameNvmFilDir(File src, File dst) throws IOException{
+        File canonicalSrc = src.getCanonicalFile();
+        File canonicalDst = dst.getCanonicalFile();
+        if(canonicalSrc.equals(canonicalDst)){
+            return;
+        }
+        NvmFilDir srcNvmFilDir = getNvmFilDir(src);
+        if(srcNvmFilDir == null){
+            throw new FileNotFoundException("Source file[" + canonicalSrc.getPath() + "] not found");
+        }
+        NvmFilDir srcParent = lookupParent(canonicalSrc);
+        NvmFilDir dstParent = lookupParent(canonicalDst);
+        if(dstParent.getChildren() == null){
+            throw new IOException("Not a directory, cannot add " + canonicalDst.getName());
+        }
+        invalidate(canonicalSrc);
+        invalidate(canonicalDst);
+        //still the same file, its locks stay
+        Transaction.run(() -> {
+            dstParent.getChildren().put(persistent(canonicalDst.getName()), srcNvmFilDir);
+            srcParent.removeChild(canonicalSrc.getName());
+        });
     }
 
     public static void copyNvmFilDir(File src, File dst)throws IOException{
-        NvmFilDir dstNvmFilDir = new NvmFilDir(NvmFilDir.getNvmFilDir(src));
-        dstNvmFilDir.setGlobalId(dst.getCanonicalPath());
-        NvmFilDir.putNvmFilDir(dst, dstNvmFilDir);
+        copyNvmFilDir(src, dst, null);
+    }
+
+    //deep copy of src linked under the parent of dst, filter is applied to everything below src
+    public static synchronized void copyNvmFilDir(File src, File dst, FileFilter filter)throws IOException{
+        NvmFilDir srcNvmFilDir = getNvmFilDir(src);
+        if(srcNvmFilDir == null){
+            throw new FileNotFoundException("Source file[" + src.getCanonicalPath() + "] not found");
+        }
+        putNvmFilDir(dst, new NvmFilDir(srcNvmFilDir, src.getCanonicalFile(), filter));
     }
 
     public static boolean isEmpty(File file) throws IOException {
 
-        return ObjectDirectory.get(file.getCanonicalPath(), NvmFilDir.class).getLocalIndex().length() == 0;
+        return getNvmFilDir(file).getSubList() == null;
     }
 
     public static boolean isFile(File file) throws IOException{
 
-        if(ObjectDirectory.get(file.getCanonicalPath(), NvmFilDir.class)==null){
-            return false;
-        }
-        return ObjectDirectory.get(file.getCanonicalPath(), NvmFilDir.class).getIsFile();
+        NvmFilDir nvmFilDir = getNvmFilDir(file);
+        return nvmFilDir != null && nvmFilDir.getIsFile();
     }
 
     public static boolean isDirectory(File file) {
 
-        try {
-            if(ObjectDirectory.get(file.getCanonicalPath(), NvmFilDir.class)==null){
-                return true;
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        try {
-            return  ObjectDirectory.get(file.getCanonicalPath(), NvmFilDir.class).getIsDirectory();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
-        }
+        NvmFilDir nvmFilDir = getNvmFilDir(file);
+        return nvmFilDir == null || nvmFilDir.getIsDirectory();
     }
 
 
     public static File[] listLocalFiles(File directory, FilenameFilter filter ){
-        String[] subs = NvmFilDir.getNvmFilDir(directory).getSubList();
+        NvmFilDir nvmFilDir = getNvmFilDir(directory);
+        String[] subs = nvmFilDir == null ? null : nvmFilDir.getSubList();
         if(subs == null){
             return null;
         }
-        ArrayList temp = new ArrayList();
+        List<File> temp = new ArrayList<>();
         for(String sub: subs){
             if(filter == null || filter.accept(directory, sub)){
                 temp.add(new File(directory, sub));
             }
         }
-        return (File[])temp.toArray(new File[temp.size()]);
+        return temp.toArray(new File[temp.size()]);
     }
 
-
-    //ObjectDirectory's HashMap's key format: mark + class.getName()
-    public static List<String> getNvmFilDirDirectory(String reMove){
-        List<String> keyList = new ArrayList<>();
-        String nvmClass = NvmFilDir.class.getName();
-        for(PersistentString key: ObjectDirectory.getDirectory()){
-            if(key.toString().endsWith(nvmClass)){
-                keyList.add(key.toString().replace(nvmClass,""));
-            }
-        }
-        keyList.remove(reMove);//remove safely
-        return keyList;
+    //Print the tree below the root, one path per line
+    public static void PrintDirectory(){
+        System.out.println("\n------"+NvmFilDir.class.getName()+"------\n");
+        printTree(getRoot(), "");
+        System.out.println("\n------"+NvmFilDir.class.getName()+"------\n");
     }
 
-    //Print ObjectDirectory's HashMap's key Set
-    public static void PrintDirectory(Class cls){
-        List<PersistentString> keyList = new ArrayList<>(ObjectDirectory.getDirectory());
-        Collections.sort(keyList, new Comparator<PersistentString>() {
-            @Override
-            public int compare(PersistentString s1, PersistentString s2) {
-                //if(s1.toString().split("/").length == s2.toString().split("/").length){
-                    return s1.toString().replace(cls.getName(),"").compareTo(s2.toString().replace(cls.getName(),""));
-                //}
-                //return s1.toString().split("/").length - s2.toString().split("/").length;
-            }
-        });
-        System.out.println("\n------"+cls.getName()+"------\n");
-        for(PersistentString key: keyList){
-            System.out.println(key.toString().replace(cls.getName(),""));
+    private static void printTree(NvmFilDir nvmFilDir, String path){
+        PersistentSIHashMap<PersistentString, NvmFilDir> children = nvmFilDir.getChildren();
+        if(children == null){return;}
+        for(Map.Entry<PersistentString, NvmFilDir> child: children.entrySet()){
+            String childPath = path + File.separator + child.getKey();
+            System.out.println(childPath);
+            printTree(child.getValue(), childPath);
         }
-        System.out.println("\n------"+cls.getName()+"------\n");
     }
-
-
-
-
 }
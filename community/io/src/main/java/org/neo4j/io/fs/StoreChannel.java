@@ -44,5 +44,17 @@ public interface StoreChannel
 
     StoreChannel truncate( long size ) throws IOException;
 
+    /**
+     * Reserves the space behind {@code [position, position + length)} up front, so later writes within that range
+     * do not have to allocate. The file size does not change.
+     */
+    void preallocate( long position, long length ) throws IOException;
+
+    /**
+     * Gives back the space behind {@code [position, position + length)}. The range reads as zeroes afterwards and
+     * the file size does not change.
+     */
+    void punchHole( long position, long length ) throws IOException;
+
     void release();
 }
@@ -1,6 +1,5 @@
 package org.neo4j.io.fs;
 
-import javax.xml.bind.DatatypeConverter;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileLock;
@@ -12,42 +11,56 @@ public class StoreFileChannel implements StoreChannel
     private sharePosition locate;
 
     private class sharePosition{
-        public int position;
+        public long position;
         sharePosition(){
             position=0;
         }
     }
 
-    //new channel connect to nvmFilDir with position 0
+    //new channel connect to nvmFilDir with position 0, the locks of the file are held until close()
     public StoreFileChannel(NvmFilDir file)
     {
         this.nvmFile = file;
         this.locate = new sharePosition();
-
+        if(file != null){
+            file.acquireLocks();
+        }
     }
 
-    //copy and new channel connect to nvmFilDir with copied's position
+    //copy and new channel connect to nvmFilDir with copied's position, it holds the locks on its own until close()
     public StoreFileChannel(StoreFileChannel nvmchannel)
     {
         this.nvmFile = nvmchannel.nvmFile;
         this.locate = nvmchannel.locate;
+        if(nvmFile != null){
+            nvmFile.acquireLocks();
+        }
     }
 
-    //convert ByteBuffer to String
-    private String byteBufferToString( ByteBuffer buf ){
-        byte[] bytes = new byte[buf.remaining()];
-        buf.get(bytes, 0, bytes.length);
-        return DatatypeConverter.printHexBinary(bytes);
-        //return new String(bytes);
+    //write every ByteBuffer[offset:offset+length] back to back from position, no concatenation
+    private long writeBuffers( ByteBuffer[] srcs, int offset, int length, long position ){
+        //one transaction for the whole vector, so a run of pages is written all or nothing
+        return nvmFile.write( srcs, offset, length, position );
     }
 
-    //convert ByteBuffers to String
-    private String  byteBuffersToString( ByteBuffer[] bufs, int offset, int length ){
-        String bufsStr = "";
+    //fill every ByteBuffer[offset:offset+length] in order from position, stop at the end of file
+    private long readBuffers( ByteBuffer[] dsts, int offset, int length, long position ){
+        long readTotal = 0;
         for(int i=0; i<length; i++){
-            bufsStr += byteBufferToString(bufs[offset+i]);
+            ByteBuffer dst = dsts[offset+i];
+            if(!dst.hasRemaining()){
+                continue;
+            }
+            int read = nvmFile.read( dst, position + readTotal );
+            if(read == -1){
+                return readTotal == 0 ? -1 : readTotal;
+            }
+            readTotal += read;
+            if(dst.hasRemaining()){
+                break;
+            }
         }
-        return bufsStr;
+        return readTotal;
     }
 
 
@@ -55,7 +68,7 @@ public class StoreFileChannel implements StoreChannel
     /*write the content of ByteBuffer to the position of channel, position init 0*/
     @Override
     public int write( ByteBuffer src )throws IOException {
-        int temp = nvmFile.write( byteBufferToString(src) , locate.position);
+        int temp = nvmFile.write( src, locate.position );
         locate.position += temp;
         return temp;
     }
@@ -63,23 +76,21 @@ public class StoreFileChannel implements StoreChannel
     /*write the content of every ByteBuffer to the position of channel in order*/
     @Override
     public long write( ByteBuffer[] srcs ) throws IOException{
-        int temp = nvmFile.write( byteBuffersToString(srcs, 0, srcs.length),  locate.position);
-        locate.position += temp;
-        return temp;
+        return write( srcs, 0, srcs.length );
     }
 
     /*write the content of ByteBuffer to the position of channel, position required*/
     @Override
     public int write( ByteBuffer src, long position )throws IOException {
-        int temp = nvmFile.write( byteBufferToString(src), Math.toIntExact(position));
-        locate.position = Math.toIntExact(position) + temp;
+        int temp = nvmFile.write( src, position );
+        locate.position = position + temp;
         return temp;
     }
 
     /*write the content of ByteBuffer[offset:offset+length(<=ByteBuffer.length)] to the position of channel, params>=0, nothing will be written if length == 0*/
     @Override
     public long write( ByteBuffer[] srcs, int offset, int length )throws IOException {
-        int temp = nvmFile.write( byteBuffersToString(srcs, offset, length ), locate.position);
+        long temp = writeBuffers( srcs, offset, length, locate.position );
         locate.position += temp;
         return temp;
     }
@@ -87,7 +98,7 @@ public class StoreFileChannel implements StoreChannel
     /*guarantee all bytes will be written*/
     @Override
     public void writeAll( ByteBuffer src, long position ) throws IOException{
-        write( src, Math.toIntExact(position) );
+        write( src, position );
         /*long filePosition = position;
         //be sure ByteBuffer.flip() executed
         long expectedEndPosition = filePosition + src.limit() - src.position();
@@ -118,27 +129,33 @@ public class StoreFileChannel implements StoreChannel
     /*truncate from the position*/
     @Override
     public StoreFileChannel truncate( long size )throws IOException {
-        nvmFile.truncate( Math.toIntExact(size) );
-        if(locate.position>Math.toIntExact(size)){
-            locate.position = Math.toIntExact(size);
+        nvmFile.truncate( size );
+        if(locate.position>size){
+            locate.position = size;
         }
         return this;
     }
 
-    private static byte[] stringToBytes(String str){
-        return DatatypeConverter.parseHexBinary(str);
-        //return str.getBytes();
+    /*reserve nvm for [position, position+length) up front, the file size does not change*/
+    @Override
+    public void preallocate( long position, long length )throws IOException {
+        nvmFile.preallocate( position, length );
+    }
+
+    /*give back the nvm behind [position, position+length), the range reads as zeroes afterwards*/
+    @Override
+    public void punchHole( long position, long length )throws IOException {
+        nvmFile.punchHole( position, length );
     }
 
     @Override
     public int read( ByteBuffer dst )throws IOException {
-        String getString = nvmFile.read(dst.remaining(),locate.position);
-        if(getString.length()==0){
+        int read = nvmFile.read( dst, locate.position );
+        if(read == -1){
             return -1;
         }
-        locate.position += getString.length();
-        dst.put(stringToBytes(getString));
-        return getString.length()/2;
+        locate.position += read;
+        return read;
     }
 
     @Override
@@ -148,37 +165,22 @@ public class StoreFileChannel implements StoreChannel
 
     @Override
     public int read( ByteBuffer dst, long position ) throws IOException{
-        String getString = nvmFile.read(dst.remaining(), Math.toIntExact(position));
-        if(getString.length()==0){
+        int read = nvmFile.read( dst, position );
+        if(read == -1){
             return -1;
         }
-        locate.position = Math.toIntExact(position) + getString.length();
-        //System.out.println(dst.remaining()+"?="+getString.length());
-        dst.put(stringToBytes(getString));
-        return getString.length()/2;
+        locate.position = position + read;
+        return read;
     }
 
     @Override
     public long read( ByteBuffer[] dsts, int offset, int length )throws IOException {
-        int sumCapacity = 0;
-        for(int i=0; i<length; i++){
-            sumCapacity += dsts[offset+i].remaining();
-        }
-        String getString = nvmFile.read(sumCapacity, locate.position);
-        if(getString.length()==0){
+        long read = readBuffers( dsts, offset, length, locate.position );
+        if(read == -1){
             return -1;
         }
-        locate.position += getString.length();
-        int len = getString.length();
-        int bufOrder = offset;
-        while(getString.length()>dsts[bufOrder].remaining() && bufOrder<offset+length){
-            dsts[bufOrder].put(stringToBytes(getString.substring(0, dsts[bufOrder].remaining())));
-            //sub the current bufString then change order
-            getString = getString.substring(dsts[bufOrder].remaining());
-            bufOrder++;
-        }
-        dsts[bufOrder].put(stringToBytes(getString));
-        return len/2;
+        locate.position += read;
+        return read;
     }
 
     /*position init at 0 when open the channel
@@ -187,7 +189,7 @@ public class StoreFileChannel implements StoreChannel
      */
     @Override
     public StoreFileChannel position( long newPosition )throws IOException {
-        locate.position = Math.toIntExact(newPosition);
+        locate.position = newPosition;
         return this;
     }
 
@@ -197,16 +199,9 @@ public class StoreFileChannel implements StoreChannel
         return locate.position;
     }
 
-    /*pcj Transaction provide lock in lower layer, delete the tryLock()
-    *    public void addMovie(PersistentString movie) {
-         Transaction.run(() -> {
-             movies.add(movie);
-             movieIndex.add(movie);
-         });
-        }
-    *
-    *
-    * */
+    /*advisory lock on the whole file, false if it is already held, until release()
+     *reads and writes are not affected, nvm files keep their own extent locks
+     */
     @Override
     public boolean tryLock() throws IOException{
         return nvmFile.tryLock();
@@ -222,6 +217,7 @@ public class StoreFileChannel implements StoreChannel
     public void close()throws IOException {
         if(nvmFile == null){return;}
         nvmFile.force(true);
+        nvmFile.releaseLocks();
         nvmFile = null;
         locate = null;
     }
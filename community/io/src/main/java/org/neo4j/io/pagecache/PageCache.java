@@ -71,12 +71,49 @@ public interface PageCache extends AutoCloseable
      */
     void flushAndForce( IOLimiter limiter ) throws IOException;
 
+    /**
+     * Begin a new flush epoch. Dirty pages remember the epoch they were first dirtied in, which lets
+     * {@link #flushAndForce(long, IOLimiter)} leave out the pages that have only been dirtied since.
+     * <p>
+     * Page caches that don't keep track of this always return the same epoch.
+     *
+     * @return the epoch that begins with this call.
+     */
+    default long beginFlushEpoch()
+    {
+        return 0;
+    }
+
+    /**
+     * Flush the pages that were dirtied before the given flush epoch began, and force all files. When this returns,
+     * everything written to this page cache before the call to {@link #beginFlushEpoch()} that returned the epoch
+     * is durable. Pages that have only been dirtied since can, but don't have to be, written as well.
+     *
+     * @param epoch an epoch returned from {@link #beginFlushEpoch()}.
+     * @param limiter The {@link IOLimiter} that determines if pauses or sleeps should be injected into the flushing
+     * process to keep the IO rate down.
+     */
+    default void flushAndForce( long epoch, IOLimiter limiter ) throws IOException
+    {
+        flushAndForce( limiter );
+    }
+
     /** Flush all dirty pages and close the page cache. */
     void close() throws IOException;
 
     /** The size in bytes of the pages managed by this cache. */
     int pageSize();
 
+    /**
+     * The sizes in bytes of the pages managed by this cache, in ascending order. Files can be mapped with any file page
+     * size up to the largest of them, and get the smallest cache pages that their file pages fit in. Most page caches
+     * only have pages of {@link #pageSize()}.
+     */
+    default int[] pageSizes()
+    {
+        return new int[]{pageSize()};
+    }
+
     /** The max number of cached pages. */
     int maxCachedPages();
 }
@@ -57,9 +57,11 @@ public interface PagedFile extends AutoCloseable
      */
     int PF_NO_GROW = 1 << 2;
     /**
-     * Read-ahead hint for sequential forward scanning.
+     * Read-ahead hint for sequential forward scanning. Cursors start reading the pages that follow the pinned pages
+     * in the background once they see a run of consecutive pins anyway, but with this flag they start doing so from
+     * the first pin.
      */
-    int PF_READ_AHEAD = 1 << 3; // TBD
+    int PF_READ_AHEAD = 1 << 3;
     /**
      * Do not load in the page if it is not loaded already. Only useful with
      * exclusive locking when you want to overwrite the whole page anyway.
@@ -69,6 +71,12 @@ public interface PagedFile extends AutoCloseable
      * Do not update page access statistics.
      */
     int PF_TRANSIENT = 1 << 5; // TBD
+    /**
+     * Hint that the cursor streams through the file, touching each page about once, so the pages it faults in or
+     * pins should not be counted as part of the working set. Eviction policies will not promote them, which keeps a
+     * large scan from pushing the hot pages out of the cache.
+     */
+    int PF_SEQUENTIAL_SCAN = 1 << 6;
 
     /**
      * Initiate an IO interaction with the contents of the paged file.
@@ -125,6 +133,27 @@ public interface PagedFile extends AutoCloseable
      */
     PageCursor io( long pageId, int pf_flags ) throws IOException;
 
+    /**
+     * Copy a range of bytes from the given page into the given array, if the page is already in memory, without
+     * opening a cursor and without pinning the page.
+     * <p>
+     * This is a fast path for short reads, such as reading a single record. The copy is validated against concurrent
+     * writes and evictions once it has been taken, like an optimistic read with a cursor, but it is never retried.
+     * Instead, if the page is not in memory, or if it was changed or evicted while the bytes were copied, then this
+     * method returns {@code false} and the caller must read the bytes through a cursor from {@link #io(long, int)}
+     * as usual. The default implementation always returns {@code false}.
+     *
+     * @param pageId The file-page-id of the page to read from.
+     * @param offset The offset into the page of the first byte to copy.
+     * @param target The array to copy the bytes into, starting at index zero.
+     * @param length The number of bytes to copy. The range must be within both the page and the array.
+     * @return {@code true} if the bytes in the array are a consistent copy of the page range, {@code false} otherwise.
+     */
+    default boolean peek( long pageId, int offset, byte[] target, int length )
+    {
+        return false;
+    }
+
     /**
      * Get the size of the file-pages, in bytes.
      */
@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.neo4j.io.pagecache.CursorException;
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PagedFile;
+
+/**
+ * A page cursor over a byte array, holding a copy of a part of a page, as taken with
+ * {@link PagedFile#peek(long, int, byte[], int)}. This lets code that decodes its data from page cursors decode it
+ * from such a copy as well. The cursor cannot move to other pages, and it is never in need of a retry, since its
+ * contents cannot change under it. Like the cursors of the page cache, it uses big-endian byte order, and it raises
+ * the out-of-bounds flag rather than throwing when accessed outside of its array.
+ * <p>
+ * Readers that need more than the copy, by asking for a linked cursor, get a cursor that refuses to move, and the
+ * request is remembered in {@link #isLinkRequested()}.
+ * <p>
+ * The cursor is meant to be reused: {@link #close()} does nothing, and {@link #reset(long)} prepares it for the next
+ * peek.
+ */
+public final class ByteArrayPageCursor extends PageCursor
+{
+    private final byte[] array;
+    private final ByteBuffer buffer;
+    private long pageId;
+    private boolean outOfBounds;
+    private String cursorException;
+    private boolean linkRequested;
+
+    public ByteArrayPageCursor( int size )
+    {
+        this.array = new byte[size];
+        this.buffer = ByteBuffer.wrap( array );
+    }
+
+    /**
+     * @return the array that this cursor reads from and writes to.
+     */
+    public byte[] array()
+    {
+        return array;
+    }
+
+    /**
+     * Prepare this cursor to read the contents just peeked from the given page, from offset zero.
+     */
+    public void reset( long pageId )
+    {
+        this.pageId = pageId;
+        this.outOfBounds = false;
+        this.cursorException = null;
+        this.linkRequested = false;
+        buffer.clear();
+    }
+
+    /**
+     * @return {@code true} if the reader asked for a linked cursor since the last {@link #reset(long)}, which means
+     * the data it wanted was not all in the copy, and has to be read through the page cache instead.
+     */
+    public boolean isLinkRequested()
+    {
+        return linkRequested;
+    }
+
+    private boolean inBounds( int offset, int size )
+    {
+        if ( offset < 0 || offset + size > array.length )
+        {
+            outOfBounds = true;
+            return false;
+        }
+        return true;
+    }
+
+    private int advance( int size )
+    {
+        int offset = buffer.position();
+        buffer.position( Math.min( offset + size, array.length ) );
+        return offset;
+    }
+
+    @Override
+    public byte getByte()
+    {
+        return getByte( advance( Byte.BYTES ) );
+    }
+
+    @Override
+    public byte getByte( int offset )
+    {
+        return inBounds( offset, Byte.BYTES ) ? buffer.get( offset ) : 0;
+    }
+
+    @Override
+    public void putByte( byte value )
+    {
+        putByte( advance( Byte.BYTES ), value );
+    }
+
+    @Override
+    public void putByte( int offset, byte value )
+    {
+        if ( inBounds( offset, Byte.BYTES ) )
+        {
+            buffer.put( offset, value );
+        }
+    }
+
+    @Override
+    public long getLong()
+    {
+        return getLong( advance( Long.BYTES ) );
+    }
+
+    @Override
+    public long getLong( int offset )
+    {
+        return inBounds( offset, Long.BYTES ) ? buffer.getLong( offset ) : 0;
+    }
+
+    @Override
+    public void putLong( long value )
+    {
+        putLong( advance( Long.BYTES ), value );
+    }
+
+    @Override
+    public void putLong( int offset, long value )
+    {
+        if ( inBounds( offset, Long.BYTES ) )
+        {
+            buffer.putLong( offset, value );
+        }
+    }
+
+    @Override
+    public int getInt()
+    {
+        return getInt( advance( Integer.BYTES ) );
+    }
+
+    @Override
+    public int getInt( int offset )
+    {
+        return inBounds( offset, Integer.BYTES ) ? buffer.getInt( offset ) : 0;
+    }
+
+    @Override
+    public void putInt( int value )
+    {
+        putInt( advance( Integer.BYTES ), value );
+    }
+
+    @Override
+    public void putInt( int offset, int value )
+    {
+        if ( inBounds( offset, Integer.BYTES ) )
+        {
+            buffer.putInt( offset, value );
+        }
+    }
+
+    @Override
+    public void getBytes( byte[] data )
+    {
+        getBytes( data, 0, data.length );
+    }
+
+    @Override
+    public void getBytes( byte[] data, int arrayOffset, int length )
+    {
+        int offset = advance( length );
+        if ( inBounds( offset, length ) )
+        {
+            System.arraycopy( array, offset, data, arrayOffset, length );
+        }
+    }
+
+    @Override
+    public void putBytes( byte[] data )
+    {
+        putBytes( data, 0, data.length );
+    }
+
+    @Override
+    public void putBytes( byte[] data, int arrayOffset, int length )
+    {
+        int offset = advance( length );
+        if ( inBounds( offset, length ) )
+        {
+            System.arraycopy( data, arrayOffset, array, offset, length );
+        }
+    }
+
+    @Override
+    public short getShort()
+    {
+        return getShort( advance( Short.BYTES ) );
+    }
+
+    @Override
+    public short getShort( int offset )
+    {
+        return inBounds( offset, Short.BYTES ) ? buffer.getShort( offset ) : 0;
+    }
+
+    @Override
+    public void putShort( short value )
+    {
+        putShort( advance( Short.BYTES ), value );
+    }
+
+    @Override
+    public void putShort( int offset, short value )
+    {
+        if ( inBounds( offset, Short.BYTES ) )
+        {
+            buffer.putShort( offset, value );
+        }
+    }
+
+    @Override
+    public void setOffset( int offset )
+    {
+        if ( inBounds( offset, 0 ) )
+        {
+            buffer.position( offset );
+        }
+    }
+
+    @Override
+    public int getOffset()
+    {
+        return buffer.position();
+    }
+
+    @Override
+    public long getCurrentPageId()
+    {
+        return pageId;
+    }
+
+    @Override
+    public int getCurrentPageSize()
+    {
+        return array.length;
+    }
+
+    @Override
+    public File getCurrentFile()
+    {
+        return null;
+    }
+
+    @Override
+    public void rewind()
+    {
+        buffer.clear();
+    }
+
+    @Override
+    public boolean next()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean next( long pageId )
+    {
+        return false;
+    }
+
+    @Override
+    public void close()
+    {
+    }
+
+    @Override
+    public boolean shouldRetry()
+    {
+        return false;
+    }
+
+    @Override
+    public int copyTo( int sourceOffset, PageCursor targetCursor, int targetOffset, int lengthInBytes )
+    {
+        int length = Math.min( lengthInBytes, array.length - sourceOffset );
+        if ( sourceOffset < 0 || length <= 0 )
+        {
+            return 0;
+        }
+        int previousOffset = targetCursor.getOffset();
+        targetCursor.setOffset( targetOffset );
+        targetCursor.putBytes( array, sourceOffset, length );
+        targetCursor.setOffset( previousOffset );
+        return length;
+    }
+
+    @Override
+    public boolean checkAndClearBoundsFlag()
+    {
+        boolean result = outOfBounds;
+        outOfBounds = false;
+        return result;
+    }
+
+    @Override
+    public void checkAndClearCursorException() throws CursorException
+    {
+        String message = cursorException;
+        if ( message != null )
+        {
+            cursorException = null;
+            throw new CursorException( message );
+        }
+    }
+
+    @Override
+    public void raiseOutOfBounds()
+    {
+        outOfBounds = true;
+    }
+
+    @Override
+    public void setCursorException( String message )
+    {
+        cursorException = message;
+    }
+
+    @Override
+    public void clearCursorException()
+    {
+        cursorException = null;
+    }
+
+    @Override
+    public PageCursor openLinkedCursor( long pageId )
+    {
+        // A copy of a page cannot link to other pages. Hand back this cursor, which refuses to move, so the reader
+        // bails out the way it does for an inconsistent read, and let the caller see that the copy was not enough.
+        linkRequested = true;
+        return this;
+    }
+}
@@ -0,0 +1,572 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.neo4j.io.pagecache.Page;
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PageEvictionCallback;
+import org.neo4j.io.pagecache.PageSwapper;
+import org.neo4j.io.pagecache.impl.muninn.MuninnPageCache;
+import org.neo4j.unsafe.impl.internal.dragons.UnsafeUtil;
+
+import static java.lang.String.format;
+
+/**
+ * A PageSwapper that opens its file for direct IO, so that pages move straight between the page cache memory and
+ * the device, without also being cached by the operating system. The page cache memory then is the real memory
+ * footprint of the store files.
+ * <p>
+ * Direct IO requires that the file offsets, the transfer sizes and the memory addresses are all aligned to the
+ * block size of the device. The page cache aligns its memory to the {@link
+ * org.neo4j.io.pagecache.PageSwapperFactory#getRequiredBufferAlignment() required buffer alignment}, so when the
+ * file page size is a multiple of the block size, pages move straight between the page cache and the file. Pages
+ * of other sizes, like those of the node, relationship and property stores, are transferred as the block aligned
+ * range that covers them, through a per-thread bounce buffer. Writing such a page reads the blocks it shares with
+ * its neighbours first, so pages that share a block are written one at a time.
+ * <p>
+ * Like the {@link MappedFilePageSwapper}, this swapper opens the operating system file that the file system keeps
+ * the store file in, see {@link org.neo4j.io.fs.FileSystemAbstraction#nativeFile(File)}, since direct IO is a
+ * property of the operating system file.
+ */
+public class DirectIOPageSwapper implements PageSwapper
+{
+    private static final OpenOption DIRECT = findDirectOpenOption();
+
+    private static final ThreadLocal<ByteBuffer> proxyCache = new ThreadLocal<>();
+    // Backs the per-thread bounce buffer for pages that are not block aligned, see bounceBuffer(int)
+    private static final ThreadLocal<ByteBuffer> bounceCache = new ThreadLocal<>();
+    // Pages that share a block are written under the stripe of that block
+    private static final int BLOCK_LOCK_STRIPES = 64;
+
+    private static final long fileSizeOffset =
+            UnsafeUtil.getFieldOffset( DirectIOPageSwapper.class, "fileSize" );
+
+    /**
+     * The open option for direct IO is only available from Java 10, and only in the JDK, so look it up by name.
+     */
+    private static OpenOption findDirectOpenOption()
+    {
+        try
+        {
+            Class<?> extendedOpenOption = Class.forName( "com.sun.nio.file.ExtendedOpenOption" );
+            for ( Object option : extendedOpenOption.getEnumConstants() )
+            {
+                if ( ((Enum<?>) option).name().equals( "DIRECT" ) )
+                {
+                    return (OpenOption) option;
+                }
+            }
+        }
+        catch ( ClassNotFoundException e )
+        {
+            // Direct IO is not supported by this JVM.
+        }
+        return null;
+    }
+
+    /**
+     * @return {@code true} if this JVM can open files for direct IO.
+     */
+    public static boolean isDirectIOSupported()
+    {
+        return DIRECT != null;
+    }
+
+    private static ByteBuffer proxy( long buffer, int bufferLength ) throws IOException
+    {
+        ByteBuffer buf = proxyCache.get();
+        if ( buf != null )
+        {
+            UnsafeUtil.initDirectByteBuffer( buf, buffer, bufferLength );
+            return buf;
+        }
+        try
+        {
+            buf = UnsafeUtil.newDirectByteBuffer( buffer, bufferLength );
+        }
+        catch ( Exception e )
+        {
+            throw new IOException( e );
+        }
+        proxyCache.set( buf );
+        return buf;
+    }
+
+    private final File file;
+    // The operating system file that holds the contents of the file, as given by the file system.
+    private final File nativeFile;
+    private final int filePageSize;
+    private final int blockSize;
+    private final boolean blockAligned;
+    private final Object[] blockLocks;
+    // Unaligned writes share this lock, and trimming the block padding off the end of the file takes it exclusively
+    private final ReadWriteLock paddingLock = new ReentrantReadWriteLock();
+    private volatile PageEvictionCallback onEviction;
+    private final FileChannel channel;
+    private FileLock fileLock;
+
+    // Guarded by synchronized(this). See close().
+    private boolean closed;
+
+    @SuppressWarnings( "unused" ) // Accessed through unsafe
+    private volatile long fileSize;
+
+    public DirectIOPageSwapper(
+            File file,
+            File nativeFile,
+            int filePageSize,
+            int blockSize,
+            PageEvictionCallback onEviction ) throws IOException
+    {
+        if ( !isDirectIOSupported() )
+        {
+            throw new IOException( "Direct IO is not supported by this JVM, cannot open " + file );
+        }
+        this.file = file;
+        this.nativeFile = nativeFile;
+        this.filePageSize = filePageSize;
+        this.blockSize = blockSize;
+        this.blockAligned = filePageSize % blockSize == 0;
+        this.blockLocks = new Object[blockAligned ? 0 : BLOCK_LOCK_STRIPES];
+        for ( int i = 0; i < blockLocks.length; i++ )
+        {
+            blockLocks[i] = new Object();
+        }
+        this.onEviction = onEviction;
+        this.channel = FileChannel.open( nativeFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, DIRECT );
+        try
+        {
+            acquireLock();
+            increaseFileSizeTo( channel.size() );
+        }
+        catch ( IOException e )
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void acquireLock() throws IOException
+    {
+        try
+        {
+            fileLock = channel.tryLock();
+            if ( fileLock == null )
+            {
+                throw new FileLockException( file );
+            }
+        }
+        catch ( OverlappingFileLockException e )
+        {
+            throw new FileLockException( file, e );
+        }
+    }
+
+    private void increaseFileSizeTo( long newFileSize )
+    {
+        long currentFileSize;
+        do
+        {
+            currentFileSize = getCurrentFileSize();
+        }
+        while ( currentFileSize < newFileSize && !UnsafeUtil.compareAndSwapLong(
+                this, fileSizeOffset, currentFileSize, newFileSize ) );
+    }
+
+    private long getCurrentFileSize()
+    {
+        return UnsafeUtil.getLongVolatile( this, fileSizeOffset );
+    }
+
+    private void setCurrentFileSize( long size )
+    {
+        UnsafeUtil.putLongVolatile( this, fileSizeOffset, size );
+    }
+
+    /**
+     * @return {@code true} if pages move straight between the page cache and the file, or {@code false} if the
+     * page size is not a multiple of the block size, and pages go through a bounce buffer.
+     */
+    public boolean isBlockAligned()
+    {
+        return blockAligned;
+    }
+
+    /**
+     * A block aligned buffer of at least the given length, owned by the calling thread.
+     *
+     * @return the address of the buffer.
+     */
+    private long bounceBuffer( int length )
+    {
+        ByteBuffer buffer = bounceCache.get();
+        if ( buffer == null || buffer.capacity() < length + blockSize )
+        {
+            // Direct buffers are freed when collected, so the buffer of a thread goes away with the thread.
+            buffer = ByteBuffer.allocateDirect( length + blockSize );
+            bounceCache.set( buffer );
+        }
+        long address = UnsafeUtil.getDirectByteBufferAddress( buffer );
+        return alignUp( address );
+    }
+
+    private long alignDown( long value )
+    {
+        return value - value % blockSize;
+    }
+
+    private long alignUp( long value )
+    {
+        return alignDown( value + blockSize - 1 );
+    }
+
+    /**
+     * Read up to length bytes, a multiple of the block size, from the block aligned file offset into the aligned
+     * address, stopping short at the end of the file.
+     */
+    private int readBlocks( long address, int length, long fileOffset ) throws IOException
+    {
+        ByteBuffer bufferProxy = proxy( address, length );
+        int readTotal = 0;
+        int read;
+        do
+        {
+            read = channel.read( bufferProxy, fileOffset + readTotal );
+        }
+        // A direct read that stops short of a block boundary has reached the end of the file, and reading on from
+        // there would be unaligned.
+        while ( read != -1 && (readTotal += read) < length && readTotal % blockSize == 0 );
+        return readTotal;
+    }
+
+    private void writeBlocks( long address, int length, long fileOffset ) throws IOException
+    {
+        ByteBuffer bufferProxy = proxy( address, length );
+        int writtenTotal = 0;
+        while ( writtenTotal < length )
+        {
+            int written = channel.write( bufferProxy, fileOffset + writtenTotal );
+            if ( written < 0 )
+            {
+                throw new IOException( "Unable to write to disk, reported bytes written was " + written );
+            }
+            writtenTotal += written;
+        }
+    }
+
+    private int blockStripe( long fileOffset )
+    {
+        return (int) ((fileOffset / blockSize) % BLOCK_LOCK_STRIPES);
+    }
+
+    /**
+     * Read a page that is not block aligned, by reading the blocks covering it into the bounce buffer.
+     */
+    private int swapInUnaligned( Page page, long fileOffset ) throws IOException
+    {
+        long start = alignDown( fileOffset );
+        int span = (int) (alignUp( fileOffset + filePageSize ) - start);
+        int head = (int) (fileOffset - start);
+        long bounce = bounceBuffer( span );
+        int read = readBlocks( bounce, span, start );
+        int bytes = Math.max( 0, Math.min( filePageSize, read - head ) );
+        UnsafeUtil.copyMemory( bounce + head, page.address(), bytes );
+        UnsafeUtil.setMemory( page.address() + bytes, filePageSize - bytes, MuninnPageCache.ZERO_BYTE );
+        return bytes;
+    }
+
+    /**
+     * Write a page that is not block aligned, by reading the partial blocks at either end of it, which hold the
+     * bytes of its neighbours, patching the page in, and writing the blocks covering it. The partial blocks are
+     * locked so a neighbour writing the same block can't be lost.
+     */
+    private int swapOutUnaligned( Page page, long fileOffset ) throws IOException
+    {
+        long start = alignDown( fileOffset );
+        long end = alignUp( fileOffset + filePageSize );
+        int span = (int) (end - start);
+        int head = (int) (fileOffset - start);
+        long lastBlock = end - blockSize;
+        long bounce = bounceBuffer( span );
+        int firstStripe = blockStripe( start );
+        int lastStripe = blockStripe( lastBlock );
+        Lock sharedPaddingLock = paddingLock.readLock();
+        sharedPaddingLock.lock();
+        try
+        {
+            // Stripes are always taken in ascending order
+            synchronized ( blockLocks[Math.min( firstStripe, lastStripe )] )
+            {
+                synchronized ( blockLocks[Math.max( firstStripe, lastStripe )] )
+                {
+                    if ( head != 0 )
+                    {
+                        zeroTail( bounce, readBlocks( bounce, blockSize, start ), blockSize );
+                    }
+                    if ( fileOffset + filePageSize != end && (lastBlock != start || head == 0) )
+                    {
+                        long tail = bounce + (lastBlock - start);
+                        zeroTail( tail, readBlocks( tail, blockSize, lastBlock ), blockSize );
+                    }
+                    UnsafeUtil.copyMemory( page.address(), bounce + head, filePageSize );
+                    writeBlocks( bounce, span, start );
+                }
+            }
+        }
+        finally
+        {
+            sharedPaddingLock.unlock();
+        }
+        if ( end > getCurrentFileSize() )
+        {
+            trimPadding();
+        }
+        return filePageSize;
+    }
+
+    /**
+     * Writing whole blocks may have grown the file beyond its last page, so cut that padding off again. No write
+     * is in flight while the padding lock is held exclusively, and every write raises the file size before it
+     * starts, so the size read here covers all the pages written so far.
+     */
+    private void trimPadding() throws IOException
+    {
+        Lock exclusivePaddingLock = paddingLock.writeLock();
+        exclusivePaddingLock.lock();
+        try
+        {
+            long size = getCurrentFileSize();
+            if ( channel.size() > size )
+            {
+                channel.truncate( size );
+            }
+        }
+        finally
+        {
+            exclusivePaddingLock.unlock();
+        }
+    }
+
+    private static void zeroTail( long address, int read, int length )
+    {
+        if ( read < length )
+        {
+            UnsafeUtil.setMemory( address + read, length - read, MuninnPageCache.ZERO_BYTE );
+        }
+    }
+
+    private void assertOpen() throws ClosedChannelException
+    {
+        if ( !channel.isOpen() )
+        {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private int swapIn( Page page, long fileOffset ) throws IOException
+    {
+        if ( !blockAligned )
+        {
+            return swapInUnaligned( page, fileOffset );
+        }
+        long address = page.address();
+        assert address % blockSize == 0 : format(
+                "Page address %h is not aligned to the block size %s", address, blockSize );
+        int readTotal = readBlocks( address, filePageSize, fileOffset );
+        UnsafeUtil.setMemory( address + readTotal, filePageSize - readTotal, MuninnPageCache.ZERO_BYTE );
+        return readTotal;
+    }
+
+    private int swapOut( Page page, long fileOffset ) throws IOException
+    {
+        if ( !blockAligned )
+        {
+            return swapOutUnaligned( page, fileOffset );
+        }
+        writeBlocks( page.address(), filePageSize, fileOffset );
+        return filePageSize;
+    }
+
+    @Override
+    public long read( long filePageId, Page page ) throws IOException
+    {
+        assertOpen();
+        long fileOffset = pageIdToPosition( filePageId );
+        if ( fileOffset >= getCurrentFileSize() )
+        {
+            UnsafeUtil.setMemory( page.address(), page.size(), MuninnPageCache.ZERO_BYTE );
+            return 0;
+        }
+        return swapIn( page, fileOffset );
+    }
+
+    @Override
+    public long read( long startFilePageId, Page[] pages, int arrayOffset, int length ) throws IOException
+    {
+        // The pages are not contiguous in memory, and a vectored read would be split up per buffer anyway, since
+        // every buffer has to be aligned on its own.
+        long bytes = 0;
+        for ( int i = 0; i < length; i++ )
+        {
+            bytes += read( startFilePageId + i, pages[arrayOffset + i] );
+        }
+        return bytes;
+    }
+
+    @Override
+    public long write( long filePageId, Page page ) throws IOException
+    {
+        assertOpen();
+        long fileOffset = pageIdToPosition( filePageId );
+        increaseFileSizeTo( fileOffset + filePageSize );
+        return swapOut( page, fileOffset );
+    }
+
+    @Override
+    public long write( long startFilePageId, Page[] pages, int arrayOffset, int length ) throws IOException
+    {
+        long bytes = 0;
+        for ( int i = 0; i < length; i++ )
+        {
+            bytes += write( startFilePageId + i, pages[arrayOffset + i] );
+        }
+        return bytes;
+    }
+
+    @Override
+    public void evicted( long filePageId, Page page )
+    {
+        PageEvictionCallback callback = this.onEviction;
+        if ( callback != null )
+        {
+            callback.onEvict( filePageId, page );
+        }
+    }
+
+    @Override
+    public File file()
+    {
+        return file;
+    }
+
+    private long pageIdToPosition( long pageId )
+    {
+        return filePageSize * pageId;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+        if ( this == o )
+        { return true; }
+        if ( o == null || getClass() != o.getClass() )
+        { return false; }
+
+        DirectIOPageSwapper that = (DirectIOPageSwapper) o;
+
+        return file.equals( that.file );
+
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return file.hashCode();
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if ( closed )
+        {
+            return;
+        }
+        closed = true;
+        try
+        {
+            channel.close();
+        }
+        finally
+        {
+            // See SingleFilePageSwapper#close() on why this callback is eagerly released.
+            onEviction = null;
+        }
+    }
+
+    @Override
+    public synchronized void closeAndDelete() throws IOException
+    {
+        close();
+        Files.deleteIfExists( nativeFile.toPath() );
+    }
+
+    @Override
+    public void force() throws IOException
+    {
+        // Direct writes bypass the operating system cache, but the device may still have a volatile write cache,
+        // and the file metadata may not have been written yet.
+        channel.force( false );
+    }
+
+    @Override
+    public long getLastPageId() throws IOException
+    {
+        long channelSize = getCurrentFileSize();
+        if ( channelSize == 0 )
+        {
+            return PageCursor.UNBOUND_PAGE_ID;
+        }
+        long div = channelSize / filePageSize;
+        long mod = channelSize % filePageSize;
+        return mod == 0? div - 1 : div;
+    }
+
+    @Override
+    public void truncate() throws IOException
+    {
+        setCurrentFileSize( 0 );
+        channel.truncate( 0 );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DirectIOPageSwapper{" +
+               "filePageSize=" + filePageSize +
+               ", blockAligned=" + blockAligned +
+               ", file=" + file +
+               '}';
+    }
+}
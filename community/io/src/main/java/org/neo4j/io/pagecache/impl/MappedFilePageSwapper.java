@@ -0,0 +1,512 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.neo4j.io.pagecache.Page;
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PageEvictionCallback;
+import org.neo4j.io.pagecache.PageSwapper;
+import org.neo4j.io.pagecache.impl.muninn.MuninnPageCache;
+import org.neo4j.unsafe.impl.internal.dragons.FeatureToggles;
+import org.neo4j.unsafe.impl.internal.dragons.UnsafeUtil;
+
+/**
+ * A PageSwapper that memory maps its file, and moves pages in and out of the page cache with plain memory copies
+ * between the page frames and the mapped region.
+ * <p>
+ * This is intended for files that live on a DAX mount (or an emulated persistent memory device), where the mapping
+ * points straight into persistent memory and there is no kernel page cache in between. It works on any file system
+ * that supports memory mapping, though, such as tmpfs or ext4.
+ * <p>
+ * The file is mapped in fixed size segments, which are added as the file grows. Because mapping a region beyond the
+ * end of a file extends the file, the file on disk grows in whole segments, while the size of the file as seen
+ * through this swapper is tracked precisely. The file is truncated to its precise size when the swapper is closed.
+ * Until then, every {@link #force()} records the precise size in a trailer at the end of the last segment, which
+ * pages are never written to. A file that was not closed, because of a crash, is truncated back to the recorded
+ * size when it is opened again, so the padding of the last segment does not show up as pages.
+ */
+public class MappedFilePageSwapper implements PageSwapper
+{
+    // Number of bytes mapped in one go, and thus the granularity with which the file grows on disk.
+    private static final long defaultSegmentSize = FeatureToggles.getLong(
+            MappedFilePageSwapper.class, "segmentSize", 4 * 1024 * 1024 );
+
+    // The precise file size, and the size again xor'ed with the magic number to recognise it by.
+    private static final int SIZE_TRAILER_LENGTH = 2 * Long.BYTES;
+    private static final long SIZE_TRAILER_MAGIC = 0x6E656F346D6D6170L;
+
+    private static final long fileSizeOffset =
+            UnsafeUtil.getFieldOffset( MappedFilePageSwapper.class, "fileSize" );
+
+    private final File file;
+    // The operating system file that holds the contents of the file, as given by the file system.
+    private final File nativeFile;
+    private final int filePageSize;
+    // The default segment size rounded down to a whole number of pages, so no page straddles two segments.
+    private final long segmentSize;
+    private volatile PageEvictionCallback onEviction;
+    private final FileChannel channel;
+    private FileLock fileLock;
+
+    // Grown copy-on-write while synchronized on this; the array references themselves are only ever replaced.
+    private volatile MappedByteBuffer[] segments;
+    private volatile long[] segmentAddresses;
+    // Segments written to since the last force, so force only has to sync those.
+    private volatile boolean[] dirtySegments;
+
+    // Guarded by synchronized(this). See close().
+    private boolean closed;
+
+    @SuppressWarnings( "unused" ) // Accessed through unsafe
+    private volatile long fileSize;
+
+    public MappedFilePageSwapper(
+            File file,
+            File nativeFile,
+            int filePageSize,
+            PageEvictionCallback onEviction ) throws IOException
+    {
+        this.file = file;
+        this.nativeFile = nativeFile;
+        this.filePageSize = filePageSize;
+        this.segmentSize = Math.max( defaultSegmentSize - defaultSegmentSize % filePageSize, filePageSize );
+        this.onEviction = onEviction;
+        this.channel = FileChannel.open(
+                nativeFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE );
+        this.segments = new MappedByteBuffer[0];
+        this.segmentAddresses = new long[0];
+        this.dirtySegments = new boolean[0];
+        try
+        {
+            acquireLock();
+            long size = recordedFileSize( channel.size() );
+            if ( size < channel.size() )
+            {
+                channel.truncate( size );
+            }
+            increaseFileSizeTo( size );
+            ensureMapped( size );
+        }
+        catch ( IOException e )
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void acquireLock() throws IOException
+    {
+        try
+        {
+            fileLock = channel.tryLock();
+            if ( fileLock == null )
+            {
+                throw new FileLockException( file );
+            }
+        }
+        catch ( OverlappingFileLockException e )
+        {
+            throw new FileLockException( file, e );
+        }
+    }
+
+    /**
+     * The size recorded in the trailer of the file, if the file ends in a valid trailer, otherwise the size of the
+     * file. A file only ends in a trailer when the swapper that last had it open was not closed.
+     */
+    private long recordedFileSize( long channelSize ) throws IOException
+    {
+        if ( channelSize < segmentSize || channelSize % segmentSize != 0 )
+        {
+            return channelSize;
+        }
+        ByteBuffer trailer = ByteBuffer.allocate( SIZE_TRAILER_LENGTH );
+        long trailerOffset = channelSize - SIZE_TRAILER_LENGTH;
+        while ( trailer.hasRemaining() && channel.read( trailer, trailerOffset + trailer.position() ) != -1 )
+        {
+            // Keep reading until the trailer is complete.
+        }
+        trailer.flip();
+        if ( trailer.remaining() < SIZE_TRAILER_LENGTH )
+        {
+            return channelSize;
+        }
+        long size = trailer.getLong();
+        long check = trailer.getLong();
+        boolean valid = (size ^ SIZE_TRAILER_MAGIC) == check && size >= 0 && size <= trailerOffset;
+        return valid ? size : channelSize;
+    }
+
+    private void increaseFileSizeTo( long newFileSize )
+    {
+        long currentFileSize;
+        do
+        {
+            currentFileSize = getCurrentFileSize();
+        }
+        while ( currentFileSize < newFileSize && !UnsafeUtil.compareAndSwapLong(
+                this, fileSizeOffset, currentFileSize, newFileSize ) );
+    }
+
+    private long getCurrentFileSize()
+    {
+        return UnsafeUtil.getLongVolatile( this, fileSizeOffset );
+    }
+
+    private void setCurrentFileSize( long size )
+    {
+        UnsafeUtil.putLongVolatile( this, fileSizeOffset, size );
+    }
+
+    private int segment( long fileOffset )
+    {
+        return (int) (fileOffset / segmentSize);
+    }
+
+    /**
+     * Make sure that the file is mapped at least up to, but not including, the given file offset, with room for the
+     * size trailer after it.
+     */
+    private void ensureMapped( long endOffset ) throws IOException
+    {
+        if ( endOffset <= 0 )
+        {
+            // Nothing to map, and an empty file should not grow just by being opened.
+            return;
+        }
+        int segmentsNeeded = (int) ((endOffset + SIZE_TRAILER_LENGTH + segmentSize - 1) / segmentSize);
+        if ( segmentsNeeded > segments.length )
+        {
+            mapSegments( segmentsNeeded );
+        }
+    }
+
+    private synchronized void mapSegments( int segmentsNeeded ) throws IOException
+    {
+        MappedByteBuffer[] currentSegments = segments;
+        if ( segmentsNeeded <= currentSegments.length )
+        {
+            // Someone got ahead of us.
+            return;
+        }
+        if ( closed )
+        {
+            throw new ClosedChannelException();
+        }
+        MappedByteBuffer[] newSegments = new MappedByteBuffer[segmentsNeeded];
+        long[] newAddresses = new long[segmentsNeeded];
+        boolean[] newDirty = new boolean[segmentsNeeded];
+        System.arraycopy( currentSegments, 0, newSegments, 0, currentSegments.length );
+        System.arraycopy( segmentAddresses, 0, newAddresses, 0, currentSegments.length );
+        // A writer may still be marking the old dirty array, so conservatively consider everything dirty.
+        Arrays.fill( newDirty, true );
+        for ( int i = currentSegments.length; i < segmentsNeeded; i++ )
+        {
+            newSegments[i] = channel.map( FileChannel.MapMode.READ_WRITE, i * segmentSize, segmentSize );
+            newAddresses[i] = UnsafeUtil.getDirectByteBufferAddress( newSegments[i] );
+        }
+        // Move the trailer to the new end before the old one becomes room for pages, which must read as zeros.
+        writeSizeTrailer( newAddresses[segmentsNeeded - 1] );
+        if ( currentSegments.length > 0 )
+        {
+            long oldTrailer = segmentAddresses[currentSegments.length - 1] + segmentSize - SIZE_TRAILER_LENGTH;
+            UnsafeUtil.setMemory( oldTrailer, SIZE_TRAILER_LENGTH, MuninnPageCache.ZERO_BYTE );
+        }
+        // Publish the addresses before the segments, since readers check the length of the segments array.
+        dirtySegments = newDirty;
+        segmentAddresses = newAddresses;
+        segments = newSegments;
+    }
+
+    /**
+     * Write the current file size into the trailer of the segment mapped at the given address, which must be the
+     * last segment. Must be called while synchronized on this, so the last segment doesn't change underneath.
+     */
+    private void writeSizeTrailer( long lastSegmentAddress )
+    {
+        long size = getCurrentFileSize();
+        long trailer = lastSegmentAddress + segmentSize - SIZE_TRAILER_LENGTH;
+        long check = size ^ SIZE_TRAILER_MAGIC;
+        // Big endian, like the page contents, and like the trailer is read back in recordedFileSize.
+        UnsafeUtil.putLong( trailer, UnsafeUtil.storeByteOrderIsNative ? size : Long.reverseBytes( size ) );
+        UnsafeUtil.putLong( trailer + Long.BYTES,
+                UnsafeUtil.storeByteOrderIsNative ? check : Long.reverseBytes( check ) );
+    }
+
+    /**
+     * Copy bytes between the mapped file and the given native address, splitting the copy where it crosses
+     * segment boundaries.
+     */
+    private void copy( long fileOffset, long address, long bytes, boolean toFile )
+    {
+        long[] addresses = segmentAddresses;
+        boolean[] dirty = dirtySegments;
+        while ( bytes > 0 )
+        {
+            int segment = segment( fileOffset );
+            long segmentOffset = fileOffset % segmentSize;
+            long chunk = Math.min( bytes, segmentSize - segmentOffset );
+            long mapped = addresses[segment] + segmentOffset;
+            if ( toFile )
+            {
+                UnsafeUtil.copyMemory( address, mapped, chunk );
+                dirty[segment] = true;
+            }
+            else
+            {
+                UnsafeUtil.copyMemory( mapped, address, chunk );
+            }
+            fileOffset += chunk;
+            address += chunk;
+            bytes -= chunk;
+        }
+    }
+
+    /**
+     * Get the address at which the given page is mapped, mapping the file up to the end of that page if need be.
+     * Pages never straddle segments, so the entire page can be accessed from the returned address.
+     */
+    public long pageAddress( long filePageId ) throws IOException
+    {
+        assertOpen();
+        long fileOffset = pageIdToPosition( filePageId );
+        ensureMapped( fileOffset + filePageSize );
+        return segmentAddresses[segment( fileOffset )] + fileOffset % segmentSize;
+    }
+
+    /**
+     * Account for a page that has been written to directly through its {@link #pageAddress(long) mapped address},
+     * growing the file to cover it and making sure the next {@link #force()} includes it.
+     */
+    public void pageWritten( long filePageId )
+    {
+        long fileOffset = pageIdToPosition( filePageId );
+        dirtySegments[segment( fileOffset )] = true;
+        increaseFileSizeTo( fileOffset + filePageSize );
+    }
+
+    private void assertOpen() throws ClosedChannelException
+    {
+        if ( !channel.isOpen() )
+        {
+            throw new ClosedChannelException();
+        }
+    }
+
+    @Override
+    public long read( long filePageId, Page page ) throws IOException
+    {
+        assertOpen();
+        long fileOffset = pageIdToPosition( filePageId );
+        long currentFileSize = getCurrentFileSize();
+        long address = page.address();
+        if ( fileOffset >= currentFileSize )
+        {
+            UnsafeUtil.setMemory( address, page.size(), MuninnPageCache.ZERO_BYTE );
+            return 0;
+        }
+        int bytes = (int) Math.min( filePageSize, currentFileSize - fileOffset );
+        ensureMapped( fileOffset + bytes );
+        copy( fileOffset, address, bytes, false );
+        UnsafeUtil.setMemory( address + bytes, filePageSize - bytes, MuninnPageCache.ZERO_BYTE );
+        return bytes;
+    }
+
+    @Override
+    public long read( long startFilePageId, Page[] pages, int arrayOffset, int length ) throws IOException
+    {
+        long bytes = 0;
+        for ( int i = 0; i < length; i++ )
+        {
+            bytes += read( startFilePageId + i, pages[arrayOffset + i] );
+        }
+        return bytes;
+    }
+
+    @Override
+    public long write( long filePageId, Page page ) throws IOException
+    {
+        assertOpen();
+        long fileOffset = pageIdToPosition( filePageId );
+        ensureMapped( fileOffset + filePageSize );
+        copy( fileOffset, page.address(), filePageSize, true );
+        increaseFileSizeTo( fileOffset + filePageSize );
+        return filePageSize;
+    }
+
+    @Override
+    public long write( long startFilePageId, Page[] pages, int arrayOffset, int length ) throws IOException
+    {
+        long bytes = 0;
+        for ( int i = 0; i < length; i++ )
+        {
+            bytes += write( startFilePageId + i, pages[arrayOffset + i] );
+        }
+        return bytes;
+    }
+
+    @Override
+    public void evicted( long filePageId, Page page )
+    {
+        PageEvictionCallback callback = this.onEviction;
+        if ( callback != null )
+        {
+            callback.onEvict( filePageId, page );
+        }
+    }
+
+    @Override
+    public File file()
+    {
+        return file;
+    }
+
+    private long pageIdToPosition( long pageId )
+    {
+        return filePageSize * pageId;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+        if ( this == o )
+        { return true; }
+        if ( o == null || getClass() != o.getClass() )
+        { return false; }
+
+        MappedFilePageSwapper that = (MappedFilePageSwapper) o;
+
+        return file.equals( that.file );
+
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return file.hashCode();
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if ( closed )
+        {
+            return;
+        }
+        closed = true;
+        try
+        {
+            force();
+            // Give back the space of the partially used last segment. The mappings themselves are released once
+            // they are garbage collected, and are not accessed after this point.
+            channel.truncate( getCurrentFileSize() );
+        }
+        finally
+        {
+            channel.close();
+            // See SingleFilePageSwapper#close() on why this callback is eagerly released.
+            onEviction = null;
+        }
+    }
+
+    @Override
+    public synchronized void closeAndDelete() throws IOException
+    {
+        close();
+        Files.deleteIfExists( nativeFile.toPath() );
+    }
+
+    @Override
+    public void force() throws IOException
+    {
+        MappedByteBuffer[] currentSegments;
+        boolean[] dirty;
+        synchronized ( this )
+        {
+            currentSegments = segments;
+            dirty = dirtySegments;
+            if ( currentSegments.length > 0 && !closed )
+            {
+                writeSizeTrailer( segmentAddresses[currentSegments.length - 1] );
+                dirty[currentSegments.length - 1] = true;
+            }
+        }
+        for ( int i = 0; i < currentSegments.length; i++ )
+        {
+            if ( dirty[i] )
+            {
+                // Clear before forcing, so writes racing with the force are picked up by the next one.
+                dirty[i] = false;
+                // On a DAX mount this flushes the CPU caches for the mapped range, rather than doing disk IO.
+                currentSegments[i].force();
+            }
+        }
+    }
+
+    @Override
+    public long getLastPageId() throws IOException
+    {
+        long channelSize = getCurrentFileSize();
+        if ( channelSize == 0 )
+        {
+            return PageCursor.UNBOUND_PAGE_ID;
+        }
+        long div = channelSize / filePageSize;
+        long mod = channelSize % filePageSize;
+        return mod == 0? div - 1 : div;
+    }
+
+    /**
+     * Drops all segments and truncates the file to nothing. The segments are unmapped once they are garbage
+     * collected. This is only called while the file is being mapped by the page cache, so no cursor is still using
+     * the addresses of the dropped segments.
+     */
+    @Override
+    public synchronized void truncate() throws IOException
+    {
+        assertOpen();
+        segments = new MappedByteBuffer[0];
+        segmentAddresses = new long[0];
+        dirtySegments = new boolean[0];
+        setCurrentFileSize( 0 );
+        channel.truncate( 0 );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MappedFilePageSwapper{" +
+               "filePageSize=" + filePageSize +
+               ", file=" + file +
+               '}';
+    }
+}
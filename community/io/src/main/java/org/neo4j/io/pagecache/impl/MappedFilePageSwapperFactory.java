@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.pagecache.PageEvictionCallback;
+import org.neo4j.io.pagecache.PageSwapper;
+import org.neo4j.io.pagecache.PageSwapperFactory;
+
+/**
+ * Creates {@link MappedFilePageSwapper}s, for store files that live on a DAX, or emulated persistent memory, mount.
+ * <p>
+ * The swappers map the operating system file that the {@link FileSystemAbstraction} keeps the contents of a store
+ * file in, see {@link FileSystemAbstraction#nativeFile(File)}. Swappers are refused for files that the file system
+ * does not keep in an operating system file, such as those of the nvm file system, since mapping a file of the same
+ * name next to it would split the store between the two.
+ * Select this implementation with {@code dbms.memory.pagecache.swapper=mapped}.
+ */
+public class MappedFilePageSwapperFactory implements PageSwapperFactory
+{
+    private FileSystemAbstraction fs;
+
+    @Override
+    public void setFileSystemAbstraction( FileSystemAbstraction fs )
+    {
+        this.fs = fs;
+    }
+
+    @Override
+    public PageSwapper createPageSwapper(
+            File file,
+            int filePageSize,
+            PageEvictionCallback onEviction,
+            boolean createIfNotExist ) throws IOException
+    {
+        File nativeFile = nativeFile( fs, file );
+        if ( !nativeFile.exists() && !createIfNotExist )
+        {
+            throw new NoSuchFileException( file.getPath(), null, "Cannot map non-existing file" );
+        }
+        return new MappedFilePageSwapper( file, nativeFile, filePageSize, onEviction );
+    }
+
+    /**
+     * @return the operating system file that holds the contents of the given file in the given file system.
+     * @throws IOException if the file system does not keep the file in an operating system file.
+     */
+    static File nativeFile( FileSystemAbstraction fs, File file ) throws IOException
+    {
+        File nativeFile = fs == null ? null : fs.nativeFile( file );
+        if ( nativeFile == null )
+        {
+            throw new IOException( "Cannot access " + file + " directly, since " +
+                                   (fs == null ? "no file system" : fs.getClass().getSimpleName()) +
+                                   " does not keep it in an operating system file. Store files can only be mapped " +
+                                   "or read with direct IO when the file system keeps them on a DAX mount." );
+        }
+        return nativeFile;
+    }
+
+    @Override
+    public void syncDevice()
+    {
+        // Nothing do to, since the mapped segments are forced individually in `force()`.
+    }
+
+    @Override
+    public String implementationName()
+    {
+        return "mapped";
+    }
+
+    @Override
+    public int getCachePageSizeHint()
+    {
+        return 8192;
+    }
+
+    @Override
+    public boolean isCachePageSizeHintStrict()
+    {
+        return false;
+    }
+
+    @Override
+    public long getRequiredBufferAlignment()
+    {
+        return 1;
+    }
+}
@@ -72,6 +72,10 @@ public class SingleFilePageSwapper implements PageSwapper
     private static final int channelStripeShift = Integer.getInteger(
             "org.neo4j.io.pagecache.implSingleFilePageSwapper.channelStripeShift", 4 );
 
+    // How many pages past the end of the file we reserve space for whenever a write extends it, 0 disables that:
+    private static final int preallocatePages = Integer.getInteger(
+            "org.neo4j.io.pagecache.implSingleFilePageSwapper.preallocatePages", 256 );
+
     private static final int channelStripeCount = 1 << channelStripePower;
     private static final int channelStripeMask = channelStripeCount - 1;
     private static final int tokenChannelStripe = 0;
@@ -138,6 +142,9 @@ public class SingleFilePageSwapper implements PageSwapper
     @SuppressWarnings( "unused" ) // Accessed through unsafe
     private volatile long fileSize;
 
+    // Written under synchronized(this), see preallocateFor().
+    private volatile long preallocatedSize;
+
     public SingleFilePageSwapper(
             File file,
             FileSystemAbstraction fs,
@@ -154,6 +161,7 @@ public class SingleFilePageSwapper implements PageSwapper
         this.filePageSize = filePageSize;
         this.onEviction = onEviction;
         increaseFileSizeTo( channels[tokenChannelStripe].size() );
+        preallocatedSize = getCurrentFileSize();
 
         try
         {
@@ -177,6 +185,26 @@ public class SingleFilePageSwapper implements PageSwapper
                 this, fileSizeOffset, currentFileSize, newFileSize ) );
     }
 
+    /**
+     * Reserves space up to {@link #preallocatePages} pages past {@code newFileSize} when a write is about to extend
+     * the file beyond what has been reserved so far, so the store grows in large steps instead of page by page.
+     */
+    private void preallocateFor( StoreChannel channel, long newFileSize ) throws IOException
+    {
+        if ( preallocatePages > 0 && newFileSize > preallocatedSize )
+        {
+            synchronized ( this )
+            {
+                if ( newFileSize > preallocatedSize )
+                {
+                    long size = newFileSize + filePageSize * (long) preallocatePages;
+                    channel.preallocate( preallocatedSize, size - preallocatedSize );
+                    preallocatedSize = size;
+                }
+            }
+        }
+    }
+
     private long getCurrentFileSize()
     {
         return UnsafeUtil.getLongVolatile( this, fileSizeOffset );
@@ -432,6 +460,7 @@ public class SingleFilePageSwapper implements PageSwapper
         try
         {
             StoreChannel channel = channel( filePageId );
+            preallocateFor( channel, fileOffset + filePageSize );
             return swapOut( page, fileOffset, channel );
         }
         catch ( ClosedChannelException e )
@@ -477,7 +506,9 @@ public class SingleFilePageSwapper implements PageSwapper
             long startFilePageId, Page[] pages, int arrayOffset, int length ) throws Exception
     {
         long fileOffset = pageIdToPosition( startFilePageId );
-        increaseFileSizeTo( fileOffset + (((long) filePageSize) * length) );
+        long newFileSize = fileOffset + (((long) filePageSize) * length);
+        increaseFileSizeTo( newFileSize );
+        preallocateFor( channel( startFilePageId ), newFileSize );
         StoreFileChannel channel = unwrappedChannel( startFilePageId );
         ByteBuffer[] srcs = convertToByteBuffers( pages, arrayOffset, length );
         return lockPositionWriteVector( startFilePageId, channel, fileOffset, srcs );
@@ -742,6 +773,7 @@ public class SingleFilePageSwapper implements PageSwapper
     public void truncate() throws IOException
     {
         setCurrentFileSize( 0 );
+        preallocatedSize = 0;
         try
         {
             channel( tokenFilePageId ).truncate( 0 );
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+/**
+ * The eviction policies that a {@link MuninnPageCache} can be created with.
+ */
+public enum EvictionPolicies
+{
+    /**
+     * A plain clock sweep over the page usage counters. Every pin raises the counter of the page, and the sweep
+     * evicts the pages whose counter it has brought down to zero.
+     */
+    CLOCK
+            {
+                @Override
+                EvictionPolicy create( int maxPages )
+                {
+                    return new ClockEvictionPolicy();
+                }
+            },
+    /**
+     * A 2Q policy on top of the clock sweep, which keeps a large scan from flushing the hot pages out of the cache.
+     * Pages are faulted in on probation, and only pages that come back soon after having been evicted from
+     * probation are let into the protected set, which the sweep leaves alone while probation is large.
+     */
+    TWO_QUEUE
+            {
+                @Override
+                EvictionPolicy create( int maxPages )
+                {
+                    return new TwoQueueEvictionPolicy( maxPages );
+                }
+            };
+
+    abstract EvictionPolicy create( int maxPages );
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import org.neo4j.io.pagecache.PageSwapper;
+
+/**
+ * Decides which loaded pages the eviction sweeps of {@link MuninnPageCache} give up. The sweeps themselves, the page
+ * locking and the freelist stay in the page cache; a policy only looks after the usage counters of the pages and its
+ * own per page state, kept in {@link MuninnPage#getEvictionState()}.
+ *
+ * Pages faulted in or pinned through a {@link org.neo4j.io.pagecache.PagedFile#PF_SEQUENTIAL_SCAN} cursor are passed
+ * with {@code scan} set, and should not be promoted.
+ */
+interface EvictionPolicy
+{
+    /**
+     * A page has just been faulted in. Called while holding the exclusive lock on the page, before it is published.
+     */
+    void pageFaulted( MuninnPage page, boolean scan );
+
+    /**
+     * A cursor has pinned a page that was already loaded. This races with other hits and with eviction.
+     */
+    void pageHit( MuninnPage page, boolean scan );
+
+    /**
+     * An eviction sweep has come to a loaded page.
+     *
+     * @return {@code true} if the page should be evicted now, provided it can be exclusively locked.
+     */
+    boolean shouldEvict( MuninnPage page );
+
+    /**
+     * The page has been evicted from the given file page. Called while holding the exclusive lock on the page, so
+     * before it can be reused. The swapper is {@code null} if the last page fault into the page failed.
+     */
+    void pageEvicted( MuninnPage page, PageSwapper swapper, long filePageId );
+}
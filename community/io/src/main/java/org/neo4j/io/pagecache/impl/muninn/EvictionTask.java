@@ -20,22 +20,29 @@
 package org.neo4j.io.pagecache.impl.muninn;
 
 /**
- * This Runnable runs the eviction algorithm. Only one is expected for each page cache.
+ * This Runnable runs the eviction algorithm. One is expected for each partition of a page cache.
  *
  * Interrupting the thread running this runnable, will be interpreted as a shutdown signal.
  *
- * @see MuninnPageCache#continuouslySweepPages()
+ * @see PagePartition#continuouslySweepPages()
  */
 final class EvictionTask extends BackgroundTask
 {
-    public EvictionTask( MuninnPageCache pageCache )
+    private final PagePartition partition;
+
+    public EvictionTask( MuninnPageCache pageCache, PagePartition partition )
     {
         super( pageCache );
+        this.partition = partition;
     }
 
     @Override
     protected void run( MuninnPageCache pageCache )
     {
-        pageCache.continuouslySweepPages();
+        if ( pageCache.preallocateMemory )
+        {
+            partition.preallocateMemory( pageCache.preTouchMemory );
+        }
+        partition.continuouslySweepPages();
     }
 }
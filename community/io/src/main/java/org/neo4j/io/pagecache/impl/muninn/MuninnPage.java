@@ -41,6 +41,10 @@ final class MuninnPage extends SequenceLock implements Page
     // The other 7 bits are used as an exponent for computing the cache page size (as a power of two).
     private byte cachePageHeader;
 
+    // The flush epoch the page was in when it went from clean to dirty. Not reset when the page is marked as clean,
+    // it only means something while the page is dirty. See MuninnPageCache.beginFlushEpoch().
+    private long dirtyEpoch;
+
     // We keep this reference to prevent the MemoryManager from becoming
     // finalizable until all our pages are finalizable or collected.
     private final MemoryManager memoryManager;
@@ -52,6 +56,9 @@ final class MuninnPage extends SequenceLock implements Page
     @SuppressWarnings( "unused" )
     private volatile byte usageStamp;
 
+    // Per page state of the EvictionPolicy. Only written while holding the exclusive lock on the page.
+    private int evictionState;
+
     // Next pointer in the freelist of available pages. This is either a
     // MuninnPage object, or a FreePage object. See the comment on the
     // MuninnPageCache.freelist field.
@@ -92,8 +99,24 @@ final class MuninnPage extends SequenceLock implements Page
         return (cachePageHeader & ~0x7F) != 0;
     }
 
-    public void markAsDirty()
+    /**
+     * NOTE: Should be called under a page lock.
+     */
+    long dirtyEpoch()
+    {
+        return dirtyEpoch;
+    }
+
+    /**
+     * Mark the page as dirty by a write in the given flush epoch. A page that is already dirty keeps the oldest
+     * epoch it was dirtied in, since it still holds the changes from then.
+     */
+    public void markAsDirty( long epoch )
     {
+        if ( !isDirty() || epoch < dirtyEpoch )
+        {
+            dirtyEpoch = epoch;
+        }
         cachePageHeader |= ~0x7F;
     }
 
@@ -171,15 +194,7 @@ final class MuninnPage extends SequenceLock implements Page
             long filePageId,
             PageFaultEvent faultEvent ) throws IOException
     {
-        if ( this.swapper != null || this.filePageId != PageCursor.UNBOUND_PAGE_ID )
-        {
-            String msg = format(
-                    "Cannot fault page {filePageId = %s, swapper = %s} into " +
-                    "cache page %s. Already bound to {filePageId = " +
-                    "%s, swapper = %s}.",
-                    filePageId, swapper, getCachePageId(), this.filePageId, this.swapper );
-            throw new IllegalStateException( msg );
-        }
+        assertNotBound( swapper, filePageId );
 
         // Note: It is important that we assign the filePageId before we swap
         // the page in. If the swapping fails, the page will be considered
@@ -195,6 +210,41 @@ final class MuninnPage extends SequenceLock implements Page
         this.swapper = swapper; // Page now considered isBoundTo( swapper, filePageId )
     }
 
+    /**
+     * Begin faulting this page in as part of a vectored read of several pages, see
+     * {@link MuninnPagedFile#readAhead(long, int, boolean)}. As with {@link #fault(PageSwapper, long, PageFaultEvent)},
+     * the page is considered loaded from here on, but only bound to the file page once
+     * {@link #completeVectoredFault(PageSwapper)} is called after the read has succeeded.
+     *
+     * NOTE: This method MUST be called while holding the exclusive page lock.
+     */
+    void beginVectoredFault( PageSwapper swapper, long filePageId )
+    {
+        assertNotBound( swapper, filePageId );
+        this.filePageId = filePageId; // Page now considered isLoaded()
+    }
+
+    /**
+     * NOTE: This method MUST be called while holding the exclusive page lock.
+     */
+    void completeVectoredFault( PageSwapper swapper )
+    {
+        this.swapper = swapper; // Page now considered isBoundTo( swapper, filePageId )
+    }
+
+    private void assertNotBound( PageSwapper swapper, long filePageId )
+    {
+        if ( this.swapper != null || this.filePageId != PageCursor.UNBOUND_PAGE_ID )
+        {
+            String msg = format(
+                    "Cannot fault page {filePageId = %s, swapper = %s} into " +
+                    "cache page %s. Already bound to {filePageId = " +
+                    "%s, swapper = %s}.",
+                    filePageId, swapper, getCachePageId(), this.filePageId, this.swapper );
+            throw new IllegalStateException( msg );
+        }
+    }
+
     /**
      * NOTE: This method MUST be called while holding the page write lock.
      */
@@ -244,6 +294,21 @@ final class MuninnPage extends SequenceLock implements Page
         return filePageId;
     }
 
+    PageSwapper getSwapper()
+    {
+        return swapper;
+    }
+
+    int getEvictionState()
+    {
+        return evictionState;
+    }
+
+    void setEvictionState( int evictionState )
+    {
+        this.evictionState = evictionState;
+    }
+
     @Override
     public String toString()
     {
@@ -23,26 +23,26 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.OpenOption;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Executor;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.neo4j.io.pagecache.IOLimiter;
 import org.neo4j.io.pagecache.PageCache;
 import org.neo4j.io.pagecache.PageCacheOpenOptions;
+import org.neo4j.io.pagecache.PageSwapper;
 import org.neo4j.io.pagecache.PageSwapperFactory;
 import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.io.pagecache.monitoring.PageAccessCounters;
+import org.neo4j.io.pagecache.monitoring.PageCursorOrigin;
 import org.neo4j.io.pagecache.tracing.EvictionEvent;
-import org.neo4j.io.pagecache.tracing.EvictionRunEvent;
 import org.neo4j.io.pagecache.tracing.FlushEventOpportunity;
 import org.neo4j.io.pagecache.tracing.MajorFlushEvent;
 import org.neo4j.io.pagecache.tracing.PageCacheTracer;
 import org.neo4j.io.pagecache.tracing.PageFaultEvent;
-import org.neo4j.unsafe.impl.internal.dragons.MemoryManager;
 import org.neo4j.unsafe.impl.internal.dragons.UnsafeUtil;
 
 import static org.neo4j.unsafe.impl.internal.dragons.FeatureToggles.flag;
@@ -102,32 +102,15 @@ public class MuninnPageCache implements PageCache
     public static final byte ZERO_BYTE =
             (byte) (flag( MuninnPageCache.class, "brandedZeroByte", false ) ? 0x0f : 0);
 
-    // Keep this many pages free and ready for use in faulting.
-    // This will be truncated to be no more than half of the number of pages
-    // in the cache.
-    private static final int pagesToKeepFree = getInteger(
-            MuninnPageCache.class, "pagesToKeepFree", 30 );
-
-    // This is how many times that, during cooperative eviction, we'll iterate through the entire set of pages looking
-    // for a page to evict, before we give up and throw CacheLiveLockException. This MUST be greater than 1.
-    private static final int cooperativeEvictionLiveLockThreshold = getInteger(
-            MuninnPageCache.class, "cooperativeEvictionLiveLockThreshold", 100 );
+    // Every partition gets at least this many pages, so a small cache is split into fewer partitions than asked for.
+    private static final int minimumPartitionPageCount = getInteger(
+            MuninnPageCache.class, "minimumPartitionPageCount", 1024 );
 
     // This is a pre-allocated constant, so we can throw it without allocating any objects:
     @SuppressWarnings( "ThrowableInstanceNeverThrown" )
     private static final IOException oomException = new IOException(
             "OutOfMemoryError encountered in the page cache background eviction thread" );
 
-    // The field offset to unsafely access the freelist field.
-    private static final long freelistOffset =
-            UnsafeUtil.getFieldOffset( MuninnPageCache.class, "freelist" );
-
-    // This is used as a poison-pill signal in the freelist, to inform any
-    // page faulting thread that it is now no longer possible to queue up and
-    // wait for more pages to be evicted, because the page cache has been shut
-    // down.
-    private static final FreePage shutdownSignal = new FreePage( null );
-
     // A counter used to identify which background threads belong to which page cache.
     private static final AtomicInteger pageCacheIdCounter = new AtomicInteger();
 
@@ -145,42 +128,29 @@ public class MuninnPageCache implements PageCache
     private final int pageCacheId;
     private final PageSwapperFactory swapperFactory;
     private final int cachePageSize;
-    private final int keepFree;
-    private final PageCacheTracer tracer;
+    final PageCacheTracer tracer;
     private final MuninnPage[] pages;
+    private final PagePartition[] partitions;
+    final EvictionPolicy evictionPolicy;
+    // The counters of each page cursor origin, by ordinal, as handed out by the tracer.
+    final PageAccessCounters[] originCounters;
+    // True if the memory of each partition is allocated as soon as the page cache threads start, and if it should
+    // then also be touched to have the operating system map it in.
+    final boolean preallocateMemory;
+    final boolean preTouchMemory;
     // All PageCursors are initialised with their pointers pointing to the victim page. This way, we can do branch-free
     // bounds checking of page accesses without fear of segfaulting newly allocated cursors.
     final long victimPage;
 
-    // The freelist is a thread-safe linked-list of 2 types of objects. A link
-    // can either be a MuninnPage or a FreePage.
-    // Initially, most of the links are MuninnPages that are ready for the
-    // taking. Then towards the end, we have the last bunch of pages linked
-    // through FreePage objects. We make this transition because, once a
-    // MuninnPage has been removed from the list, it cannot be added back. The
-    // reason is that the MuninnPages are reused, and adding them back into the
-    // freelist would expose us to the ABA-problem, which can cause cycles to
-    // form. The FreePage objects, however, are single-use such that they don't
-    // exhibit the ABA-problem. In other words, eviction will never add
-    // MuninnPages to the freelist; it will only add free pages through a new
-    // FreePage object.
-    @SuppressWarnings( "unused" ) // This field is accessed via Unsafe.
-    private volatile Object freelist;
-
     // Linked list of mappings - guarded by synchronized(this)
     private volatile FileMapping mappedFiles;
 
-    // The thread that runs the eviction algorithm. We unpark this when we've run out of
-    // free pages to grab.
-    private volatile Thread evictionThread;
-    // True if the eviction thread is currently parked, without someone having
-    // signalled it to wake up. This is used as a weak guard for unparking the
-    // eviction thread, because calling unpark too much (from many page
-    // faulting threads) can cause contention on the locks protecting that
-    // threads scheduling meta-data in the OS kernel.
-    private volatile boolean evictorParked;
+    // The last exception from evicting a page, in any of the partitions.
     private volatile IOException evictorException;
 
+    // The flush epoch that written pages are marked as dirtied in, see beginFlushEpoch()
+    private final AtomicLong flushEpoch = new AtomicLong();
+
     // Flag for when page cache is closed - writes guarded by synchronized(this), reads can be unsynchronized
     private volatile boolean closed;
 
@@ -195,6 +165,50 @@ public class MuninnPageCache implements PageCache
             int maxPages,
             int cachePageSize,
             PageCacheTracer tracer )
+    {
+        this( swapperFactory, maxPages, cachePageSize, tracer, EvictionPolicies.CLOCK );
+    }
+
+    public MuninnPageCache(
+            PageSwapperFactory swapperFactory,
+            int maxPages,
+            int cachePageSize,
+            PageCacheTracer tracer,
+            EvictionPolicies evictionPolicy )
+    {
+        this( swapperFactory, maxPages, cachePageSize, tracer, evictionPolicy, 1 );
+    }
+
+    /**
+     * @param partitions The number of partitions to split the pages into, each with its own memory, free list and
+     * eviction thread. Small caches get fewer partitions, so that every partition has a reasonable number of pages.
+     */
+    public MuninnPageCache(
+            PageSwapperFactory swapperFactory,
+            int maxPages,
+            int cachePageSize,
+            PageCacheTracer tracer,
+            EvictionPolicies evictionPolicy,
+            int partitions )
+    {
+        this( swapperFactory, maxPages, cachePageSize, tracer, evictionPolicy, partitions, null, false );
+    }
+
+    /**
+     * @param hugePageDirectory A directory in a hugetlbfs mount to map the page cache memory from, so it is backed by
+     * explicit huge pages, or {@code null} to use ordinary memory. Huge page backed memory is allocated up front.
+     * @param preTouchMemory {@code true} if all the page cache memory should be allocated and written to up front,
+     * so the first page faults don't have to wait for the operating system to map and zero the memory.
+     */
+    public MuninnPageCache(
+            PageSwapperFactory swapperFactory,
+            int maxPages,
+            int cachePageSize,
+            PageCacheTracer tracer,
+            EvictionPolicies evictionPolicy,
+            int partitions,
+            File hugePageDirectory,
+            boolean preTouchMemory )
     {
         verifyHacks();
         verifyCachePageSizeIsPowerOfTwo( cachePageSize );
@@ -203,43 +217,30 @@ public class MuninnPageCache implements PageCache
         this.pageCacheId = pageCacheIdCounter.incrementAndGet();
         this.swapperFactory = swapperFactory;
         this.cachePageSize = cachePageSize;
-        this.keepFree = Math.min( pagesToKeepFree, maxPages / 2 );
         this.tracer = tracer;
         this.pages = new MuninnPage[maxPages];
+        this.evictionPolicy = evictionPolicy.create( maxPages );
+        this.originCounters = new PageAccessCounters[PageCursorOrigin.values().length];
+        for ( PageCursorOrigin origin : PageCursorOrigin.values() )
+        {
+            originCounters[origin.ordinal()] = tracer.originCounters( origin );
+        }
         this.printExceptionsOnClose = true;
+        this.preallocateMemory = hugePageDirectory != null || preTouchMemory;
+        this.preTouchMemory = preTouchMemory;
 
         long alignment = swapperFactory.getRequiredBufferAlignment();
-        long expectedMaxMemory = ((long) maxPages) * cachePageSize; // cast to long prevents overflow
-        MemoryManager memoryManager = new MemoryManager( expectedMaxMemory, alignment );
         this.victimPage = VictimPageReference.getVictimPage( cachePageSize );
-        Object pageList = null;
-        int pageIndex = maxPages;
-        while ( pageIndex --> 0 )
+        int partitionCount = Math.max( 1, Math.min( partitions, maxPages / minimumPartitionPageCount ) );
+        this.partitions = new PagePartition[partitionCount];
+        int firstPageIndex = 0;
+        for ( int i = 0; i < partitionCount; i++ )
         {
-            MuninnPage page = new MuninnPage( cachePageSize, memoryManager );
-            page.tryExclusiveLock(); // All pages in the free-list are exclusively locked, and unlocked by page fault.
-            pages[pageIndex] = page;
-
-            if ( pageList == null )
-            {
-                FreePage freePage = new FreePage( page );
-                freePage.setNext( null );
-                pageList = freePage;
-            }
-            else if ( pageList instanceof FreePage
-                    && ((FreePage) pageList).count < keepFree )
-            {
-                FreePage freePage = new FreePage( page );
-                freePage.setNext( (FreePage) pageList );
-                pageList = freePage;
-            }
-            else
-            {
-                page.nextFree = pageList;
-                pageList = page;
-            }
+            int pageCount = maxPages / partitionCount + (i < maxPages % partitionCount ? 1 : 0);
+            this.partitions[i] = new PagePartition(
+                    this, i, pages, firstPageIndex, pageCount, cachePageSize, alignment, hugePageDirectory );
+            firstPageIndex += pageCount;
         }
-        UnsafeUtil.putObjectVolatile( this, freelistOffset, pageList );
     }
 
     private static void verifyHacks()
@@ -394,7 +395,10 @@ public class MuninnPageCache implements PageCache
 
         try
         {
-            backgroundThreadExecutor.execute( new EvictionTask( this ) );
+            for ( PagePartition partition : partitions )
+            {
+                backgroundThreadExecutor.execute( new EvictionTask( this, partition ) );
+            }
         }
         catch ( Exception e )
         {
@@ -442,6 +446,45 @@ public class MuninnPageCache implements PageCache
         }
     }
 
+    /**
+     * @return {@code true} if the given canonical file is currently mapped by this page cache.
+     */
+    synchronized boolean isMapped( File file )
+    {
+        FileMapping current = mappedFiles;
+        while ( current != null )
+        {
+            if ( current.file.equals( file ) )
+            {
+                return true;
+            }
+            current = current.next;
+        }
+        return false;
+    }
+
+    /**
+     * Take an extra reference to all the mapped files, so they stay open while we work on them without holding the
+     * monitor lock. Each of them must be released with {@link #unmap(MuninnPagedFile)}. Nothing is mapped once the
+     * page cache is closed.
+     */
+    synchronized List<MuninnPagedFile> retainMappedFiles()
+    {
+        List<MuninnPagedFile> files = new ArrayList<>();
+        if ( closed )
+        {
+            return files;
+        }
+        FileMapping current = mappedFiles;
+        while ( current != null )
+        {
+            current.pagedFile.incrementRefCount();
+            files.add( current.pagedFile );
+            current = current.next;
+        }
+        return files;
+    }
+
     private void flushAndCloseWithoutFail( MuninnPagedFile file )
     {
         boolean flushedAndClosed = false;
@@ -491,11 +534,34 @@ public class MuninnPageCache implements PageCache
             throw new IllegalArgumentException( "IOPSLimiter cannot be null" );
         }
         assertNotClosed();
-        flushAllPages( limiter );
+        flushAllPages( limiter, Long.MAX_VALUE );
         clearEvictorException();
     }
 
-    private void flushAllPages( IOLimiter limiter ) throws IOException
+    @Override
+    public long beginFlushEpoch()
+    {
+        return flushEpoch.incrementAndGet();
+    }
+
+    long currentFlushEpoch()
+    {
+        return flushEpoch.get();
+    }
+
+    @Override
+    public synchronized void flushAndForce( long epoch, IOLimiter limiter ) throws IOException
+    {
+        if ( limiter == null )
+        {
+            throw new IllegalArgumentException( "IOPSLimiter cannot be null" );
+        }
+        assertNotClosed();
+        flushAllPages( limiter, epoch );
+        clearEvictorException();
+    }
+
+    private void flushAllPages( IOLimiter limiter, long beforeEpoch ) throws IOException
     {
         try ( MajorFlushEvent cacheFlush = tracer.beginCacheFlush() )
         {
@@ -503,13 +569,44 @@ public class MuninnPageCache implements PageCache
             FileMapping fileMapping = mappedFiles;
             while ( fileMapping != null )
             {
-                fileMapping.pagedFile.flushAndForceInternal( flushOpportunity, false, limiter );
+                fileMapping.pagedFile.flushAndForceInternal( flushOpportunity, false, limiter, beforeEpoch );
                 fileMapping = fileMapping.next;
             }
             syncDevice();
         }
     }
 
+    /**
+     * Write out the dirty pages of all mapped files, in file order and coalesced into vectored writes, at the pace
+     * allowed by the given {@link IOLimiter}. The files are not forced, and pages that are busy are skipped, so this
+     * is meant to be called periodically from a background thread, to leave less work for the next
+     * {@link #flushAndForce(IOLimiter) checkpoint flush} and for eviction.
+     *
+     * @return the number of pages that were written.
+     */
+    public long flushInBackground( IOLimiter limiter ) throws IOException
+    {
+        long pagesFlushed = 0;
+        List<MuninnPagedFile> files = retainMappedFiles();
+        try ( MajorFlushEvent cacheFlush = tracer.beginCacheFlush() )
+        {
+            FlushEventOpportunity flushOpportunity = cacheFlush.flushEventOpportunity();
+            for ( MuninnPagedFile file : files )
+            {
+                pagesFlushed += file.flushInBackground( flushOpportunity, limiter );
+            }
+        }
+        finally
+        {
+            // This also takes care of closing the files that were unmapped while we were flushing them.
+            for ( MuninnPagedFile file : files )
+            {
+                unmap( file );
+            }
+        }
+        return pagesFlushed;
+    }
+
     void syncDevice() throws IOException
     {
         swapperFactory.syncDevice();
@@ -547,15 +644,9 @@ public class MuninnPageCache implements PageCache
             pages[i] = null;
         }
 
-        interrupt( evictionThread );
-        evictionThread = null;
-    }
-
-    private void interrupt( Thread thread )
-    {
-        if ( thread != null )
+        for ( PagePartition partition : partitions )
         {
-            thread.interrupt();
+            partition.close();
         }
     }
 
@@ -566,7 +657,7 @@ public class MuninnPageCache implements PageCache
         super.finalize();
     }
 
-    private void assertHealthy() throws IOException
+    void assertHealthy() throws IOException
     {
         assertNotClosed();
         IOException exception = evictorException;
@@ -584,6 +675,11 @@ public class MuninnPageCache implements PageCache
         }
     }
 
+    boolean isClosed()
+    {
+        return closed;
+    }
+
     @Override
     public int pageSize()
     {
@@ -596,308 +692,72 @@ public class MuninnPageCache implements PageCache
         return pages.length;
     }
 
-    int getPageCacheId()
+    void startBackgroundTask( BackgroundTask task )
     {
-        return pageCacheId;
+        backgroundThreadExecutor.execute( task );
     }
 
-    MuninnPage grabFreeAndExclusivelyLockedPage( PageFaultEvent faultEvent ) throws IOException
+    int getPageCacheId()
     {
-        // Review the comment on the freelist field before making changes to
-        // this part of the code.
-        // Whatever the case, we're going to the head-pointer of the freelist,
-        // and in doing so, we can discover a number of things.
-        // We can discover a MuninnPage object, in which case we can try to
-        // CAS the freelist pointer to the value of the MuninnPage.nextFree
-        // pointer, and if this succeeds then we've grabbed that page.
-        // We can discover a FreePage object, in which case we'll do a similar
-        // dance by attempting to CAS the freelist to the FreePage objects next
-        // pointer, and again, if we succeed then we've grabbed the MuninnPage
-        // given by the FreePage object.
-        // We can discover a null-pointer, in which case the freelist has just
-        // been emptied for whatever it contained before. New FreePage objects
-        // are eventually going to be added to the freelist, but we are not
-        // going to wait around for that to happen. If the freelist is empty,
-        // then we do our own eviction to get a free page.
-        // If we find a FreePage object on the freelist, then it is important
-        // to check and see if it is the shutdownSignal instance. If that's the
-        // case, then the page cache has been shut down, and we should throw an
-        // exception from our page fault routine.
-        Object current;
-        for (;;)
-        {
-            assertHealthy();
-            current = getFreelistHead();
-            if ( current == null )
-            {
-                unparkEvictor();
-                MuninnPage page = cooperativelyEvict( faultEvent );
-                if ( page != null ) {
-                    return page;
-                }
-            }
-            else if ( current instanceof MuninnPage )
-            {
-                MuninnPage page = (MuninnPage) current;
-                if ( compareAndSetFreelistHead( page, page.nextFree ) )
-                {
-                    return page;
-                }
-            }
-            else if ( current instanceof FreePage )
-            {
-                FreePage freePage = (FreePage) current;
-                if ( freePage == shutdownSignal )
-                {
-                    throw new IllegalStateException( "The PageCache has been shut down." );
-                }
-
-                if ( compareAndSetFreelistHead( freePage, freePage.next ) )
-                {
-                    return freePage.page;
-                }
-            }
-        }
+        return pageCacheId;
     }
 
-    private MuninnPage cooperativelyEvict( PageFaultEvent faultEvent ) throws IOException
+    MuninnPage grabFreeAndExclusivelyLockedPage( PageFaultEvent faultEvent ) throws IOException
     {
-        int iterations = 0;
-        int clockArm = ThreadLocalRandom.current().nextInt( pages.length );
-        MuninnPage page;
-        boolean evicted = false;
-        do
+        if ( partitions.length == 1 )
         {
-            assertHealthy();
-            if ( getFreelistHead() != null )
-            {
-                return null;
-            }
-
-            if ( clockArm == pages.length )
-            {
-                if ( iterations == cooperativeEvictionLiveLockThreshold )
-                {
-                    throw cooperativeEvictionLiveLock();
-                }
-                iterations++;
-                clockArm = 0;
-            }
-
-            page = pages[clockArm];
-            if ( page == null )
-            {
-                throw new IllegalStateException(
-                        "The PageCache has been shut down" );
-            }
-
-            if ( page.isLoaded() && page.decrementUsage() )
-            {
-                if ( page.tryExclusiveLock() )
-                {
-                    // We got the write lock. Time to evict the page!
-                    try ( EvictionEvent evictionEvent = faultEvent.beginEviction() )
-                    {
-                        evicted = page.isLoaded() && evictPage( page, evictionEvent );
-                    }
-                    finally
-                    {
-                        if ( !evicted )
-                        {
-                            page.unlockExclusive();
-                        }
-                    }
-                }
-            }
-            clockArm++;
+            return partitions[0].grabFreeAndExclusivelyLockedPage( faultEvent );
         }
-        while ( !evicted );
-        return page;
-    }
-
-    private CacheLiveLockException cooperativeEvictionLiveLock()
-    {
-        return new CacheLiveLockException(
-                "Live-lock encountered when trying to cooperatively evict a page during page fault. " +
-                "This happens when we want to access a page that is not in memory, so it has to be faulted in, but " +
-                "there are no free memory pages available to accept the page fault, so we have to evict an existing " +
-                "page, but all the in-memory pages are currently locked by other accesses. If those other access are " +
-                "waiting for our page fault to make progress, then we have a live-lock, and the only way we can get " +
-                "out of it is by throwing this exception. This should be extremely rare, but can happen if the page " +
-                "cache size is tiny and the number of concurrently running transactions is very high. You should be " +
-                "able to get around this problem by increasing the amount of memory allocated to the page cache " +
-                "with the `dbms.memory.pagecache.size` setting. Please contact Neo4j support if you need help tuning " +
-                "your database." );
-    }
-
-    private void unparkEvictor()
-    {
-        if ( evictorParked )
+        // Threads are striped over the partitions by thread id, so concurrent page faults mostly go to different
+        // free lists. When the home partition has run out of free pages, we would rather take a free page from
+        // another partition than wait for eviction.
+        int home = (int) (Thread.currentThread().getId() % partitions.length);
+        MuninnPage page = partitions[home].tryGrabFreePage();
+        if ( page != null )
         {
-            evictorParked = false;
-            LockSupport.unpark( evictionThread );
+            return page;
         }
-    }
-
-    private void parkEvictor( long parkNanos )
-    {
-        // Only called from the background eviction thread!
-        evictorParked = true;
-        LockSupport.parkNanos( this, parkNanos );
-        evictorParked = false;
-    }
-
-    private Object getFreelistHead()
-    {
-        return UnsafeUtil.getObjectVolatile( this, freelistOffset );
-    }
-
-    private boolean compareAndSetFreelistHead( Object expected, Object update )
-    {
-        return UnsafeUtil.compareAndSwapObject(
-                this, freelistOffset, expected, update );
-    }
-
-    private Object getAndSetFreelistHead( Object newFreelistHead )
-    {
-        return UnsafeUtil.getAndSetObject(
-                this, freelistOffset, newFreelistHead );
-    }
-
-    /**
-     * Scan through all the pages, one by one, and decrement their usage stamps.
-     * If a usage reaches zero, we try-write-locking it, and if we get that lock,
-     * we evict the page. If we don't, we move on to the next page.
-     * Once we have enough free pages, we park our thread. Page-faulting will
-     * unpark our thread as needed.
-     */
-    public void continuouslySweepPages()
-    {
-        evictionThread = Thread.currentThread();
-        int clockArm = 0;
-
-        while ( !closed )
+        partitions[home].unparkEvictor();
+        for ( int i = 1; i < partitions.length; i++ )
         {
-            int pageCountToEvict = parkUntilEvictionRequired( keepFree );
-            try ( EvictionRunEvent evictionRunEvent = tracer.beginPageEvictions( pageCountToEvict ) )
+            page = partitions[(home + i) % partitions.length].tryGrabFreePage();
+            if ( page != null )
             {
-                clockArm = evictPages( pageCountToEvict, clockArm, evictionRunEvent );
+                return page;
             }
         }
-
-        // The last thing we do, is signalling the shutdown of the cache via
-        // the freelist. This signal is looked out for in grabFreePage.
-        getAndSetFreelistHead( shutdownSignal );
+        return partitions[home].grabFreeAndExclusivelyLockedPage( faultEvent );
     }
 
-    private int parkUntilEvictionRequired( int keepFree )
+    /**
+     * @return the number of partitions that the pages of this page cache are split into.
+     */
+    int partitionCount()
     {
-        // Park until we're either interrupted, or the number of free pages drops
-        // bellow keepFree.
-        long parkNanos = TimeUnit.MILLISECONDS.toNanos( 10 );
-        for (;;)
-        {
-            parkEvictor( parkNanos );
-            if ( Thread.interrupted() || closed )
-            {
-                return 0;
-            }
-
-            Object freelistHead = getFreelistHead();
-
-            if ( freelistHead == null )
-            {
-                return keepFree;
-            }
-            else if ( freelistHead.getClass() == FreePage.class )
-            {
-                int availablePages = ((FreePage) freelistHead).count;
-                if ( availablePages < keepFree )
-                {
-                    return keepFree - availablePages;
-                }
-            }
-        }
+        return partitions.length;
     }
 
-    int evictPages( int pageCountToEvict, int clockArm, EvictionRunEvent evictionRunEvent )
+    /**
+     * @return the number of free pages that page faults have taken from the given partition.
+     */
+    long partitionFaults( int partition )
     {
-        while ( pageCountToEvict > 0 && !closed )
-        {
-            if ( clockArm == pages.length )
-            {
-                clockArm = 0;
-            }
-            MuninnPage page = pages[clockArm];
-
-            if ( page == null )
-            {
-                // The page cache has been shut down.
-                return 0;
-            }
-
-            if ( page.isLoaded() && page.decrementUsage() )
-            {
-                if ( page.tryExclusiveLock() )
-                {
-                    // We got the lock.
-                    // Assume that the eviction is going to succeed, so that we
-                    // always make some kind of progress. This means that, if
-                    // we have a temporary outage of the storage system, for
-                    // instance if the drive is full, then we won't spin in
-                    // this forever. Instead, we'll eventually make our way
-                    // back out to the main loop, where we have a chance to
-                    // sleep for a little while in `parkUntilEvictionRequired`.
-                    // This reduces the CPU load and power usage in such a
-                    // scenario.
-                    pageCountToEvict--;
-                    boolean pageEvicted = false;
-
-                    try ( EvictionEvent evictionEvent = evictionRunEvent.beginEviction() )
-                    {
-                        pageEvicted = page.isLoaded() && evictPage( page, evictionEvent );
-                        if ( pageEvicted )
-                        {
-                            Object current;
-                            FreePage freePage = new FreePage( page );
-                            do
-                            {
-                                current = getFreelistHead();
-                                freePage.setNext( (FreePage) current );
-                            }
-                            while ( !compareAndSetFreelistHead(
-                                    current, freePage ) );
-                        }
-                    }
-                    finally
-                    {
-                        if ( !pageEvicted )
-                        {
-                            // Pages we put into the free-list remain exclusively locked until a page fault unlocks
-                            // them. If we somehow failed to evict the page, then we need to make sure that we release
-                            // the exclusive lock.
-                            page.unlockExclusive();
-                        }
-                    }
-                }
-            }
-
-            clockArm++;
-        }
-
-        return clockArm;
+        return partitions[partition].faults();
     }
 
     /**
      * Evict the given page, or return {@code false} if the eviction failed for any reason.
      * This method will never throw an exception!
      */
-    private boolean evictPage( MuninnPage page, EvictionEvent evictionEvent )
+    boolean evictPage( MuninnPage page, EvictionEvent evictionEvent )
     {
         //noinspection TryWithIdenticalCatches - this warning is a false positive; bug in Intellij inspection
         try
         {
+            PageSwapper swapper = page.getSwapper();
+            long filePageId = page.getFilePageId();
             page.evict( evictionEvent );
+            evictionPolicy.pageEvicted( page, swapper, filePageId );
             clearEvictorException();
             return true;
         }
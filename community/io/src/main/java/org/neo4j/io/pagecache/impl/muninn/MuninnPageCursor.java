@@ -27,12 +27,17 @@ import org.neo4j.concurrent.BinaryLatch;
 import org.neo4j.io.pagecache.CursorException;
 import org.neo4j.io.pagecache.PageCursor;
 import org.neo4j.io.pagecache.PageSwapper;
+import org.neo4j.io.pagecache.monitoring.PageAccessCounters;
+import org.neo4j.io.pagecache.monitoring.PageCursorOrigin;
 import org.neo4j.io.pagecache.tracing.PageCacheTracer;
 import org.neo4j.io.pagecache.tracing.PageFaultEvent;
 import org.neo4j.io.pagecache.tracing.PinEvent;
 import org.neo4j.unsafe.impl.internal.dragons.UnsafeUtil;
 
+import static org.neo4j.io.pagecache.PagedFile.PF_READ_AHEAD;
+import static org.neo4j.io.pagecache.PagedFile.PF_SEQUENTIAL_SCAN;
 import static org.neo4j.unsafe.impl.internal.dragons.FeatureToggles.flag;
+import static org.neo4j.unsafe.impl.internal.dragons.FeatureToggles.getInteger;
 
 abstract class MuninnPageCursor extends PageCursor
 {
@@ -43,6 +48,10 @@ abstract class MuninnPageCursor extends PageCursor
             flag( MuninnPageCursor.class, "usePreciseCursorErrorStackTraces", false );
 
     private static final boolean boundsCheck = flag( MuninnPageCursor.class, "boundsCheck", true );
+    // Read-ahead starts once a cursor has pinned this many consecutive pages, or right away with PF_READ_AHEAD.
+    private static final int readAheadThreshold = getInteger( MuninnPageCursor.class, "readAheadThreshold", 4 );
+    private static final int readAheadMinPages = 4;
+    private static final int readAheadMaxPages = getInteger( MuninnPageCursor.class, "readAheadMaxPages", 32 );
 
     // Size of the respective primitive types in bytes.
     private static final int SIZE_OF_BYTE = Byte.BYTES;
@@ -54,6 +63,9 @@ abstract class MuninnPageCursor extends PageCursor
     protected MuninnPagedFile pagedFile;
     protected PageSwapper swapper;
     protected PageCacheTracer tracer;
+    protected EvictionPolicy evictionPolicy;
+    protected PageAccessCounters fileCounters;
+    protected PageAccessCounters originCounters;
     protected MuninnPage page;
     protected PinEvent pinEvent;
     protected long pageId;
@@ -71,6 +83,13 @@ abstract class MuninnPageCursor extends PageCursor
     // offending code.
     private Object cursorException;
 
+    // Read-ahead state, see maybeReadAhead.
+    private int readAheadMaxWindow;
+    private long lastPinnedPageId;
+    private int sequentialPins;
+    private long readAheadPageId;
+    private int readAheadWindow;
+
     MuninnPageCursor( long victimPage )
     {
         this.victimPage = victimPage;
@@ -81,6 +100,10 @@ abstract class MuninnPageCursor extends PageCursor
     {
         this.swapper = pagedFile.swapper;
         this.tracer = pagedFile.tracer;
+        this.evictionPolicy = pagedFile.pageCache.evictionPolicy;
+        this.fileCounters = pagedFile.counters;
+        // Never let a single read-ahead take more than a small part of the cache.
+        this.readAheadMaxWindow = Math.min( readAheadMaxPages, pagedFile.pageCache.maxCachedPages() / 16 );
     }
 
     final void initialiseFlags( MuninnPagedFile pagedFile, long pageId, int pf_flags )
@@ -89,6 +112,10 @@ abstract class MuninnPageCursor extends PageCursor
         this.pageId = pageId;
         this.pf_flags = pf_flags;
         this.filePageSize = pagedFile.filePageSize;
+        this.lastPinnedPageId = UNBOUND_PAGE_ID;
+        this.sequentialPins = 0;
+        this.readAheadWindow = 0;
+        this.originCounters = pagedFile.pageCache.originCounters[PageCursorOrigin.current().ordinal()];
     }
 
     @Override
@@ -209,6 +236,7 @@ abstract class MuninnPageCursor extends PageCursor
     protected void pin( long filePageId, boolean writeLock ) throws IOException
     {
         pinEvent = tracer.beginPin( writeLock, filePageId, swapper );
+        maybeReadAhead( filePageId );
         int chunkId = MuninnPagedFile.computeChunkId( filePageId );
         // The chunkOffset is the addressing offset into the chunk array object for the relevant array slot. Using
         // this, we can access the array slot with Unsafe.
@@ -241,6 +269,9 @@ abstract class MuninnPageCursor extends PageCursor
                 if ( locked & page.isBoundTo( swapper, filePageId ) )
                 {
                     pinCursorToPage( page, filePageId, swapper );
+                    evictionPolicy.pageHit( page, isSequentialScan() );
+                    fileCounters.hit();
+                    originCounters.hit();
                     return;
                 }
                 if ( locked )
@@ -258,6 +289,51 @@ abstract class MuninnPageCursor extends PageCursor
         pinCursorToPage( (MuninnPage) item, filePageId, swapper );
     }
 
+    /**
+     * Start reading the pages following the given file page ahead of this cursor, if it looks like the cursor is
+     * moving sequentially forward through the file. Like the read-ahead of a file system, the pages are read in
+     * windows that start small and double in size up to readAheadMaxPages, and the next window is started when the
+     * cursor has come halfway through the previous one, so the cursor should rarely have to wait for a page fault.
+     */
+    private void maybeReadAhead( long filePageId )
+    {
+        if ( filePageId == lastPinnedPageId || readAheadMaxWindow < readAheadMinPages )
+        {
+            // Either pinning the same page again after a failed optimistic read, or the cache is too small.
+            return;
+        }
+        if ( filePageId == lastPinnedPageId + 1 )
+        {
+            sequentialPins++;
+        }
+        else
+        {
+            sequentialPins = 0;
+            readAheadWindow = 0;
+        }
+        lastPinnedPageId = filePageId;
+        if ( sequentialPins < readAheadThreshold && (pf_flags & PF_READ_AHEAD) != PF_READ_AHEAD )
+        {
+            return;
+        }
+        if ( readAheadWindow == 0 )
+        {
+            readAheadPageId = filePageId + 1;
+            readAheadWindow = readAheadMinPages;
+        }
+        if ( readAheadPageId - filePageId <= readAheadWindow / 2 )
+        {
+            pagedFile.startReadAhead( readAheadPageId, readAheadWindow, isSequentialScan() );
+            readAheadPageId += readAheadWindow;
+            readAheadWindow = Math.min( readAheadWindow * 2, readAheadMaxWindow );
+        }
+    }
+
+    private boolean isSequentialScan()
+    {
+        return (pf_flags & PF_SEQUENTIAL_SCAN) == PF_SEQUENTIAL_SCAN;
+    }
+
     private Object[][] expandTranslationTableCapacity( int chunkId )
     {
         return pagedFile.expandCapacity( chunkId );
@@ -309,6 +385,7 @@ abstract class MuninnPageCursor extends PageCursor
         // If we manage to get a free page to fault into, then we will also be taking a write lock on that page, to
         // protect it against concurrent eviction as we assigning a binding to the page. If anything goes wrong, then
         // we must make sure to release that write lock as well.
+        long faultStartNanos = System.nanoTime();
         PageFaultEvent faultEvent = pinEvent.beginPageFault();
         MuninnPage page;
         try
@@ -337,6 +414,7 @@ abstract class MuninnPageCursor extends PageCursor
             assertPagedFileStillMappedAndGetIdOfLastPage();
             page.initBuffer();
             page.fault( swapper, filePageId, faultEvent );
+            evictionPolicy.pageFaulted( page, isSequentialScan() );
         }
         catch ( Throwable throwable )
         {
@@ -354,6 +432,9 @@ abstract class MuninnPageCursor extends PageCursor
         convertPageFaultLock( page );
         latch.release();
         faultEvent.done();
+        long faultLatencyNanos = System.nanoTime() - faultStartNanos;
+        fileCounters.fault( faultLatencyNanos );
+        originCounters.fault( faultLatencyNanos );
         return page;
     }
 
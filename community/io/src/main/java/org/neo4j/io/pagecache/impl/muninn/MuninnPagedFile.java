@@ -24,6 +24,12 @@ import java.io.Flushable;
 import java.io.IOException;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.neo4j.concurrent.BinaryLatch;
 
 import org.neo4j.io.pagecache.IOLimiter;
 import org.neo4j.io.pagecache.PageCursor;
@@ -33,11 +39,14 @@ import org.neo4j.io.pagecache.PageSwapperFactory;
 import org.neo4j.io.pagecache.PagedFile;
 import org.neo4j.io.pagecache.impl.PagedReadableByteChannel;
 import org.neo4j.io.pagecache.impl.PagedWritableByteChannel;
+import org.neo4j.io.pagecache.monitoring.PageAccessCounters;
+import org.neo4j.io.pagecache.monitoring.PageCursorOrigin;
 import org.neo4j.io.pagecache.tracing.FlushEvent;
 import org.neo4j.io.pagecache.tracing.FlushEventOpportunity;
 import org.neo4j.io.pagecache.tracing.MajorFlushEvent;
 import org.neo4j.io.pagecache.tracing.PageCacheTracer;
 import org.neo4j.io.pagecache.tracing.PageFaultEvent;
+import org.neo4j.io.pagecache.tracing.PinEvent;
 import org.neo4j.unsafe.impl.internal.dragons.UnsafeUtil;
 
 final class MuninnPagedFile implements PagedFile
@@ -49,6 +58,9 @@ final class MuninnPagedFile implements PagedFile
     private static final int translationTableChunkArrayBase = UnsafeUtil.arrayBaseOffset( MuninnPage[].class );
     private static final int translationTableChunkArrayScale = UnsafeUtil.arrayIndexScale( MuninnPage[].class );
 
+    private static final int maxReadAheadsInFlight = Integer.getInteger(
+            "org.neo4j.io.pagecache.impl.muninn.MuninnPagedFile.maxReadAheadsInFlight", 4 );
+
     private static final long headerStateOffset =
             UnsafeUtil.getFieldOffset( MuninnPagedFile.class, "headerState" );
     private static final int headerStateRefCountShift = 48;
@@ -59,6 +71,7 @@ final class MuninnPagedFile implements PagedFile
     final MuninnPageCache pageCache;
     final int filePageSize;
     final PageCacheTracer tracer;
+    final PageAccessCounters counters;
 
     // This is the table where we translate file-page-ids to cache-page-ids. Only one thread can perform a resize at
     // a time, and we ensure this mutual exclusion using the monitor lock on this MuninnPagedFile object.
@@ -74,6 +87,10 @@ final class MuninnPagedFile implements PagedFile
     // Used to trace the causes of any exceptions from getLastPageId.
     private volatile Exception closeStackTrace;
 
+    // The number of read-ahead tasks that have been started for this file, and not yet finished. Unmapping waits for
+    // them to finish before it closes the swapper, since they read through it.
+    private final AtomicInteger readAheadsInFlight = new AtomicInteger();
+
     /**
      * The header state includes both the reference count of the PagedFile – 15 bits – and the ID of the last page in
      * the file – 48 bits, plus an empty file marker bit. Because our pages are usually 2^13 bytes, this means that we
@@ -105,6 +122,7 @@ final class MuninnPagedFile implements PagedFile
         this.filePageSize = filePageSize;
         this.cursorPool = new CursorPool( this );
         this.tracer = tracer;
+        this.counters = tracer.countersForFile( file );
         this.exclusiveMapping = exclusiveMapping;
 
         // The translation table is an array of arrays of references to either null, MuninnPage objects, or Latch
@@ -216,6 +234,42 @@ final class MuninnPagedFile implements PagedFile
         }
     }
 
+    @Override
+    public boolean peek( long pageId, int offset, byte[] target, int length )
+    {
+        if ( offset < 0 || length < 0 || offset + length > filePageSize || length > target.length )
+        {
+            return false;
+        }
+        int chunkId = computeChunkId( pageId );
+        Object[][] tt = translationTable;
+        if ( pageId < 0 || chunkId >= tt.length )
+        {
+            return false;
+        }
+        Object item = UnsafeUtil.getObjectVolatile( tt[chunkId], computeChunkOffset( pageId ) );
+        if ( item == null || item.getClass() != MuninnPage.class )
+        {
+            // The page is not in memory, or it is being faulted in right now.
+            return false;
+        }
+        MuninnPage page = (MuninnPage) item;
+        long stamp = page.tryOptimisticReadLock();
+        if ( !page.isBoundTo( swapper, pageId ) )
+        {
+            return false;
+        }
+        UnsafeUtil.copyMemory( page.address() + offset, target, length );
+        if ( !page.validateReadLock( stamp ) )
+        {
+            return false;
+        }
+        pageCache.evictionPolicy.pageHit( page, false );
+        counters.hit();
+        pageCache.originCounters[PageCursorOrigin.current().ordinal()].hit();
+        return true;
+    }
+
     @Override
     public void flushAndForce() throws IOException
     {
@@ -231,26 +285,54 @@ final class MuninnPagedFile implements PagedFile
         }
         try ( MajorFlushEvent flushEvent = tracer.beginFileFlush( swapper ) )
         {
-            flushAndForceInternal( flushEvent.flushEventOpportunity(), false, limiter );
+            flushAndForceInternal( flushEvent.flushEventOpportunity(), false, limiter, Long.MAX_VALUE );
             syncDevice();
         }
     }
 
     void flushAndForceForClose() throws IOException
     {
+        awaitReadAheads();
         try ( MajorFlushEvent flushEvent = tracer.beginFileFlush( swapper ) )
         {
-            flushAndForceInternal( flushEvent.flushEventOpportunity(), true, IOLimiter.unlimited() );
+            flushAndForceInternal( flushEvent.flushEventOpportunity(), true, IOLimiter.unlimited(), Long.MAX_VALUE );
             syncDevice();
         }
     }
 
-    void flushAndForceInternal( FlushEventOpportunity flushOpportunity, boolean forClosing, IOLimiter limiter )
-            throws IOException
+    /**
+     * @param beforeEpoch only pages that were dirtied in a flush epoch before this one are written.
+     */
+    void flushAndForceInternal( FlushEventOpportunity flushOpportunity, boolean forClosing, IOLimiter limiter,
+            long beforeEpoch ) throws IOException
+    {
+        flushDirtyPages( flushOpportunity, forClosing, false, limiter, beforeEpoch );
+        swapper.force();
+    }
+
+    /**
+     * Write out the dirty pages of this file in the background, without forcing the file afterwards.
+     * <p>
+     * Unlike a flush for a checkpoint, this will skip pages that are already being flushed, or that are being
+     * faulted in or evicted, rather than waiting for them. Those pages are left for the next background flush,
+     * or for the checkpoint.
+     *
+     * @return the number of pages that were written.
+     */
+    int flushInBackground( FlushEventOpportunity flushOpportunity, IOLimiter limiter ) throws IOException
+    {
+        return flushDirtyPages( flushOpportunity, false, true, limiter, Long.MAX_VALUE );
+    }
+
+    private int flushDirtyPages(
+            FlushEventOpportunity flushOpportunity, boolean forClosing, boolean background, IOLimiter limiter,
+            long beforeEpoch ) throws IOException
     {
         // TODO it'd be awesome if, on Linux, we'd call sync_file_range(2) instead of fsync
         Flushable flushable = swapper::force;
+        int pagesFlushed = 0;
         MuninnPage[] pages = new MuninnPage[translationTableChunkSize];
+        long[] dirtyEpochs = new long[translationTableChunkSize];
         long filePageId = -1; // Start at -1 because we increment at the *start* of the chunk-loop iteration.
         long limiterStamp = IOLimiter.INITIAL_STAMP;
         Object[][] tt = this.translationTable;
@@ -275,13 +357,18 @@ final class MuninnPagedFile implements PagedFile
                         MuninnPage page = (MuninnPage) element;
                         if ( !(forClosing? page.tryExclusiveLock() : page.tryFlushLock()) )
                         {
+                            if ( background )
+                            {
+                                break;
+                            }
                             continue;
                         }
-                        if ( page.isBoundTo( swapper, filePageId ) && page.isDirty() )
+                        if ( page.isBoundTo( swapper, filePageId ) && page.isDirty() &&
+                             page.dirtyEpoch() < beforeEpoch )
                         {
                             // The page is still bound to the expected file and file page id after we locked it,
-                            // so we didn't race with eviction and faulting, and the page is dirty.
-                            // So we add it to our IO vector.
+                            // so we didn't race with eviction and faulting, and the page is dirty, with changes
+                            // from before the epoch we flush up to. So we add it to our IO vector.
                             pages[pagesGrabbed] = page;
                             pagesGrabbed++;
                             continue chunkLoop;
@@ -299,24 +386,25 @@ final class MuninnPagedFile implements PagedFile
                 }
                 if ( pagesGrabbed > 0 )
                 {
-                    vectoredFlush( pages, pagesGrabbed, flushOpportunity, forClosing );
+                    vectoredFlush( pages, dirtyEpochs, pagesGrabbed, flushOpportunity, forClosing );
                     limiterStamp = limiter.maybeLimitIO( limiterStamp, pagesGrabbed, flushable );
+                    pagesFlushed += pagesGrabbed;
                     pagesGrabbed = 0;
                 }
             }
             if ( pagesGrabbed > 0 )
             {
-                vectoredFlush( pages, pagesGrabbed, flushOpportunity, forClosing );
+                vectoredFlush( pages, dirtyEpochs, pagesGrabbed, flushOpportunity, forClosing );
                 limiterStamp = limiter.maybeLimitIO( limiterStamp, pagesGrabbed, flushable );
+                pagesFlushed += pagesGrabbed;
             }
         }
-
-        swapper.force();
+        return pagesFlushed;
     }
 
     private void vectoredFlush(
-            MuninnPage[] pages, int pagesGrabbed, FlushEventOpportunity flushOpportunity, boolean forClosing )
-            throws IOException
+            MuninnPage[] pages, long[] dirtyEpochs, int pagesGrabbed, FlushEventOpportunity flushOpportunity,
+            boolean forClosing ) throws IOException
     {
         FlushEvent flush = null;
         try
@@ -330,6 +418,7 @@ final class MuninnPagedFile implements PagedFile
             for ( int j = 0; j < pagesGrabbed; j++ )
             {
                 // If the flush fails, we'll undo this
+                dirtyEpochs[j] = pages[j].dirtyEpoch();
                 pages[j].markAsClean();
             }
 
@@ -340,6 +429,7 @@ final class MuninnPagedFile implements PagedFile
             flush.addBytesWritten( bytesWritten );
             flush.addPagesFlushed( pagesGrabbed );
             flush.done();
+            counters.flushed( pagesGrabbed );
 
             // There are now 0 'grabbed' pages
         }
@@ -348,7 +438,7 @@ final class MuninnPagedFile implements PagedFile
             // Undo marking the pages as clean
             for ( int j = 0; j < pagesGrabbed; j++ )
             {
-                pages[j].markAsDirty();
+                pages[j].markAsDirty( dirtyEpochs[j] );
             }
             if ( flush != null )
             {
@@ -507,6 +597,185 @@ final class MuninnPagedFile implements PagedFile
         return pageCache.grabFreeAndExclusivelyLockedPage( faultEvent );
     }
 
+    /**
+     * Start reading the given range of file pages into the cache on a background thread, so that a cursor that is
+     * moving sequentially through the file will find them already loaded. This is only a hint, and nothing is read if
+     * the range starts beyond the end of the file, or if too many read-aheads are already in flight for this file.
+     * @param scan 'true' if the pages are read ahead of a {@link PagedFile#PF_SEQUENTIAL_SCAN} cursor.
+     */
+    void startReadAhead( long startFilePageId, int pageCount, boolean scan )
+    {
+        long state = getHeaderState();
+        if ( refCountOf( state ) == 0 || startFilePageId > (state & headerStateLastPageIdMask) )
+        {
+            return;
+        }
+        if ( readAheadsInFlight.incrementAndGet() > maxReadAheadsInFlight )
+        {
+            readAheadsInFlight.decrementAndGet();
+            return;
+        }
+        try
+        {
+            pageCache.startBackgroundTask( new ReadAheadTask( pageCache, this, startFilePageId, pageCount, scan ) );
+        }
+        catch ( RuntimeException e )
+        {
+            readAheadsInFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Fault in the file pages in the given range that are neither loaded nor being faulted in by someone else, with
+     * one vectored read for each run of consecutive such pages. The slots of the pages are latched in the
+     * translation table while we read, just like for any other page fault, so cursors that want these pages in the
+     * meantime will wait for us rather than fault them in a second time. The read-ahead as a whole is traced as a
+     * single page fault.
+     */
+    void readAhead( long startFilePageId, int pageCount, boolean scan ) throws IOException
+    {
+        try
+        {
+            long state = getHeaderState();
+            if ( refCountOf( state ) == 0 )
+            {
+                return;
+            }
+            long endFilePageId = Math.min( startFilePageId + pageCount, (state & headerStateLastPageIdMask) + 1 );
+            PinEvent pinEvent = tracer.beginPin( false, startFilePageId, swapper );
+            PageFaultEvent faultEvent = pinEvent.beginPageFault();
+            try
+            {
+                readAhead( startFilePageId, endFilePageId, pageCount, scan, faultEvent );
+                faultEvent.done();
+            }
+            catch ( Throwable throwable )
+            {
+                faultEvent.done( throwable );
+                throw throwable;
+            }
+            finally
+            {
+                pinEvent.done();
+            }
+        }
+        finally
+        {
+            readAheadsInFlight.decrementAndGet();
+        }
+    }
+
+    private void readAhead( long startFilePageId, long endFilePageId, int pageCount, boolean scan,
+                            PageFaultEvent faultEvent ) throws IOException
+    {
+        MuninnPage[] pages = new MuninnPage[pageCount];
+        BinaryLatch[] latches = new BinaryLatch[pageCount];
+        int runLength = 0;
+        long filePageId = startFilePageId;
+        try
+        {
+            for ( ; filePageId < endFilePageId; filePageId++ )
+            {
+                Object[][] tt = this.translationTable;
+                int chunkId = computeChunkId( filePageId );
+                if ( chunkId >= tt.length )
+                {
+                    // No cursor has gotten this far yet, so the file must have shrunk. Don't bother.
+                    break;
+                }
+                BinaryLatch latch = new BinaryLatch();
+                if ( !UnsafeUtil.compareAndSwapObject( tt[chunkId], computeChunkOffset( filePageId ), null, latch ) )
+                {
+                    // The page is already loaded, or someone else is faulting it in.
+                    int length = runLength;
+                    runLength = 0;
+                    readAheadRun( pages, latches, filePageId - length, length, scan, faultEvent );
+                    continue;
+                }
+                MuninnPage page;
+                try
+                {
+                    page = grabFreeAndExclusivelyLockedPage( faultEvent );
+                }
+                catch ( Throwable throwable )
+                {
+                    UnsafeUtil.putObjectVolatile( tt[chunkId], computeChunkOffset( filePageId ), null );
+                    latch.release();
+                    throw throwable;
+                }
+                page.initBuffer();
+                page.beginVectoredFault( swapper, filePageId );
+                pages[runLength] = page;
+                latches[runLength] = latch;
+                runLength++;
+            }
+            int length = runLength;
+            runLength = 0;
+            readAheadRun( pages, latches, filePageId - length, length, scan, faultEvent );
+        }
+        catch ( Throwable throwable )
+        {
+            for ( int i = 0; i < runLength; i++ )
+            {
+                finishReadAhead( pages[i], latches[i], filePageId - runLength + i, false, scan );
+            }
+            throw throwable;
+        }
+    }
+
+    private void readAheadRun( MuninnPage[] pages, BinaryLatch[] latches, long startFilePageId, int length,
+                               boolean scan, PageFaultEvent faultEvent ) throws IOException
+    {
+        if ( length == 0 )
+        {
+            return;
+        }
+        boolean loaded = false;
+        try
+        {
+            long bytesRead = swapper.read( startFilePageId, pages, 0, length );
+            faultEvent.addBytesRead( bytesRead );
+            loaded = true;
+        }
+        finally
+        {
+            for ( int i = 0; i < length; i++ )
+            {
+                finishReadAhead( pages[i], latches[i], startFilePageId + i, loaded, scan );
+                pages[i] = null;
+                latches[i] = null;
+            }
+        }
+    }
+
+    private void finishReadAhead( MuninnPage page, BinaryLatch latch, long filePageId, boolean loaded, boolean scan )
+    {
+        Object[] chunk = translationTable[computeChunkId( filePageId )];
+        long chunkOffset = computeChunkOffset( filePageId );
+        if ( loaded )
+        {
+            page.completeVectoredFault( swapper );
+            pageCache.evictionPolicy.pageFaulted( page, scan );
+            // Publish the page before we unlock it, as in MuninnPageCursor.pageFault.
+            UnsafeUtil.putObjectVolatile( chunk, chunkOffset, page );
+        }
+        else
+        {
+            // The page is considered loaded but is not bound, so eviction will pick it up and free it again.
+            UnsafeUtil.putObjectVolatile( chunk, chunkOffset, null );
+        }
+        page.unlockExclusive();
+        latch.release();
+    }
+
+    private void awaitReadAheads()
+    {
+        while ( readAheadsInFlight.get() > 0 )
+        {
+            LockSupport.parkNanos( TimeUnit.MILLISECONDS.toNanos( 1 ) );
+        }
+    }
+
     /**
      * Remove the mapping of the given filePageId from the translation table, and return the evicted page object.
      * @param filePageId The id of the file page to evict.
@@ -519,6 +788,7 @@ final class MuninnPagedFile implements PagedFile
         Object[] chunk = translationTable[chunkId];
         Object element = UnsafeUtil.getAndSetObject( chunk, chunkOffset, null );
         assert element instanceof MuninnPage: "Expected to evict a MuninnPage but found " + element;
+        counters.evicted();
         return (MuninnPage) element;
     }
 
@@ -545,6 +815,30 @@ final class MuninnPagedFile implements PagedFile
         return tt;
     }
 
+    /**
+     * Collect the ids of the file pages that are currently bound to cache pages. This races with page faults and
+     * eviction, so the result is only a hint of what was resident at about this time, which is all that a warmup
+     * profile needs. File pages beyond what a BitSet can index are left out.
+     */
+    BitSet residentPages()
+    {
+        BitSet resident = new BitSet();
+        Object[][] tt = this.translationTable;
+        long filePageId = 0;
+        for ( Object[] chunk : tt )
+        {
+            for ( int i = 0; i < chunk.length && filePageId <= Integer.MAX_VALUE; i++, filePageId++ )
+            {
+                Object element = UnsafeUtil.getObjectVolatile( chunk, computeChunkOffset( filePageId ) );
+                if ( element instanceof MuninnPage && ((MuninnPage) element).isBoundTo( swapper, filePageId ) )
+                {
+                    resident.set( (int) filePageId );
+                }
+            }
+        }
+        return resident;
+    }
+
     private int computeNewRootTableLength( int maxChunkId )
     {
         // Grow by approx. 10% but always by at least one full chunk.
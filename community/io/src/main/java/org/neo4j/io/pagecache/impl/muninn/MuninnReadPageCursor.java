@@ -79,7 +79,6 @@ final class MuninnReadPageCursor extends MuninnPageCursor
     protected void pinCursorToPage( MuninnPage page, long filePageId, PageSwapper swapper )
     {
         reset( page );
-        page.incrementUsage();
     }
 
     @Override
@@ -42,7 +42,7 @@ final class MuninnWritePageCursor extends MuninnPageCursor
         {
             // Mark the page as dirty *after* our write access, to make sure it's dirty even if it was concurrently
             // flushed
-            page.markAsDirty();
+            page.markAsDirty( pagedFile.pageCache.currentFlushEpoch() );
             pinEvent.done();
             unlockPage( page );
         }
@@ -99,7 +99,6 @@ final class MuninnWritePageCursor extends MuninnPageCursor
         // after the reset() call, which means that if we throw, the cursor will
         // be closed and the page lock will be released.
         assertPagedFileStillMappedAndGetIdOfLastPage();
-        page.incrementUsage();
     }
 
     @Override
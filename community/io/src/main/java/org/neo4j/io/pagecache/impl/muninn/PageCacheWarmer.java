@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.List;
+
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.fs.StoreChannel;
+import org.neo4j.io.pagecache.PageCursor;
+
+import static org.neo4j.io.pagecache.PagedFile.PF_SHARED_READ_LOCK;
+
+/**
+ * Records which pages of every mapped file are resident in a {@link MuninnPageCache}, and loads them back in after
+ * a restart, so the cache does not have to warm up through random page faults under load.
+ *
+ * A profile is a bitmap of file page ids per mapped file, kept in the profile directory next to the store. Profiles
+ * are written to a temporary file that is then renamed over the old one, so a crash leaves either the old or the new
+ * profile behind. When the store lives on the NVM file system, so do the profiles.
+ */
+public class PageCacheWarmer
+{
+    public static final String SUFFIX_CACHEPROF = ".cacheprof";
+    private static final String SUFFIX_TEMPORARY = ".tmp";
+    private static final long PROFILE_MAGIC = 0x4E43_5052_4F46_0001L;
+    // Progress is reported to the tracer every this many pages.
+    private static final int REPORT_BATCH_SIZE = 1024;
+
+    private final MuninnPageCache pageCache;
+    private final FileSystemAbstraction fs;
+    private final File profileDirectory;
+    private volatile boolean stopped;
+
+    public PageCacheWarmer( MuninnPageCache pageCache, FileSystemAbstraction fs, File profileDirectory )
+    {
+        this.pageCache = pageCache;
+        this.fs = fs;
+        this.profileDirectory = profileDirectory;
+    }
+
+    /**
+     * Write a profile of the resident pages of every currently mapped file.
+     *
+     * @return the number of profiles written.
+     */
+    public synchronized int profile() throws IOException
+    {
+        List<MuninnPagedFile> files = pageCache.retainMappedFiles();
+        try
+        {
+            fs.mkdirs( profileDirectory );
+            for ( MuninnPagedFile file : files )
+            {
+                writeProfile( file, file.residentPages() );
+            }
+            return files.size();
+        }
+        finally
+        {
+            release( files );
+        }
+    }
+
+    /**
+     * Load the pages recorded in the profiles of the currently mapped files, in file order, one file at a time.
+     * Files without a profile, or with a profile that was recorded for a different page size, are skipped. Stops
+     * once as many pages have been loaded as fit in the cache, or when {@link #stop()} is called.
+     *
+     * @return the number of pages loaded.
+     */
+    public synchronized long reheat() throws IOException
+    {
+        List<MuninnPagedFile> files = pageCache.retainMappedFiles();
+        try
+        {
+            long budget = pageCache.maxCachedPages();
+            long pagesLoaded = 0;
+            for ( MuninnPagedFile file : files )
+            {
+                if ( stopped || pagesLoaded >= budget )
+                {
+                    break;
+                }
+                BitSet profile = readProfile( file );
+                if ( profile != null )
+                {
+                    pagesLoaded += reheat( file, profile, budget - pagesLoaded );
+                }
+            }
+            return pagesLoaded;
+        }
+        finally
+        {
+            release( files );
+        }
+    }
+
+    /**
+     * Make an ongoing or later {@link #reheat()} return early. Profiling is not affected.
+     */
+    public void stop()
+    {
+        stopped = true;
+    }
+
+    private long reheat( MuninnPagedFile file, BitSet profile, long budget ) throws IOException
+    {
+        long pagesLoaded = 0;
+        long pagesReported = 0;
+        // A read cursor faults each page in without growing the file, so a stale profile cannot extend it.
+        try ( PageCursor cursor = file.io( 0, PF_SHARED_READ_LOCK ) )
+        {
+            for ( int filePageId = profile.nextSetBit( 0 );
+                  filePageId >= 0 && pagesLoaded < budget && !stopped;
+                  filePageId = profile.nextSetBit( filePageId + 1 ) )
+            {
+                if ( !cursor.next( filePageId ) )
+                {
+                    break; // The file has shrunk since the profile was taken.
+                }
+                pagesLoaded++;
+                if ( pagesLoaded - pagesReported == REPORT_BATCH_SIZE )
+                {
+                    file.tracer.pagesWarmedUp( file.file(), REPORT_BATCH_SIZE );
+                    pagesReported = pagesLoaded;
+                }
+            }
+        }
+        if ( pagesLoaded > pagesReported )
+        {
+            file.tracer.pagesWarmedUp( file.file(), pagesLoaded - pagesReported );
+        }
+        return pagesLoaded;
+    }
+
+    private void writeProfile( MuninnPagedFile file, BitSet resident ) throws IOException
+    {
+        byte[] path = file.file().getPath().getBytes( StandardCharsets.UTF_8 );
+        long[] words = resident.toLongArray();
+        int size = Long.BYTES + Integer.BYTES * 3 + path.length + words.length * Long.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate( size );
+        buffer.putLong( PROFILE_MAGIC );
+        buffer.putInt( path.length ).put( path );
+        buffer.putInt( file.pageSize() );
+        buffer.putInt( words.length );
+        for ( long word : words )
+        {
+            buffer.putLong( word );
+        }
+        buffer.flip();
+
+        File profileFile = profileFile( file );
+        File temporaryFile = new File( profileDirectory, profileFile.getName() + SUFFIX_TEMPORARY );
+        fs.deleteFile( temporaryFile );
+        try ( StoreChannel channel = fs.open( temporaryFile, "rw" ) )
+        {
+            channel.writeAll( buffer, 0 );
+            channel.force( false );
+        }
+        fs.deleteFile( profileFile );
+        fs.renameFile( temporaryFile, profileFile );
+    }
+
+    /**
+     * @return the recorded resident pages of the given file, or null if there is no usable profile for it.
+     */
+    private BitSet readProfile( MuninnPagedFile file ) throws IOException
+    {
+        File profileFile = profileFile( file );
+        if ( !fs.fileExists( profileFile ) )
+        {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate( Math.toIntExact( fs.getFileSize( profileFile ) ) );
+        try ( StoreChannel channel = fs.open( profileFile, "r" ) )
+        {
+            while ( buffer.hasRemaining() )
+            {
+                if ( channel.read( buffer, buffer.position() ) <= 0 )
+                {
+                    break;
+                }
+            }
+        }
+        buffer.flip();
+        byte[] expectedPath = file.file().getPath().getBytes( StandardCharsets.UTF_8 );
+        if ( buffer.remaining() < Long.BYTES + Integer.BYTES || buffer.getLong() != PROFILE_MAGIC ||
+             buffer.getInt() != expectedPath.length || buffer.remaining() < expectedPath.length + Integer.BYTES * 2 )
+        {
+            return null;
+        }
+        byte[] path = new byte[expectedPath.length];
+        buffer.get( path );
+        if ( !new String( path, StandardCharsets.UTF_8 ).equals( file.file().getPath() ) ||
+             buffer.getInt() != file.pageSize() )
+        {
+            return null;
+        }
+        int wordCount = buffer.getInt();
+        if ( wordCount < 0 || buffer.remaining() < wordCount * Long.BYTES )
+        {
+            return null;
+        }
+        long[] words = new long[wordCount];
+        buffer.asLongBuffer().get( words );
+        return BitSet.valueOf( words );
+    }
+
+    private File profileFile( MuninnPagedFile file )
+    {
+        return new File( profileDirectory, file.file().getName() + SUFFIX_CACHEPROF );
+    }
+
+    private static void release( List<MuninnPagedFile> files ) throws IOException
+    {
+        IOException exception = null;
+        for ( MuninnPagedFile file : files )
+        {
+            try
+            {
+                file.close();
+            }
+            catch ( IOException e )
+            {
+                if ( exception == null )
+                {
+                    exception = e;
+                }
+                else
+                {
+                    exception.addSuppressed( e );
+                }
+            }
+        }
+        if ( exception != null )
+        {
+            throw exception;
+        }
+    }
+}
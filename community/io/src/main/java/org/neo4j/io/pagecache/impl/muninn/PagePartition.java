@@ -0,0 +1,497 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.neo4j.io.pagecache.tracing.EvictionEvent;
+import org.neo4j.io.pagecache.tracing.EvictionRunEvent;
+import org.neo4j.io.pagecache.tracing.PageFaultEvent;
+import org.neo4j.unsafe.impl.internal.dragons.MemoryManager;
+import org.neo4j.unsafe.impl.internal.dragons.UnsafeUtil;
+
+import static org.neo4j.unsafe.impl.internal.dragons.FeatureToggles.getInteger;
+
+/**
+ * A stripe of the pages of a {@link MuninnPageCache}, with its own memory, free list and eviction thread. Faulting
+ * threads are spread over the partitions by thread id, so threads in different partitions don't contend on the same
+ * free list, and each partition is kept stocked with free pages by its own eviction thread.
+ * <p>
+ * Partitions are not bound to NUMA nodes, and nothing places the memory of a partition on any particular node.
+ */
+final class PagePartition
+{
+    // Keep this many pages free and ready for use in faulting.
+    // This will be truncated to be no more than half of the number of pages
+    // in the partition.
+    private static final int pagesToKeepFree = getInteger(
+            MuninnPageCache.class, "pagesToKeepFree", 30 );
+
+    // This is how many times that, during cooperative eviction, we'll iterate through the entire set of pages looking
+    // for a page to evict, before we give up and throw CacheLiveLockException. This MUST be greater than 1.
+    private static final int cooperativeEvictionLiveLockThreshold = getInteger(
+            MuninnPageCache.class, "cooperativeEvictionLiveLockThreshold", 100 );
+
+    // The field offset to unsafely access the freelist field.
+    private static final long freelistOffset =
+            UnsafeUtil.getFieldOffset( PagePartition.class, "freelist" );
+
+    // This is used as a poison-pill signal in the freelist, to inform any
+    // page faulting thread that it is now no longer possible to queue up and
+    // wait for more pages to be evicted, because the page cache has been shut
+    // down.
+    private static final FreePage shutdownSignal = new FreePage( null );
+
+    private final MuninnPageCache pageCache;
+    private final int partitionId;
+    private final int keepFree;
+    private final MuninnPage[] pages;
+    private final MemoryManager memoryManager;
+    private final LongAdder faults = new LongAdder();
+
+    // The freelist is a thread-safe linked-list of 2 types of objects. A link
+    // can either be a MuninnPage or a FreePage.
+    // Initially, most of the links are MuninnPages that are ready for the
+    // taking. Then towards the end, we have the last bunch of pages linked
+    // through FreePage objects. We make this transition because, once a
+    // MuninnPage has been removed from the list, it cannot be added back. The
+    // reason is that the MuninnPages are reused, and adding them back into the
+    // freelist would expose us to the ABA-problem, which can cause cycles to
+    // form. The FreePage objects, however, are single-use such that they don't
+    // exhibit the ABA-problem. In other words, eviction will never add
+    // MuninnPages to the freelist; it will only add free pages through a new
+    // FreePage object.
+    @SuppressWarnings( "unused" ) // This field is accessed via Unsafe.
+    private volatile Object freelist;
+
+    // The thread that runs the eviction algorithm. We unpark this when we've run out of
+    // free pages to grab.
+    private volatile Thread evictionThread;
+    // True if the eviction thread is currently parked, without someone having
+    // signalled it to wake up. This is used as a weak guard for unparking the
+    // eviction thread, because calling unpark too much (from many page
+    // faulting threads) can cause contention on the locks protecting that
+    // threads scheduling meta-data in the OS kernel.
+    private volatile boolean evictorParked;
+
+    PagePartition( MuninnPageCache pageCache, int partitionId, MuninnPage[] allPages, int firstPageIndex,
+                   int pageCount, int cachePageSize, long alignment, File hugePageDirectory )
+    {
+        this.pageCache = pageCache;
+        this.partitionId = partitionId;
+        this.keepFree = Math.min( pagesToKeepFree, pageCount / 2 );
+        this.pages = new MuninnPage[pageCount];
+
+        // Each partition allocates its page frames from its own memory manager.
+        long expectedMaxMemory = ((long) pageCount) * cachePageSize; // cast to long prevents overflow
+        this.memoryManager = new MemoryManager( expectedMaxMemory, alignment, hugePageDirectory );
+        Object pageList = null;
+        int pageIndex = pageCount;
+        while ( pageIndex --> 0 )
+        {
+            MuninnPage page = new MuninnPage( cachePageSize, memoryManager );
+            page.tryExclusiveLock(); // All pages in the free-list are exclusively locked, and unlocked by page fault.
+            pages[pageIndex] = page;
+            allPages[firstPageIndex + pageIndex] = page;
+
+            if ( pageList == null )
+            {
+                FreePage freePage = new FreePage( page );
+                freePage.setNext( null );
+                pageList = freePage;
+            }
+            else if ( pageList instanceof FreePage
+                    && ((FreePage) pageList).count < keepFree )
+            {
+                FreePage freePage = new FreePage( page );
+                freePage.setNext( (FreePage) pageList );
+                pageList = freePage;
+            }
+            else
+            {
+                page.nextFree = pageList;
+                pageList = page;
+            }
+        }
+        UnsafeUtil.putObjectVolatile( this, freelistOffset, pageList );
+    }
+
+    int getPartitionId()
+    {
+        return partitionId;
+    }
+
+    /**
+     * Allocate all of the memory of this partition up front, rather than as pages are faulted in for the first time.
+     * This is done by the eviction thread of the partition, so the partitions allocate their memory in parallel.
+     * @param touch {@code true} if the memory should also be written to, so the operating system maps and zeroes it.
+     */
+    void preallocateMemory( boolean touch )
+    {
+        memoryManager.preallocate( touch );
+        pageCache.tracer.memoryPreallocated(
+                ((long) pages.length) * pageCache.pageSize(), memoryManager.hugePageBytes() );
+    }
+
+    /**
+     * Take a page from the free list of this partition, if there is one. This never waits for eviction.
+     * @return an exclusively locked free page, or {@code null} if the free list is empty.
+     */
+    MuninnPage tryGrabFreePage()
+    {
+        for (;;)
+        {
+            Object current = getFreelistHead();
+            if ( current == null )
+            {
+                return null;
+            }
+            MuninnPage page = tryGrabFreelistHead( current );
+            if ( page != null )
+            {
+                faults.increment();
+                return page;
+            }
+        }
+    }
+
+    MuninnPage grabFreeAndExclusivelyLockedPage( PageFaultEvent faultEvent ) throws IOException
+    {
+        // Review the comment on the freelist field before making changes to
+        // this part of the code.
+        // Whatever the case, we're going to the head-pointer of the freelist,
+        // and in doing so, we can discover a number of things.
+        // We can discover a MuninnPage object, in which case we can try to
+        // CAS the freelist pointer to the value of the MuninnPage.nextFree
+        // pointer, and if this succeeds then we've grabbed that page.
+        // We can discover a FreePage object, in which case we'll do a similar
+        // dance by attempting to CAS the freelist to the FreePage objects next
+        // pointer, and again, if we succeed then we've grabbed the MuninnPage
+        // given by the FreePage object.
+        // We can discover a null-pointer, in which case the freelist has just
+        // been emptied for whatever it contained before. New FreePage objects
+        // are eventually going to be added to the freelist, but we are not
+        // going to wait around for that to happen. If the freelist is empty,
+        // then we do our own eviction to get a free page.
+        // If we find a FreePage object on the freelist, then it is important
+        // to check and see if it is the shutdownSignal instance. If that's the
+        // case, then the page cache has been shut down, and we should throw an
+        // exception from our page fault routine.
+        for (;;)
+        {
+            pageCache.assertHealthy();
+            Object current = getFreelistHead();
+            MuninnPage page;
+            if ( current == null )
+            {
+                unparkEvictor();
+                page = cooperativelyEvict( faultEvent );
+            }
+            else
+            {
+                page = tryGrabFreelistHead( current );
+            }
+            if ( page != null )
+            {
+                faults.increment();
+                return page;
+            }
+        }
+    }
+
+    private MuninnPage tryGrabFreelistHead( Object current )
+    {
+        if ( current instanceof MuninnPage )
+        {
+            MuninnPage page = (MuninnPage) current;
+            if ( compareAndSetFreelistHead( page, page.nextFree ) )
+            {
+                return page;
+            }
+        }
+        else if ( current instanceof FreePage )
+        {
+            FreePage freePage = (FreePage) current;
+            if ( freePage == shutdownSignal )
+            {
+                throw new IllegalStateException( "The PageCache has been shut down." );
+            }
+
+            if ( compareAndSetFreelistHead( freePage, freePage.next ) )
+            {
+                return freePage.page;
+            }
+        }
+        return null;
+    }
+
+    private MuninnPage cooperativelyEvict( PageFaultEvent faultEvent ) throws IOException
+    {
+        int iterations = 0;
+        int clockArm = ThreadLocalRandom.current().nextInt( pages.length );
+        MuninnPage page;
+        boolean evicted = false;
+        do
+        {
+            pageCache.assertHealthy();
+            if ( getFreelistHead() != null )
+            {
+                return null;
+            }
+
+            if ( clockArm == pages.length )
+            {
+                if ( iterations == cooperativeEvictionLiveLockThreshold )
+                {
+                    throw cooperativeEvictionLiveLock();
+                }
+                iterations++;
+                clockArm = 0;
+            }
+
+            page = pages[clockArm];
+            if ( page == null )
+            {
+                throw new IllegalStateException(
+                        "The PageCache has been shut down" );
+            }
+
+            if ( page.isLoaded() && pageCache.evictionPolicy.shouldEvict( page ) )
+            {
+                if ( page.tryExclusiveLock() )
+                {
+                    // We got the write lock. Time to evict the page!
+                    try ( EvictionEvent evictionEvent = faultEvent.beginEviction() )
+                    {
+                        evicted = page.isLoaded() && pageCache.evictPage( page, evictionEvent );
+                    }
+                    finally
+                    {
+                        if ( !evicted )
+                        {
+                            page.unlockExclusive();
+                        }
+                    }
+                }
+            }
+            clockArm++;
+        }
+        while ( !evicted );
+        return page;
+    }
+
+    private CacheLiveLockException cooperativeEvictionLiveLock()
+    {
+        return new CacheLiveLockException(
+                "Live-lock encountered when trying to cooperatively evict a page during page fault. " +
+                "This happens when we want to access a page that is not in memory, so it has to be faulted in, but " +
+                "there are no free memory pages available to accept the page fault, so we have to evict an existing " +
+                "page, but all the in-memory pages are currently locked by other accesses. If those other access are " +
+                "waiting for our page fault to make progress, then we have a live-lock, and the only way we can get " +
+                "out of it is by throwing this exception. This should be extremely rare, but can happen if the page " +
+                "cache size is tiny and the number of concurrently running transactions is very high. You should be " +
+                "able to get around this problem by increasing the amount of memory allocated to the page cache " +
+                "with the `dbms.memory.pagecache.size` setting. Please contact Neo4j support if you need help tuning " +
+                "your database." );
+    }
+
+    void unparkEvictor()
+    {
+        if ( evictorParked )
+        {
+            evictorParked = false;
+            LockSupport.unpark( evictionThread );
+        }
+    }
+
+    private void parkEvictor( long parkNanos )
+    {
+        // Only called from the background eviction thread!
+        evictorParked = true;
+        LockSupport.parkNanos( this, parkNanos );
+        evictorParked = false;
+    }
+
+    private Object getFreelistHead()
+    {
+        return UnsafeUtil.getObjectVolatile( this, freelistOffset );
+    }
+
+    private boolean compareAndSetFreelistHead( Object expected, Object update )
+    {
+        return UnsafeUtil.compareAndSwapObject(
+                this, freelistOffset, expected, update );
+    }
+
+    private Object getAndSetFreelistHead( Object newFreelistHead )
+    {
+        return UnsafeUtil.getAndSetObject(
+                this, freelistOffset, newFreelistHead );
+    }
+
+    /**
+     * Scan through all the pages of this partition, one by one, and decrement their usage stamps.
+     * If a usage reaches zero, we try-write-locking it, and if we get that lock,
+     * we evict the page. If we don't, we move on to the next page.
+     * Once we have enough free pages, we park our thread. Page-faulting will
+     * unpark our thread as needed.
+     */
+    void continuouslySweepPages()
+    {
+        evictionThread = Thread.currentThread();
+        int clockArm = 0;
+
+        while ( !pageCache.isClosed() )
+        {
+            int pageCountToEvict = parkUntilEvictionRequired( keepFree );
+            try ( EvictionRunEvent evictionRunEvent = pageCache.tracer.beginPageEvictions( pageCountToEvict ) )
+            {
+                clockArm = evictPages( pageCountToEvict, clockArm, evictionRunEvent );
+            }
+        }
+
+        // The last thing we do, is signalling the shutdown of the cache via
+        // the freelist. This signal is looked out for in grabFreePage.
+        getAndSetFreelistHead( shutdownSignal );
+    }
+
+    private int parkUntilEvictionRequired( int keepFree )
+    {
+        // Park until we're either interrupted, or the number of free pages drops
+        // bellow keepFree.
+        long parkNanos = TimeUnit.MILLISECONDS.toNanos( 10 );
+        for (;;)
+        {
+            parkEvictor( parkNanos );
+            if ( Thread.interrupted() || pageCache.isClosed() )
+            {
+                return 0;
+            }
+
+            Object freelistHead = getFreelistHead();
+
+            if ( freelistHead == null )
+            {
+                return keepFree;
+            }
+            else if ( freelistHead.getClass() == FreePage.class )
+            {
+                int availablePages = ((FreePage) freelistHead).count;
+                if ( availablePages < keepFree )
+                {
+                    return keepFree - availablePages;
+                }
+            }
+        }
+    }
+
+    int evictPages( int pageCountToEvict, int clockArm, EvictionRunEvent evictionRunEvent )
+    {
+        while ( pageCountToEvict > 0 && !pageCache.isClosed() )
+        {
+            if ( clockArm == pages.length )
+            {
+                clockArm = 0;
+            }
+            MuninnPage page = pages[clockArm];
+
+            if ( page == null )
+            {
+                // The page cache has been shut down.
+                return 0;
+            }
+
+            if ( page.isLoaded() && pageCache.evictionPolicy.shouldEvict( page ) )
+            {
+                if ( page.tryExclusiveLock() )
+                {
+                    // We got the lock.
+                    // Assume that the eviction is going to succeed, so that we
+                    // always make some kind of progress. This means that, if
+                    // we have a temporary outage of the storage system, for
+                    // instance if the drive is full, then we won't spin in
+                    // this forever. Instead, we'll eventually make our way
+                    // back out to the main loop, where we have a chance to
+                    // sleep for a little while in `parkUntilEvictionRequired`.
+                    // This reduces the CPU load and power usage in such a
+                    // scenario.
+                    pageCountToEvict--;
+                    boolean pageEvicted = false;
+
+                    try ( EvictionEvent evictionEvent = evictionRunEvent.beginEviction() )
+                    {
+                        pageEvicted = page.isLoaded() && pageCache.evictPage( page, evictionEvent );
+                        if ( pageEvicted )
+                        {
+                            Object current;
+                            FreePage freePage = new FreePage( page );
+                            do
+                            {
+                                current = getFreelistHead();
+                                freePage.setNext( (FreePage) current );
+                            }
+                            while ( !compareAndSetFreelistHead(
+                                    current, freePage ) );
+                        }
+                    }
+                    finally
+                    {
+                        if ( !pageEvicted )
+                        {
+                            // Pages we put into the free-list remain exclusively locked until a page fault unlocks
+                            // them. If we somehow failed to evict the page, then we need to make sure that we release
+                            // the exclusive lock.
+                            page.unlockExclusive();
+                        }
+                    }
+                }
+            }
+
+            clockArm++;
+        }
+
+        return clockArm;
+    }
+
+    long faults()
+    {
+        return faults.sum();
+    }
+
+    void close()
+    {
+        for ( int i = 0; i < pages.length; i++ )
+        {
+            pages[i] = null;
+        }
+
+        Thread thread = evictionThread;
+        if ( thread != null )
+        {
+            thread.interrupt();
+        }
+        evictionThread = null;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import java.io.IOException;
+
+/**
+ * This Runnable reads a range of file pages into the page cache ahead of a cursor that is moving sequentially
+ * through a file.
+ *
+ * @see MuninnPagedFile#readAhead(long, int, boolean)
+ */
+final class ReadAheadTask extends BackgroundTask
+{
+    private final MuninnPagedFile pagedFile;
+    private final long startFilePageId;
+    private final int pageCount;
+    private final boolean scan;
+
+    ReadAheadTask( MuninnPageCache pageCache, MuninnPagedFile pagedFile, long startFilePageId, int pageCount,
+                   boolean scan )
+    {
+        super( pageCache );
+        this.pagedFile = pagedFile;
+        this.startFilePageId = startFilePageId;
+        this.pageCount = pageCount;
+        this.scan = scan;
+    }
+
+    @Override
+    protected void run( MuninnPageCache pageCache )
+    {
+        try
+        {
+            pagedFile.readAhead( startFilePageId, pageCount, scan );
+        }
+        catch ( IOException | RuntimeException ignore )
+        {
+            // Read-ahead is only a hint. If the pages cannot be read now, then the cursor will run into the same
+            // problem when it faults them in itself, and report it then.
+        }
+    }
+}
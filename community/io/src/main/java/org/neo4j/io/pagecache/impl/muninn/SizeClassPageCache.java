@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.OpenOption;
+import java.util.Arrays;
+
+import org.neo4j.io.pagecache.IOLimiter;
+import org.neo4j.io.pagecache.PageCache;
+import org.neo4j.io.pagecache.PageCacheOpenOptions;
+import org.neo4j.io.pagecache.PageSwapperFactory;
+import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.io.pagecache.tracing.PageCacheTracer;
+
+/**
+ * A page cache with pages of several sizes. Each size class is a {@link MuninnPageCache} of its own, with its own
+ * pages, free list and eviction, so files with small pages do not take up large cache pages, and files with large
+ * pages do not have to be read a small page at a time.
+ *
+ * A file is mapped in the smallest size class that its file pages fit in, or in the size class where it is already
+ * mapped, if any. The {@link #pageSize()} of this page cache is the page size of the default size class, which is
+ * what files are mapped with unless they ask for something else.
+ */
+public class SizeClassPageCache implements PageCache
+{
+    private final MuninnPageCache[] sizeClasses;
+    private final int[] pageSizes;
+    private final int defaultPageSize;
+
+    /**
+     * @param cachePageSizes The cache page size of each size class, in ascending order.
+     * @param maxPages The number of pages of each size class.
+     * @param defaultPageSize The cache page size of the size class that is reported as the {@link #pageSize()}.
+     */
+    public SizeClassPageCache(
+            PageSwapperFactory swapperFactory,
+            int[] cachePageSizes,
+            int[] maxPages,
+            int defaultPageSize,
+            PageCacheTracer tracer,
+            EvictionPolicies evictionPolicy,
+            int partitions,
+            File hugePageDirectory,
+            boolean preTouchMemory )
+    {
+        if ( cachePageSizes.length == 0 || cachePageSizes.length != maxPages.length )
+        {
+            throw new IllegalArgumentException( "Expected a page count for each of the cache page sizes " +
+                                                Arrays.toString( cachePageSizes ) + ", but got " +
+                                                Arrays.toString( maxPages ) );
+        }
+        for ( int i = 1; i < cachePageSizes.length; i++ )
+        {
+            if ( cachePageSizes[i - 1] >= cachePageSizes[i] )
+            {
+                throw new IllegalArgumentException( "Cache page sizes must be distinct and in ascending order, " +
+                                                    "but were " + Arrays.toString( cachePageSizes ) );
+            }
+        }
+        if ( Arrays.binarySearch( cachePageSizes, defaultPageSize ) < 0 )
+        {
+            throw new IllegalArgumentException( "The default page size " + defaultPageSize + " is not one of the " +
+                                                "cache page sizes " + Arrays.toString( cachePageSizes ) );
+        }
+        this.sizeClasses = new MuninnPageCache[cachePageSizes.length];
+        for ( int i = 0; i < cachePageSizes.length; i++ )
+        {
+            sizeClasses[i] = new MuninnPageCache(
+                    swapperFactory, maxPages[i], cachePageSizes[i], tracer, evictionPolicy, partitions,
+                    hugePageDirectory, preTouchMemory );
+        }
+        this.pageSizes = cachePageSizes.clone();
+        this.defaultPageSize = defaultPageSize;
+    }
+
+    @Override
+    public synchronized PagedFile map( File file, int pageSize, OpenOption... openOptions ) throws IOException
+    {
+        File canonicalFile = file.getCanonicalFile();
+        for ( MuninnPageCache sizeClass : sizeClasses )
+        {
+            if ( sizeClass.isMapped( canonicalFile ) )
+            {
+                // Files that are already mapped can only be mapped again with the same page size, unless any page
+                // size will do. In that case the page size we ask for must fit the size class.
+                if ( Arrays.asList( openOptions ).contains( PageCacheOpenOptions.ANY_PAGE_SIZE ) )
+                {
+                    pageSize = Math.min( pageSize, sizeClass.pageSize() );
+                }
+                return sizeClass.map( file, pageSize, openOptions );
+            }
+        }
+        for ( MuninnPageCache sizeClass : sizeClasses )
+        {
+            if ( pageSize <= sizeClass.pageSize() )
+            {
+                return sizeClass.map( file, pageSize, openOptions );
+            }
+        }
+        throw new IllegalArgumentException(
+                "Cannot map files with a filePageSize (" + pageSize + ") that is greater than the " +
+                "largest cachePageSize (" + pageSizes[pageSizes.length - 1] + ")" );
+    }
+
+    @Override
+    public void flushAndForce() throws IOException
+    {
+        flushAndForce( IOLimiter.unlimited() );
+    }
+
+    @Override
+    public void flushAndForce( IOLimiter limiter ) throws IOException
+    {
+        for ( MuninnPageCache sizeClass : sizeClasses )
+        {
+            sizeClass.flushAndForce( limiter );
+        }
+    }
+
+    @Override
+    public synchronized long beginFlushEpoch()
+    {
+        // The size classes only ever begin epochs together, here, so they all agree on the current epoch
+        long epoch = 0;
+        for ( MuninnPageCache sizeClass : sizeClasses )
+        {
+            epoch = sizeClass.beginFlushEpoch();
+        }
+        return epoch;
+    }
+
+    @Override
+    public void flushAndForce( long epoch, IOLimiter limiter ) throws IOException
+    {
+        for ( MuninnPageCache sizeClass : sizeClasses )
+        {
+            sizeClass.flushAndForce( epoch, limiter );
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        IOException exception = null;
+        for ( MuninnPageCache sizeClass : sizeClasses )
+        {
+            try
+            {
+                sizeClass.close();
+            }
+            catch ( IOException | RuntimeException e )
+            {
+                if ( exception == null )
+                {
+                    exception = new IOException( "Failed to close the page cache", e );
+                }
+                else
+                {
+                    exception.addSuppressed( e );
+                }
+            }
+        }
+        if ( exception != null )
+        {
+            throw exception;
+        }
+    }
+
+    @Override
+    public int pageSize()
+    {
+        return defaultPageSize;
+    }
+
+    @Override
+    public int[] pageSizes()
+    {
+        return pageSizes.clone();
+    }
+
+    @Override
+    public int maxCachedPages()
+    {
+        int maxCachedPages = 0;
+        for ( MuninnPageCache sizeClass : sizeClasses )
+        {
+            maxCachedPages += sizeClass.maxCachedPages();
+        }
+        return maxCachedPages;
+    }
+
+    /**
+     * @return the size class with the given cache page size.
+     */
+    public MuninnPageCache sizeClass( int cachePageSize )
+    {
+        int index = Arrays.binarySearch( pageSizes, cachePageSize );
+        if ( index < 0 )
+        {
+            throw new IllegalArgumentException( "No size class with a cache page size of " + cachePageSize );
+        }
+        return sizeClasses[index];
+    }
+}
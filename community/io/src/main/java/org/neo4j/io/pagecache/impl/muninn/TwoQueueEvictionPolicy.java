@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.neo4j.io.pagecache.PageSwapper;
+
+/**
+ * See {@link EvictionPolicies#TWO_QUEUE}. This follows the full 2Q algorithm, with the clock sweep standing in for
+ * its queues:
+ * <ul>
+ * <li>A page fault puts the page on probation (A1in). Hits on probation do nothing, so the many pins that a scan or
+ * a burst of correlated accesses makes on the same page do not count as reuse.</li>
+ * <li>When the probation is larger than a quarter of the cache, the sweep evicts probationary pages and leaves the
+ * protected pages (Am) untouched. Otherwise it ages and evicts the protected pages as the clock policy does.</li>
+ * <li>Pages evicted from probation leave a ghost entry (A1out) behind, which is just the identity of the file page.
+ * A fault that finds a ghost puts the page straight into the protected set.</li>
+ * </ul>
+ * The ghost entries live in a direct mapped table of file page identities, half the size of the cache. A collision
+ * replaces the older entry, and may now and then let a page into the protected set that did not earn it. That is
+ * harmless, since it will just be aged out by the sweep.
+ */
+final class TwoQueueEvictionPolicy implements EvictionPolicy
+{
+    private static final int UNTRACKED = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final int maxProbationPages;
+    private final AtomicInteger probationPages = new AtomicInteger();
+    // Written by evicting threads, read by faulting threads, without synchronisation. A torn or stale read only
+    // makes for a wrong guess about a single page.
+    private final long[] ghosts;
+    private final int ghostMask;
+
+    TwoQueueEvictionPolicy( int maxPages )
+    {
+        this.maxProbationPages = Math.max( 1, maxPages / 4 );
+        int ghostCount = Integer.highestOneBit( Math.max( 2, maxPages / 2 ) );
+        this.ghosts = new long[ghostCount];
+        this.ghostMask = ghostCount - 1;
+    }
+
+    @Override
+    public void pageFaulted( MuninnPage page, boolean scan )
+    {
+        // A scan page is never let into the protected set, not even when it comes back.
+        if ( !scan && removeGhost( page.getSwapper(), page.getFilePageId() ) )
+        {
+            page.setEvictionState( PROTECTED );
+            page.incrementUsage();
+        }
+        else
+        {
+            page.setEvictionState( PROBATION );
+            probationPages.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void pageHit( MuninnPage page, boolean scan )
+    {
+        if ( !scan && page.getEvictionState() == PROTECTED )
+        {
+            page.incrementUsage();
+        }
+    }
+
+    @Override
+    public boolean shouldEvict( MuninnPage page )
+    {
+        int state = page.getEvictionState();
+        boolean probationIsFull = probationPages.get() > maxProbationPages;
+        if ( state == PROBATION )
+        {
+            return probationIsFull;
+        }
+        if ( state == UNTRACKED )
+        {
+            // The page fault into this page failed, so there is nothing worth keeping.
+            return true;
+        }
+        return !probationIsFull && page.decrementUsage();
+    }
+
+    @Override
+    public void pageEvicted( MuninnPage page, PageSwapper swapper, long filePageId )
+    {
+        if ( page.getEvictionState() == PROBATION )
+        {
+            probationPages.decrementAndGet();
+            if ( swapper != null )
+            {
+                addGhost( swapper, filePageId );
+            }
+        }
+        page.setEvictionState( UNTRACKED );
+    }
+
+    private void addGhost( PageSwapper swapper, long filePageId )
+    {
+        long key = ghostKey( swapper, filePageId );
+        ghosts[slot( key )] = key;
+    }
+
+    private boolean removeGhost( PageSwapper swapper, long filePageId )
+    {
+        long key = ghostKey( swapper, filePageId );
+        int slot = slot( key );
+        if ( ghosts[slot] == key )
+        {
+            ghosts[slot] = 0;
+            return true;
+        }
+        return false;
+    }
+
+    private static long ghostKey( PageSwapper swapper, long filePageId )
+    {
+        long key = (filePageId * 0x9E3779B97F4A7C15L) ^ System.identityHashCode( swapper );
+        return key == 0 ? 1 : key; // Zero marks an empty slot.
+    }
+
+    private int slot( long key )
+    {
+        return (int) (key ^ (key >>> 32)) & ghostMask;
+    }
+}
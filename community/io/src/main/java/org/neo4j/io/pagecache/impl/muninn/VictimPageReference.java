@@ -21,7 +21,7 @@ package org.neo4j.io.pagecache.impl.muninn;
 
 import org.neo4j.unsafe.impl.internal.dragons.UnsafeUtil;
 
-class VictimPageReference
+public class VictimPageReference
 {
     private static int victimPageSize = -1;
     private static long victimPagePointer;
@@ -31,7 +31,7 @@ class VictimPageReference
         // All state is static
     }
 
-    static synchronized long getVictimPage( int pageSize )
+    public static synchronized long getVictimPage( int pageSize )
     {
         if ( victimPageSize < pageSize )
         {
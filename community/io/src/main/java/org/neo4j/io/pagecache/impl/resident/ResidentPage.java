@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.resident;
+
+import org.neo4j.io.pagecache.impl.muninn.SequenceLock;
+
+/**
+ * The lock and write state of a single file page in a {@link ResidentPagedFile}.
+ * <p>
+ * Readers access the page directly through its mapping, under an optimistic read lock. Writers take the write lock,
+ * and share a DRAM shadow copy of the page for as long as any of them has it pinned. The shadow is written back to
+ * the mapping by the last writer to unpin the page, which happens before that writer releases its write lock, so
+ * any overlapping optimistic read will fail validation and retry.
+ */
+final class ResidentPage extends SequenceLock
+{
+    // Address of the page in the mapped file. Segments are never remapped while the file is open.
+    final long address;
+
+    // Guarded by synchronized(this).
+    int writers;
+    long shadow;
+
+    ResidentPage( long address )
+    {
+        this.address = address;
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.resident;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.pagecache.IOLimiter;
+import org.neo4j.io.pagecache.PageCache;
+import org.neo4j.io.pagecache.PageCacheOpenOptions;
+import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.io.pagecache.impl.MappedFilePageSwapper;
+import org.neo4j.io.pagecache.impl.MappedFilePageSwapperFactory;
+import org.neo4j.io.pagecache.impl.muninn.VictimPageReference;
+import org.neo4j.io.pagecache.tracing.MajorFlushEvent;
+import org.neo4j.io.pagecache.tracing.PageCacheTracer;
+import org.neo4j.unsafe.impl.internal.dragons.UnsafeUtil;
+
+/**
+ * A page cache for store files that live on byte-addressable persistent memory, such as a DAX mount.
+ * <p>
+ * The files are memory mapped with {@link MappedFilePageSwapper}s, so the file system must keep them in operating
+ * system files, see {@link FileSystemAbstraction#nativeFile(File)}. Read cursors point directly into the
+ * mappings, so there are no page frames in DRAM, no page faults and no eviction. Writers work on DRAM shadow copies
+ * of the pages they have pinned, which are written back to the mapping when the last writer of a page unpins it.
+ * The DRAM used by this page cache is thus proportional to the number of pages concurrently pinned for writing,
+ * rather than to the size of the store.
+ * <p>
+ * Like with the {@link org.neo4j.io.pagecache.impl.muninn.MuninnPageCache}, pages written since the last
+ * {@link #flushAndForce()} are not guaranteed to be durable, and are recovered from the transaction log after a
+ * crash. The shadow copies keep readers from seeing a page while it is being written, but the copy back into the
+ * mapping is a plain memory copy, so a crash in the middle of it can leave the page torn on persistent memory. Such
+ * pages are repaired like any other, by replaying the transaction log from the last checkpoint, which rewrites the
+ * records they hold.
+ */
+public class ResidentPageCache implements PageCache
+{
+    private static final List<OpenOption> ignoredOpenOptions = Arrays.asList( (OpenOption) StandardOpenOption.APPEND,
+            StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.SPARSE );
+
+    private final MappedFilePageSwapperFactory swapperFactory;
+    private final int cachePageSize;
+    private final PageCacheTracer tracer;
+    // Unpinned cursors point here, so stray accesses through them do not touch unmapped memory.
+    final long victimPage;
+
+    // Freed shadow frames are kept for reuse, spread over stripes picked by thread id, so writers on different
+    // threads rarely contend for the same stripe.
+    private final ShadowFrameStripe[] shadowFrameStripes;
+    private final int maxShadowPages;
+
+    // Guarded by synchronized(this)
+    private final List<ResidentPagedFile> mappedFiles;
+
+    // Writes guarded by synchronized(this), reads can be unsynchronized
+    private volatile boolean closed;
+
+    /**
+     * @param fs The file system that keeps the mapped files.
+     * @param maxShadowPages The number of shadow page frames to keep around for reuse. More are allocated when
+     * more pages than this are concurrently pinned for writing.
+     * @param cachePageSize The size of the shadow page frames, which is the largest file page size supported.
+     * @param tracer The tracer to report page cache events to.
+     */
+    public ResidentPageCache( FileSystemAbstraction fs, int maxShadowPages, int cachePageSize, PageCacheTracer tracer )
+    {
+        UnsafeUtil.assertHasUnsafe();
+        if ( Integer.bitCount( cachePageSize ) != 1 )
+        {
+            throw new IllegalArgumentException( "Cache page size must be a power of two, but was " + cachePageSize );
+        }
+        this.swapperFactory = new MappedFilePageSwapperFactory();
+        this.swapperFactory.setFileSystemAbstraction( fs );
+        this.cachePageSize = cachePageSize;
+        this.tracer = tracer;
+        this.victimPage = VictimPageReference.getVictimPage( cachePageSize );
+        this.maxShadowPages = Math.max( maxShadowPages, 0 );
+        int stripeCount = Math.min( Integer.highestOneBit( Runtime.getRuntime().availableProcessors() * 2 - 1 ) * 2,
+                Math.max( Integer.highestOneBit( this.maxShadowPages ), 1 ) );
+        this.shadowFrameStripes = new ShadowFrameStripe[stripeCount];
+        for ( int i = 0; i < stripeCount; i++ )
+        {
+            int capacity = this.maxShadowPages / stripeCount + (i < this.maxShadowPages % stripeCount ? 1 : 0);
+            shadowFrameStripes[i] = new ShadowFrameStripe( capacity );
+        }
+        this.mappedFiles = new ArrayList<>();
+    }
+
+    @Override
+    public synchronized PagedFile map( File file, int filePageSize, OpenOption... openOptions ) throws IOException
+    {
+        assertNotClosed();
+        if ( filePageSize > cachePageSize )
+        {
+            throw new IllegalArgumentException(
+                    "Cannot map files with a filePageSize (" + filePageSize + ") that is greater than the " +
+                    "cachePageSize (" + cachePageSize + ")" );
+        }
+        file = file.getCanonicalFile();
+        boolean createIfNotExists = false;
+        boolean truncateExisting = false;
+        boolean deleteOnClose = false;
+        boolean exclusiveMapping = false;
+        boolean anyPageSize = false;
+        for ( OpenOption option : openOptions )
+        {
+            if ( option.equals( StandardOpenOption.CREATE ) )
+            {
+                createIfNotExists = true;
+            }
+            else if ( option.equals( StandardOpenOption.TRUNCATE_EXISTING ) )
+            {
+                truncateExisting = true;
+            }
+            else if ( option.equals( StandardOpenOption.DELETE_ON_CLOSE ) )
+            {
+                deleteOnClose = true;
+            }
+            else if ( option.equals( PageCacheOpenOptions.EXCLUSIVE ) )
+            {
+                exclusiveMapping = true;
+            }
+            else if ( option.equals( PageCacheOpenOptions.ANY_PAGE_SIZE ) )
+            {
+                anyPageSize = true;
+            }
+            else if ( !ignoredOpenOptions.contains( option ) )
+            {
+                throw new UnsupportedOperationException( "Unsupported OpenOption: " + option );
+            }
+        }
+
+        // find an existing mapping
+        for ( ResidentPagedFile pagedFile : mappedFiles )
+        {
+            if ( pagedFile.file().equals( file ) )
+            {
+                if ( pagedFile.pageSize() != filePageSize && !anyPageSize )
+                {
+                    String msg = "Cannot map file " + file + " with " +
+                            "filePageSize " + filePageSize + " bytes, " +
+                            "because it has already been mapped with a " +
+                            "filePageSize of " + pagedFile.pageSize() +
+                            " bytes.";
+                    throw new IllegalArgumentException( msg );
+                }
+                if ( truncateExisting )
+                {
+                    throw new UnsupportedOperationException( "Cannot truncate a file that is already mapped" );
+                }
+                if ( exclusiveMapping || pagedFile.isExclusiveMapping() )
+                {
+                    String msg;
+                    if ( exclusiveMapping )
+                    {
+                        msg = "Cannot exclusively map file because it is already mapped: " + file;
+                    }
+                    else
+                    {
+                        msg = "Cannot map file because it is already exclusively mapped: " + file;
+                    }
+                    throw new IOException( msg );
+                }
+                pagedFile.incrementRefCount();
+                pagedFile.markDeleteOnClose( deleteOnClose );
+                return pagedFile;
+            }
+        }
+
+        if ( filePageSize < Long.BYTES )
+        {
+            throw new IllegalArgumentException(
+                    "Cannot map files with a filePageSize (" + filePageSize + ") that is less than " +
+                    Long.BYTES + " bytes" );
+        }
+
+        // there was no existing mapping
+        MappedFilePageSwapper swapper = (MappedFilePageSwapper) swapperFactory.createPageSwapper(
+                file, filePageSize, null, createIfNotExists );
+        ResidentPagedFile pagedFile;
+        try
+        {
+            pagedFile = new ResidentPagedFile( this, swapper, filePageSize, tracer, truncateExisting, exclusiveMapping );
+        }
+        catch ( IOException e )
+        {
+            swapper.close();
+            throw e;
+        }
+        pagedFile.incrementRefCount();
+        pagedFile.markDeleteOnClose( deleteOnClose );
+        mappedFiles.add( pagedFile );
+        tracer.mappedFile( file );
+        return pagedFile;
+    }
+
+    synchronized void unmap( ResidentPagedFile file ) throws IOException
+    {
+        if ( file.decrementRefCount() )
+        {
+            // This was the last reference!
+            mappedFiles.remove( file );
+            tracer.unmappedFile( file.file() );
+            file.closeSwapper();
+        }
+    }
+
+    @Override
+    public void flushAndForce() throws IOException
+    {
+        flushAndForce( IOLimiter.unlimited() );
+    }
+
+    @Override
+    public synchronized void flushAndForce( IOLimiter limiter ) throws IOException
+    {
+        if ( limiter == null )
+        {
+            throw new IllegalArgumentException( "IOPSLimiter cannot be null" );
+        }
+        assertNotClosed();
+        // Nothing is written back, so the event only times the forces.
+        MajorFlushEvent cacheFlush = tracer.beginCacheFlush();
+        try
+        {
+            for ( ResidentPagedFile pagedFile : mappedFiles )
+            {
+                pagedFile.swapper.force();
+            }
+            swapperFactory.syncDevice();
+        }
+        finally
+        {
+            cacheFlush.close();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if ( closed )
+        {
+            return;
+        }
+
+        if ( !mappedFiles.isEmpty() )
+        {
+            StringBuilder msg = new StringBuilder(
+                    "Cannot close the PageCache while files are still mapped:" );
+            for ( ResidentPagedFile pagedFile : mappedFiles )
+            {
+                int refCount = pagedFile.getRefCount();
+                msg.append( "\n\t" );
+                msg.append( pagedFile.file().getName() );
+                msg.append( " (" ).append( refCount );
+                msg.append( refCount == 1? " mapping)" : " mappings)" );
+            }
+            throw new IllegalStateException( msg.toString() );
+        }
+
+        closed = true;
+        for ( ShadowFrameStripe stripe : shadowFrameStripes )
+        {
+            stripe.freeAll();
+        }
+    }
+
+    private void assertNotClosed()
+    {
+        if ( closed )
+        {
+            throw new IllegalStateException( "The PageCache has been shut down" );
+        }
+    }
+
+    @Override
+    public int pageSize()
+    {
+        return cachePageSize;
+    }
+
+    @Override
+    public int maxCachedPages()
+    {
+        return maxShadowPages;
+    }
+
+    /**
+     * Get a shadow frame of {@link #pageSize()} bytes, reusing a previously released one if possible.
+     */
+    long takeShadowFrame()
+    {
+        long frame = currentStripe().take();
+        return frame != 0 ? frame : UnsafeUtil.allocateMemory( cachePageSize );
+    }
+
+    void releaseShadowFrame( long frame )
+    {
+        if ( closed || !currentStripe().offer( frame ) )
+        {
+            UnsafeUtil.free( frame );
+        }
+    }
+
+    private ShadowFrameStripe currentStripe()
+    {
+        // The stripe count is a power of two
+        return shadowFrameStripes[(int) Thread.currentThread().getId() & (shadowFrameStripes.length - 1)];
+    }
+
+    /**
+     * A bounded stack of free shadow frames, guarded by synchronized(this).
+     */
+    private static final class ShadowFrameStripe
+    {
+        private final long[] frames;
+        private int count;
+        private boolean closed;
+
+        ShadowFrameStripe( int capacity )
+        {
+            frames = new long[capacity];
+        }
+
+        /**
+         * @return a free frame, or 0 if this stripe has none.
+         */
+        synchronized long take()
+        {
+            return count > 0 ? frames[--count] : 0;
+        }
+
+        /**
+         * @return {@code true} if the frame was kept, or {@code false} if the caller must free it.
+         */
+        synchronized boolean offer( long frame )
+        {
+            if ( count < frames.length && !closed )
+            {
+                frames[count++] = frame;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void freeAll()
+        {
+            closed = true;
+            while ( count > 0 )
+            {
+                UnsafeUtil.free( frames[--count] );
+            }
+        }
+    }
+}
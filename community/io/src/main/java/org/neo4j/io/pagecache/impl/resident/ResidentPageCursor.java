@@ -0,0 +1,578 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.resident;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Objects;
+
+import org.neo4j.io.pagecache.CursorException;
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.tracing.PinEvent;
+import org.neo4j.unsafe.impl.internal.dragons.UnsafeUtil;
+
+import static org.neo4j.unsafe.impl.internal.dragons.FeatureToggles.flag;
+
+/**
+ * The accessors of this cursor work the same way as those of the Muninn page cursors; only where the pointer points
+ * is different. Cursors are pinned to either the mapped page itself, or to a DRAM shadow copy of it.
+ */
+abstract class ResidentPageCursor extends PageCursor
+{
+    private static final boolean boundsCheck = flag( ResidentPageCursor.class, "boundsCheck", true );
+
+    // Size of the respective primitive types in bytes.
+    private static final int SIZE_OF_BYTE = Byte.BYTES;
+    private static final int SIZE_OF_SHORT = Short.BYTES;
+    private static final int SIZE_OF_INT = Integer.BYTES;
+    private static final int SIZE_OF_LONG = Long.BYTES;
+
+    private final long victimPage;
+    protected ResidentPagedFile pagedFile;
+    protected ResidentPage page;
+    protected PinEvent pinEvent;
+    protected final long pageId;
+    protected final int pf_flags;
+    protected long currentPageId;
+    protected long nextPageId;
+    protected ResidentPageCursor linkedCursor;
+    private long pointer;
+    private int pageSize;
+    private final int filePageSize;
+    private int offset;
+    private boolean outOfBounds;
+    private String cursorException;
+
+    ResidentPageCursor( ResidentPagedFile pagedFile, long pageId, int pf_flags )
+    {
+        this.pagedFile = pagedFile;
+        this.pageId = pageId;
+        this.pf_flags = pf_flags;
+        this.filePageSize = pagedFile.filePageSize;
+        // Unpinned cursors point to the victim page, so accesses through them are harmless.
+        this.victimPage = pagedFile.pageCache.victimPage;
+        this.pointer = victimPage;
+    }
+
+    @Override
+    public final void rewind()
+    {
+        nextPageId = pageId;
+        currentPageId = UNBOUND_PAGE_ID;
+    }
+
+    /**
+     * Look up the page object for the given file page, and start the pin event for it.
+     */
+    protected final ResidentPage pin( long filePageId, boolean writeLock ) throws IOException
+    {
+        pinEvent = pagedFile.tracer.beginPin( writeLock, filePageId, pagedFile.swapper );
+        try
+        {
+            return pagedFile.page( filePageId );
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            pinEvent.done();
+            throw e;
+        }
+    }
+
+    /**
+     * Point this cursor at the given address, which holds the contents of the given page.
+     */
+    protected final void reset( ResidentPage page, long address )
+    {
+        this.page = page;
+        this.offset = 0;
+        this.pointer = address;
+        this.pageSize = filePageSize;
+    }
+
+    @Override
+    public final boolean next( long pageId ) throws IOException
+    {
+        if ( currentPageId == pageId )
+        {
+            return true;
+        }
+        nextPageId = pageId;
+        return next();
+    }
+
+    @Override
+    public final void close()
+    {
+        ResidentPageCursor cursor = this;
+        do
+        {
+            if ( cursor.pagedFile != null )
+            {
+                cursor.unpinCurrentPage();
+                cursor.pagedFile = null;
+            }
+        }
+        while ( (cursor = cursor.getAndClearLinkedCursor()) != null );
+    }
+
+    private ResidentPageCursor getAndClearLinkedCursor()
+    {
+        ResidentPageCursor cursor = linkedCursor;
+        linkedCursor = null;
+        return cursor;
+    }
+
+    private void closeLinkedCursorIfAny()
+    {
+        if ( linkedCursor != null )
+        {
+            linkedCursor.close();
+            linkedCursor = null;
+        }
+    }
+
+    @Override
+    public PageCursor openLinkedCursor( long pageId )
+    {
+        closeLinkedCursorIfAny();
+        ResidentPagedFile pf = pagedFile;
+        if ( pf == null )
+        {
+            // This cursor has been closed
+            throw new IllegalStateException( "Cannot open linked cursor on closed page cursor" );
+        }
+        linkedCursor = (ResidentPageCursor) pf.io( pageId, pf_flags );
+        return linkedCursor;
+    }
+
+    /**
+     * Must be called by {@link #unpinCurrentPage()}.
+     */
+    void clearPageState()
+    {
+        pointer = victimPage; // make all future page access go to the victim page
+        pageSize = 0; // make all future bound checks fail
+        page = null; // make all future page navigation fail
+        currentPageId = UNBOUND_PAGE_ID;
+        cursorException = null;
+    }
+
+    @Override
+    public final long getCurrentPageId()
+    {
+        return currentPageId;
+    }
+
+    @Override
+    public final int getCurrentPageSize()
+    {
+        return currentPageId == UNBOUND_PAGE_ID?
+               UNBOUND_PAGE_SIZE : pagedFile.pageSize();
+    }
+
+    @Override
+    public final File getCurrentFile()
+    {
+        return currentPageId == UNBOUND_PAGE_ID? null : pagedFile.file();
+    }
+
+    protected abstract void unpinCurrentPage();
+
+    // --- IO methods:
+
+    /**
+     * Compute a pointer that guarantees (assuming {@code size} is less than or equal to {@link #pageSize}) that the
+     * page access will be within the bounds of the page.
+     * This might mean that the pointer won't point to where one might naively expect, but will instead be
+     * truncated to point within the page. In this case, an overflow has happened and the {@link #outOfBounds}
+     * flag will be raised.
+     */
+    private long getBoundedPointer( int offset, int size )
+    {
+        if ( boundsCheck )
+        {
+            long can = pointer + offset;
+            long lim = pointer + pageSize - size;
+            long ref = Math.min( can, lim );
+            ref = Math.max( ref, pointer );
+            outOfBounds |= ref != can | lim < pointer;
+            return ref;
+        }
+        else
+        {
+            return pointer + offset;
+        }
+    }
+
+    @Override
+    public final byte getByte()
+    {
+        long p = getBoundedPointer( offset, SIZE_OF_BYTE );
+        byte b = UnsafeUtil.getByte( p );
+        offset++;
+        return b;
+    }
+
+    @Override
+    public byte getByte( int offset )
+    {
+        long p = getBoundedPointer( offset, SIZE_OF_BYTE );
+        return UnsafeUtil.getByte( p );
+    }
+
+    @Override
+    public void putByte( byte value )
+    {
+        long p = getBoundedPointer( offset, SIZE_OF_BYTE );
+        UnsafeUtil.putByte( p, value );
+        offset++;
+    }
+
+    @Override
+    public void putByte( int offset, byte value )
+    {
+        long p = getBoundedPointer( offset, SIZE_OF_BYTE );
+        UnsafeUtil.putByte( p, value );
+    }
+
+    @Override
+    public long getLong()
+    {
+        long value = getLong( offset );
+        offset += SIZE_OF_LONG;
+        return value;
+    }
+
+    @Override
+    public long getLong( int offset )
+    {
+        long p = getBoundedPointer( offset, SIZE_OF_LONG );
+        long value;
+        if ( UnsafeUtil.allowUnalignedMemoryAccess )
+        {
+            value = UnsafeUtil.getLong( p );
+            if ( !UnsafeUtil.storeByteOrderIsNative )
+            {
+                value = Long.reverseBytes( value );
+            }
+        }
+        else
+        {
+            value = getLongBigEndian( p );
+        }
+        return value;
+    }
+
+    private long getLongBigEndian( long p )
+    {
+        long a = UnsafeUtil.getByte( p     ) & 0xFF;
+        long b = UnsafeUtil.getByte( p + 1 ) & 0xFF;
+        long c = UnsafeUtil.getByte( p + 2 ) & 0xFF;
+        long d = UnsafeUtil.getByte( p + 3 ) & 0xFF;
+        long e = UnsafeUtil.getByte( p + 4 ) & 0xFF;
+        long f = UnsafeUtil.getByte( p + 5 ) & 0xFF;
+        long g = UnsafeUtil.getByte( p + 6 ) & 0xFF;
+        long h = UnsafeUtil.getByte( p + 7 ) & 0xFF;
+        return (a << 56) | (b << 48) | (c << 40) | (d << 32) | (e << 24) | (f << 16) | (g << 8) | h;
+    }
+
+    @Override
+    public void putLong( long value )
+    {
+        putLong( offset, value );
+        offset += SIZE_OF_LONG;
+    }
+
+    @Override
+    public void putLong( int offset, long value )
+    {
+        long p = getBoundedPointer( offset, SIZE_OF_LONG );
+        if ( UnsafeUtil.allowUnalignedMemoryAccess )
+        {
+            UnsafeUtil.putLong( p, UnsafeUtil.storeByteOrderIsNative ? value : Long.reverseBytes( value ) );
+        }
+        else
+        {
+            putLongBigEndian( value, p );
+        }
+    }
+
+    private void putLongBigEndian( long value, long p )
+    {
+        UnsafeUtil.putByte( p    , (byte)( value >> 56 ) );
+        UnsafeUtil.putByte( p + 1, (byte)( value >> 48 ) );
+        UnsafeUtil.putByte( p + 2, (byte)( value >> 40 ) );
+        UnsafeUtil.putByte( p + 3, (byte)( value >> 32 ) );
+        UnsafeUtil.putByte( p + 4, (byte)( value >> 24 ) );
+        UnsafeUtil.putByte( p + 5, (byte)( value >> 16 ) );
+        UnsafeUtil.putByte( p + 6, (byte)( value >> 8  ) );
+        UnsafeUtil.putByte( p + 7, (byte)( value       ) );
+    }
+
+    @Override
+    public int getInt()
+    {
+        int i = getInt( offset );
+        offset += SIZE_OF_INT;
+        return i;
+    }
+
+    @Override
+    public int getInt( int offset )
+    {
+        long p = getBoundedPointer( offset, SIZE_OF_INT );
+        if ( UnsafeUtil.allowUnalignedMemoryAccess )
+        {
+            int x = UnsafeUtil.getInt( p );
+            return UnsafeUtil.storeByteOrderIsNative ? x : Integer.reverseBytes( x );
+        }
+        return getIntBigEndian( p );
+    }
+
+    private int getIntBigEndian( long p )
+    {
+        int a = UnsafeUtil.getByte( p     ) & 0xFF;
+        int b = UnsafeUtil.getByte( p + 1 ) & 0xFF;
+        int c = UnsafeUtil.getByte( p + 2 ) & 0xFF;
+        int d = UnsafeUtil.getByte( p + 3 ) & 0xFF;
+        return (a << 24) | (b << 16) | (c << 8) | d;
+    }
+
+    @Override
+    public void putInt( int value )
+    {
+        putInt( offset, value );
+        offset += SIZE_OF_INT;
+    }
+
+    @Override
+    public void putInt( int offset, int value )
+    {
+        long p = getBoundedPointer( offset, SIZE_OF_INT );
+        if ( UnsafeUtil.allowUnalignedMemoryAccess )
+        {
+            UnsafeUtil.putInt( p, UnsafeUtil.storeByteOrderIsNative ? value : Integer.reverseBytes( value ) );
+        }
+        else
+        {
+            putIntBigEndian( value, p );
+        }
+    }
+
+    private void putIntBigEndian( int value, long p )
+    {
+        UnsafeUtil.putByte( p    , (byte)( value >> 24 ) );
+        UnsafeUtil.putByte( p + 1, (byte)( value >> 16 ) );
+        UnsafeUtil.putByte( p + 2, (byte)( value >> 8  ) );
+        UnsafeUtil.putByte( p + 3, (byte)( value       ) );
+    }
+
+    @Override
+    public void getBytes( byte[] data )
+    {
+        getBytes( data, 0, data.length );
+    }
+
+    @Override
+    public void getBytes( byte[] data, int arrayOffset, int length )
+    {
+        long p = getBoundedPointer( offset, length );
+        if ( !outOfBounds )
+        {
+            for ( int i = 0; i < length; i++ )
+            {
+                data[arrayOffset + i] = UnsafeUtil.getByte( p + i );
+            }
+        }
+        offset += length;
+    }
+
+    @Override
+    public final void putBytes( byte[] data )
+    {
+        putBytes( data, 0, data.length );
+    }
+
+    @Override
+    public void putBytes( byte[] data, int arrayOffset, int length )
+    {
+        long p = getBoundedPointer( offset, length );
+        if ( !outOfBounds )
+        {
+            for ( int i = 0; i < length; i++ )
+            {
+                byte b = data[arrayOffset + i];
+                UnsafeUtil.putByte( p + i, b );
+            }
+        }
+        offset += length;
+    }
+
+    @Override
+    public final short getShort()
+    {
+        short s = getShort( offset );
+        offset += SIZE_OF_SHORT;
+        return s;
+    }
+
+    @Override
+    public short getShort( int offset )
+    {
+        long p = getBoundedPointer( offset, SIZE_OF_SHORT );
+        if ( UnsafeUtil.allowUnalignedMemoryAccess )
+        {
+            short x = UnsafeUtil.getShort( p );
+            return UnsafeUtil.storeByteOrderIsNative ? x : Short.reverseBytes( x );
+        }
+        return getShortBigEndian( p );
+    }
+
+    private short getShortBigEndian( long p )
+    {
+        short a = (short) (UnsafeUtil.getByte( p     ) & 0xFF);
+        short b = (short) (UnsafeUtil.getByte( p + 1 ) & 0xFF);
+        return (short) ((a << 8) | b);
+    }
+
+    @Override
+    public void putShort( short value )
+    {
+        putShort( offset, value );
+        offset += SIZE_OF_SHORT;
+    }
+
+    @Override
+    public void putShort( int offset, short value )
+    {
+        long p = getBoundedPointer( offset, SIZE_OF_SHORT );
+        if ( UnsafeUtil.allowUnalignedMemoryAccess )
+        {
+            UnsafeUtil.putShort( p, UnsafeUtil.storeByteOrderIsNative ? value : Short.reverseBytes( value ) );
+        }
+        else
+        {
+            putShortBigEndian( value, p );
+        }
+    }
+
+    private void putShortBigEndian( short value, long p )
+    {
+        UnsafeUtil.putByte( p    , (byte)( value >> 8 ) );
+        UnsafeUtil.putByte( p + 1, (byte)( value      ) );
+    }
+
+    @Override
+    public int copyTo( int sourceOffset, PageCursor targetCursor, int targetOffset, int lengthInBytes )
+    {
+        int sourcePageSize = getCurrentPageSize();
+        int targetPageSize = targetCursor.getCurrentPageSize();
+        if ( targetCursor.getClass() != ResidentWritePageCursor.class )
+        {
+            throw new IllegalArgumentException( "Target cursor must be writable" );
+        }
+        if ( sourceOffset >= 0
+             & targetOffset >= 0
+             & sourceOffset < sourcePageSize
+             & targetOffset < targetPageSize
+             & lengthInBytes > 0 )
+        {
+            ResidentPageCursor cursor = (ResidentPageCursor) targetCursor;
+            int remainingSource = sourcePageSize - sourceOffset;
+            int remainingTarget = targetPageSize - targetOffset;
+            int bytes = Math.min( lengthInBytes, Math.min( remainingSource, remainingTarget ) );
+            UnsafeUtil.copyMemory( pointer + sourceOffset, cursor.pointer + targetOffset, bytes );
+            return bytes;
+        }
+        outOfBounds = true;
+        return 0;
+    }
+
+    @Override
+    public void setOffset( int offset )
+    {
+        this.offset = offset;
+    }
+
+    @Override
+    public final int getOffset()
+    {
+        return offset;
+    }
+
+    @Override
+    public boolean checkAndClearBoundsFlag()
+    {
+        ResidentPageCursor cursor = this;
+        boolean result = false;
+        do
+        {
+            result |= cursor.outOfBounds;
+            cursor.outOfBounds = false;
+            cursor = cursor.linkedCursor;
+        }
+        while ( cursor != null );
+        return result;
+    }
+
+    @Override
+    public void checkAndClearCursorException() throws CursorException
+    {
+        ResidentPageCursor cursor = this;
+        do
+        {
+            String error = cursor.cursorException;
+            if ( error != null )
+            {
+                clearCursorError( cursor );
+                throw new CursorException( error );
+            }
+            cursor = cursor.linkedCursor;
+        }
+        while ( cursor != null );
+    }
+
+    @Override
+    public void clearCursorException()
+    {
+        clearCursorError( this );
+    }
+
+    private void clearCursorError( ResidentPageCursor cursor )
+    {
+        while ( cursor != null )
+        {
+            cursor.cursorException = null;
+            cursor = cursor.linkedCursor;
+        }
+    }
+
+    @Override
+    public void raiseOutOfBounds()
+    {
+        outOfBounds = true;
+    }
+
+    @Override
+    public void setCursorException( String message )
+    {
+        this.cursorException = Objects.requireNonNull( message );
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.resident;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.neo4j.io.pagecache.IOLimiter;
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.io.pagecache.impl.MappedFilePageSwapper;
+import org.neo4j.io.pagecache.impl.PagedReadableByteChannel;
+import org.neo4j.io.pagecache.impl.PagedWritableByteChannel;
+import org.neo4j.io.pagecache.tracing.MajorFlushEvent;
+import org.neo4j.io.pagecache.tracing.PageCacheTracer;
+import org.neo4j.unsafe.impl.internal.dragons.UnsafeUtil;
+
+final class ResidentPagedFile implements PagedFile
+{
+    private static final int pageTableChunkSizePower = 12;
+    private static final int pageTableChunkSize = 1 << pageTableChunkSizePower;
+    private static final long pageTableChunkSizeMask = pageTableChunkSize - 1;
+    private static final int pageTableChunkArrayBase = UnsafeUtil.arrayBaseOffset( ResidentPage[].class );
+    private static final int pageTableChunkArrayScale = UnsafeUtil.arrayIndexScale( ResidentPage[].class );
+
+    private static final long lastPageIdOffset =
+            UnsafeUtil.getFieldOffset( ResidentPagedFile.class, "lastPageId" );
+
+    final ResidentPageCache pageCache;
+    final MappedFilePageSwapper swapper;
+    final PageCacheTracer tracer;
+    final int filePageSize;
+    private final boolean exclusiveMapping;
+
+    // Like the Muninn translation table, except the slots are filled lazily with page objects that stay put until
+    // the file is unmapped. Only the outer array grows, under synchronized(this).
+    private volatile ResidentPage[][] pageTable;
+
+    // Guarded by synchronized(pageCache). Volatile so unmapped files can be detected without taking the lock.
+    private volatile int refCount;
+    private boolean deleteOnClose;
+
+    @SuppressWarnings( "unused" ) // Accessed through unsafe
+    private volatile long lastPageId;
+
+    ResidentPagedFile(
+            ResidentPageCache pageCache,
+            MappedFilePageSwapper swapper,
+            int filePageSize,
+            PageCacheTracer tracer,
+            boolean truncateExisting,
+            boolean exclusiveMapping ) throws IOException
+    {
+        this.pageCache = pageCache;
+        this.swapper = swapper;
+        this.filePageSize = filePageSize;
+        this.tracer = tracer;
+        this.exclusiveMapping = exclusiveMapping;
+        if ( truncateExisting )
+        {
+            swapper.truncate();
+        }
+        long lastPageIdFromFile = swapper.getLastPageId();
+        this.pageTable = new ResidentPage[1 + Math.max( computeChunkId( lastPageIdFromFile ), 0 )][];
+        UnsafeUtil.putLongVolatile( this, lastPageIdOffset, lastPageIdFromFile );
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + "[" + swapper.file().getName() + "]";
+    }
+
+    @Override
+    public PageCursor io( long pageId, int pf_flags )
+    {
+        int lockMask = PF_SHARED_WRITE_LOCK | PF_SHARED_READ_LOCK;
+        if ( (pf_flags & lockMask) == 0 )
+        {
+            throw new IllegalArgumentException(
+                    "Must specify either PF_SHARED_WRITE_LOCK or PF_SHARED_READ_LOCK" );
+        }
+        if ( (pf_flags & lockMask) == lockMask )
+        {
+            throw new IllegalArgumentException(
+                    "Cannot specify both PF_SHARED_WRITE_LOCK and PF_SHARED_READ_LOCK" );
+        }
+        ResidentPageCursor cursor;
+        if ( (pf_flags & PF_SHARED_READ_LOCK) == 0 )
+        {
+            cursor = new ResidentWritePageCursor( this, pageId, pf_flags );
+        }
+        else
+        {
+            cursor = new ResidentReadPageCursor( this, pageId, pf_flags );
+        }
+        cursor.rewind();
+        return cursor;
+    }
+
+    @Override
+    public int pageSize()
+    {
+        return filePageSize;
+    }
+
+    File file()
+    {
+        return swapper.file();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        pageCache.unmap( this );
+    }
+
+    @Override
+    public ReadableByteChannel openReadableByteChannel() throws IOException
+    {
+        return new PagedReadableByteChannel( this );
+    }
+
+    @Override
+    public WritableByteChannel openWritableByteChannel() throws IOException
+    {
+        return new PagedWritableByteChannel( this );
+    }
+
+    void closeSwapper() throws IOException
+    {
+        if ( !deleteOnClose )
+        {
+            swapper.close();
+        }
+        else
+        {
+            swapper.closeAndDelete();
+        }
+    }
+
+    @Override
+    public void flushAndForce() throws IOException
+    {
+        flushAndForce( IOLimiter.unlimited() );
+    }
+
+    @Override
+    public void flushAndForce( IOLimiter limiter ) throws IOException
+    {
+        if ( limiter == null )
+        {
+            throw new IllegalArgumentException( "IOPSLimiter cannot be null" );
+        }
+        // There is nothing to write back, because pages are written to the mapping as soon as their last writer is
+        // done with them. All that is left is to make the mapped contents durable, which involves no IO worth
+        // limiting on persistent memory.
+        MajorFlushEvent fileFlush = tracer.beginFileFlush( swapper );
+        try
+        {
+            swapper.force();
+        }
+        finally
+        {
+            fileFlush.close();
+        }
+    }
+
+    @Override
+    public long getLastPageId()
+    {
+        if ( refCount == 0 )
+        {
+            throw new IllegalStateException( "File has been unmapped: " + file().getPath() );
+        }
+        return UnsafeUtil.getLongVolatile( this, lastPageIdOffset );
+    }
+
+    /**
+     * Make sure that the lastPageId is at least the given pageId
+     */
+    void increaseLastPageIdTo( long newLastPageId )
+    {
+        long current;
+        do
+        {
+            current = UnsafeUtil.getLongVolatile( this, lastPageIdOffset );
+        }
+        while ( current < newLastPageId
+                && !UnsafeUtil.compareAndSwapLong( this, lastPageIdOffset, current, newLastPageId ) );
+    }
+
+    boolean isExclusiveMapping()
+    {
+        return exclusiveMapping;
+    }
+
+    /**
+     * Note: Must be called while synchronizing on the ResidentPageCache instance.
+     */
+    void incrementRefCount()
+    {
+        refCount++;
+    }
+
+    /**
+     * Note: Must be called while synchronizing on the ResidentPageCache instance.
+     * Returns true if this was the last reference.
+     */
+    boolean decrementRefCount()
+    {
+        if ( refCount == 0 )
+        {
+            throw new IllegalStateException( "File has already been closed and unmapped. " +
+                                             "It cannot be closed any further." );
+        }
+        return --refCount == 0;
+    }
+
+    int getRefCount()
+    {
+        return refCount;
+    }
+
+    void markDeleteOnClose( boolean deleteOnClose )
+    {
+        this.deleteOnClose |= deleteOnClose;
+    }
+
+    /**
+     * Get the page object for the given file page, creating it, and mapping the file up to the end of the page,
+     * if this is the first time the page is accessed.
+     */
+    ResidentPage page( long filePageId ) throws IOException
+    {
+        int chunkId = computeChunkId( filePageId );
+        ResidentPage[][] table = pageTable;
+        if ( table.length <= chunkId || table[chunkId] == null )
+        {
+            table = expandCapacity( chunkId );
+        }
+        ResidentPage[] chunk = table[chunkId];
+        long chunkOffset = computeChunkOffset( filePageId );
+        ResidentPage page = (ResidentPage) UnsafeUtil.getObjectVolatile( chunk, chunkOffset );
+        if ( page == null )
+        {
+            ResidentPage newPage = new ResidentPage( swapper.pageAddress( filePageId ) );
+            if ( UnsafeUtil.compareAndSwapObject( chunk, chunkOffset, null, newPage ) )
+            {
+                page = newPage;
+            }
+            else
+            {
+                page = (ResidentPage) UnsafeUtil.getObjectVolatile( chunk, chunkOffset );
+            }
+        }
+        return page;
+    }
+
+    private synchronized ResidentPage[][] expandCapacity( int chunkId )
+    {
+        ResidentPage[][] table = pageTable;
+        if ( table.length <= chunkId )
+        {
+            ResidentPage[][] newTable = new ResidentPage[Math.max( table.length * 2, chunkId + 1 )][];
+            System.arraycopy( table, 0, newTable, 0, table.length );
+            table = newTable;
+        }
+        if ( table[chunkId] == null )
+        {
+            // Chunks are allocated on demand, since reads may skip over large parts of a file.
+            if ( table == pageTable )
+            {
+                table = table.clone();
+            }
+            table[chunkId] = new ResidentPage[pageTableChunkSize];
+        }
+        pageTable = table;
+        return table;
+    }
+
+    /**
+     * Pin the DRAM shadow of the given page for writing, copying the page contents into a fresh shadow if we are
+     * the first writer. The caller must hold the write lock on the page.
+     * @return The address of the shadow copy of the page.
+     */
+    long pinShadow( ResidentPage page )
+    {
+        synchronized ( page )
+        {
+            if ( page.writers++ == 0 )
+            {
+                page.shadow = pageCache.takeShadowFrame();
+                UnsafeUtil.copyMemory( page.address, page.shadow, filePageSize );
+            }
+            return page.shadow;
+        }
+    }
+
+    /**
+     * Unpin the shadow of the given page, writing it back to the mapping if we are the last writer. The caller must
+     * still hold the write lock on the page.
+     */
+    void unpinShadow( ResidentPage page, long filePageId )
+    {
+        synchronized ( page )
+        {
+            if ( --page.writers == 0 )
+            {
+                UnsafeUtil.copyMemory( page.shadow, page.address, filePageSize );
+                swapper.pageWritten( filePageId );
+                pageCache.releaseShadowFrame( page.shadow );
+                page.shadow = 0;
+            }
+        }
+    }
+
+    static int computeChunkId( long filePageId )
+    {
+        return (int) (filePageId >>> pageTableChunkSizePower);
+    }
+
+    static long computeChunkOffset( long filePageId )
+    {
+        int index = (int) (filePageId & pageTableChunkSizeMask);
+        return UnsafeUtil.arrayOffset( index, pageTableChunkArrayBase, pageTableChunkArrayScale );
+    }
+}
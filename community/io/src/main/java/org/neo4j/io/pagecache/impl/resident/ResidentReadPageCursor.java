@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.resident;
+
+import java.io.IOException;
+
+/**
+ * Reads straight from the mapped file, under an optimistic read lock that is validated by {@link #shouldRetry()}.
+ * There is no page fault; pinning a page costs a table look-up.
+ */
+final class ResidentReadPageCursor extends ResidentPageCursor
+{
+    private long lockStamp;
+
+    ResidentReadPageCursor( ResidentPagedFile pagedFile, long pageId, int pf_flags )
+    {
+        super( pagedFile, pageId, pf_flags );
+    }
+
+    @Override
+    protected void unpinCurrentPage()
+    {
+        if ( page != null )
+        {
+            pinEvent.done();
+        }
+        lockStamp = 0; // make sure not to accidentally keep a lock state around
+        clearPageState();
+    }
+
+    @Override
+    public boolean next() throws IOException
+    {
+        unpinCurrentPage();
+        long lastPageId = pagedFile.getLastPageId();
+        if ( nextPageId > lastPageId | nextPageId < 0 )
+        {
+            return false;
+        }
+        ResidentPage page = pin( nextPageId, false );
+        lockStamp = page.tryOptimisticReadLock();
+        reset( page, page.address );
+        currentPageId = nextPageId;
+        nextPageId++;
+        return true;
+    }
+
+    @Override
+    public boolean shouldRetry() throws IOException
+    {
+        ResidentPage p = page;
+        boolean needsRetry = p != null && !p.validateReadLock( lockStamp );
+        needsRetry |= linkedCursor != null && linkedCursor.shouldRetry();
+        if ( needsRetry )
+        {
+            setOffset( 0 );
+            checkAndClearBoundsFlag();
+            clearCursorException();
+            // Pages are never evicted, so unlike with Muninn, we are still pinned to the right page.
+            lockStamp = p.tryOptimisticReadLock();
+        }
+        return needsRetry;
+    }
+
+    @Override
+    public void putByte( byte value )
+    {
+        throw new IllegalStateException( "Cannot write to read-locked page" );
+    }
+
+    @Override
+    public void putLong( long value )
+    {
+        throw new IllegalStateException( "Cannot write to read-locked page" );
+    }
+
+    @Override
+    public void putInt( int value )
+    {
+        throw new IllegalStateException( "Cannot write to read-locked page" );
+    }
+
+    @Override
+    public void putBytes( byte[] data, int arrayOffset, int length )
+    {
+        throw new IllegalStateException( "Cannot write to read-locked page" );
+    }
+
+    @Override
+    public void putShort( short value )
+    {
+        throw new IllegalStateException( "Cannot write to read-locked page" );
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.resident;
+
+import java.io.IOException;
+
+import org.neo4j.io.pagecache.PagedFile;
+
+/**
+ * Writes go to a DRAM shadow of the page, that is shared by all concurrent writers of that page, and written back to
+ * the mapped file when the last of them unpins it. This way the persistent copy of the page never holds the state of
+ * a partially done change, and optimistic readers never observe one without retrying.
+ */
+final class ResidentWritePageCursor extends ResidentPageCursor
+{
+    ResidentWritePageCursor( ResidentPagedFile pagedFile, long pageId, int pf_flags )
+    {
+        super( pagedFile, pageId, pf_flags );
+    }
+
+    @Override
+    protected void unpinCurrentPage()
+    {
+        ResidentPage p = page;
+        if ( p != null )
+        {
+            pagedFile.unpinShadow( p, currentPageId );
+            pinEvent.done();
+            p.unlockWrite();
+        }
+        clearPageState();
+    }
+
+    @Override
+    public boolean next() throws IOException
+    {
+        unpinCurrentPage();
+        long lastPageId = pagedFile.getLastPageId();
+        if ( nextPageId < 0 )
+        {
+            return false;
+        }
+        if ( nextPageId > lastPageId )
+        {
+            if ( (pf_flags & PagedFile.PF_NO_GROW) != 0 )
+            {
+                return false;
+            }
+            else
+            {
+                pagedFile.increaseLastPageIdTo( nextPageId );
+            }
+        }
+        ResidentPage page = pin( nextPageId, true );
+        // Write locks only conflict with exclusive locks, and those are never taken on resident pages.
+        if ( !page.tryWriteLock() )
+        {
+            pinEvent.done();
+            throw new IllegalStateException( "Resident page unexpectedly exclusively locked: " + page );
+        }
+        reset( page, pagedFile.pinShadow( page ) );
+        currentPageId = nextPageId;
+        nextPageId++;
+        return true;
+    }
+
+    @Override
+    public boolean shouldRetry()
+    {
+        // We take write locks, and work on a shadow that readers never see, so there's never a need to retry.
+        return false;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.monitoring;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the page accesses of a subset of the page cache traffic, such as the accesses to a single file, or the
+ * accesses made on behalf of a given {@link PageCursorOrigin}.
+ * <p>
+ * Page fault latencies are recorded in a histogram with power-of-two buckets, where bucket {@code i} counts the
+ * faults that took at least {@code 2^i} and less than {@code 2^(i+1)} nanoseconds. Bucket 0 also counts the faults
+ * that took less than a nanosecond.
+ */
+public final class PageAccessCounters
+{
+    /**
+     * The number of buckets in the fault latency histogram.
+     */
+    public static final int LATENCY_BUCKETS = 40;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder faults = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder pagesFlushed = new LongAdder();
+    private final LongAdder[] faultLatencies = new LongAdder[LATENCY_BUCKETS];
+
+    public PageAccessCounters()
+    {
+        for ( int i = 0; i < LATENCY_BUCKETS; i++ )
+        {
+            faultLatencies[i] = new LongAdder();
+        }
+    }
+
+    public void hit()
+    {
+        hits.increment();
+    }
+
+    public void fault( long latencyNanos )
+    {
+        faults.increment();
+        faultLatencies[latencyBucket( latencyNanos )].increment();
+    }
+
+    public void evicted()
+    {
+        evictions.increment();
+    }
+
+    public void flushed( int pageCount )
+    {
+        pagesFlushed.add( pageCount );
+    }
+
+    /**
+     * @return the number of pins, which is the sum of the hits and the faults.
+     */
+    public long pins()
+    {
+        return hits() + faults();
+    }
+
+    public long hits()
+    {
+        return hits.sum();
+    }
+
+    public long faults()
+    {
+        return faults.sum();
+    }
+
+    public long evictions()
+    {
+        return evictions.sum();
+    }
+
+    public long pagesFlushed()
+    {
+        return pagesFlushed.sum();
+    }
+
+    /**
+     * @return the ratio of pins that found their page already in the cache, or 1 if there have been no pins.
+     */
+    public double hitRatio()
+    {
+        long hits = hits();
+        long pins = hits + faults();
+        return pins == 0 ? 1.0 : ((double) hits) / pins;
+    }
+
+    /**
+     * @return a snapshot of the fault latency histogram, with {@link #LATENCY_BUCKETS} buckets.
+     */
+    public long[] faultLatencyHistogram()
+    {
+        long[] histogram = new long[LATENCY_BUCKETS];
+        for ( int i = 0; i < LATENCY_BUCKETS; i++ )
+        {
+            histogram[i] = faultLatencies[i].sum();
+        }
+        return histogram;
+    }
+
+    /**
+     * @return an estimate of the fault latency at the given percentile, in nanoseconds, as the upper bound of the
+     * histogram bucket that the percentile falls into, or 0 if there have been no faults.
+     */
+    public long faultLatencyPercentile( double percentile )
+    {
+        long[] histogram = faultLatencyHistogram();
+        long total = 0;
+        for ( long count : histogram )
+        {
+            total += count;
+        }
+        long rank = (long) Math.ceil( total * percentile / 100.0 );
+        long seen = 0;
+        for ( int i = 0; i < LATENCY_BUCKETS; i++ )
+        {
+            seen += histogram[i];
+            if ( seen >= rank && seen > 0 )
+            {
+                return (1L << (i + 1)) - 1;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "pins=" + pins() + ", hits=" + hits() + ", faults=" + faults() +
+               ", hitRatio=" + String.format( "%.4f", hitRatio() ) + ", evictions=" + evictions() +
+               ", pagesFlushed=" + pagesFlushed() + ", faultLatencyP50=" + faultLatencyPercentile( 50 ) + "ns" +
+               ", faultLatencyP99=" + faultLatencyPercentile( 99 ) + "ns";
+    }
+
+    private static int latencyBucket( long latencyNanos )
+    {
+        int bucket = 63 - Long.numberOfLeadingZeros( Math.max( latencyNanos, 1 ) );
+        return Math.min( bucket, LATENCY_BUCKETS - 1 );
+    }
+}
@@ -19,6 +19,9 @@
  */
 package org.neo4j.io.pagecache.monitoring;
 
+import java.io.File;
+import java.util.Map;
+
 /**
  * The PageCacheCounters exposes internal counters from the page cache.
  * The data for these counters is sourced through the PageCacheTracer API.
@@ -74,4 +77,24 @@ public interface PageCacheCounters
      * @return The number of page evictions that have thrown exceptions thus far.
      */
     long evictionExceptions();
+
+    /**
+     * @return The number of pages loaded by page cache warmup thus far.
+     */
+    long pagesWarmedUp();
+
+    /**
+     * @return The number of bytes of page cache memory that are backed by explicit huge pages.
+     */
+    long hugePageBytes();
+
+    /**
+     * @return The page access counters of each file that has been mapped thus far, by the canonical file.
+     */
+    Map<File,PageAccessCounters> fileCounters();
+
+    /**
+     * @return The page access counters of the cursors with the given origin.
+     */
+    PageAccessCounters originCounters( PageCursorOrigin origin );
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.monitoring;
+
+/**
+ * The kind of work that page cursors are opened for, so the page cache statistics can tell apart the page accesses
+ * of ordinary transactions from those of, for instance, index population or backup.
+ * <p>
+ * The origin is a property of the current thread, and page cursors pick it up when they are opened. Code that works
+ * on behalf of another origin than {@link #KERNEL} marks its thread for the duration of that work:
+ *
+ * <pre><code>
+ *     PageCursorOrigin previous = PageCursorOrigin.INDEX_POPULATION.enter();
+ *     try
+ *     {
+ *         // ... populate the index ...
+ *     }
+ *     finally
+ *     {
+ *         previous.enter();
+ *     }
+ * </code></pre>
+ * <p>
+ * Work that is handed over to other threads is counted under the origin of the thread that does it, unless the
+ * origin is carried over explicitly. Parallel recovery carries the origin of the recovering thread over to the
+ * threads that write the recovered records. The stages of the transaction commit pipeline apply the transactions of
+ * many committers at once, so their page accesses are always counted as {@link #KERNEL}, whatever the origin of the
+ * committing threads.
+ */
+public enum PageCursorOrigin
+{
+    /**
+     * Reads and writes by transactions and queries. This is the origin of threads that have not been marked.
+     */
+    KERNEL,
+    INDEX_POPULATION,
+    CONSISTENCY_CHECK,
+    BACKUP;
+
+    private static final ThreadLocal<PageCursorOrigin> current = ThreadLocal.withInitial( () -> KERNEL );
+
+    /**
+     * Make this the origin of the page cursors opened by the current thread.
+     * @return the previous origin of the current thread, to restore when the work is done.
+     */
+    public PageCursorOrigin enter()
+    {
+        PageCursorOrigin previous = current.get();
+        current.set( this );
+        return previous;
+    }
+
+    /**
+     * @return the origin of the page cursors opened by the current thread.
+     */
+    public static PageCursorOrigin current()
+    {
+        return current.get();
+    }
+}
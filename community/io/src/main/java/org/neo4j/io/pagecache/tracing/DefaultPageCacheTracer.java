@@ -25,9 +25,14 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.invoke.SwitchPoint;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.neo4j.io.pagecache.PageSwapper;
+import org.neo4j.io.pagecache.monitoring.PageAccessCounters;
+import org.neo4j.io.pagecache.monitoring.PageCursorOrigin;
 
 import static org.neo4j.unsafe.impl.internal.dragons.FeatureToggles.packageFlag;
 
@@ -92,6 +97,10 @@ public class DefaultPageCacheTracer implements PageCacheTracer
     protected final AtomicLong filesMapped = new AtomicLong();
     protected final AtomicLong filesUnmapped = new AtomicLong();
     protected final AtomicLong evictionExceptions = new AtomicLong();
+    protected final AtomicLong pagesWarmedUp = new AtomicLong();
+    protected final AtomicLong hugePageBytes = new AtomicLong();
+    protected final Map<File,PageAccessCounters> fileCounters = new ConcurrentHashMap<>();
+    protected final PageAccessCounters[] originCounters = newOriginCounters();
 
     private final FlushEvent flushEvent = new FlushEvent()
     {
@@ -325,6 +334,34 @@ public class DefaultPageCacheTracer implements PageCacheTracer
         return majorFlushEvent;
     }
 
+    @Override
+    public void pagesWarmedUp( File file, long pageCount )
+    {
+        pagesWarmedUp.getAndAdd( pageCount );
+    }
+
+    @Override
+    public void memoryPreallocated( long bytes, long hugePageBytes )
+    {
+        this.hugePageBytes.getAndAdd( hugePageBytes );
+    }
+
+    private static PageAccessCounters[] newOriginCounters()
+    {
+        PageAccessCounters[] counters = new PageAccessCounters[PageCursorOrigin.values().length];
+        for ( int i = 0; i < counters.length; i++ )
+        {
+            counters[i] = new PageAccessCounters();
+        }
+        return counters;
+    }
+
+    @Override
+    public PageAccessCounters countersForFile( File file )
+    {
+        return fileCounters.computeIfAbsent( file, f -> new PageAccessCounters() );
+    }
+
     @Override
     public long faults()
     {
@@ -384,4 +421,28 @@ public class DefaultPageCacheTracer implements PageCacheTracer
     {
         return evictionExceptions.get();
     }
+
+    @Override
+    public long pagesWarmedUp()
+    {
+        return pagesWarmedUp.get();
+    }
+
+    @Override
+    public long hugePageBytes()
+    {
+        return hugePageBytes.get();
+    }
+
+    @Override
+    public Map<File,PageAccessCounters> fileCounters()
+    {
+        return Collections.unmodifiableMap( fileCounters );
+    }
+
+    @Override
+    public PageAccessCounters originCounters( PageCursorOrigin origin )
+    {
+        return originCounters[origin.ordinal()];
+    }
 }
@@ -21,8 +21,13 @@ package org.neo4j.io.pagecache.tracing;
 
 import java.io.File;
 
+import java.util.Collections;
+import java.util.Map;
+
 import org.neo4j.io.pagecache.PageSwapper;
+import org.neo4j.io.pagecache.monitoring.PageAccessCounters;
 import org.neo4j.io.pagecache.monitoring.PageCacheCounters;
+import org.neo4j.io.pagecache.monitoring.PageCursorOrigin;
 
 /**
  * A PageCacheTracer receives a steady stream of events and data about what
@@ -130,6 +135,46 @@ public interface PageCacheTracer extends PageCacheCounters
             return 0;
         }
 
+        @Override
+        public long pagesWarmedUp()
+        {
+            return 0;
+        }
+
+        @Override
+        public void pagesWarmedUp( File file, long pageCount )
+        {
+        }
+
+        @Override
+        public long hugePageBytes()
+        {
+            return 0;
+        }
+
+        @Override
+        public void memoryPreallocated( long bytes, long hugePageBytes )
+        {
+        }
+
+        @Override
+        public Map<File,PageAccessCounters> fileCounters()
+        {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public PageAccessCounters originCounters( PageCursorOrigin origin )
+        {
+            return new PageAccessCounters();
+        }
+
+        @Override
+        public PageAccessCounters countersForFile( File file )
+        {
+            return new PageAccessCounters();
+        }
+
         @Override
         public String toString()
         {
@@ -170,4 +215,21 @@ public interface PageCacheTracer extends PageCacheCounters
      * The PageCache wants to flush all its bound pages.
      */
     MajorFlushEvent beginCacheFlush();
+
+    /**
+     * Another batch of pages of the given file, as recorded by a warmup profile, has been loaded into the cache.
+     */
+    void pagesWarmedUp( File file, long pageCount );
+
+    /**
+     * Memory for cache pages has been allocated up front, of which the given number of bytes are backed by explicit
+     * huge pages.
+     */
+    void memoryPreallocated( long bytes, long hugePageBytes );
+
+    /**
+     * The given file is being mapped, and the page cache wants the counters to record the accesses to its pages in.
+     * The same file should get the same counters every time it is mapped.
+     */
+    PageAccessCounters countersForFile( File file );
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.fs;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.io.fs.NvmFilDir.BLOCK_SIZE;
+
+public class ExtentLocksTest
+{
+    private static final int PAGE_SIZE = 8192;
+    private static final int PAGES = 64;
+
+    private File directory;
+    private NvmFilDir file;
+    private ExecutorService executor;
+
+    @Before
+    public void createFile() throws Exception
+    {
+        directory = new File( File.separator + getClass().getSimpleName() + "-" + System.nanoTime() );
+        NvmFilDir.createNvmFilDir( directory, false, true );
+        File path = new File( directory, "file" );
+        NvmFilDir.createNvmFilDir( path, true, false );
+        file = NvmFilDir.getNvmFilDir( path );
+        file.write( ByteBuffer.wrap( new byte[PAGE_SIZE * PAGES] ), 0 );
+        executor = Executors.newFixedThreadPool( 4 );
+    }
+
+    @After
+    public void removeFile() throws Exception
+    {
+        executor.shutdownNow();
+        NvmFilDir.removeNvmFilDir( directory );
+    }
+
+    @Test
+    public void shouldWriteDisjointPagesConcurrently() throws Exception
+    {
+        List<Future<?>> writes = new ArrayList<>();
+        for ( int thread = 0; thread < 4; thread++ )
+        {
+            int first = thread;
+            writes.add( executor.submit( () ->
+            {
+                for ( int page = first; page < PAGES; page += 4 )
+                {
+                    file.write( ByteBuffer.wrap( page( page ) ), (long) page * PAGE_SIZE );
+                }
+            } ) );
+        }
+        for ( Future<?> write : writes )
+        {
+            write.get();
+        }
+
+        for ( int page = 0; page < PAGES; page++ )
+        {
+            byte[] read = new byte[PAGE_SIZE];
+            file.read( ByteBuffer.wrap( read ), (long) page * PAGE_SIZE );
+            assertArrayEquals( page( page ), read );
+        }
+    }
+
+    @Test
+    public void shouldNeverReadHalfWrittenPages() throws Exception
+    {
+        // A page that shares its block with others, so it is written in place under the stripe locks
+        long position = BLOCK_SIZE + PAGE_SIZE;
+        file.write( ByteBuffer.wrap( page( 0 ) ), position );
+        AtomicBoolean torn = new AtomicBoolean();
+        Future<?> writer = executor.submit( () ->
+        {
+            for ( int i = 1; i <= 1000; i++ )
+            {
+                file.write( ByteBuffer.wrap( page( i ) ), position );
+            }
+        } );
+        Future<?> reader = executor.submit( () ->
+        {
+            byte[] read = new byte[PAGE_SIZE];
+            while ( !writer.isDone() )
+            {
+                file.read( ByteBuffer.wrap( read ), position );
+                byte[] expected = page( read[0] );
+                if ( !Arrays.equals( expected, read ) )
+                {
+                    torn.set( true );
+                }
+            }
+        } );
+        writer.get();
+        reader.get();
+
+        assertFalse( torn.get() );
+    }
+
+    @Test
+    public void shouldKeepTheFileLockUntilUnlocked() throws Exception
+    {
+        assertTrue( file.tryLock() );
+        assertFalse( file.tryLock() );
+
+        file.unlock();
+
+        assertTrue( file.tryLock() );
+        file.unlock();
+    }
+
+    @Test
+    public void shouldKeepLocksAsLongAsAChannelIsOpen() throws Exception
+    {
+        StoreFileChannel channel = new StoreFileChannel( file );
+        ExtentLocks locks = ExtentLocks.acquire( file );
+        ExtentLocks.release( file );
+
+        assertSame( locks, ExtentLocks.acquire( file ) );
+        ExtentLocks.release( file );
+
+        channel.close();
+        assertNotSame( locks, ExtentLocks.acquire( file ) );
+        ExtentLocks.release( file );
+    }
+
+    @Test
+    public void shouldKeepLocksWhileTheFileLockIsHeld() throws Exception
+    {
+        assertTrue( file.tryLock() );
+        ExtentLocks locks = ExtentLocks.acquire( file );
+        ExtentLocks.release( file );
+
+        assertSame( locks, ExtentLocks.acquire( file ) );
+        ExtentLocks.release( file );
+
+        file.unlock();
+        assertNotSame( locks, ExtentLocks.acquire( file ) );
+        ExtentLocks.release( file );
+    }
+
+    /**
+     * A page filled with bytes that all follow from its first byte, so a page mixing two writes can be told apart.
+     */
+    private static byte[] page( int seed )
+    {
+        byte[] page = new byte[PAGE_SIZE];
+        for ( int i = 0; i < PAGE_SIZE; i++ )
+        {
+            page[i] = (byte) (seed + i);
+        }
+        return page;
+    }
+}
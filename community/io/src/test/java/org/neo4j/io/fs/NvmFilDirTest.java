@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.fs;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.neo4j.io.fs.NvmFilDir.BLOCK_SIZE;
+
+public class NvmFilDirTest
+{
+    private File directory;
+    private NvmFilDir file;
+
+    @Before
+    public void createFile() throws Exception
+    {
+        directory = new File( File.separator + getClass().getSimpleName() + "-" + System.nanoTime() );
+        NvmFilDir.createNvmFilDir( directory, false, true );
+        File path = new File( directory, "file" );
+        NvmFilDir.createNvmFilDir( path, true, false );
+        file = NvmFilDir.getNvmFilDir( path );
+    }
+
+    @After
+    public void removeFile() throws Exception
+    {
+        NvmFilDir.removeNvmFilDir( directory );
+    }
+
+    @Test
+    public void shouldReadBackBytesWrittenAcrossBlockBoundaries() throws Exception
+    {
+        byte[] data = bytes( BLOCK_SIZE * 2 + 100, 1 );
+        long position = BLOCK_SIZE - 10;
+
+        assertEquals( data.length, file.write( ByteBuffer.wrap( data ), position ) );
+
+        assertEquals( position + data.length, file.getSize() );
+        byte[] read = new byte[data.length];
+        assertEquals( data.length, file.read( ByteBuffer.wrap( read ), position ) );
+        assertArrayEquals( data, read );
+    }
+
+    @Test
+    public void shouldMoveBytesThroughDirectBuffers() throws Exception
+    {
+        byte[] data = bytes( BLOCK_SIZE + 3, 7 );
+        ByteBuffer src = ByteBuffer.allocateDirect( data.length );
+        src.put( data ).flip();
+
+        file.write( src, 5 );
+
+        ByteBuffer dst = ByteBuffer.allocateDirect( data.length );
+        assertEquals( data.length, file.read( dst, 5 ) );
+        byte[] read = new byte[data.length];
+        dst.flip();
+        dst.get( read );
+        assertArrayEquals( data, read );
+    }
+
+    @Test
+    public void shouldOverwriteWholeBlocksAndPartsOfBlocks() throws Exception
+    {
+        file.write( ByteBuffer.wrap( bytes( BLOCK_SIZE * 3, 1 ) ), 0 );
+        byte[] whole = bytes( BLOCK_SIZE, 2 );
+        byte[] part = bytes( 100, 3 );
+
+        file.write( ByteBuffer.wrap( whole ), BLOCK_SIZE );
+        file.write( ByteBuffer.wrap( part ), BLOCK_SIZE * 2 + 50 );
+
+        byte[] expected = bytes( BLOCK_SIZE * 3, 1 );
+        System.arraycopy( whole, 0, expected, BLOCK_SIZE, whole.length );
+        System.arraycopy( part, 0, expected, BLOCK_SIZE * 2 + 50, part.length );
+        assertArrayEquals( expected, file.readAll() );
+    }
+
+    @Test
+    public void shouldWriteVectorsBackToBack() throws Exception
+    {
+        ByteBuffer[] srcs = {ByteBuffer.wrap( bytes( 10, 1 ) ), ByteBuffer.wrap( bytes( BLOCK_SIZE, 2 ) ),
+                ByteBuffer.wrap( bytes( 20, 3 ) )};
+
+        assertEquals( BLOCK_SIZE + 30, file.write( srcs, 0, srcs.length, 0 ) );
+
+        byte[] content = file.readAll();
+        assertArrayEquals( bytes( 10, 1 ), Arrays.copyOfRange( content, 0, 10 ) );
+        assertArrayEquals( bytes( BLOCK_SIZE, 2 ), Arrays.copyOfRange( content, 10, BLOCK_SIZE + 10 ) );
+        assertArrayEquals( bytes( 20, 3 ), Arrays.copyOfRange( content, BLOCK_SIZE + 10, BLOCK_SIZE + 30 ) );
+    }
+
+    @Test
+    public void shouldStopReadingAtEndOfFile() throws Exception
+    {
+        file.write( ByteBuffer.wrap( bytes( 100, 1 ) ), 0 );
+
+        ByteBuffer dst = ByteBuffer.allocate( 200 );
+        assertEquals( 100, file.read( dst, 0 ) );
+        assertEquals( -1, file.read( dst, 100 ) );
+    }
+
+    @Test
+    public void shouldZeroTruncatedTailWhenGrowingAgain() throws Exception
+    {
+        file.write( ByteBuffer.wrap( bytes( BLOCK_SIZE * 2, 1 ) ), 0 );
+
+        file.truncate( 100 );
+        assertEquals( 100, file.getSize() );
+        file.write( ByteBuffer.wrap( new byte[]{9} ), BLOCK_SIZE + 10 );
+
+        byte[] expected = new byte[BLOCK_SIZE + 11];
+        System.arraycopy( bytes( 100, 1 ), 0, expected, 0, 100 );
+        expected[BLOCK_SIZE + 10] = 9;
+        assertArrayEquals( expected, file.readAll() );
+    }
+
+    @Test
+    public void shouldCopyContentsWithoutSharingBlocks() throws Exception
+    {
+        byte[] data = bytes( BLOCK_SIZE + 10, 1 );
+        file.write( ByteBuffer.wrap( data ), 0 );
+
+        NvmFilDir copy = new NvmFilDir( file );
+        file.write( ByteBuffer.wrap( bytes( 10, 5 ) ), 0 );
+
+        assertArrayEquals( data, copy.readAll() );
+    }
+
+    @Test
+    public void shouldReadHolesLeftByWritingPastEndOfFileAsZeroes() throws Exception
+    {
+        byte[] data = bytes( 10, 1 );
+        long position = BLOCK_SIZE * 3 + 5;
+
+        file.write( ByteBuffer.wrap( data ), position );
+
+        byte[] expected = new byte[(int) position + data.length];
+        System.arraycopy( data, 0, expected, (int) position, data.length );
+        assertArrayEquals( expected, file.readAll() );
+    }
+
+    @Test
+    public void shouldPreallocateWithoutChangingFileSize() throws Exception
+    {
+        file.write( ByteBuffer.wrap( bytes( 10, 1 ) ), 0 );
+
+        file.preallocate( 0, BLOCK_SIZE * 4 );
+
+        assertEquals( 10, file.getSize() );
+        assertEquals( -1, file.read( ByteBuffer.allocate( 1 ), BLOCK_SIZE ) );
+        byte[] data = bytes( 100, 2 );
+        file.write( ByteBuffer.wrap( data ), BLOCK_SIZE * 2 );
+        byte[] expected = new byte[BLOCK_SIZE * 2 + data.length];
+        System.arraycopy( bytes( 10, 1 ), 0, expected, 0, 10 );
+        System.arraycopy( data, 0, expected, BLOCK_SIZE * 2, data.length );
+        assertArrayEquals( expected, file.readAll() );
+    }
+
+    @Test
+    public void shouldPreallocateARangeAndLeaveTheHolesAroundIt() throws Exception
+    {
+        file.write( ByteBuffer.wrap( bytes( 10, 1 ) ), 0 );
+
+        file.preallocate( BLOCK_SIZE * 2 + 10, BLOCK_SIZE );
+
+        assertEquals( 10, file.getSize() );
+        byte[] data = bytes( 100, 2 );
+        file.write( ByteBuffer.wrap( data ), BLOCK_SIZE * 4 );
+        byte[] expected = new byte[BLOCK_SIZE * 4 + data.length];
+        System.arraycopy( bytes( 10, 1 ), 0, expected, 0, 10 );
+        System.arraycopy( data, 0, expected, BLOCK_SIZE * 4, data.length );
+        assertArrayEquals( expected, file.readAll() );
+    }
+
+    @Test
+    public void shouldReadPunchedHolesAsZeroesAndKeepFileSize() throws Exception
+    {
+        byte[] data = bytes( BLOCK_SIZE * 3, 1 );
+        file.write( ByteBuffer.wrap( data ), 0 );
+
+        // A partial block at either end, and one whole block in between
+        long position = BLOCK_SIZE - 100;
+        long length = BLOCK_SIZE + 200;
+        file.punchHole( position, length );
+
+        assertEquals( data.length, file.getSize() );
+        byte[] expected = data.clone();
+        Arrays.fill( expected, (int) position, (int) (position + length), (byte) 0 );
+        assertArrayEquals( expected, file.readAll() );
+    }
+
+    @Test
+    public void shouldWriteIntoPunchedHoles() throws Exception
+    {
+        file.write( ByteBuffer.wrap( bytes( BLOCK_SIZE * 2, 1 ) ), 0 );
+        file.punchHole( 0, BLOCK_SIZE );
+
+        byte[] data = bytes( 10, 4 );
+        file.write( ByteBuffer.wrap( data ), 20 );
+
+        byte[] expected = bytes( BLOCK_SIZE * 2, 1 );
+        Arrays.fill( expected, 0, BLOCK_SIZE, (byte) 0 );
+        System.arraycopy( data, 0, expected, 20, data.length );
+        assertArrayEquals( expected, file.readAll() );
+    }
+
+    static byte[] bytes( int length, int seed )
+    {
+        byte[] bytes = new byte[length];
+        for ( int i = 0; i < length; i++ )
+        {
+            bytes[i] = (byte) (seed + i * 31);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.neo4j.io.pagecache.Page;
+import org.neo4j.io.pagecache.PageCursor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class DirectIOPageSwapperTest
+{
+    private static final int BLOCK_SIZE = 4096;
+
+    @Rule
+    public final TemporaryFolder directory = new TemporaryFolder();
+
+    private File file;
+    private final List<NativePage> pages = new ArrayList<>();
+
+    @Before
+    public void setUp()
+    {
+        assumeTrue( DirectIOPageSwapper.isDirectIOSupported() );
+        file = new File( directory.getRoot(), "store" );
+    }
+
+    @After
+    public void tearDown()
+    {
+        pages.forEach( NativePage::close );
+    }
+
+    @Test
+    public void shouldReadBackBlockAlignedPages() throws Exception
+    {
+        DirectIOPageSwapper swapper = new DirectIOPageSwapper( file, file, 8192, BLOCK_SIZE, null );
+        assertTrue( swapper.isBlockAligned() );
+        NativePage page = page( 8192 );
+
+        page.fill( 1 );
+        assertEquals( 8192, swapper.write( 0, page ) );
+        page.fill( 2 );
+        swapper.write( 3, page );
+
+        assertEquals( 8192, swapper.read( 0, page ) );
+        assertTrue( page.isFilledWith( 1, 8192 ) );
+        swapper.read( 3, page );
+        assertTrue( page.isFilledWith( 2, 8192 ) );
+        swapper.read( 1, page );
+        assertTrue( page.isZero( 8192 ) );
+        assertEquals( 3, swapper.getLastPageId() );
+        swapper.close();
+        assertEquals( 4 * 8192, file.length() );
+    }
+
+    @Test
+    public void shouldReadBackPagesThatAreNotBlockAligned() throws Exception
+    {
+        for ( int pageSize : new int[]{41, 34, 15} )
+        {
+            File file = new File( directory.getRoot(), "store" + pageSize );
+            DirectIOPageSwapper swapper = new DirectIOPageSwapper( file, file, pageSize, BLOCK_SIZE, null );
+            assertFalse( swapper.isBlockAligned() );
+            NativePage page = page( pageSize );
+            int pageCount = 3 * BLOCK_SIZE / pageSize;
+            for ( int i = 0; i < pageCount; i++ )
+            {
+                page.fill( i );
+                assertEquals( pageSize, swapper.write( i, page ) );
+            }
+
+            for ( int i = 0; i < pageCount; i++ )
+            {
+                assertEquals( pageSize, swapper.read( i, page ) );
+                assertTrue( "page " + i + " of size " + pageSize, page.isFilledWith( i, pageSize ) );
+            }
+            assertEquals( pageCount - 1, swapper.getLastPageId() );
+            swapper.close();
+            // Writing whole blocks must not leave block padding behind the last page.
+            assertEquals( (long) pageCount * pageSize, file.length() );
+        }
+    }
+
+    @Test
+    public void shouldZeroFillReadsPastTheEndOfTheFile() throws Exception
+    {
+        DirectIOPageSwapper swapper = new DirectIOPageSwapper( file, file, 41, BLOCK_SIZE, null );
+        NativePage page = page( 41 );
+        page.fill( 1 );
+        swapper.write( 0, page );
+
+        page.fill( 2 );
+        assertEquals( 0, swapper.read( 1, page ) );
+        assertTrue( page.isZero( 41 ) );
+        page.fill( 2 );
+        assertEquals( 0, swapper.read( 1000, page ) );
+        assertTrue( page.isZero( 41 ) );
+        swapper.close();
+    }
+
+    @Test
+    public void shouldReadAndWriteVectors() throws Exception
+    {
+        DirectIOPageSwapper swapper = new DirectIOPageSwapper( file, file, 34, BLOCK_SIZE, null );
+        Page[] vector = new Page[4];
+        for ( int i = 0; i < vector.length; i++ )
+        {
+            NativePage page = page( 34 );
+            page.fill( i + 10 );
+            vector[i] = page;
+        }
+        assertEquals( 3 * 34, swapper.write( 200, vector, 1, 3 ) );
+
+        for ( Page page : vector )
+        {
+            ((NativePage) page).fill( 0 );
+        }
+        assertEquals( 3 * 34, swapper.read( 200, vector, 0, 3 ) );
+        for ( int i = 0; i < 3; i++ )
+        {
+            assertTrue( ((NativePage) vector[i]).isFilledWith( i + 11, 34 ) );
+        }
+        swapper.close();
+    }
+
+    @Test
+    public void concurrentWritesOfPagesSharingBlocksMustNotBeLost() throws Exception
+    {
+        int pageSize = 41;
+        int threads = 8;
+        int pageCount = 2000;
+        DirectIOPageSwapper swapper = new DirectIOPageSwapper( file, file, pageSize, BLOCK_SIZE, null );
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for ( int t = 0; t < threads; t++ )
+            {
+                NativePage page = page( pageSize );
+                int first = t;
+                futures.add( executor.submit( () ->
+                {
+                    for ( int i = first; i < pageCount; i += threads )
+                    {
+                        page.fill( i );
+                        swapper.write( i, page );
+                    }
+                    return null;
+                } ) );
+            }
+            for ( Future<?> future : futures )
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        NativePage page = page( pageSize );
+        for ( int i = 0; i < pageCount; i++ )
+        {
+            swapper.read( i, page );
+            assertTrue( "page " + i, page.isFilledWith( i, pageSize ) );
+        }
+        swapper.close();
+        assertEquals( (long) pageCount * pageSize, file.length() );
+    }
+
+    @Test
+    public void truncateMustEmptyTheFile() throws Exception
+    {
+        DirectIOPageSwapper swapper = new DirectIOPageSwapper( file, file, 41, BLOCK_SIZE, null );
+        NativePage page = page( 41 );
+        page.fill( 1 );
+        swapper.write( 5, page );
+
+        swapper.truncate();
+
+        assertEquals( PageCursor.UNBOUND_PAGE_ID, swapper.getLastPageId() );
+        assertEquals( 0, file.length() );
+        assertEquals( 0, swapper.read( 5, page ) );
+        assertTrue( page.isZero( 41 ) );
+        swapper.close();
+    }
+
+    @Test
+    public void reopenedSwapperMustSeeTheLastPage() throws Exception
+    {
+        DirectIOPageSwapper swapper = new DirectIOPageSwapper( file, file, 41, BLOCK_SIZE, null );
+        NativePage page = page( 41 );
+        page.fill( 3 );
+        swapper.write( 2, page );
+        swapper.close();
+
+        swapper = new DirectIOPageSwapper( file, file, 41, BLOCK_SIZE, null );
+        assertEquals( 2, swapper.getLastPageId() );
+        swapper.read( 2, page );
+        assertTrue( page.isFilledWith( 3, 41 ) );
+        swapper.read( 1, page );
+        assertTrue( page.isZero( 41 ) );
+        swapper.closeAndDelete();
+        assertFalse( file.exists() );
+    }
+
+    private NativePage page( int size )
+    {
+        // The page cache aligns its memory to the block size when it swaps pages with direct IO.
+        NativePage page = new NativePage( size, BLOCK_SIZE );
+        pages.add( page );
+        return page;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+
+import org.neo4j.io.fs.DefaultFileSystemAbstraction;
+import org.neo4j.io.fs.DelegateFileSystemAbstraction;
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PageSwapper;
+import org.neo4j.unsafe.impl.internal.dragons.UnsafeUtil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MappedFilePageSwapperTest
+{
+    private static final int PAGE_SIZE = 8192;
+
+    @Rule
+    public final TemporaryFolder directory = new TemporaryFolder();
+
+    private File file;
+    private NativePage page;
+
+    @Before
+    public void setUp()
+    {
+        file = new File( directory.getRoot(), "store" );
+        page = new NativePage( PAGE_SIZE, PAGE_SIZE );
+    }
+
+    @After
+    public void tearDown()
+    {
+        page.close();
+    }
+
+    @Test
+    public void shouldReadBackWrittenPages() throws Exception
+    {
+        MappedFilePageSwapper swapper = new MappedFilePageSwapper( file, file, PAGE_SIZE, null );
+        page.fill( 1 );
+        swapper.write( 0, page );
+        page.fill( 2 );
+        swapper.write( 3, page );
+
+        page.fill( 0 );
+        swapper.read( 0, page );
+        assertTrue( page.isFilledWith( 1, PAGE_SIZE ) );
+        swapper.read( 3, page );
+        assertTrue( page.isFilledWith( 2, PAGE_SIZE ) );
+        swapper.read( 2, page );
+        assertTrue( page.isZero( PAGE_SIZE ) );
+        assertEquals( 3, swapper.getLastPageId() );
+        swapper.close();
+    }
+
+    @Test
+    public void shouldReadPagesBeyondEndOfFileAsZeroes() throws Exception
+    {
+        MappedFilePageSwapper swapper = new MappedFilePageSwapper( file, file, PAGE_SIZE, null );
+        page.fill( 1 );
+
+        assertEquals( 0, swapper.read( 10, page ) );
+
+        assertTrue( page.isZero( PAGE_SIZE ) );
+        swapper.close();
+    }
+
+    @Test
+    public void shouldGiveBackUnusedSegmentSpaceOnClose() throws Exception
+    {
+        MappedFilePageSwapper swapper = new MappedFilePageSwapper( file, file, PAGE_SIZE, null );
+        page.fill( 1 );
+        swapper.write( 4, page );
+
+        swapper.close();
+
+        assertEquals( 5L * PAGE_SIZE, file.length() );
+    }
+
+    @Test
+    public void shouldKeepFileSizeOfForcedPagesAfterCrash() throws Exception
+    {
+        MappedFilePageSwapper swapper = new MappedFilePageSwapper( file, file, PAGE_SIZE, null );
+        page.fill( 7 );
+        swapper.write( 3, page );
+        swapper.force();
+
+        // Copying the file while it is still mapped is what a crash would leave behind
+        File crashed = new File( directory.getRoot(), "crashed" );
+        Files.copy( file.toPath(), crashed.toPath() );
+        swapper.close();
+        MappedFilePageSwapper recovered = new MappedFilePageSwapper( crashed, crashed, PAGE_SIZE, null );
+
+        assertEquals( 3, recovered.getLastPageId() );
+        page.fill( 0 );
+        recovered.read( 3, page );
+        assertTrue( page.isFilledWith( 7, PAGE_SIZE ) );
+        recovered.close();
+        assertEquals( 4L * PAGE_SIZE, crashed.length() );
+    }
+
+    @Test
+    public void shouldTruncateTheFile() throws Exception
+    {
+        MappedFilePageSwapper swapper = new MappedFilePageSwapper( file, file, PAGE_SIZE, null );
+        page.fill( 1 );
+        swapper.write( 10, page );
+
+        swapper.truncate();
+
+        assertEquals( PageCursor.UNBOUND_PAGE_ID, swapper.getLastPageId() );
+        assertEquals( 0, file.length() );
+        swapper.write( 0, page );
+        swapper.close();
+        assertEquals( PAGE_SIZE, file.length() );
+    }
+
+    @Test
+    public void shouldExposeWrittenPagesThroughTheirAddress() throws Exception
+    {
+        MappedFilePageSwapper swapper = new MappedFilePageSwapper( file, file, PAGE_SIZE, null );
+        page.fill( 3 );
+        swapper.write( 1, page );
+
+        long address = swapper.pageAddress( 1 );
+        for ( int i = 0; i < PAGE_SIZE; i++ )
+        {
+            assertEquals( (byte) (3 + i), UnsafeUtil.getByte( address + i ) );
+        }
+        swapper.close();
+    }
+
+    @Test
+    public void shouldRefuseFileSystemsThatDoNotKeepOperatingSystemFiles() throws Exception
+    {
+        MappedFilePageSwapperFactory factory = new MappedFilePageSwapperFactory();
+        factory.setFileSystemAbstraction( new DefaultFileSystemAbstraction() );
+
+        try
+        {
+            factory.createPageSwapper( file, PAGE_SIZE, null, true );
+            fail( "Should not map a file that is not kept in an operating system file" );
+        }
+        catch ( IOException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( file.getPath() ) );
+        }
+    }
+
+    @Test
+    public void shouldMapFilesKeptInOperatingSystemFiles() throws Exception
+    {
+        MappedFilePageSwapperFactory factory = new MappedFilePageSwapperFactory();
+        factory.setFileSystemAbstraction( nativeFileSystem() );
+
+        PageSwapper swapper = factory.createPageSwapper( file, PAGE_SIZE, null, true );
+        page.fill( 1 );
+        swapper.write( 0, page );
+        swapper.close();
+
+        assertEquals( PAGE_SIZE, file.length() );
+    }
+
+    /**
+     * A file system that keeps its files in operating system files, for swappers that map them. Only the swappers
+     * touch the files in this test.
+     */
+    private static FileSystemAbstraction nativeFileSystem()
+    {
+        return new DelegateFileSystemAbstraction( FileSystems.getDefault() )
+        {
+            @Override
+            public File nativeFile( File fileName )
+            {
+                return fileName;
+            }
+        };
+    }
+}
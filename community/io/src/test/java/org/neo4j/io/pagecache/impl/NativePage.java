@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl;
+
+import org.neo4j.io.pagecache.Page;
+import org.neo4j.unsafe.impl.internal.dragons.UnsafeUtil;
+
+/**
+ * A page of native memory for driving page swappers directly, aligned as a page cache would align it.
+ */
+class NativePage implements Page, AutoCloseable
+{
+    private final int size;
+    private final long allocation;
+    private final long address;
+
+    NativePage( int size, int alignment )
+    {
+        this.size = size;
+        this.allocation = UnsafeUtil.allocateMemory( size + alignment );
+        this.address = UnsafeUtil.alignedMemory( allocation, alignment );
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public long address()
+    {
+        return address;
+    }
+
+    void fill( int seed )
+    {
+        for ( int i = 0; i < size; i++ )
+        {
+            UnsafeUtil.putByte( address() + i, (byte) (seed + i) );
+        }
+    }
+
+    /**
+     * @return {@code true} if the first length bytes of the page are those written by {@link #fill(int)}.
+     */
+    boolean isFilledWith( int seed, int length )
+    {
+        for ( int i = 0; i < length; i++ )
+        {
+            if ( UnsafeUtil.getByte( address() + i ) != (byte) (seed + i) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isZero( int length )
+    {
+        for ( int i = 0; i < length; i++ )
+        {
+            if ( UnsafeUtil.getByte( address() + i ) != 0 )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close()
+    {
+        UnsafeUtil.free( allocation );
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.pagecache.Page;
+import org.neo4j.io.pagecache.PageEvictionCallback;
+import org.neo4j.io.pagecache.PageSwapper;
+import org.neo4j.io.pagecache.PageSwapperFactory;
+import org.neo4j.unsafe.impl.internal.dragons.UnsafeUtil;
+
+/**
+ * Keeps the pages of every file on the heap, and counts the reads and forces the page cache makes, so the tests can
+ * tell which pages were faulted in and how, and whether the files were forced.
+ */
+class InMemorySwapperFactory implements PageSwapperFactory
+{
+    final AtomicInteger pageReads = new AtomicInteger();
+    final AtomicInteger vectoredReads = new AtomicInteger();
+    final AtomicInteger vectoredPageReads = new AtomicInteger();
+    final AtomicInteger forces = new AtomicInteger();
+    private final Map<File,Map<Long,byte[]>> files = new ConcurrentHashMap<>();
+
+    /**
+     * Put the given page into the file, as if it had been written by an earlier run of the page cache.
+     */
+    void putPage( File file, long filePageId, byte[] data )
+    {
+        files.computeIfAbsent( file, f -> new ConcurrentHashMap<>() ).put( filePageId, data.clone() );
+    }
+
+    /**
+     * @return a copy of the page as it was last written to the file, or {@code null} if it has never been written.
+     */
+    byte[] getPage( File file, long filePageId )
+    {
+        byte[] data = files.getOrDefault( file, new ConcurrentHashMap<>() ).get( filePageId );
+        return data == null ? null : data.clone();
+    }
+
+    @Override
+    public void setFileSystemAbstraction( FileSystemAbstraction fs )
+    {
+    }
+
+    @Override
+    public String implementationName()
+    {
+        return "in-memory";
+    }
+
+    @Override
+    public int getCachePageSizeHint()
+    {
+        return 8192;
+    }
+
+    @Override
+    public boolean isCachePageSizeHintStrict()
+    {
+        return false;
+    }
+
+    @Override
+    public long getRequiredBufferAlignment()
+    {
+        return 1;
+    }
+
+    @Override
+    public PageSwapper createPageSwapper(
+            File file, int filePageSize, PageEvictionCallback onEviction, boolean createIfNotExist )
+            throws IOException
+    {
+        Map<Long,byte[]> pages = createIfNotExist
+                                 ? files.computeIfAbsent( file, f -> new ConcurrentHashMap<>() )
+                                 : files.get( file );
+        if ( pages == null )
+        {
+            throw new IOException( "No such file: " + file );
+        }
+        return new InMemorySwapper( file, filePageSize, onEviction, pages );
+    }
+
+    @Override
+    public void syncDevice()
+    {
+    }
+
+    private class InMemorySwapper implements PageSwapper
+    {
+        private final File file;
+        private final int filePageSize;
+        private final PageEvictionCallback onEviction;
+        private final Map<Long,byte[]> pages;
+
+        InMemorySwapper( File file, int filePageSize, PageEvictionCallback onEviction, Map<Long,byte[]> pages )
+        {
+            this.file = file;
+            this.filePageSize = filePageSize;
+            this.onEviction = onEviction;
+            this.pages = pages;
+        }
+
+        @Override
+        public long read( long filePageId, Page page )
+        {
+            pageReads.incrementAndGet();
+            return swapIn( filePageId, page );
+        }
+
+        @Override
+        public long read( long startFilePageId, Page[] pages, int arrayOffset, int length )
+        {
+            vectoredReads.incrementAndGet();
+            vectoredPageReads.addAndGet( length );
+            long bytes = 0;
+            for ( int i = 0; i < length; i++ )
+            {
+                bytes += swapIn( startFilePageId + i, pages[arrayOffset + i] );
+            }
+            return bytes;
+        }
+
+        private long swapIn( long filePageId, Page page )
+        {
+            byte[] data = pages.get( filePageId );
+            for ( int i = 0; i < filePageSize; i++ )
+            {
+                UnsafeUtil.putByte( page.address() + i, data == null ? 0 : data[i] );
+            }
+            return data == null ? 0 : filePageSize;
+        }
+
+        @Override
+        public long write( long filePageId, Page page )
+        {
+            byte[] data = new byte[filePageSize];
+            for ( int i = 0; i < filePageSize; i++ )
+            {
+                data[i] = UnsafeUtil.getByte( page.address() + i );
+            }
+            pages.put( filePageId, data );
+            return filePageSize;
+        }
+
+        @Override
+        public long write( long startFilePageId, Page[] pages, int arrayOffset, int length )
+        {
+            long bytes = 0;
+            for ( int i = 0; i < length; i++ )
+            {
+                bytes += write( startFilePageId + i, pages[arrayOffset + i] );
+            }
+            return bytes;
+        }
+
+        @Override
+        public void evicted( long pageId, Page page )
+        {
+            if ( onEviction != null )
+            {
+                onEviction.onEvict( pageId, page );
+            }
+        }
+
+        @Override
+        public File file()
+        {
+            return file;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        @Override
+        public void closeAndDelete()
+        {
+            files.remove( file );
+        }
+
+        @Override
+        public void force()
+        {
+            forces.incrementAndGet();
+        }
+
+        @Override
+        public long getLastPageId()
+        {
+            return pages.keySet().stream().mapToLong( Long::longValue ).max().orElse( -1 );
+        }
+
+        @Override
+        public void truncate()
+        {
+            pages.clear();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.neo4j.io.pagecache.IOLimiter;
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.io.pagecache.tracing.PageCacheTracer;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.io.pagecache.PagedFile.PF_SHARED_WRITE_LOCK;
+
+public class MuninnBackgroundFlushTest
+{
+    private static final int PAGE_SIZE = 8192;
+
+    private File file;
+    private InMemorySwapperFactory swapperFactory;
+    private MuninnPageCache pageCache;
+    private PagedFile pagedFile;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        // The page cache maps files by their canonical path.
+        file = new File( "a" ).getCanonicalFile();
+        swapperFactory = new InMemorySwapperFactory();
+        pageCache = new MuninnPageCache( swapperFactory, 64, PAGE_SIZE, PageCacheTracer.NULL );
+        pagedFile = pageCache.map( file, PAGE_SIZE, CREATE );
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        pagedFile.close();
+        pageCache.close();
+    }
+
+    @Test
+    public void mustWriteTheDirtyPagesWithoutForcingTheFile() throws Exception
+    {
+        write( 0, 1 );
+        write( 1, 2 );
+        write( 5, 3 );
+
+        assertEquals( 3, pageCache.flushInBackground( IOLimiter.unlimited() ) );
+
+        assertEquals( 1, swapperFactory.getPage( file, 0 )[0] );
+        assertEquals( 2, swapperFactory.getPage( file, 1 )[0] );
+        assertEquals( 3, swapperFactory.getPage( file, 5 )[0] );
+        assertEquals( 0, swapperFactory.forces.get() );
+    }
+
+    @Test
+    public void mustOnlyWritePagesThatWereDirtiedSinceTheLastFlush() throws Exception
+    {
+        write( 0, 1 );
+        write( 1, 2 );
+        pageCache.flushInBackground( IOLimiter.unlimited() );
+
+        assertEquals( 0, pageCache.flushInBackground( IOLimiter.unlimited() ) );
+
+        write( 1, 4 );
+        assertEquals( 1, pageCache.flushInBackground( IOLimiter.unlimited() ) );
+        assertEquals( 4, swapperFactory.getPage( file, 1 )[0] );
+    }
+
+    @Test
+    public void mustReportTheWrittenPagesToTheLimiter() throws Exception
+    {
+        // Pages 0 and 1 are adjacent and written together, page 5 on its own.
+        write( 0, 1 );
+        write( 1, 2 );
+        write( 5, 3 );
+        List<Integer> completedIOs = new ArrayList<>();
+        IOLimiter limiter = ( previousStamp, recentlyCompletedIOs, flushable ) ->
+        {
+            completedIOs.add( recentlyCompletedIOs );
+            return previousStamp + 1;
+        };
+
+        pageCache.flushInBackground( limiter );
+
+        assertEquals( 3, completedIOs.stream().mapToInt( Integer::intValue ).sum() );
+    }
+
+    @Test
+    public void mustReleaseTheFilesItFlushed() throws Exception
+    {
+        write( 0, 1 );
+        pageCache.flushInBackground( IOLimiter.unlimited() );
+
+        pagedFile.close();
+        assertFalse( pageCache.isMapped( file ) );
+        pagedFile = pageCache.map( file, PAGE_SIZE );
+        assertTrue( pageCache.isMapped( file ) );
+    }
+
+    @Test
+    public void mustFlushNothingOnceThePageCacheIsClosed() throws Exception
+    {
+        write( 0, 1 );
+        pagedFile.close();
+        pageCache.close();
+
+        assertEquals( 0, pageCache.flushInBackground( IOLimiter.unlimited() ) );
+
+        // So the tear down has something to close.
+        pageCache = new MuninnPageCache( swapperFactory, 64, PAGE_SIZE, PageCacheTracer.NULL );
+        pagedFile = pageCache.map( file, PAGE_SIZE );
+    }
+
+    private void write( long pageId, int value ) throws IOException
+    {
+        try ( PageCursor cursor = pagedFile.io( pageId, PF_SHARED_WRITE_LOCK ) )
+        {
+            assertTrue( cursor.next() );
+            cursor.putByte( (byte) value );
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.neo4j.io.pagecache.IOLimiter;
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.io.pagecache.tracing.PageCacheTracer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.io.pagecache.PagedFile.PF_SHARED_WRITE_LOCK;
+
+public class MuninnFlushEpochTest
+{
+    private static final int PAGE_SIZE = 8192;
+    private static final int FILE_PAGES = 4;
+
+    private File file;
+    private InMemorySwapperFactory swapperFactory;
+    private MuninnPageCache pageCache;
+    private PagedFile pagedFile;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        // The page cache maps files by their canonical path.
+        file = new File( "a" ).getCanonicalFile();
+        swapperFactory = new InMemorySwapperFactory();
+        for ( int i = 0; i < FILE_PAGES; i++ )
+        {
+            swapperFactory.putPage( file, i, new byte[PAGE_SIZE] );
+        }
+        pageCache = new MuninnPageCache( swapperFactory, 16, PAGE_SIZE, PageCacheTracer.NULL );
+        pagedFile = pageCache.map( file, PAGE_SIZE );
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        pagedFile.close();
+        pageCache.close();
+    }
+
+    @Test
+    public void flushAndForceMustLeaveOutPagesDirtiedSinceTheEpochBegan() throws Exception
+    {
+        write( 0, 1 );
+        long epoch = pageCache.beginFlushEpoch();
+        write( 1, 2 );
+
+        pageCache.flushAndForce( epoch, IOLimiter.unlimited() );
+        assertEquals( 1, writtenByte( 0 ) );
+        assertEquals( 0, writtenByte( 1 ) );
+
+        pageCache.flushAndForce( IOLimiter.unlimited() );
+        assertEquals( 2, writtenByte( 1 ) );
+    }
+
+    @Test
+    public void pageDirtiedBeforeTheEpochMustBeFlushedWithItsLatestChanges() throws Exception
+    {
+        write( 0, 1 );
+        long epoch = pageCache.beginFlushEpoch();
+        write( 0, 2 );
+
+        pageCache.flushAndForce( epoch, IOLimiter.unlimited() );
+
+        assertEquals( 2, writtenByte( 0 ) );
+    }
+
+    @Test
+    public void flushedPageMustBelongToTheEpochItIsDirtiedInNext() throws Exception
+    {
+        write( 0, 1 );
+        long firstEpoch = pageCache.beginFlushEpoch();
+        pageCache.flushAndForce( firstEpoch, IOLimiter.unlimited() );
+        assertEquals( 1, writtenByte( 0 ) );
+
+        write( 0, 3 );
+        pageCache.flushAndForce( firstEpoch, IOLimiter.unlimited() );
+        assertEquals( 1, writtenByte( 0 ) );
+
+        long secondEpoch = pageCache.beginFlushEpoch();
+        pageCache.flushAndForce( secondEpoch, IOLimiter.unlimited() );
+        assertEquals( 3, writtenByte( 0 ) );
+    }
+
+    @Test
+    public void beginFlushEpochMustReturnIncreasingEpochs() throws Exception
+    {
+        long first = pageCache.beginFlushEpoch();
+        long second = pageCache.beginFlushEpoch();
+
+        assertTrue( first < second );
+    }
+
+    @Test
+    public void closingMustFlushPagesOfEveryEpoch() throws Exception
+    {
+        write( 0, 1 );
+        pageCache.beginFlushEpoch();
+        write( 1, 2 );
+
+        pagedFile.close();
+        pagedFile = pageCache.map( file, PAGE_SIZE );
+
+        assertEquals( 1, writtenByte( 0 ) );
+        assertEquals( 2, writtenByte( 1 ) );
+    }
+
+    private void write( long filePageId, int value ) throws IOException
+    {
+        try ( PageCursor cursor = pagedFile.io( filePageId, PF_SHARED_WRITE_LOCK ) )
+        {
+            assertTrue( cursor.next() );
+            cursor.putByte( (byte) value );
+        }
+    }
+
+    private int writtenByte( long filePageId )
+    {
+        return swapperFactory.getPage( file, filePageId )[0];
+    }
+}
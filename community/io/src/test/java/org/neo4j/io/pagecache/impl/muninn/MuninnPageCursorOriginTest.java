@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.io.pagecache.monitoring.PageAccessCounters;
+import org.neo4j.io.pagecache.monitoring.PageCursorOrigin;
+import org.neo4j.io.pagecache.tracing.DefaultPageCacheTracer;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.io.pagecache.PagedFile.PF_SHARED_READ_LOCK;
+import static org.neo4j.io.pagecache.PagedFile.PF_SHARED_WRITE_LOCK;
+import static org.neo4j.io.pagecache.monitoring.PageCursorOrigin.BACKUP;
+import static org.neo4j.io.pagecache.monitoring.PageCursorOrigin.INDEX_POPULATION;
+import static org.neo4j.io.pagecache.monitoring.PageCursorOrigin.KERNEL;
+
+public class MuninnPageCursorOriginTest
+{
+    private static final int PAGE_SIZE = 8192;
+
+    private final DefaultPageCacheTracer tracer = new DefaultPageCacheTracer();
+    private File file;
+    private MuninnPageCache pageCache;
+    private PagedFile pagedFile;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        // The page cache maps files by their canonical path.
+        file = new File( "a" ).getCanonicalFile();
+        pageCache = new MuninnPageCache( new InMemorySwapperFactory(), 16, PAGE_SIZE, tracer );
+        pagedFile = pageCache.map( file, PAGE_SIZE, CREATE );
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        pagedFile.close();
+        pageCache.close();
+    }
+
+    @Test
+    public void unmarkedThreadsMustHaveTheKernelOrigin() throws Exception
+    {
+        AtomicReference<PageCursorOrigin> origin = new AtomicReference<>();
+        Thread thread = new Thread( () -> origin.set( PageCursorOrigin.current() ) );
+        thread.start();
+        thread.join();
+
+        assertSame( KERNEL, origin.get() );
+    }
+
+    @Test
+    public void enterMustReturnThePreviousOriginOfTheThread() throws Exception
+    {
+        PageCursorOrigin previous = INDEX_POPULATION.enter();
+        try
+        {
+            assertSame( KERNEL, previous );
+            assertSame( INDEX_POPULATION, BACKUP.enter() );
+            assertSame( BACKUP, PageCursorOrigin.current() );
+        }
+        finally
+        {
+            previous.enter();
+        }
+        assertSame( KERNEL, PageCursorOrigin.current() );
+    }
+
+    @Test
+    public void faultsAndHitsMustBeCountedUnderTheOriginOfTheThreadThatOpenedTheCursor() throws Exception
+    {
+        pin( 0, PF_SHARED_WRITE_LOCK );
+        PageCursorOrigin previous = INDEX_POPULATION.enter();
+        try
+        {
+            pin( 0, PF_SHARED_READ_LOCK );
+            pin( 1, PF_SHARED_WRITE_LOCK );
+            pin( 1, PF_SHARED_READ_LOCK );
+        }
+        finally
+        {
+            previous.enter();
+        }
+
+        assertCounts( tracer.originCounters( KERNEL ), 0, 1 );
+        assertCounts( tracer.originCounters( INDEX_POPULATION ), 2, 1 );
+        assertCounts( tracer.originCounters( BACKUP ), 0, 0 );
+        // The file counters count the accesses of every origin.
+        assertCounts( tracer.fileCounters().get( file ), 2, 2 );
+    }
+
+    @Test
+    public void theOriginOfOneThreadMustNotLeakIntoOtherThreads() throws Exception
+    {
+        PageCursorOrigin previous = BACKUP.enter();
+        try
+        {
+            Thread thread = new Thread( () ->
+            {
+                try
+                {
+                    pin( 3, PF_SHARED_WRITE_LOCK );
+                }
+                catch ( IOException e )
+                {
+                    throw new RuntimeException( e );
+                }
+            } );
+            thread.start();
+            thread.join();
+        }
+        finally
+        {
+            previous.enter();
+        }
+
+        assertCounts( tracer.originCounters( KERNEL ), 0, 1 );
+        assertCounts( tracer.originCounters( BACKUP ), 0, 0 );
+    }
+
+    private void pin( long pageId, int pfFlags ) throws IOException
+    {
+        try ( PageCursor cursor = pagedFile.io( pageId, pfFlags ) )
+        {
+            assertTrue( cursor.next() );
+        }
+    }
+
+    private static void assertCounts( PageAccessCounters counters, long hits, long faults )
+    {
+        assertEquals( "hits", hits, counters.hits() );
+        assertEquals( "faults", faults, counters.faults() );
+    }
+}
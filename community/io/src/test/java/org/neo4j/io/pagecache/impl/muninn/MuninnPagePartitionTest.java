@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.io.pagecache.tracing.PageCacheTracer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.io.pagecache.PagedFile.PF_SHARED_WRITE_LOCK;
+
+public class MuninnPagePartitionTest
+{
+    private static final int PAGE_SIZE = 8192;
+    private static final int MAX_PAGES = 2048;
+
+    private MuninnPageCache pageCache;
+    private PagedFile pagedFile;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        pageCache = new MuninnPageCache(
+                new InMemorySwapperFactory(), MAX_PAGES, PAGE_SIZE, PageCacheTracer.NULL, EvictionPolicies.CLOCK, 4 );
+        // The page cache maps files by their canonical path.
+        pagedFile = pageCache.map( new File( "a" ).getCanonicalFile(), PAGE_SIZE, StandardOpenOption.CREATE );
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        pagedFile.close();
+        pageCache.close();
+    }
+
+    @Test
+    public void smallCachesMustGetFewerPartitionsThanAskedFor() throws Exception
+    {
+        assertEquals( 2, pageCache.partitionCount() );
+
+        try ( MuninnPageCache tiny = new MuninnPageCache( new InMemorySwapperFactory(), 16, PAGE_SIZE,
+                PageCacheTracer.NULL, EvictionPolicies.CLOCK, 4 ) )
+        {
+            assertEquals( 1, tiny.partitionCount() );
+        }
+    }
+
+    @Test
+    public void pageFaultsMustTakePagesFromThePartitionOfTheFaultingThread() throws Exception
+    {
+        int home = homePartition();
+
+        List<PageCursor> cursors = pinPages( 100 );
+        closeAll( cursors );
+
+        assertEquals( 100, pageCache.partitionFaults( home ) );
+        assertEquals( 0, pageCache.partitionFaults( 1 - home ) );
+    }
+
+    @Test
+    public void pageFaultsMustTakePagesFromOtherPartitionsWhenTheHomePartitionHasNoFreePages() throws Exception
+    {
+        int home = homePartition();
+
+        // Keep all the pages pinned, so none of them can be evicted back onto the free list of the home partition.
+        List<PageCursor> cursors = pinPages( 1500 );
+        closeAll( cursors );
+
+        assertEquals( MAX_PAGES / 2, pageCache.partitionFaults( home ) );
+        assertEquals( 1500 - MAX_PAGES / 2, pageCache.partitionFaults( 1 - home ) );
+    }
+
+    private int homePartition()
+    {
+        return (int) (Thread.currentThread().getId() % pageCache.partitionCount());
+    }
+
+    private List<PageCursor> pinPages( int count ) throws IOException
+    {
+        List<PageCursor> cursors = new ArrayList<>();
+        for ( int i = 0; i < count; i++ )
+        {
+            PageCursor cursor = pagedFile.io( i, PF_SHARED_WRITE_LOCK );
+            cursors.add( cursor );
+            assertTrue( cursor.next() );
+        }
+        return cursors;
+    }
+
+    private void closeAll( List<PageCursor> cursors )
+    {
+        for ( PageCursor cursor : cursors )
+        {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.io.pagecache.tracing.PageCacheTracer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.io.pagecache.PagedFile.PF_SHARED_READ_LOCK;
+import static org.neo4j.io.pagecache.PagedFile.PF_SHARED_WRITE_LOCK;
+
+public class MuninnPagedFilePeekTest
+{
+    private static final int PAGE_SIZE = 8192;
+    private static final int FILE_PAGES = 100;
+
+    private File file;
+    private InMemorySwapperFactory swapperFactory;
+    private MuninnPageCache pageCache;
+    private PagedFile pagedFile;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        // The page cache maps files by their canonical path.
+        file = new File( "a" ).getCanonicalFile();
+        swapperFactory = new InMemorySwapperFactory();
+        for ( int i = 0; i < FILE_PAGES; i++ )
+        {
+            swapperFactory.putPage( file, i, pageData( i ) );
+        }
+        pageCache = new MuninnPageCache( swapperFactory, 16, PAGE_SIZE, PageCacheTracer.NULL );
+        pagedFile = pageCache.map( file, PAGE_SIZE );
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        pagedFile.close();
+        pageCache.close();
+    }
+
+    @Test
+    public void peekMustCopyTheBytesOfAResidentPage() throws Exception
+    {
+        touch( 7 );
+        byte[] target = new byte[20];
+
+        assertTrue( pagedFile.peek( 7, 100, target, 16 ) );
+
+        byte[] expected = Arrays.copyOf( Arrays.copyOfRange( pageData( 7 ), 100, 116 ), 20 );
+        assertArrayEquals( expected, target );
+    }
+
+    @Test
+    public void peekMustSeeWritesMadeThroughCursors() throws Exception
+    {
+        byte[] data = {1, 2, 3, 4, 5, 6, 7, 8};
+        try ( PageCursor cursor = pagedFile.io( 3, PF_SHARED_WRITE_LOCK ) )
+        {
+            assertTrue( cursor.next() );
+            cursor.setOffset( PAGE_SIZE - data.length );
+            cursor.putBytes( data );
+        }
+        byte[] target = new byte[data.length];
+
+        assertTrue( pagedFile.peek( 3, PAGE_SIZE - data.length, target, data.length ) );
+        assertArrayEquals( data, target );
+    }
+
+    @Test
+    public void peekMustNotFaultPagesIn() throws Exception
+    {
+        assertFalse( pagedFile.peek( 5, 0, new byte[8], 8 ) );
+        assertFalse( pagedFile.peek( FILE_PAGES * 10, 0, new byte[8], 8 ) );
+
+        assertEquals( 0, swapperFactory.pageReads.get() );
+    }
+
+    @Test
+    public void peekMustRefuseRangesOutsideThePageOrTheArray() throws Exception
+    {
+        touch( 0 );
+
+        assertFalse( pagedFile.peek( 0, PAGE_SIZE - 4, new byte[8], 8 ) );
+        assertFalse( pagedFile.peek( 0, -1, new byte[8], 8 ) );
+        assertFalse( pagedFile.peek( 0, 0, new byte[8], -1 ) );
+        assertFalse( pagedFile.peek( 0, 0, new byte[4], 8 ) );
+        assertFalse( pagedFile.peek( -1, 0, new byte[8], 8 ) );
+        assertTrue( pagedFile.peek( 0, PAGE_SIZE - 8, new byte[8], 8 ) );
+    }
+
+    @Test
+    public void peekMustFailOnceThePageIsEvicted() throws Exception
+    {
+        touch( 0 );
+        // The cache only holds 16 pages, so pinning every other page must evict page 0.
+        for ( int i = 1; i < FILE_PAGES; i++ )
+        {
+            touch( i );
+        }
+
+        assertFalse( pagedFile.peek( 0, 0, new byte[8], 8 ) );
+    }
+
+    @Test
+    public void peekMustFailWhileThePageIsWriteLocked() throws Exception
+    {
+        touch( 2 );
+        try ( PageCursor cursor = pagedFile.io( 2, PF_SHARED_WRITE_LOCK ) )
+        {
+            assertTrue( cursor.next() );
+            assertFalse( pagedFile.peek( 2, 0, new byte[8], 8 ) );
+        }
+        assertTrue( pagedFile.peek( 2, 0, new byte[8], 8 ) );
+    }
+
+    private void touch( long filePageId ) throws IOException
+    {
+        try ( PageCursor cursor = pagedFile.io( filePageId, PF_SHARED_READ_LOCK ) )
+        {
+            assertTrue( cursor.next() );
+        }
+    }
+
+    private static byte[] pageData( int filePageId )
+    {
+        byte[] data = new byte[PAGE_SIZE];
+        for ( int i = 0; i < PAGE_SIZE; i++ )
+        {
+            data[i] = (byte) (filePageId + i);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.io.pagecache.tracing.PageCacheTracer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.io.pagecache.PagedFile.PF_READ_AHEAD;
+import static org.neo4j.io.pagecache.PagedFile.PF_SHARED_READ_LOCK;
+
+public class MuninnReadAheadTest
+{
+    private static final int PAGE_SIZE = 8192;
+    private static final int FILE_PAGES = 100;
+
+    private File file;
+    private InMemorySwapperFactory swapperFactory;
+    private MuninnPageCache pageCache;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        // The page cache maps files by their canonical path.
+        file = new File( "a" ).getCanonicalFile();
+        swapperFactory = new InMemorySwapperFactory();
+        pageCache = new MuninnPageCache( swapperFactory, 1024, PAGE_SIZE, PageCacheTracer.NULL );
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        pageCache.close();
+    }
+
+    @Test
+    public void pagesAfterARunOfSequentialPinsMustBeReadAhead() throws Exception
+    {
+        writePages( FILE_PAGES );
+        try ( PagedFile pagedFile = pageCache.map( file, PAGE_SIZE );
+              PageCursor cursor = pagedFile.io( 0, PF_SHARED_READ_LOCK ) )
+        {
+            for ( int i = 0; i < 4; i++ )
+            {
+                assertNextPage( cursor, i );
+            }
+            // The slots of the pages are latched before the vectored read, so the cursor can not overtake it now.
+            awaitAtLeast( swapperFactory.vectoredReads, 1 );
+            for ( int i = 4; i < 8; i++ )
+            {
+                assertNextPage( cursor, i );
+            }
+            // The next window was started when the cursor came halfway through this one, and is twice as large.
+            awaitAtLeast( swapperFactory.vectoredReads, 2 );
+            for ( int i = 8; i < 16; i++ )
+            {
+                assertNextPage( cursor, i );
+            }
+            assertEquals( 4, swapperFactory.pageReads.get() );
+        }
+    }
+
+    @Test
+    public void readAheadFlagMustStartReadingAheadFromTheFirstPin() throws Exception
+    {
+        writePages( FILE_PAGES );
+        try ( PagedFile pagedFile = pageCache.map( file, PAGE_SIZE );
+              PageCursor cursor = pagedFile.io( 10, PF_SHARED_READ_LOCK | PF_READ_AHEAD ) )
+        {
+            assertNextPage( cursor, 10 );
+            awaitAtLeast( swapperFactory.vectoredReads, 1 );
+            for ( int i = 11; i < 15; i++ )
+            {
+                assertNextPage( cursor, i );
+            }
+            assertEquals( 1, swapperFactory.pageReads.get() );
+        }
+    }
+
+    @Test
+    public void randomPinsMustNotReadAhead() throws Exception
+    {
+        writePages( FILE_PAGES );
+        try ( PagedFile pagedFile = pageCache.map( file, PAGE_SIZE );
+              PageCursor cursor = pagedFile.io( 0, PF_SHARED_READ_LOCK ) )
+        {
+            for ( int i = 0; i < FILE_PAGES; i += 7 )
+            {
+                assertNextPage( cursor, i );
+            }
+        }
+        // Unmapping waits for any read-ahead that is still in flight.
+        assertEquals( 0, swapperFactory.vectoredReads.get() );
+    }
+
+    @Test
+    public void readAheadMustStopAtTheEndOfTheFile() throws Exception
+    {
+        writePages( 6 );
+        try ( PagedFile pagedFile = pageCache.map( file, PAGE_SIZE );
+              PageCursor cursor = pagedFile.io( 0, PF_SHARED_READ_LOCK ) )
+        {
+            for ( int i = 0; i < 4; i++ )
+            {
+                assertNextPage( cursor, i );
+            }
+            awaitAtLeast( swapperFactory.vectoredReads, 1 );
+            for ( int i = 4; i < 6; i++ )
+            {
+                assertNextPage( cursor, i );
+            }
+            assertEquals( 4, swapperFactory.pageReads.get() );
+        }
+        assertEquals( 2, swapperFactory.vectoredPageReads.get() );
+    }
+
+    @Test
+    public void smallCacheMustNotReadAhead() throws Exception
+    {
+        pageCache.close();
+        pageCache = new MuninnPageCache( swapperFactory, 32, PAGE_SIZE, PageCacheTracer.NULL );
+        writePages( FILE_PAGES );
+        try ( PagedFile pagedFile = pageCache.map( file, PAGE_SIZE );
+              PageCursor cursor = pagedFile.io( 0, PF_SHARED_READ_LOCK | PF_READ_AHEAD ) )
+        {
+            for ( int i = 0; i < 16; i++ )
+            {
+                assertNextPage( cursor, i );
+            }
+        }
+        assertEquals( 0, swapperFactory.vectoredReads.get() );
+        assertEquals( 16, swapperFactory.pageReads.get() );
+    }
+
+    private void writePages( int count )
+    {
+        for ( int i = 0; i < count; i++ )
+        {
+            byte[] data = new byte[PAGE_SIZE];
+            data[0] = (byte) i;
+            data[PAGE_SIZE - 1] = (byte) i;
+            swapperFactory.putPage( file, i, data );
+        }
+    }
+
+    private static void assertNextPage( PageCursor cursor, long expectedPageId ) throws IOException
+    {
+        assertTrue( cursor.next( expectedPageId ) );
+        byte first;
+        byte last;
+        do
+        {
+            first = cursor.getByte( 0 );
+            last = cursor.getByte( PAGE_SIZE - 1 );
+        }
+        while ( cursor.shouldRetry() );
+        assertEquals( (byte) expectedPageId, first );
+        assertEquals( (byte) expectedPageId, last );
+    }
+
+    private static void awaitAtLeast( AtomicInteger counter, int value ) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 10 );
+        while ( counter.get() < value )
+        {
+            assertTrue( "Timed out waiting for a read-ahead", System.nanoTime() < deadline );
+            Thread.sleep( 1 );
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.neo4j.io.fs.DefaultFileSystemAbstraction;
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.io.pagecache.tracing.DefaultPageCacheTracer;
+import org.neo4j.io.pagecache.tracing.PageCacheTracer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.io.pagecache.PagedFile.PF_SHARED_READ_LOCK;
+
+public class PageCacheWarmerTest
+{
+    private static final int PAGE_SIZE = 8192;
+    private static final int FILE_PAGES = 100;
+    private static final long[] HOT_PAGES = {3, 10, 50, 99};
+
+    private FileSystemAbstraction fs;
+    private File directory;
+    private File profileDirectory;
+    private File file;
+    private InMemorySwapperFactory swapperFactory;
+    private DefaultPageCacheTracer tracer;
+    private MuninnPageCache pageCache;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        // The profiles go through the file system, so on the NVM file system they live in persistent memory.
+        fs = new DefaultFileSystemAbstraction();
+        directory = new File( File.separator + getClass().getSimpleName() + "-" + System.nanoTime() );
+        profileDirectory = new File( directory, "profiles" );
+        fs.mkdirs( directory );
+        // The page cache maps files by their canonical path.
+        file = new File( directory, "a" ).getCanonicalFile();
+        swapperFactory = new InMemorySwapperFactory();
+        writePages( FILE_PAGES );
+        tracer = new DefaultPageCacheTracer();
+        pageCache = new MuninnPageCache( swapperFactory, 1024, PAGE_SIZE, tracer );
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        pageCache.close();
+        fs.deleteRecursively( directory );
+    }
+
+    @Test
+    public void reheatMustLoadThePagesThatWereResidentWhenProfiled() throws Exception
+    {
+        profileHotPages();
+        restart( 1024 );
+
+        try ( PagedFile pagedFile = pageCache.map( file, PAGE_SIZE ) )
+        {
+            assertEquals( HOT_PAGES.length, new PageCacheWarmer( pageCache, fs, profileDirectory ).reheat() );
+            assertEquals( HOT_PAGES.length, swapperFactory.pageReads.get() );
+            assertEquals( HOT_PAGES.length, tracer.pagesWarmedUp() );
+
+            touch( pagedFile, HOT_PAGES );
+            assertEquals( HOT_PAGES.length, swapperFactory.pageReads.get() );
+        }
+    }
+
+    @Test
+    public void reheatMustStopWhenTheCacheIsFull() throws Exception
+    {
+        try ( PagedFile pagedFile = pageCache.map( file, PAGE_SIZE ) )
+        {
+            long[] allPages = new long[FILE_PAGES];
+            for ( int i = 0; i < FILE_PAGES; i++ )
+            {
+                allPages[i] = i;
+            }
+            touch( pagedFile, allPages );
+            assertEquals( 1, new PageCacheWarmer( pageCache, fs, profileDirectory ).profile() );
+        }
+        restart( 32 );
+
+        try ( PagedFile ignore = pageCache.map( file, PAGE_SIZE ) )
+        {
+            assertEquals( 32, new PageCacheWarmer( pageCache, fs, profileDirectory ).reheat() );
+        }
+    }
+
+    @Test
+    public void reheatMustSkipProfilesOfAnotherPageSize() throws Exception
+    {
+        profileHotPages();
+        restart( 1024 );
+
+        try ( PagedFile ignore = pageCache.map( file, PAGE_SIZE / 2 ) )
+        {
+            assertEquals( 0, new PageCacheWarmer( pageCache, fs, profileDirectory ).reheat() );
+        }
+        assertEquals( 0, swapperFactory.pageReads.get() );
+    }
+
+    @Test
+    public void reheatMustNotGrowAFileThatShrankSinceItWasProfiled() throws Exception
+    {
+        profileHotPages();
+        pageCache.close();
+        swapperFactory = new InMemorySwapperFactory();
+        writePages( 20 );
+        pageCache = new MuninnPageCache( swapperFactory, 1024, PAGE_SIZE, tracer );
+
+        try ( PagedFile pagedFile = pageCache.map( file, PAGE_SIZE ) )
+        {
+            assertEquals( 2, new PageCacheWarmer( pageCache, fs, profileDirectory ).reheat() );
+            assertEquals( 19, pagedFile.getLastPageId() );
+        }
+    }
+
+    @Test
+    public void stoppedWarmerMustNotReheat() throws Exception
+    {
+        profileHotPages();
+        restart( 1024 );
+
+        try ( PagedFile ignore = pageCache.map( file, PAGE_SIZE ) )
+        {
+            PageCacheWarmer warmer = new PageCacheWarmer( pageCache, fs, profileDirectory );
+            warmer.stop();
+            assertEquals( 0, warmer.reheat() );
+            assertEquals( 1, warmer.profile() );
+        }
+    }
+
+    @Test
+    public void reheatWithoutProfileMustLoadNothing() throws Exception
+    {
+        try ( PagedFile ignore = pageCache.map( file, PAGE_SIZE ) )
+        {
+            assertEquals( 0, new PageCacheWarmer( pageCache, fs, profileDirectory ).reheat() );
+        }
+        assertFalse( fs.fileExists( profileDirectory ) );
+    }
+
+    private void profileHotPages() throws IOException
+    {
+        try ( PagedFile pagedFile = pageCache.map( file, PAGE_SIZE ) )
+        {
+            touch( pagedFile, HOT_PAGES );
+            assertEquals( 1, new PageCacheWarmer( pageCache, fs, profileDirectory ).profile() );
+        }
+    }
+
+    private void restart( int maxPages ) throws IOException
+    {
+        pageCache.close();
+        swapperFactory.pageReads.set( 0 );
+        tracer = new DefaultPageCacheTracer();
+        pageCache = new MuninnPageCache( swapperFactory, maxPages, PAGE_SIZE, tracer );
+    }
+
+    private void writePages( int count )
+    {
+        for ( int i = 0; i < count; i++ )
+        {
+            swapperFactory.putPage( file, i, new byte[PAGE_SIZE] );
+        }
+    }
+
+    private static void touch( PagedFile pagedFile, long[] filePageIds ) throws IOException
+    {
+        try ( PageCursor cursor = pagedFile.io( 0, PF_SHARED_READ_LOCK ) )
+        {
+            for ( long filePageId : filePageIds )
+            {
+                assertTrue( cursor.next( filePageId ) );
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.io.pagecache.tracing.PageCacheTracer;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.io.pagecache.PageCacheOpenOptions.ANY_PAGE_SIZE;
+
+public class SizeClassPageCacheTest
+{
+    private static final int SMALL = 8192;
+    private static final int LARGE = 65536;
+
+    private File file;
+    private SizeClassPageCache pageCache;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        // The page cache maps files by their canonical path.
+        file = new File( "a" ).getCanonicalFile();
+        pageCache = sizeClassPageCache( new int[]{SMALL, LARGE}, new int[]{16, 4}, SMALL );
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        pageCache.close();
+    }
+
+    @Test
+    public void mustReportThePageSizesAndPagesOfAllTheSizeClasses() throws Exception
+    {
+        assertEquals( SMALL, pageCache.pageSize() );
+        assertArrayEquals( new int[]{SMALL, LARGE}, pageCache.pageSizes() );
+        assertEquals( 20, pageCache.maxCachedPages() );
+    }
+
+    @Test
+    public void filesMustBeMappedInTheSmallestSizeClassThatTheirPagesFitIn() throws Exception
+    {
+        File other = new File( "b" ).getCanonicalFile();
+        try ( PagedFile small = pageCache.map( file, 100, CREATE );
+              PagedFile large = pageCache.map( other, SMALL + 1, CREATE ) )
+        {
+            assertEquals( 100, small.pageSize() );
+            assertTrue( pageCache.sizeClass( SMALL ).isMapped( file ) );
+            assertFalse( pageCache.sizeClass( LARGE ).isMapped( file ) );
+
+            assertEquals( SMALL + 1, large.pageSize() );
+            assertTrue( pageCache.sizeClass( LARGE ).isMapped( other ) );
+            assertFalse( pageCache.sizeClass( SMALL ).isMapped( other ) );
+        }
+    }
+
+    @Test
+    public void mappedFilesMustBeMappedAgainInTheSameSizeClass() throws Exception
+    {
+        try ( PagedFile first = pageCache.map( file, SMALL, CREATE );
+              PagedFile second = pageCache.map( file, LARGE, ANY_PAGE_SIZE ) )
+        {
+            assertEquals( SMALL, second.pageSize() );
+            assertFalse( pageCache.sizeClass( LARGE ).isMapped( file ) );
+        }
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void mustRefuseFilePagesThatAreLargerThanTheLargestSizeClass() throws Exception
+    {
+        pageCache.map( file, LARGE + 1, CREATE );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void mustRefuseCachePageSizesThatAreNotInAscendingOrder() throws Exception
+    {
+        sizeClassPageCache( new int[]{LARGE, SMALL}, new int[]{4, 16}, SMALL ).close();
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void mustRefuseADefaultPageSizeThatIsNotOneOfTheSizeClasses() throws Exception
+    {
+        sizeClassPageCache( new int[]{SMALL, LARGE}, new int[]{16, 4}, 4096 ).close();
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void mustRefuseMissingPageCounts() throws Exception
+    {
+        sizeClassPageCache( new int[]{SMALL, LARGE}, new int[]{16}, SMALL ).close();
+    }
+
+    private static SizeClassPageCache sizeClassPageCache( int[] cachePageSizes, int[] maxPages, int defaultPageSize )
+    {
+        return new SizeClassPageCache( new InMemorySwapperFactory(), cachePageSizes, maxPages, defaultPageSize,
+                PageCacheTracer.NULL, EvictionPolicies.CLOCK, 1, null, false );
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.muninn;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.neo4j.io.pagecache.PageSwapper;
+import org.neo4j.io.pagecache.tracing.EvictionEvent;
+import org.neo4j.io.pagecache.tracing.PageFaultEvent;
+import org.neo4j.unsafe.impl.internal.dragons.MemoryManager;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TwoQueueEvictionPolicyTest
+{
+    private static final int MAX_PAGES = 8; // So at most two pages on probation.
+    private static final int PAGE_SIZE = 64;
+
+    private TwoQueueEvictionPolicy policy;
+    private MemoryManager memoryManager;
+    private PageSwapper swapper;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        policy = new TwoQueueEvictionPolicy( MAX_PAGES );
+        memoryManager = new MemoryManager( MAX_PAGES * PAGE_SIZE, 8 );
+        swapper = new InMemorySwapperFactory().createPageSwapper( new File( "a" ), PAGE_SIZE, null, true );
+    }
+
+    @Test
+    public void probationPagesMustOnlyBeEvictedWhenProbationOutgrowsAQuarterOfTheCache() throws Exception
+    {
+        MuninnPage a = fault( 0, false );
+        fault( 1, false );
+        assertFalse( policy.shouldEvict( a ) );
+
+        fault( 2, false );
+        assertTrue( policy.shouldEvict( a ) );
+    }
+
+    @Test
+    public void hitsOnProbationMustNotProtectThePage() throws Exception
+    {
+        MuninnPage a = fault( 0, false );
+        for ( int i = 0; i < 10; i++ )
+        {
+            policy.pageHit( a, false );
+        }
+        fault( 1, false );
+        fault( 2, false );
+
+        assertTrue( policy.shouldEvict( a ) );
+    }
+
+    @Test
+    public void pageReturningAfterEvictionFromProbationMustBeProtected() throws Exception
+    {
+        MuninnPage a = fault( 0, false );
+        evict( a );
+        fault( a, 0, false );
+        fault( 1, false );
+        MuninnPage c = fault( 2, false );
+        fault( 3, false );
+
+        // The probation is full, so the sweep only takes probationary pages.
+        assertFalse( policy.shouldEvict( a ) );
+        assertTrue( policy.shouldEvict( c ) );
+        evict( c );
+
+        // Now it ages the protected page, which was used once.
+        assertTrue( policy.shouldEvict( a ) );
+    }
+
+    @Test
+    public void hitsOnProtectedPagesMustDelayTheirEviction() throws Exception
+    {
+        MuninnPage a = fault( 0, false );
+        evict( a );
+        fault( a, 0, false );
+        policy.pageHit( a, false );
+
+        assertFalse( policy.shouldEvict( a ) );
+        assertTrue( policy.shouldEvict( a ) );
+    }
+
+    @Test
+    public void scanPagesMustNeverBeProtected() throws Exception
+    {
+        MuninnPage a = fault( 0, true );
+        evict( a );
+        fault( a, 0, true );
+        policy.pageHit( a, true );
+        fault( 1, false );
+        fault( 2, false );
+
+        assertTrue( policy.shouldEvict( a ) );
+    }
+
+    @Test
+    public void ghostMustOnlyProtectThePageOnce() throws Exception
+    {
+        MuninnPage a = fault( 0, false );
+        evict( a );
+        fault( a, 0, false );
+        evict( a );
+        fault( a, 0, false );
+        fault( 1, false );
+        fault( 2, false );
+
+        assertTrue( policy.shouldEvict( a ) );
+    }
+
+    @Test
+    public void pageWithFailedFaultMustBeEvictedAtOnce() throws Exception
+    {
+        MuninnPage a = new MuninnPage( PAGE_SIZE, memoryManager );
+
+        assertTrue( policy.shouldEvict( a ) );
+    }
+
+    private MuninnPage fault( long filePageId, boolean scan ) throws IOException
+    {
+        MuninnPage page = new MuninnPage( PAGE_SIZE, memoryManager );
+        fault( page, filePageId, scan );
+        return page;
+    }
+
+    private void fault( MuninnPage page, long filePageId, boolean scan ) throws IOException
+    {
+        page.initBuffer();
+        page.fault( swapper, filePageId, PageFaultEvent.NULL );
+        policy.pageFaulted( page, scan );
+    }
+
+    private void evict( MuninnPage page ) throws IOException
+    {
+        PageSwapper pageSwapper = page.getSwapper();
+        long filePageId = page.getFilePageId();
+        page.evict( EvictionEvent.NULL );
+        policy.pageEvicted( page, pageSwapper, filePageId );
+    }
+}
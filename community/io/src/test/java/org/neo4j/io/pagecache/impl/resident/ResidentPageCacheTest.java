@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.impl.resident;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.neo4j.io.fs.DelegateFileSystemAbstraction;
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.io.pagecache.tracing.PageCacheTracer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.neo4j.io.pagecache.PagedFile.PF_SHARED_READ_LOCK;
+import static org.neo4j.io.pagecache.PagedFile.PF_SHARED_WRITE_LOCK;
+
+public class ResidentPageCacheTest
+{
+    private static final int PAGE_SIZE = 8192;
+    private static final int MAX_SHADOW_PAGES = 4;
+
+    @Rule
+    public final TemporaryFolder directory = new TemporaryFolder();
+
+    private File file;
+    private ResidentPageCache pageCache;
+
+    @Before
+    public void setUp()
+    {
+        file = new File( directory.getRoot(), "store" );
+        pageCache = new ResidentPageCache( nativeFileSystem(),
+                MAX_SHADOW_PAGES, PAGE_SIZE, PageCacheTracer.NULL );
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        pageCache.close();
+    }
+
+    @Test
+    public void shouldReadBackWrittenPages() throws Exception
+    {
+        try ( PagedFile pagedFile = pageCache.map( file, PAGE_SIZE, StandardOpenOption.CREATE ) )
+        {
+            writePages( pagedFile, 10, 1 );
+
+            assertEquals( 9, pagedFile.getLastPageId() );
+            assertPages( pagedFile, 10, 1 );
+        }
+    }
+
+    @Test
+    public void shouldKeepPagesAcrossMappings() throws Exception
+    {
+        try ( PagedFile pagedFile = pageCache.map( file, PAGE_SIZE, StandardOpenOption.CREATE ) )
+        {
+            writePages( pagedFile, 10, 1 );
+            pagedFile.flushAndForce();
+        }
+
+        try ( PagedFile pagedFile = pageCache.map( file, PAGE_SIZE ) )
+        {
+            assertEquals( 9, pagedFile.getLastPageId() );
+            assertPages( pagedFile, 10, 1 );
+        }
+        assertEquals( 10L * PAGE_SIZE, file.length() );
+    }
+
+    @Test
+    public void shouldOnlyShowWritesToReadersOnceTheWriterUnpinsThePage() throws Exception
+    {
+        try ( PagedFile pagedFile = pageCache.map( file, PAGE_SIZE, StandardOpenOption.CREATE ) )
+        {
+            writePages( pagedFile, 1, 1 );
+
+            try ( PageCursor writer = pagedFile.io( 0, PF_SHARED_WRITE_LOCK ) )
+            {
+                assertTrue( writer.next() );
+                writer.putLong( 0, 42 );
+
+                try ( PageCursor reader = pagedFile.io( 0, PF_SHARED_READ_LOCK ) )
+                {
+                    assertTrue( reader.next() );
+                    assertEquals( 1, reader.getLong( 0 ) );
+                }
+            }
+
+            assertPages( pagedFile, 1, 42 );
+        }
+    }
+
+    @Test
+    public void shouldWriteFromMoreThreadsThanThereAreShadowPages() throws Exception
+    {
+        int threads = MAX_SHADOW_PAGES * 2;
+        int pagesPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try ( PagedFile pagedFile = pageCache.map( file, PAGE_SIZE, StandardOpenOption.CREATE ) )
+        {
+            List<Future<?>> writes = new ArrayList<>();
+            for ( int thread = 0; thread < threads; thread++ )
+            {
+                int first = thread;
+                writes.add( executor.submit( () ->
+                {
+                    for ( int round = 0; round < 10; round++ )
+                    {
+                        for ( long pageId = first; pageId < threads * pagesPerThread; pageId += threads )
+                        {
+                            try ( PageCursor cursor = pagedFile.io( pageId, PF_SHARED_WRITE_LOCK ) )
+                            {
+                                assertTrue( cursor.next() );
+                                cursor.putLong( 0, cursor.getLong( 0 ) + 1 );
+                            }
+                        }
+                    }
+                    return null;
+                } ) );
+            }
+            for ( Future<?> write : writes )
+            {
+                write.get();
+            }
+
+            assertPages( pagedFile, threads * pagesPerThread, 10 );
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldReportShadowPagesAsCachedPages()
+    {
+        assertEquals( MAX_SHADOW_PAGES, pageCache.maxCachedPages() );
+    }
+
+    @Test
+    public void shouldRefuseToCloseWhileFilesAreMapped() throws Exception
+    {
+        try ( PagedFile ignore = pageCache.map( file, PAGE_SIZE, StandardOpenOption.CREATE ) )
+        {
+            pageCache.close();
+            fail( "Should not close the page cache while a file is mapped" );
+        }
+        catch ( IllegalStateException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( file.getName() ) );
+        }
+    }
+
+    private static void writePages( PagedFile pagedFile, int pages, long value ) throws IOException
+    {
+        try ( PageCursor cursor = pagedFile.io( 0, PF_SHARED_WRITE_LOCK ) )
+        {
+            for ( int pageId = 0; pageId < pages; pageId++ )
+            {
+                assertTrue( cursor.next() );
+                cursor.putLong( 0, value );
+            }
+        }
+    }
+
+    private static void assertPages( PagedFile pagedFile, int pages, long value ) throws IOException
+    {
+        try ( PageCursor cursor = pagedFile.io( 0, PF_SHARED_READ_LOCK ) )
+        {
+            for ( int pageId = 0; pageId < pages; pageId++ )
+            {
+                assertTrue( cursor.next() );
+                long read;
+                do
+                {
+                    read = cursor.getLong( 0 );
+                }
+                while ( cursor.shouldRetry() );
+                assertEquals( value, read );
+            }
+        }
+    }
+
+    /**
+     * A file system that keeps its files in operating system files, for swappers that map them. Only the swappers
+     * touch the files in this test.
+     */
+    private static FileSystemAbstraction nativeFileSystem()
+    {
+        return new DelegateFileSystemAbstraction( FileSystems.getDefault() )
+        {
+            @Override
+            public File nativeFile( File fileName )
+            {
+                return fileName;
+            }
+        };
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.io.pagecache.monitoring;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PageAccessCountersTest
+{
+    @Test
+    public void pinsMustBeTheSumOfHitsAndFaults() throws Exception
+    {
+        PageAccessCounters counters = new PageAccessCounters();
+
+        counters.hit();
+        counters.hit();
+        counters.hit();
+        counters.fault( 100 );
+
+        assertEquals( 3, counters.hits() );
+        assertEquals( 1, counters.faults() );
+        assertEquals( 4, counters.pins() );
+        assertEquals( 0.75, counters.hitRatio(), 0.0 );
+    }
+
+    @Test
+    public void hitRatioMustBeOneWithoutPins() throws Exception
+    {
+        assertEquals( 1.0, new PageAccessCounters().hitRatio(), 0.0 );
+    }
+
+    @Test
+    public void mustCountEvictionsAndFlushedPages() throws Exception
+    {
+        PageAccessCounters counters = new PageAccessCounters();
+
+        counters.evicted();
+        counters.flushed( 3 );
+        counters.flushed( 4 );
+
+        assertEquals( 1, counters.evictions() );
+        assertEquals( 7, counters.pagesFlushed() );
+    }
+
+    @Test
+    public void faultLatenciesMustGoInPowerOfTwoBuckets() throws Exception
+    {
+        PageAccessCounters counters = new PageAccessCounters();
+
+        counters.fault( 0 );
+        counters.fault( 1 );
+        counters.fault( 2 );
+        counters.fault( 3 );
+        counters.fault( 1024 );
+        counters.fault( Long.MAX_VALUE );
+
+        long[] histogram = counters.faultLatencyHistogram();
+        assertEquals( PageAccessCounters.LATENCY_BUCKETS, histogram.length );
+        assertEquals( 2, histogram[0] );
+        assertEquals( 2, histogram[1] );
+        assertEquals( 1, histogram[10] );
+        assertEquals( 1, histogram[PageAccessCounters.LATENCY_BUCKETS - 1] );
+    }
+
+    @Test
+    public void faultLatencyPercentilesMustBeTheUpperBoundOfTheirBucket() throws Exception
+    {
+        PageAccessCounters counters = new PageAccessCounters();
+        assertEquals( 0, counters.faultLatencyPercentile( 99 ) );
+
+        for ( int i = 0; i < 99; i++ )
+        {
+            counters.fault( 1000 );
+        }
+        counters.fault( 1_000_000 );
+
+        assertEquals( 1023, counters.faultLatencyPercentile( 50 ) );
+        assertEquals( 1023, counters.faultLatencyPercentile( 99 ) );
+        assertEquals( (1L << 20) - 1, counters.faultLatencyPercentile( 100 ) );
+    }
+
+    @Test
+    public void toStringMustIncludeTheCounts() throws Exception
+    {
+        PageAccessCounters counters = new PageAccessCounters();
+        counters.hit();
+        counters.fault( 1000 );
+
+        String description = counters.toString();
+
+        assertTrue( description, description.contains( "pins=2" ) );
+        assertTrue( description, description.contains( "hits=1" ) );
+        assertTrue( description, description.contains( "faults=1" ) );
+        assertTrue( description, description.contains( "faultLatencyP99=1023ns" ) );
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.impl.internal.dragons;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryManagerTest
+{
+    private static final int PAGE_SIZE = 8192;
+    private static final long HUGE_PAGE_SIZE = 2 * 1024 * 1024;
+
+    @Rule
+    public final TemporaryFolder directory = new TemporaryFolder();
+
+    @Test
+    public void allocatedPointersMustBeAligned() throws Exception
+    {
+        MemoryManager memoryManager = new MemoryManager( 16 * PAGE_SIZE, PAGE_SIZE );
+
+        for ( int i = 0; i < 16; i++ )
+        {
+            assertEquals( 0, memoryManager.allocateAligned( PAGE_SIZE ) % PAGE_SIZE );
+        }
+        assertEquals( 16 * PAGE_SIZE, memoryManager.grabbedBytes() );
+    }
+
+    @Test
+    public void preallocatedMemoryMustFitTheWholeReserveDespiteAlignment() throws Exception
+    {
+        MemoryManager memoryManager = new MemoryManager( 16 * PAGE_SIZE, PAGE_SIZE );
+
+        memoryManager.preallocate( false );
+        long first = memoryManager.allocateAligned( PAGE_SIZE );
+        for ( int i = 1; i < 16; i++ )
+        {
+            assertEquals( first + i * PAGE_SIZE, memoryManager.allocateAligned( PAGE_SIZE ) );
+        }
+        assertEquals( 0, first % PAGE_SIZE );
+        assertEquals( 16 * PAGE_SIZE, memoryManager.grabbedBytes() );
+    }
+
+    @Test
+    public void allocationsMustUseAllOfThePreallocatedSlabsBeforeGrowing() throws Exception
+    {
+        MemoryManager memoryManager = new MemoryManager( 8 * PAGE_SIZE, PAGE_SIZE );
+
+        // Slabs of three, three and two pages.
+        memoryManager.preallocate( false, 3 * PAGE_SIZE );
+        assertEquals( 8 * PAGE_SIZE, memoryManager.grabbedBytes() );
+        // A large allocation can only be satisfied by one of the slabs further down the preallocated list.
+        memoryManager.allocateAligned( PAGE_SIZE );
+        memoryManager.allocateAligned( 3 * PAGE_SIZE );
+        for ( int i = 0; i < 4; i++ )
+        {
+            memoryManager.allocateAligned( PAGE_SIZE );
+        }
+        assertEquals( 8 * PAGE_SIZE, memoryManager.grabbedBytes() );
+
+        // The reserve is used up, so anything more grows the memory beyond it.
+        memoryManager.allocateAligned( PAGE_SIZE );
+        assertEquals( 9 * PAGE_SIZE, memoryManager.grabbedBytes() );
+    }
+
+    @Test
+    public void preTouchedMemoryMustBeZeroed() throws Exception
+    {
+        MemoryManager memoryManager = new MemoryManager( 4 * PAGE_SIZE, PAGE_SIZE );
+
+        memoryManager.preallocate( true );
+        for ( int i = 0; i < 4; i++ )
+        {
+            long pointer = memoryManager.allocateAligned( PAGE_SIZE );
+            for ( int offset = 0; offset < PAGE_SIZE; offset += Long.BYTES )
+            {
+                assertEquals( 0, UnsafeUtil.getLong( pointer + offset ) );
+            }
+        }
+        assertEquals( 4 * PAGE_SIZE, memoryManager.grabbedBytes() );
+    }
+
+    @Test
+    public void hugePageMemoryMustBeMappedInWholeHugePages() throws Exception
+    {
+        File hugePages = directory.newFolder( "hugepages" );
+        MemoryManager memoryManager = new MemoryManager( 4 * PAGE_SIZE, PAGE_SIZE, hugePages );
+
+        memoryManager.preallocate( false );
+        long pointer = memoryManager.allocateAligned( PAGE_SIZE );
+        UnsafeUtil.putByte( pointer + PAGE_SIZE - 1, (byte) 1 );
+
+        assertEquals( 0, pointer % PAGE_SIZE );
+        assertEquals( HUGE_PAGE_SIZE, memoryManager.hugePageBytes() );
+        // The mapping outlives the file, so nothing is left behind in the directory.
+        assertArrayEquals( new String[0], hugePages.list() );
+    }
+
+    @Test
+    public void mustFallBackToOrdinaryMemoryWhenHugePagesCannotBeMapped() throws Exception
+    {
+        File missing = new File( directory.getRoot(), "missing" );
+        MemoryManager memoryManager = new MemoryManager( 4 * PAGE_SIZE, PAGE_SIZE, missing );
+
+        memoryManager.preallocate( true );
+        long first = memoryManager.allocateAligned( PAGE_SIZE );
+        for ( int i = 1; i < 4; i++ )
+        {
+            assertEquals( first + i * PAGE_SIZE, memoryManager.allocateAligned( PAGE_SIZE ) );
+        }
+
+        assertEquals( 0, memoryManager.hugePageBytes() );
+        assertEquals( 4 * PAGE_SIZE, memoryManager.grabbedBytes() );
+        assertTrue( !missing.exists() );
+    }
+}
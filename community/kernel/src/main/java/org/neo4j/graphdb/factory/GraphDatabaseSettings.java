@@ -29,6 +29,7 @@ import org.neo4j.csv.reader.Configuration;
 import org.neo4j.graphdb.config.Setting;
 import org.neo4j.helpers.HostnamePort;
 import org.neo4j.io.ByteUnit;
+import org.neo4j.io.pagecache.impl.muninn.EvictionPolicies;
 import org.neo4j.kernel.configuration.ConfigurationMigrator;
 import org.neo4j.kernel.configuration.GraphDatabaseConfigurationMigrator;
 import org.neo4j.kernel.configuration.Group;
@@ -296,6 +297,23 @@ public abstract class GraphDatabaseSettings
                   "Set this to -1 to disable the IOPS limit.")
     public static final Setting<Integer> check_point_iops_limit = setting( "dbms.checkpoint.iops.limit", INTEGER, "1000" );
 
+    @Description( "Make the periodic check points fuzzy. A fuzzy check point is placed where the previous check " +
+                  "point began, so it only has to flush the store changes from before that, which eviction and the " +
+                  "background page cache flush have usually written already. This spreads the cost of check " +
+                  "pointing out over time, at the price of recovery possibly replaying up to two check point " +
+                  "intervals worth of transactions." )
+    @Internal
+    public static final Setting<Boolean> check_point_fuzzy =
+            setting( "unsupported.dbms.checkpoint.fuzzy", BOOLEAN, FALSE );
+
+    @Description( "The number of threads that write recovered node, relationship and property records to the store " +
+                  "files, when transactions are recovered after a crash. Records are spread over the threads by " +
+                  "record id, and writes to the same records are kept in commit order. Set this to 1 to recover " +
+                  "on a single thread." )
+    @Internal
+    public static final Setting<Integer> recovery_parallelism =
+            setting( "unsupported.dbms.recovery.parallelism", INTEGER, "4", min( 1 ) );
+
     // Auto Indexing
     @Description("Controls the auto indexing feature for nodes. Setting it to `false` shuts it down, " +
             "while `true` enables it by default for properties listed in the dbms.auto_index.nodes.keys setting.")
@@ -365,6 +383,40 @@ public abstract class GraphDatabaseSettings
                   "`0` means that no rotation will automatically occur based on file size. " )
     public static final Setting<Long> logical_log_rotation_threshold = setting( "dbms.tx_log.rotation.size", BYTES, "250M", min( 1024*1024L /*1Mb*/ ) );
 
+    @Description( "Make committed transactions durable by writing them straight to a transaction log that lives on " +
+                  "persistent memory, instead of forcing the log file in batches. Only use this with the NVM file " +
+                  "system, where every write to the log is persisted before it returns." )
+    @Internal
+    public static final Setting<Boolean> tx_log_persistent_memory =
+            setting( "unsupported.dbms.tx_log.persistent_memory", BOOLEAN, FALSE );
+
+    @Description( "Write the commands of each transaction as a single compressed entry in the transaction log, " +
+                  "which trades some CPU time when committing for less log to write and force. Logs written with " +
+                  "this enabled can not be read by versions of Neo4j that do not know about compressed entries." )
+    @Internal
+    public static final Setting<Boolean> tx_log_compress_commands =
+            setting( "unsupported.dbms.tx_log.compress_commands", BOOLEAN, FALSE );
+
+    @Description( "Index the log position of every n:th transaction, and keep that index in a file next to each " +
+                  "transaction log file, so that older transactions, f.ex. for slaves catching up or incremental " +
+                  "backups, are found without reading their log file from the start. 0 disables the index." )
+    @Internal
+    public static final Setting<Integer> tx_log_position_index_interval =
+            setting( "unsupported.dbms.tx_log.position_index.interval", INTEGER, "64", min( 0 ) );
+
+    @Description( "Commit transactions through a pipeline of stages, where one thread appends and forces the " +
+                  "transactions of all waiting committers to the log, and another applies them to the store, " +
+                  "instead of having every committer do both." )
+    @Internal
+    public static final Setting<Boolean> tx_commit_pipelined =
+            setting( "unsupported.dbms.tx_commit.pipelined", BOOLEAN, FALSE );
+
+    @Description( "The maximum number of committers that can wait in the commit pipeline, which is also the " +
+                  "largest number of committers whose transactions are appended to the log together." )
+    @Internal
+    public static final Setting<Integer> tx_commit_pipeline_capacity =
+            setting( "unsupported.dbms.tx_commit.pipeline_capacity", INTEGER, "256", min( 1 ) );
+
     @Description("Use a quick approach for rebuilding the ID generators. This give quicker recovery time, " +
             "but will limit the ability to reuse the space of deleted entities.")
     @Internal
@@ -434,6 +486,83 @@ public abstract class GraphDatabaseSettings
     public static final Setting<String> pagecache_swapper =
             setting( "dbms.memory.pagecache.swapper", STRING, (String) null );
 
+    @Description( "Access the store files directly through memory mappings, rather than caching their pages in " +
+                  "memory. This is only suitable for stores that live on byte-addressable persistent memory, such " +
+                  "as a DAX mount. The page cache memory then only bounds the shadow copies kept of pages that are " +
+                  "being written to." )
+    @Internal
+    public static final Setting<Boolean> pagecache_resident =
+            setting( "unsupported.dbms.memory.pagecache.resident", BOOLEAN, FALSE );
+
+    @Description( "Periodically record which pages are resident in the page cache, and load those pages back in " +
+                  "the background when the database starts, so it does not start with a cold cache. The profiles " +
+                  "are kept in the 'profiles' directory of the store." )
+    @Internal
+    public static final Setting<Boolean> pagecache_warmup_enabled =
+            setting( "unsupported.dbms.memory.pagecache.warmup.enable", BOOLEAN, FALSE );
+
+    @Description( "The time between recording the resident pages of the page cache, when page cache warmup is " +
+                  "enabled." )
+    @Internal
+    public static final Setting<Long> pagecache_warmup_profiling_interval =
+            setting( "unsupported.dbms.memory.pagecache.warmup.profile.interval", DURATION, "1m" );
+
+    @Description( "Continuously write dirty pages out to the store files in the background, at the rate allowed " +
+                  "by the checkpoint IO limit, so that checkpoints have less to flush and page faults rarely have " +
+                  "to wait for a dirty page to be written before it can be evicted." )
+    @Internal
+    public static final Setting<Boolean> pagecache_background_flush_enabled =
+            setting( "unsupported.dbms.memory.pagecache.background_flush.enable", BOOLEAN, FALSE );
+
+    @Description( "The time between passes of the page cache background flush over the mapped files, when the " +
+                  "background flush is enabled." )
+    @Internal
+    public static final Setting<Long> pagecache_background_flush_interval =
+            setting( "unsupported.dbms.memory.pagecache.background_flush.interval", DURATION, "1s" );
+
+    @Description( "The policy the page cache uses to pick the pages to evict. CLOCK favours recently used pages. " +
+                  "TWO_QUEUE keeps pages that are only touched once, such as the pages of a large scan, from " +
+                  "pushing frequently used pages out of the cache." )
+    @Internal
+    public static final Setting<EvictionPolicies> pagecache_eviction_policy =
+            setting( "unsupported.dbms.memory.pagecache.eviction_policy", options( EvictionPolicies.class ), "CLOCK" );
+
+    @Description( "The number of partitions to stripe the page cache memory over. Each partition allocates its own " +
+                  "memory, keeps its own free list and runs its own eviction thread. Page faulting threads are " +
+                  "spread over the partitions by thread id, which reduces contention on the free lists when many " +
+                  "threads fault pages at the same time. Partitions are not bound to NUMA nodes." )
+    @Internal
+    public static final Setting<Integer> pagecache_partitions =
+            setting( "unsupported.dbms.memory.pagecache.partitions", INTEGER, "1", min( 1 ) );
+
+    @Description( "A directory in a hugetlbfs mount to map the page cache memory from, so it is backed by explicit " +
+                  "huge pages and takes fewer TLB entries. The huge pages must be reserved by the operating system " +
+                  "beforehand. The page cache falls back to ordinary memory when it runs out of huge pages." )
+    @Internal
+    public static final Setting<File> pagecache_huge_pages_directory =
+            setting( "unsupported.dbms.memory.pagecache.huge_pages_directory", PATH, NO_DEFAULT );
+
+    @Description( "Allocate and write to all of the page cache memory when the database starts, so the first page " +
+                  "faults do not have to wait for the operating system to map and zero the memory." )
+    @Internal
+    public static final Setting<Boolean> pagecache_pretouch =
+            setting( "unsupported.dbms.memory.pagecache.pretouch", BOOLEAN, FALSE );
+
+    @Description( "Page sizes for the page cache to manage in addition to its default page size, for example " +
+                  "`4k,64k`. Each page size gets its own part of the page cache memory. The token stores, the " +
+                  "schema store and the neostore file are then mapped with the smallest pages, and the string and " +
+                  "array stores with the largest pages." )
+    @Internal
+    public static final Setting<List<Long>> pagecache_size_classes =
+            setting( "unsupported.dbms.memory.pagecache.size_classes", list( ",", BYTES ), "" );
+
+    @Description( "The share of the page cache memory that each of the additional page sizes of " +
+                  "`unsupported.dbms.memory.pagecache.size_classes` gets. The default page size gets the rest." )
+    @Internal
+    public static final Setting<Double> pagecache_size_class_memory_share =
+            setting( "unsupported.dbms.memory.pagecache.size_class_memory_share", DOUBLE, "0.1",
+                    min( 0.0 ), max( 0.4 ) );
+
     /**
      * Block size properties values depends from selected record format.
      * We can't figured out record format until it will be selected by corresponding edition.
@@ -24,7 +24,9 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.time.Clock;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.LockSupport;
@@ -38,6 +40,9 @@ import org.neo4j.helpers.Exceptions;
 import org.neo4j.io.fs.FileSystemAbstraction;
 import org.neo4j.io.pagecache.IOLimiter;
 import org.neo4j.io.pagecache.PageCache;
+import org.neo4j.io.pagecache.impl.muninn.MuninnPageCache;
+import org.neo4j.io.pagecache.impl.muninn.PageCacheWarmer;
+import org.neo4j.io.pagecache.impl.muninn.SizeClassPageCache;
 import org.neo4j.kernel.api.KernelAPI;
 import org.neo4j.kernel.api.TokenNameLookup;
 import org.neo4j.kernel.api.exceptions.KernelException;
@@ -81,6 +86,8 @@ import org.neo4j.kernel.impl.locking.LockService;
 import org.neo4j.kernel.impl.locking.ReentrantLockService;
 import org.neo4j.kernel.impl.locking.StatementLocksFactory;
 import org.neo4j.kernel.impl.logging.LogService;
+import org.neo4j.kernel.impl.pagecache.PageCacheFlusher;
+import org.neo4j.kernel.impl.pagecache.PageCacheWarmup;
 import org.neo4j.kernel.impl.proc.Procedures;
 import org.neo4j.kernel.impl.storageengine.impl.recordstorage.RecordStorageEngine;
 import org.neo4j.kernel.impl.store.MetaDataStore;
@@ -104,14 +111,17 @@ import org.neo4j.kernel.impl.transaction.log.LogPosition;
 import org.neo4j.kernel.impl.transaction.log.LogVersionRepository;
 import org.neo4j.kernel.impl.transaction.log.LoggingLogFileMonitor;
 import org.neo4j.kernel.impl.transaction.log.LogicalTransactionStore;
+import org.neo4j.kernel.impl.transaction.log.PersistentMemoryTransactionAppender;
 import org.neo4j.kernel.impl.transaction.log.PhysicalLogFile;
 import org.neo4j.kernel.impl.transaction.log.PhysicalLogFileInformation;
 import org.neo4j.kernel.impl.transaction.log.PhysicalLogFiles;
 import org.neo4j.kernel.impl.transaction.log.PhysicalLogicalTransactionStore;
+import org.neo4j.kernel.impl.transaction.log.PhysicalTransactionLogPositionIndex;
 import org.neo4j.kernel.impl.transaction.log.ReadableClosablePositionAwareChannel;
 import org.neo4j.kernel.impl.transaction.log.ReadableLogChannel;
 import org.neo4j.kernel.impl.transaction.log.TransactionAppender;
 import org.neo4j.kernel.impl.transaction.log.TransactionIdStore;
+import org.neo4j.kernel.impl.transaction.log.TransactionLogPositionIndex;
 import org.neo4j.kernel.impl.transaction.log.TransactionMetadataCache;
 import org.neo4j.kernel.impl.transaction.log.checkpoint.CheckPointScheduler;
 import org.neo4j.kernel.impl.transaction.log.checkpoint.CheckPointThreshold;
@@ -508,6 +518,29 @@ public class NeoStoreDataSource implements Lifecycle, IndexProviders
             throw Exceptions.launderedException( e );
         }
 
+        // Added after the storage engine, so that the final profile is recorded before its files are unmapped.
+        if ( config.get( GraphDatabaseSettings.pagecache_warmup_enabled ) )
+        {
+            if ( pageCache instanceof MuninnPageCache )
+            {
+                addPageCacheWarmup( (MuninnPageCache) pageCache );
+            }
+            else if ( pageCache instanceof SizeClassPageCache )
+            {
+                // Every file is mapped in one size class, so they can all keep their profiles in the same place.
+                for ( int pageSize : pageCache.pageSizes() )
+                {
+                    addPageCacheWarmup( ((SizeClassPageCache) pageCache).sizeClass( pageSize ) );
+                }
+            }
+        }
+
+        // Also added after the storage engine, so that it stops flushing before the store files are unmapped.
+        if ( config.get( GraphDatabaseSettings.pagecache_background_flush_enabled ) )
+        {
+            addPageCacheFlusher();
+        }
+
         // NOTE: please make sure this is performed after having added everything to the life, in fact we would like
         // to perform the checkpointing as first step when the life is shutdown.
         life.add( lifecycleToTriggerCheckPointOnShutdown() );
@@ -655,11 +688,26 @@ public class NeoStoreDataSource implements Lifecycle, IndexProviders
         final LogRotation logRotation =
                 new LogRotationImpl( monitors.newMonitor( LogRotation.Monitor.class ), logFile, databaseHealth );
 
-        final TransactionAppender appender = life.add( new BatchingTransactionAppender(
-                logFile, logRotation, transactionMetadataCache, transactionIdStore, legacyIndexTransactionOrdering,
-                databaseHealth ) );
-        final LogicalTransactionStore logicalTransactionStore =
-                new PhysicalLogicalTransactionStore( logFile, transactionMetadataCache, logEntryReader );
+        TransactionLogPositionIndex positionIndex = TransactionLogPositionIndex.NO_INDEX;
+        int positionIndexInterval = config.get( GraphDatabaseSettings.tx_log_position_index_interval );
+        if ( positionIndexInterval > 0 )
+        {
+            PhysicalTransactionLogPositionIndex physicalPositionIndex = new PhysicalTransactionLogPositionIndex(
+                    fileSystemAbstraction, logFiles, positionIndexInterval, logProvider );
+            monitors.addMonitorListener( physicalPositionIndex );
+            positionIndex = physicalPositionIndex;
+        }
+
+        boolean compressCommands = config.get( GraphDatabaseSettings.tx_log_compress_commands );
+        final TransactionAppender appender = life.add( config.get( GraphDatabaseSettings.tx_log_persistent_memory )
+                ? new PersistentMemoryTransactionAppender( logFile, logRotation, transactionMetadataCache,
+                        transactionIdStore, legacyIndexTransactionOrdering, databaseHealth, compressCommands,
+                        positionIndex )
+                : new BatchingTransactionAppender( logFile, logRotation, transactionMetadataCache,
+                        transactionIdStore, legacyIndexTransactionOrdering, databaseHealth, compressCommands,
+                        positionIndex ) );
+        final LogicalTransactionStore logicalTransactionStore = new PhysicalLogicalTransactionStore( logFile,
+                transactionMetadataCache, logEntryReader, positionIndex );
 
         int txThreshold = config.get( GraphDatabaseSettings.check_point_interval_tx );
         final CountCommittedTransactionThreshold countCommittedTransactionThreshold =
@@ -674,7 +722,7 @@ public class NeoStoreDataSource implements Lifecycle, IndexProviders
 
         final CheckPointerImpl checkPointer = new CheckPointerImpl(
                 transactionIdStore, threshold, storageEngine, logPruning, appender, databaseHealth, logProvider,
-                tracers.checkPointTracer, ioLimiter );
+                tracers.checkPointTracer, ioLimiter, config.get( GraphDatabaseSettings.check_point_fuzzy ) );
 
         long recurringPeriod = Math.min( timeMillisThreshold, TimeUnit.SECONDS.toMillis( 10 ) );
         CheckPointScheduler checkPointScheduler = new CheckPointScheduler( checkPointer, scheduler, recurringPeriod );
@@ -773,6 +821,11 @@ public class NeoStoreDataSource implements Lifecycle, IndexProviders
     {
         TransactionCommitProcess transactionCommitProcess = commitProcessFactory.create( appender, storageEngine,
                 config );
+        if ( transactionCommitProcess instanceof Lifecycle )
+        {
+            // Added before the kernel transactions, so that those stop committing before the commit process stops.
+            life.add( (Lifecycle) transactionCommitProcess );
+        }
 
         /*
          * This is used by legacy indexes and constraint indexes whenever a transaction is to be spawned
@@ -909,6 +962,37 @@ public class NeoStoreDataSource implements Lifecycle, IndexProviders
         }
     }
 
+    private void addPageCacheWarmup( MuninnPageCache muninnPageCache )
+    {
+        PageCacheWarmer warmer = new PageCacheWarmer( muninnPageCache, fs,
+                new File( storeDir, PageCacheWarmup.PROFILES_DIRECTORY ) );
+        life.add( new PageCacheWarmup( warmer, scheduler,
+                config.get( GraphDatabaseSettings.pagecache_warmup_profiling_interval ),
+                logProvider.getLog( PageCacheWarmup.class ) ) );
+    }
+
+    private void addPageCacheFlusher()
+    {
+        List<MuninnPageCache> pageCaches = new ArrayList<>();
+        if ( pageCache instanceof MuninnPageCache )
+        {
+            pageCaches.add( (MuninnPageCache) pageCache );
+        }
+        else if ( pageCache instanceof SizeClassPageCache )
+        {
+            for ( int pageSize : pageCache.pageSizes() )
+            {
+                pageCaches.add( ((SizeClassPageCache) pageCache).sizeClass( pageSize ) );
+            }
+        }
+        if ( !pageCaches.isEmpty() )
+        {
+            life.add( new PageCacheFlusher( pageCaches, ioLimiter, scheduler,
+                    config.get( GraphDatabaseSettings.pagecache_background_flush_interval ),
+                    logProvider.getLog( PageCacheFlusher.class ) ) );
+        }
+    }
+
     private Lifecycle lifecycleToTriggerCheckPointOnShutdown()
     {
         // Write new checkpoint in the log only if the kernel is healthy.
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.neo4j.kernel.api.exceptions.TransactionFailureException;
+import org.neo4j.kernel.impl.transaction.log.TransactionAppender;
+import org.neo4j.kernel.impl.transaction.tracing.CommitEvent;
+import org.neo4j.kernel.impl.transaction.tracing.LogAppendEvent;
+import org.neo4j.kernel.impl.transaction.tracing.StoreApplyEvent;
+import org.neo4j.kernel.impl.util.JobScheduler;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+import org.neo4j.storageengine.api.StorageEngine;
+import org.neo4j.storageengine.api.TransactionApplicationMode;
+
+import static org.neo4j.kernel.api.exceptions.Status.Transaction.TransactionCommitFailed;
+import static org.neo4j.kernel.api.exceptions.Status.Transaction.TransactionLogError;
+
+/**
+ * A {@link TransactionCommitProcess} that commits transactions in stages, each on its own thread of the
+ * {@link JobScheduler.Groups#transactionCommitPipeline} group, rather than on the thread of the committer.
+ * <p>
+ * Committers put their batch in a bounded queue and wait for it to be committed. The log writer takes all batches
+ * that are waiting, up to the capacity of the queue, links them into one batch, and appends and forces that with
+ * a single call to the {@link TransactionAppender}. The appended batch is then handed over to the store applier,
+ * which applies it to the store with a single call to the {@link StorageEngine}, and releases the committers. The
+ * log writer appends the next group while the previous group is being applied.
+ * <p>
+ * Committers thus never compete for the force lock of the appender, or for the store, and the number of committers
+ * that can be in the pipeline at any one time is bounded by the capacity of the queue. Before the pipeline is
+ * started and after it is stopped, transactions are committed on the thread of the committer, like
+ * {@link TransactionRepresentationCommitProcess} does.
+ * <p>
+ * A group is appended and applied as one batch, so it also fails as one. If the append or the store application
+ * fails, every committer in the group gets the failure, including those whose transactions were not the cause.
+ * The transactions are not retried one by one, since a failed append may have left part of the group in the log,
+ * and a failed store application leaves the store behind the log, which needs recovery either way.
+ * <p>
+ * Every committer's {@link CommitEvent} traces the log append and the store application of the group it was part
+ * of. The finer grained events of the append, like log forces and rotations, are traced by the first committer of
+ * the group only, since they happen once for the whole group. Likewise, the page cache accesses of the pipeline
+ * stages are counted under the {@link org.neo4j.io.pagecache.monitoring.PageCursorOrigin} of the stage threads, not
+ * under that of the committers.
+ */
+public class PipelinedTransactionCommitProcess extends LifecycleAdapter implements TransactionCommitProcess
+{
+    private static final long POLL_MILLIS = 100;
+
+    private final TransactionAppender appender;
+    private final StorageEngine storageEngine;
+    private final JobScheduler scheduler;
+    private final TransactionCommitProcess inline;
+    private final int capacity;
+    private final BlockingQueue<Commit> appendQueue;
+    // Bounds the number of appended groups that wait for the store applier.
+    private final BlockingQueue<List<Commit>> applyQueue = new ArrayBlockingQueue<>( 2 );
+    // Committers hold the read lock while checking that the pipeline runs and entering it, so that the stages do
+    // not stop with commits left in the queue.
+    private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+    private volatile boolean running;
+    private volatile boolean logWriterStopped;
+    private CountDownLatch stagesStopped;
+
+    public PipelinedTransactionCommitProcess( TransactionAppender appender, StorageEngine storageEngine,
+            JobScheduler scheduler, int capacity )
+    {
+        this.appender = appender;
+        this.storageEngine = storageEngine;
+        this.scheduler = scheduler;
+        this.inline = new TransactionRepresentationCommitProcess( appender, storageEngine );
+        this.capacity = capacity;
+        this.appendQueue = new ArrayBlockingQueue<>( capacity );
+    }
+
+    @Override
+    public void start() throws Throwable
+    {
+        running = true;
+        logWriterStopped = false;
+        stagesStopped = new CountDownLatch( 2 );
+        scheduler.schedule( JobScheduler.Groups.transactionCommitPipeline, this::writeLog );
+        scheduler.schedule( JobScheduler.Groups.transactionCommitPipeline, this::applyToStore );
+    }
+
+    @Override
+    public void stop() throws Throwable
+    {
+        runningLock.writeLock().lock();
+        try
+        {
+            running = false;
+        }
+        finally
+        {
+            runningLock.writeLock().unlock();
+        }
+        // The stages finish the commits that are already in the pipeline before they exit.
+        stagesStopped.await();
+    }
+
+    @Override
+    public long commit( TransactionToApply batch, CommitEvent commitEvent, TransactionApplicationMode mode )
+            throws TransactionFailureException
+    {
+        Commit commit = new Commit( batch, commitEvent, mode );
+        runningLock.readLock().lock();
+        try
+        {
+            if ( !running )
+            {
+                return inline.commit( batch, commitEvent, mode );
+            }
+            appendQueue.put( commit );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new TransactionFailureException( TransactionCommitFailed, e,
+                    "Interrupted while waiting to enter the commit pipeline" );
+        }
+        finally
+        {
+            runningLock.readLock().unlock();
+        }
+        return commit.awaitCommitted();
+    }
+
+    private void writeLog()
+    {
+        try
+        {
+            List<Commit> group;
+            while ( (group = nextGroup()) != null )
+            {
+                if ( append( group ) )
+                {
+                    applyQueue.put( group );
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            logWriterStopped = true;
+            stagesStopped.countDown();
+        }
+    }
+
+    /**
+     * @return the commits that are waiting to be appended, all with the same application mode, or {@code null} if
+     * the pipeline has been stopped and there are no commits left.
+     */
+    private List<Commit> nextGroup() throws InterruptedException
+    {
+        Commit first;
+        do
+        {
+            if ( !running && appendQueue.isEmpty() )
+            {
+                return null;
+            }
+            first = appendQueue.poll( POLL_MILLIS, TimeUnit.MILLISECONDS );
+        }
+        while ( first == null );
+
+        List<Commit> group = new ArrayList<>();
+        group.add( first );
+        Commit next;
+        while ( group.size() < capacity && (next = appendQueue.peek()) != null && next.mode == first.mode )
+        {
+            // We are the only consumer, so this is the commit we peeked at.
+            Commit previous = group.get( group.size() - 1 );
+            group.add( appendQueue.poll() );
+            previous.last.next( next.batch );
+        }
+        return group;
+    }
+
+    private boolean append( List<Commit> group )
+    {
+        LogAppendEvent[] logAppendEvents = new LogAppendEvent[group.size()];
+        for ( int i = 0; i < logAppendEvents.length; i++ )
+        {
+            logAppendEvents[i] = group.get( i ).commitEvent.beginLogAppend();
+        }
+        try
+        {
+            appender.append( group.get( 0 ).batch, logAppendEvents[0] );
+            return true;
+        }
+        catch ( Throwable cause )
+        {
+            unlink( group );
+            release( group, new TransactionFailureException( TransactionLogError, cause,
+                    "Could not append transaction representation to log" ) );
+            return false;
+        }
+        finally
+        {
+            for ( LogAppendEvent logAppendEvent : logAppendEvents )
+            {
+                logAppendEvent.close();
+            }
+        }
+    }
+
+    private void applyToStore()
+    {
+        try
+        {
+            while ( running || !applyQueue.isEmpty() || !logWriterStopped )
+            {
+                List<Commit> group = applyQueue.poll( POLL_MILLIS, TimeUnit.MILLISECONDS );
+                if ( group != null )
+                {
+                    apply( group );
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            stagesStopped.countDown();
+        }
+    }
+
+    private void apply( List<Commit> group )
+    {
+        Commit first = group.get( 0 );
+        TransactionFailureException failure = null;
+        StoreApplyEvent[] storeApplyEvents = new StoreApplyEvent[group.size()];
+        for ( int i = 0; i < storeApplyEvents.length; i++ )
+        {
+            storeApplyEvents[i] = group.get( i ).commitEvent.beginStoreApply();
+        }
+        try
+        {
+            storageEngine.apply( first.batch, first.mode );
+        }
+        catch ( Throwable cause )
+        {
+            failure = new TransactionFailureException( TransactionCommitFailed, cause,
+                    "Could not apply the transaction to the store after written to log" );
+        }
+        finally
+        {
+            for ( StoreApplyEvent storeApplyEvent : storeApplyEvents )
+            {
+                storeApplyEvent.close();
+            }
+            close( first.batch );
+        }
+        unlink( group );
+        release( group, failure );
+    }
+
+    private void close( TransactionToApply batch )
+    {
+        while ( batch != null )
+        {
+            if ( batch.commitment().markedAsCommitted() )
+            {
+                batch.commitment().publishAsClosed();
+            }
+            batch = batch.next();
+        }
+    }
+
+    /**
+     * Give the committers their own batches back, as they were before they were linked together.
+     */
+    private void unlink( List<Commit> group )
+    {
+        for ( Commit commit : group )
+        {
+            commit.last.next( null );
+        }
+    }
+
+    private void release( List<Commit> group, TransactionFailureException failure )
+    {
+        for ( Commit commit : group )
+        {
+            commit.release( failure );
+        }
+    }
+
+    private static class Commit
+    {
+        private final TransactionToApply batch;
+        private final TransactionToApply last;
+        private final CommitEvent commitEvent;
+        private final TransactionApplicationMode mode;
+        private final CountDownLatch committed = new CountDownLatch( 1 );
+        private volatile TransactionFailureException failure;
+
+        Commit( TransactionToApply batch, CommitEvent commitEvent, TransactionApplicationMode mode )
+        {
+            this.batch = batch;
+            this.commitEvent = commitEvent;
+            this.mode = mode;
+            TransactionToApply tx = batch;
+            while ( tx.next() != null )
+            {
+                tx = tx.next();
+            }
+            this.last = tx;
+        }
+
+        void release( TransactionFailureException failure )
+        {
+            this.failure = failure;
+            committed.countDown();
+        }
+
+        long awaitCommitted() throws TransactionFailureException
+        {
+            boolean interrupted = false;
+            while ( true )
+            {
+                try
+                {
+                    // The transactions are in the log by now, or on their way there, so there is no backing out.
+                    committed.await();
+                    break;
+                }
+                catch ( InterruptedException e )
+                {
+                    interrupted = true;
+                }
+            }
+            if ( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+            if ( failure != null )
+            {
+                throw failure;
+            }
+            return last.transactionId();
+        }
+    }
+}
@@ -23,6 +23,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
 
 import org.neo4j.function.Suppliers;
+import org.neo4j.io.pagecache.monitoring.PageCursorOrigin;
 import org.neo4j.kernel.api.exceptions.index.IndexPopulationFailedKernelException;
 import org.neo4j.kernel.api.index.IndexConfiguration;
 import org.neo4j.kernel.api.index.IndexDescriptor;
@@ -100,6 +101,7 @@ public class IndexPopulationJob implements Runnable
 
         String oldThreadName = currentThread().getName();
         currentThread().setName( "Index populator" );
+        PageCursorOrigin oldOrigin = PageCursorOrigin.INDEX_POPULATION.enter();
 
         try
         {
@@ -130,6 +132,7 @@ public class IndexPopulationJob implements Runnable
         {
             doneSignal.countDown();
             currentThread().setName( oldThreadName );
+            oldOrigin.enter();
         }
     }
 
@@ -22,14 +22,23 @@ package org.neo4j.kernel.impl.factory;
 import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.neo4j.kernel.configuration.Config;
 import org.neo4j.kernel.impl.api.CommitProcessFactory;
+import org.neo4j.kernel.impl.api.PipelinedTransactionCommitProcess;
 import org.neo4j.kernel.impl.api.ReadOnlyTransactionCommitProcess;
 import org.neo4j.kernel.impl.api.TransactionCommitProcess;
 import org.neo4j.kernel.impl.api.TransactionRepresentationCommitProcess;
 import org.neo4j.kernel.impl.transaction.log.TransactionAppender;
+import org.neo4j.kernel.impl.util.JobScheduler;
 import org.neo4j.storageengine.api.StorageEngine;
 
 public class CommunityCommitProcessFactory implements CommitProcessFactory
 {
+    private final JobScheduler scheduler;
+
+    public CommunityCommitProcessFactory( JobScheduler scheduler )
+    {
+        this.scheduler = scheduler;
+    }
+
     @Override
     public TransactionCommitProcess create( TransactionAppender appender, StorageEngine storageEngine,
             Config config )
@@ -38,6 +47,11 @@ public class CommunityCommitProcessFactory implements CommitProcessFactory
         {
             return new ReadOnlyTransactionCommitProcess();
         }
+        if ( config.get( GraphDatabaseSettings.tx_commit_pipelined ) )
+        {
+            return new PipelinedTransactionCommitProcess( appender, storageEngine, scheduler,
+                    config.get( GraphDatabaseSettings.tx_commit_pipeline_capacity ) );
+        }
         return new TransactionRepresentationCommitProcess( appender, storageEngine );
     }
 }
@@ -101,7 +101,7 @@ public class CommunityEditionModule extends EditionModule
                 createKernelData( fileSystem, pageCache, storeDir, config, graphDatabaseFacade, life ) );
 
         dependencies.satisfyDependencies( createAuthManager(config, life, logging.getUserLogProvider()) );
-        commitProcessFactory = new CommunityCommitProcessFactory();
+        commitProcessFactory = new CommunityCommitProcessFactory( platformModule.jobScheduler );
 
         headerInformationFactory = createHeaderInformationFactory();
 
@@ -19,6 +19,11 @@
  */
 package org.neo4j.kernel.impl.pagecache;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
 import org.neo4j.kernel.impl.util.OsBeanUtil;
 import org.neo4j.helpers.Service;
 import org.neo4j.io.ByteUnit;
@@ -27,17 +32,27 @@ import org.neo4j.io.pagecache.PageCache;
 import org.neo4j.io.pagecache.PageSwapperFactory;
 import org.neo4j.io.pagecache.impl.SingleFilePageSwapperFactory;
 import org.neo4j.io.pagecache.impl.muninn.MuninnPageCache;
+import org.neo4j.io.pagecache.impl.muninn.SizeClassPageCache;
+import org.neo4j.io.pagecache.impl.resident.ResidentPageCache;
 import org.neo4j.io.pagecache.tracing.PageCacheTracer;
 import org.neo4j.kernel.configuration.Config;
 import org.neo4j.logging.Log;
 
 import static org.neo4j.graphdb.factory.GraphDatabaseSettings.mapped_memory_page_size;
+import static org.neo4j.graphdb.factory.GraphDatabaseSettings.pagecache_eviction_policy;
+import static org.neo4j.graphdb.factory.GraphDatabaseSettings.pagecache_huge_pages_directory;
 import static org.neo4j.graphdb.factory.GraphDatabaseSettings.pagecache_memory;
+import static org.neo4j.graphdb.factory.GraphDatabaseSettings.pagecache_partitions;
+import static org.neo4j.graphdb.factory.GraphDatabaseSettings.pagecache_pretouch;
+import static org.neo4j.graphdb.factory.GraphDatabaseSettings.pagecache_resident;
+import static org.neo4j.graphdb.factory.GraphDatabaseSettings.pagecache_size_class_memory_share;
+import static org.neo4j.graphdb.factory.GraphDatabaseSettings.pagecache_size_classes;
 import static org.neo4j.graphdb.factory.GraphDatabaseSettings.pagecache_swapper;
 
 public class ConfiguringPageCacheFactory
 {
     private final PageSwapperFactory swapperFactory;
+    private final FileSystemAbstraction fs;
     private final Config config;
     private final PageCacheTracer tracer;
     private final Log log;
@@ -47,6 +62,7 @@ public class ConfiguringPageCacheFactory
             FileSystemAbstraction fs, Config config, PageCacheTracer tracer, Log log )
     {
         this.swapperFactory = createAndConfigureSwapperFactory( fs, config, log );
+        this.fs = fs;
         this.config = config;
         this.tracer = tracer;
         this.log = log;
@@ -93,11 +109,76 @@ public class ConfiguringPageCacheFactory
     {
         int cachePageSize = calculatePageSize( config, swapperFactory );
         int maxPages = calculateMaxPages( config, cachePageSize );
+        if ( config.get( pagecache_resident ) )
+        {
+            log.info( "Configured " + pagecache_resident.name() + ": store files are accessed in place" );
+            return new ResidentPageCache( fs, maxPages, cachePageSize, tracer );
+        }
+        List<Long> additionalPageSizes = config.get( pagecache_size_classes );
+        if ( !additionalPageSizes.isEmpty() )
+        {
+            return createSizeClassPageCache( cachePageSize, additionalPageSizes );
+        }
         return new MuninnPageCache(
                 swapperFactory,
                 maxPages,
                 cachePageSize,
-                tracer );
+                tracer,
+                config.get( pagecache_eviction_policy ),
+                config.get( pagecache_partitions ),
+                config.get( pagecache_huge_pages_directory ),
+                config.get( pagecache_pretouch ) );
+    }
+
+    private PageCache createSizeClassPageCache( int defaultPageSize, List<Long> additionalPageSizes )
+    {
+        SortedSet<Integer> pageSizes = new TreeSet<>();
+        pageSizes.add( defaultPageSize );
+        for ( long pageSize : additionalPageSizes )
+        {
+            pageSizes.add( Math.toIntExact( pageSize ) );
+        }
+        // Every additional size class takes its share off the top, and the default size class gets what is left
+        double share = config.get( pagecache_size_class_memory_share );
+        int additionalClasses = pageSizes.size() - 1;
+        if ( share * additionalClasses >= 1.0 )
+        {
+            throw new IllegalArgumentException( String.format(
+                    "%s of %s for each of the %d additional page sizes %s of %s leaves no page cache memory for the " +
+                    "default page size %d. The share must be less than %s.",
+                    pagecache_size_class_memory_share.name(), share, additionalClasses, additionalPageSizes,
+                    pagecache_size_classes.name(), defaultPageSize, 1.0 / additionalClasses ) );
+        }
+        long pageCacheMemory = config.get( pagecache_memory );
+        long sizeClassMemory = (long) (pageCacheMemory * share);
+        int[] cachePageSizes = new int[pageSizes.size()];
+        int[] maxPages = new int[pageSizes.size()];
+        long defaultClassMemory = pageCacheMemory;
+        int i = 0;
+        for ( int pageSize : pageSizes )
+        {
+            cachePageSizes[i] = pageSize;
+            if ( pageSize != defaultPageSize )
+            {
+                maxPages[i] = (int) Math.min( Integer.MAX_VALUE - 2000, sizeClassMemory / pageSize );
+                defaultClassMemory -= sizeClassMemory;
+            }
+            i++;
+        }
+        int defaultClass = Arrays.binarySearch( cachePageSizes, defaultPageSize );
+        maxPages[defaultClass] = (int) Math.min( Integer.MAX_VALUE - 2000, defaultClassMemory / defaultPageSize );
+        log.info( "Configured " + pagecache_size_classes.name() + ": cache page sizes " +
+                  Arrays.toString( cachePageSizes ) + " with " + Arrays.toString( maxPages ) + " pages" );
+        return new SizeClassPageCache(
+                swapperFactory,
+                cachePageSizes,
+                maxPages,
+                defaultPageSize,
+                tracer,
+                config.get( pagecache_eviction_policy ),
+                config.get( pagecache_partitions ),
+                config.get( pagecache_huge_pages_directory ),
+                config.get( pagecache_pretouch ) );
     }
 
     public int calculateMaxPages( Config config, int cachePageSize )
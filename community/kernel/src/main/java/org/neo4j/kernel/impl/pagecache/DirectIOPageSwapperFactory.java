@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.pagecache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+
+import org.neo4j.graphdb.config.Setting;
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.pagecache.PageEvictionCallback;
+import org.neo4j.io.pagecache.PageSwapper;
+import org.neo4j.io.pagecache.impl.DirectIOPageSwapper;
+import org.neo4j.kernel.configuration.Config;
+
+import static org.neo4j.kernel.configuration.Settings.BYTES;
+import static org.neo4j.kernel.configuration.Settings.max;
+import static org.neo4j.kernel.configuration.Settings.min;
+import static org.neo4j.kernel.configuration.Settings.setting;
+
+/**
+ * Creates {@link DirectIOPageSwapper}s, which read and write the store files with direct IO, so that their pages
+ * are only cached by the page cache, and not also by the operating system.
+ * <p>
+ * Select this implementation with {@code dbms.memory.pagecache.swapper=direct}. The page cache memory is aligned to
+ * the configured block size, which must be at least the logical block size of the device holding the store.
+ * <p>
+ * The swappers open the operating system file that the file system keeps a store file in, see
+ * {@link FileSystemAbstraction#nativeFile(File)}. Swappers are refused for files that the file system does not keep
+ * in an operating system file, such as those of the nvm file system, which has no operating system cache to bypass.
+ */
+public class DirectIOPageSwapperFactory implements ConfigurablePageSwapperFactory
+{
+    public static class Configuration
+    {
+        public static final Setting<Long> block_size = setting(
+                "dbms.memory.pagecache.swapper.direct.block_size", BYTES, "4k", min( 512L ), max( 1024 * 1024L ) );
+    }
+
+    private int blockSize = 4096;
+    private FileSystemAbstraction fs;
+
+    @Override
+    public void configure( Config config )
+    {
+        long configuredBlockSize = config.get( Configuration.block_size );
+        if ( Long.bitCount( configuredBlockSize ) != 1 )
+        {
+            throw new IllegalArgumentException( Configuration.block_size.name() + " must be a power of two, but was " +
+                                                configuredBlockSize );
+        }
+        if ( !DirectIOPageSwapper.isDirectIOSupported() )
+        {
+            throw new IllegalArgumentException( "The " + implementationName() + " page swapper cannot be used, " +
+                                                "because this JVM does not support direct IO" );
+        }
+        blockSize = (int) configuredBlockSize;
+    }
+
+    @Override
+    public void setFileSystemAbstraction( FileSystemAbstraction fs )
+    {
+        this.fs = fs;
+    }
+
+    @Override
+    public PageSwapper createPageSwapper(
+            File file,
+            int filePageSize,
+            PageEvictionCallback onEviction,
+            boolean createIfNotExist ) throws IOException
+    {
+        File nativeFile = fs == null ? null : fs.nativeFile( file );
+        if ( nativeFile == null )
+        {
+            throw new IOException( "Cannot open " + file + " for direct IO, since " +
+                                   (fs == null ? "no file system" : fs.getClass().getSimpleName()) +
+                                   " does not keep it in an operating system file" );
+        }
+        if ( !nativeFile.exists() && !createIfNotExist )
+        {
+            throw new NoSuchFileException( file.getPath(), null, "Cannot map non-existing file" );
+        }
+        return new DirectIOPageSwapper( file, nativeFile, filePageSize, blockSize, onEviction );
+    }
+
+    @Override
+    public void syncDevice()
+    {
+        // Nothing do to, since we `fsync` files individually in `force()`.
+    }
+
+    @Override
+    public String implementationName()
+    {
+        return "direct";
+    }
+
+    @Override
+    public int getCachePageSizeHint()
+    {
+        return 8192;
+    }
+
+    @Override
+    public boolean isCachePageSizeHintStrict()
+    {
+        return false;
+    }
+
+    @Override
+    public long getRequiredBufferAlignment()
+    {
+        return blockSize;
+    }
+}
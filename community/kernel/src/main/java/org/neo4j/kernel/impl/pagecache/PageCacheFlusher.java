@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.pagecache;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.neo4j.io.pagecache.IOLimiter;
+import org.neo4j.io.pagecache.impl.muninn.MuninnPageCache;
+import org.neo4j.kernel.impl.util.JobScheduler;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+import org.neo4j.logging.Log;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.neo4j.kernel.impl.util.JobScheduler.Groups.pageCacheFlush;
+
+/**
+ * Trickles the dirty pages of the page cache out to the store files in the background, within the budget of the
+ * given {@link IOLimiter}, so that checkpoints only have to flush the pages that were dirtied since the last pass,
+ * and eviction mostly finds clean pages.
+ */
+public class PageCacheFlusher extends LifecycleAdapter
+{
+    private final List<MuninnPageCache> pageCaches;
+    private final IOLimiter limiter;
+    private final JobScheduler scheduler;
+    private final long flushPeriodMillis;
+    private final Log log;
+    private final Runnable flushJob = this::flush;
+
+    private volatile JobScheduler.JobHandle handle;
+    private volatile boolean stopped;
+
+    public PageCacheFlusher( List<MuninnPageCache> pageCaches, IOLimiter limiter, JobScheduler scheduler,
+            long flushPeriodMillis, Log log )
+    {
+        this.pageCaches = pageCaches;
+        this.limiter = limiter;
+        this.scheduler = scheduler;
+        this.flushPeriodMillis = flushPeriodMillis;
+        this.log = log;
+    }
+
+    @Override
+    public void start() throws Throwable
+    {
+        stopped = false;
+        scheduleFlush();
+    }
+
+    @Override
+    public void stop() throws Throwable
+    {
+        stopped = true;
+        if ( handle != null )
+        {
+            handle.cancel( false );
+        }
+    }
+
+    private void flush()
+    {
+        try
+        {
+            for ( MuninnPageCache pageCache : pageCaches )
+            {
+                if ( stopped )
+                {
+                    return;
+                }
+                pageCache.flushInBackground( limiter );
+            }
+        }
+        catch ( IOException | IllegalStateException e )
+        {
+            // The checkpoint will flush these pages, and report the problem if it persists.
+            log.warn( "Background flush of the page cache failed.", e );
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush()
+    {
+        if ( !stopped )
+        {
+            handle = scheduler.schedule( pageCacheFlush, flushJob, flushPeriodMillis, MILLISECONDS );
+        }
+    }
+}
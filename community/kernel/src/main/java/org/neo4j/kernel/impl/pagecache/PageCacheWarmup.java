@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.pagecache;
+
+import java.io.IOException;
+
+import org.neo4j.io.pagecache.impl.muninn.PageCacheWarmer;
+import org.neo4j.kernel.impl.util.JobScheduler;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+import org.neo4j.logging.Log;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.neo4j.kernel.impl.util.JobScheduler.Groups.pageCacheWarmup;
+
+/**
+ * Loads the pages recorded by the last page cache profile in the background once the database has started, and
+ * then keeps recording new profiles at a fixed interval, plus a last one when the database is stopped.
+ */
+public class PageCacheWarmup extends LifecycleAdapter
+{
+    /**
+     * The directory within the store directory where the profiles are kept.
+     */
+    public static final String PROFILES_DIRECTORY = "profiles";
+
+    private final PageCacheWarmer warmer;
+    private final JobScheduler scheduler;
+    private final long profilePeriodMillis;
+    private final Log log;
+    private final Runnable reheatJob = this::reheat;
+    private final Runnable profileJob = this::profile;
+
+    private volatile JobScheduler.JobHandle handle;
+    private volatile boolean stopped;
+
+    public PageCacheWarmup( PageCacheWarmer warmer, JobScheduler scheduler, long profilePeriodMillis, Log log )
+    {
+        this.warmer = warmer;
+        this.scheduler = scheduler;
+        this.profilePeriodMillis = profilePeriodMillis;
+        this.log = log;
+    }
+
+    @Override
+    public void start() throws Throwable
+    {
+        stopped = false;
+        handle = scheduler.schedule( pageCacheWarmup, reheatJob );
+    }
+
+    @Override
+    public void stop() throws Throwable
+    {
+        stopped = true;
+        warmer.stop();
+        if ( handle != null )
+        {
+            handle.cancel( false );
+        }
+        // The warmer is synchronized, so this waits for a running job and then records the final profile.
+        profile();
+    }
+
+    private void reheat()
+    {
+        try
+        {
+            long pagesLoaded = warmer.reheat();
+            if ( pagesLoaded > 0 )
+            {
+                log.info( "Page cache warmup loaded %d pages.", pagesLoaded );
+            }
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Page cache warmup failed, the cache will warm up as pages are used.", e );
+        }
+        scheduleProfiling();
+    }
+
+    private void profile()
+    {
+        try
+        {
+            warmer.profile();
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Could not record the page cache profile.", e );
+        }
+        scheduleProfiling();
+    }
+
+    private void scheduleProfiling()
+    {
+        if ( !stopped )
+        {
+            handle = scheduler.schedule( pageCacheWarmup, profileJob, profilePeriodMillis, MILLISECONDS );
+        }
+    }
+}
@@ -39,7 +39,7 @@ public class RecordStorageCommandReaderFactory implements CommandReaderFactory
 
     public RecordStorageCommandReaderFactory()
     {
-        readers = new CommandReader[11]; // pessimistic size
+        readers = new CommandReader[12]; // pessimistic size
         readers[-LogEntryVersion.V2_0.byteCode()] = new PhysicalLogCommandReaderV2_0();
         readers[-LogEntryVersion.V2_1.byteCode()] = new PhysicalLogCommandReaderV2_1();
         readers[-LogEntryVersion.V2_2.byteCode()] = new PhysicalLogCommandReaderV2_2();
@@ -51,6 +51,8 @@ public class RecordStorageCommandReaderFactory implements CommandReaderFactory
         readers[-LogEntryVersion.V3_0_2.byteCode()] = new PhysicalLogCommandReaderV3_0_2();
         // The 3_0_10 version bump is only to prevent mixed-version clusters; format is otherwise backwards compatible.
         readers[-LogEntryVersion.V3_0_10.byteCode()] = new PhysicalLogCommandReaderV3_0_2();
+        // 3_0_11 only adds the compressed commands entry, the commands inside it are serialized as in 3_0_10.
+        readers[-LogEntryVersion.V3_0_11.byteCode()] = new PhysicalLogCommandReaderV3_0_2();
 
         // A little extra safety check so that we got 'em all
         LogEntryVersion[] versions = LogEntryVersion.values();
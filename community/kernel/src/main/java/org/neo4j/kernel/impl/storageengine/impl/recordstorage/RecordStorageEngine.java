@@ -84,6 +84,7 @@ import org.neo4j.kernel.impl.transaction.command.IndexBatchTransactionApplier;
 import org.neo4j.kernel.impl.transaction.command.IndexUpdatesWork;
 import org.neo4j.kernel.impl.transaction.command.LabelUpdateWork;
 import org.neo4j.kernel.impl.transaction.command.NeoStoreBatchTransactionApplier;
+import org.neo4j.kernel.impl.transaction.command.ParallelRecoveryBatchTransactionApplier;
 import org.neo4j.kernel.impl.transaction.state.DefaultSchemaIndexProviderMap;
 import org.neo4j.kernel.impl.transaction.state.IntegrityValidator;
 import org.neo4j.kernel.impl.transaction.state.Loaders;
@@ -156,6 +157,7 @@ public class RecordStorageEngine implements StorageEngine, Lifecycle
     private final PropertyPhysicalToLogicalConverter indexUpdatesConverter;
     private final Supplier<StorageStatement> storeStatementSupplier;
     private final IdController idController;
+    private final int recoveryParallelism;
 
     // Immutable state for creating/applying commands
     private final Loaders loaders;
@@ -201,6 +203,7 @@ public class RecordStorageEngine implements StorageEngine, Lifecycle
         this.indexConfigStore = indexConfigStore;
         this.constraintSemantics = constraintSemantics;
         this.legacyIndexTransactionOrdering = legacyIndexTransactionOrdering;
+        this.recoveryParallelism = config.get( GraphDatabaseSettings.recovery_parallelism );
 
         this.idController = createStorageIdController( idGeneratorFactory, eligibleForReuse,
             idTypeConfigurationProvider, transactionsSnapshotSupplier );
@@ -363,8 +366,18 @@ public class RecordStorageEngine implements StorageEngine, Lifecycle
     protected BatchTransactionApplierFacade applier( TransactionApplicationMode mode )
     {
         ArrayList<BatchTransactionApplier> appliers = new ArrayList<>();
+        ParallelRecoveryBatchTransactionApplier parallelRecoveryApplier = null;
         // Graph store application. The order of the decorated store appliers is irrelevant
-        appliers.add( new NeoStoreBatchTransactionApplier( neoStores, cacheAccess, lockService ) );
+        if ( mode == TransactionApplicationMode.RECOVERY && recoveryParallelism > 1 )
+        {
+            parallelRecoveryApplier = new ParallelRecoveryBatchTransactionApplier( neoStores, cacheAccess,
+                    lockService, scheduler.executor( JobScheduler.Groups.recovery ), recoveryParallelism );
+            appliers.add( parallelRecoveryApplier );
+        }
+        else
+        {
+            appliers.add( new NeoStoreBatchTransactionApplier( neoStores, cacheAccess, lockService ) );
+        }
         if ( mode.needsHighIdTracking() )
         {
             appliers.add( new HighIdBatchTransactionApplier( neoStores ) );
@@ -387,6 +400,12 @@ public class RecordStorageEngine implements StorageEngine, Lifecycle
                 new LegacyBatchIndexApplier( indexConfigStore, legacyIndexApplierLookup, legacyIndexTransactionOrdering,
                         mode ) );
 
+        // Closed first, so that the records written in parallel are in the store before any index is updated
+        if ( parallelRecoveryApplier != null )
+        {
+            appliers.add( parallelRecoveryApplier.writeBarrier() );
+        }
+
         // Perform the application
         return new BatchTransactionApplierFacade(
                 appliers.toArray( new BatchTransactionApplier[appliers.size()] ) );
@@ -463,6 +482,18 @@ public class RecordStorageEngine implements StorageEngine, Lifecycle
 
     @Override
     public void flushAndForce( IOLimiter limiter )
+    {
+        flushAndForce( Long.MAX_VALUE, limiter );
+    }
+
+    @Override
+    public long beginFlushEpoch()
+    {
+        return neoStores.beginFlushEpoch();
+    }
+
+    @Override
+    public void flushAndForce( long epoch, IOLimiter limiter )
     {
         indexingService.forceAll();
         labelScanStore.force();
@@ -470,7 +501,7 @@ public class RecordStorageEngine implements StorageEngine, Lifecycle
         {
             index.force();
         }
-        neoStores.flush( limiter );
+        neoStores.flush( epoch, limiter );
     }
 
     @Override
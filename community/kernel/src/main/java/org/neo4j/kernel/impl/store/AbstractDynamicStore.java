@@ -182,6 +182,24 @@ public abstract class AbstractDynamicStore extends CommonAbstractStore<DynamicRe
         return Pair.of( header, bArray );
     }
 
+    @Override
+    protected int cachePageSize()
+    {
+        switch ( idType )
+        {
+        case PROPERTY_KEY_TOKEN_NAME:
+        case RELATIONSHIP_TYPE_TOKEN_NAME:
+        case LABEL_TOKEN_NAME:
+        case SCHEMA:
+            return smallestPageSize( pageCache );
+        case STRING_BLOCK:
+        case ARRAY_BLOCK:
+            return largestPageSize( pageCache );
+        default:
+            return super.cachePageSize();
+        }
+    }
+
     @Override
     public DynamicRecord nextUsedRecordOrNew( Iterator<DynamicRecord> recordsToUseFirst )
     {
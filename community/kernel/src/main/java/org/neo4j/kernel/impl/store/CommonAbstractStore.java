@@ -32,6 +32,7 @@ import org.neo4j.helpers.collection.Visitor;
 import org.neo4j.io.pagecache.PageCache;
 import org.neo4j.io.pagecache.PageCursor;
 import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.io.pagecache.impl.ByteArrayPageCursor;
 import org.neo4j.kernel.configuration.Config;
 import org.neo4j.kernel.impl.store.format.RecordFormat;
 import org.neo4j.kernel.impl.store.id.IdGenerator;
@@ -86,6 +87,10 @@ public abstract class CommonAbstractStore<RECORD extends AbstractBaseRecord,HEAD
 
     private final OpenOption[] openOptions;
 
+    // Per-thread copy of a single record, decoded in place of a page cursor when the record can be peeked.
+    private final ThreadLocal<ByteArrayPageCursor> peekCursor =
+            ThreadLocal.withInitial( () -> new ByteArrayPageCursor( recordSize ) );
+
     /**
      * Opens and validates the store contained in <CODE>fileName</CODE>
      * loading any configuration defined in <CODE>config</CODE>. After
@@ -250,7 +255,8 @@ public abstract class CommonAbstractStore<RECORD extends AbstractBaseRecord,HEAD
         try
         {
             extractHeaderRecord();
-            int filePageSize = pageCache.pageSize() - pageCache.pageSize() % getRecordSize();
+            int cachePageSize = cachePageSize();
+            int filePageSize = cachePageSize - cachePageSize % getRecordSize();
             storeFile = pageCache.map( getStorageFileName(), filePageSize, openOptions );
         }
         catch ( IOException e )
@@ -293,6 +299,34 @@ public abstract class CommonAbstractStore<RECORD extends AbstractBaseRecord,HEAD
         recordSize = determineRecordSize();
     }
 
+    /**
+     * The size of the cache pages this store wants for its file. Page caches that manage pages of several sizes can
+     * give stores that only ever hold a handful of records smaller pages, and stores of large dynamic records larger
+     * pages. Records are laid out in the file the same way whatever the page size.
+     */
+    protected int cachePageSize()
+    {
+        return pageCache.pageSize();
+    }
+
+    /**
+     * @return the smallest page size of the page cache, for stores that only ever hold a handful of records.
+     */
+    protected static int smallestPageSize( PageCache pageCache )
+    {
+        int[] pageSizes = pageCache.pageSizes();
+        return pageSizes[0];
+    }
+
+    /**
+     * @return the largest page size of the page cache, for stores of large dynamic records.
+     */
+    protected static int largestPageSize( PageCache pageCache )
+    {
+        int[] pageSizes = pageCache.pageSizes();
+        return pageSizes[pageSizes.length - 1];
+    }
+
     protected long pageIdForRecord( long id )
     {
         return RecordPageLocationCalculator.pageIdForRecord( id, storeFile.pageSize(), recordSize );
@@ -374,6 +408,15 @@ public abstract class CommonAbstractStore<RECORD extends AbstractBaseRecord,HEAD
         long pageId = pageIdForRecord( id );
         int offset = offsetForId( id );
 
+        ByteArrayPageCursor peeked = peekCursor.get();
+        if ( storeFile.peek( pageId, offset, peeked.array(), recordSize ) )
+        {
+            peeked.reset( pageId );
+            boolean recordIsInUse = isInUse( peeked );
+            checkForDecodingErrors( peeked, id, NORMAL );
+            return recordIsInUse;
+        }
+
         try ( PageCursor cursor = storeFile.io( pageId, PF_SHARED_READ_LOCK ) )
         {
             boolean recordIsInUse = false;
@@ -1010,9 +1053,15 @@ public abstract class CommonAbstractStore<RECORD extends AbstractBaseRecord,HEAD
         record.setId( id );
         long pageId = pageIdForRecord( id );
         int offset = offsetForId( id );
-        try ( PageCursor cursor = storeFile.io( pageId, PF_SHARED_READ_LOCK ) )
+        try
         {
-            readIntoRecord( id, record, mode, pageId, offset, cursor );
+            if ( !peekIntoRecord( id, record, mode, pageId, offset ) )
+            {
+                try ( PageCursor cursor = storeFile.io( pageId, PF_SHARED_READ_LOCK ) )
+                {
+                    readIntoRecord( id, record, mode, pageId, offset, cursor );
+                }
+            }
             return record;
         }
         catch ( IOException e )
@@ -1021,6 +1070,33 @@ public abstract class CommonAbstractStore<RECORD extends AbstractBaseRecord,HEAD
         }
     }
 
+    /**
+     * Try to load the record from a consistent copy of it, taken without pinning its page. This only works if the
+     * page is already in memory, and if the record fits in that copy; formats that spread a record over several
+     * record units need a linked cursor, and those records are left to {@link #readIntoRecord}.
+     *
+     * @return {@code true} if the record was loaded, {@code false} if it must be read through a page cursor.
+     */
+    private boolean peekIntoRecord( long id, RECORD record, RecordLoad mode, long pageId, int offset )
+            throws IOException
+    {
+        ByteArrayPageCursor peeked = peekCursor.get();
+        if ( !storeFile.peek( pageId, offset, peeked.array(), recordSize ) )
+        {
+            return false;
+        }
+        peeked.reset( pageId );
+        prepareForReading( peeked, 0, record );
+        recordFormat.read( record, peeked, mode, recordSize );
+        if ( peeked.isLinkRequested() )
+        {
+            return false;
+        }
+        checkForDecodingErrors( peeked, id, mode );
+        verifyAfterReading( record, mode );
+        return true;
+    }
+
     private void readIntoRecord( long id, RECORD record, RecordLoad mode, long pageId, int offset, PageCursor cursor )
             throws IOException
     {
@@ -312,7 +312,14 @@ public class MetaDataStore extends CommonAbstractStore<MetaDataRecord,NoStoreHea
 
     static int getPageSize( PageCache pageCache )
     {
-        return pageCache.pageSize() - pageCache.pageSize() % RECORD_SIZE;
+        int cachePageSize = smallestPageSize( pageCache );
+        return cachePageSize - cachePageSize % RECORD_SIZE;
+    }
+
+    @Override
+    protected int cachePageSize()
+    {
+        return smallestPageSize( pageCache );
     }
 
     public StoreId getStoreId()
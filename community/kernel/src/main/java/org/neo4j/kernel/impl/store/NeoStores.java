@@ -197,6 +197,22 @@ public class NeoStores implements AutoCloseable
     }
 
     public void flush( IOLimiter limiter )
+    {
+        flush( Long.MAX_VALUE, limiter );
+    }
+
+    /**
+     * @return the flush epoch that begins now, see {@link PageCache#beginFlushEpoch()}.
+     */
+    public long beginFlushEpoch()
+    {
+        return pageCache.beginFlushEpoch();
+    }
+
+    /**
+     * Flush the changes made before the given flush epoch, or all changes if the epoch is {@link Long#MAX_VALUE}.
+     */
+    public void flush( long epoch, IOLimiter limiter )
     {
         try
         {
@@ -205,7 +221,14 @@ public class NeoStores implements AutoCloseable
             {
                 counts.rotate( getMetaDataStore().getLastCommittedTransactionId() );
             }
-            pageCache.flushAndForce( limiter );
+            if ( epoch == Long.MAX_VALUE )
+            {
+                pageCache.flushAndForce( limiter );
+            }
+            else
+            {
+                pageCache.flushAndForce( epoch, limiter );
+            }
         }
         catch ( IOException e )
         {
@@ -83,6 +83,12 @@ public abstract class TokenStore<RECORD extends TokenRecord,TOKEN extends Token>
         return false;
     }
 
+    @Override
+    protected int cachePageSize()
+    {
+        return smallestPageSize( pageCache );
+    }
+
     public List<TOKEN> getTokens( int maxCount )
     {
         LinkedList<TOKEN> records = new LinkedList<>();
@@ -33,12 +33,14 @@ import org.neo4j.io.fs.StoreChannel;
 import org.neo4j.kernel.impl.transaction.CommittedTransactionRepresentation;
 import org.neo4j.kernel.impl.transaction.log.LogEntryCursor;
 import org.neo4j.kernel.impl.transaction.log.PhysicalLogFile;
+import org.neo4j.kernel.impl.transaction.log.PhysicalLogFiles;
 import org.neo4j.kernel.impl.transaction.log.PhysicalLogVersionedStoreChannel;
 import org.neo4j.kernel.impl.transaction.log.PhysicalTransactionRepresentation;
 import org.neo4j.kernel.impl.transaction.log.ReadAheadLogChannel;
 import org.neo4j.kernel.impl.transaction.log.ReadableClosablePositionAwareChannel;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntry;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntryCommand;
+import org.neo4j.kernel.impl.transaction.log.entry.LogEntryCompressedCommands;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntryCommit;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntryReader;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntryStart;
@@ -207,6 +209,10 @@ class TransactionStream
                             commit.getTimeWritten(), -1 );
                     return new CommittedTransactionRepresentation( start, transaction, commit );
                 }
+                else if ( entry instanceof LogEntryCompressedCommands )
+                {
+                    commands.addAll( entry.<LogEntryCompressedCommands>as().getCommands() );
+                }
                 else
                 {
                     commands.add( entry.<LogEntryCommand>as().getXaCommand() );
@@ -335,7 +341,8 @@ class TransactionStream
             File file = new File( dir, name );
             if ( fs.fileExists( file ) && !fs.isDirectory( file ) )
             {
-                if ( name.startsWith( PhysicalLogFile.DEFAULT_NAME ) && !name.contains( "active" ) )
+                if ( name.startsWith( PhysicalLogFile.DEFAULT_NAME ) && !name.contains( "active" ) &&
+                     !name.endsWith( PhysicalLogFiles.POSITION_INDEX_SUFFIX ) )
                 {
                     return true;
                 }
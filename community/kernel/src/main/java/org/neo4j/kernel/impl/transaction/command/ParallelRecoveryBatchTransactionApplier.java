@@ -0,0 +1,398 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.command;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongIntMap;
+import org.neo4j.io.pagecache.monitoring.PageCursorOrigin;
+import org.neo4j.kernel.impl.api.BatchTransactionApplier;
+import org.neo4j.kernel.impl.api.TransactionApplier;
+import org.neo4j.kernel.impl.core.CacheAccessBackDoor;
+import org.neo4j.kernel.impl.locking.LockGroup;
+import org.neo4j.kernel.impl.locking.LockService;
+import org.neo4j.kernel.impl.store.NeoStores;
+import org.neo4j.kernel.impl.store.PropertyType;
+import org.neo4j.kernel.impl.store.record.AbstractBaseRecord;
+import org.neo4j.kernel.impl.store.record.DynamicRecord;
+import org.neo4j.kernel.impl.store.record.IndexRule;
+import org.neo4j.kernel.impl.store.record.PropertyBlock;
+import org.neo4j.kernel.impl.store.record.PropertyRecord;
+import org.neo4j.storageengine.api.CommandsToApply;
+
+/**
+ * Takes the place of the {@link NeoStoreBatchTransactionApplier} during recovery, and writes node, relationship,
+ * property and relationship group records on several threads.
+ * <p>
+ * Those commands are not written as they are visited, but striped by record id over a number of queues, keeping
+ * the order in which they were committed within each queue. Commands for the same record always end up in the same
+ * queue. A command can also touch records outside of its own, like dynamic label and property value records, and
+ * secondary record units. If any of those records is already claimed by another queue, then all queued commands
+ * are written before the command is queued, so that conflicting writes still happen in commit order. The queues
+ * are written in parallel, and the batch is only closed once they have all been written.
+ * <p>
+ * All other commands are applied on the recovering thread as they are visited, just like in
+ * {@link NeoStoreTransactionApplier}, since they go to other stores. Counts, id and index updates are handled by
+ * the other appliers of the batch, in commit order, as usual.
+ * <p>
+ * Those other appliers must not see the store without the queued records. The node and property updates of
+ * recovered transactions don't read the store, they only collect the ids of the nodes that the indexes are refreshed
+ * for once recovery completes, see {@link org.neo4j.kernel.impl.transaction.state.RecoveryIndexUpdates}. Schema
+ * index changes do act on the store, so all queued commands are written before an index rule command is applied.
+ * And the label and index updates of the batch are applied when the batch closes, which happens in the reverse order
+ * of the appliers, so the appliers of a batch must end with the {@link #writeBarrier()} of this applier.
+ */
+public class ParallelRecoveryBatchTransactionApplier extends BatchTransactionApplier.Adapter
+{
+    // Kinds of records, to tell the same id in different stores apart.
+    private static final int NODE = 0;
+    private static final int RELATIONSHIP = 1;
+    private static final int PROPERTY = 2;
+    private static final int RELATIONSHIP_GROUP = 3;
+    private static final int NODE_LABEL = 4;
+    private static final int PROPERTY_STRING = 5;
+    private static final int PROPERTY_ARRAY = 6;
+    private static final int KIND_BITS = 3;
+
+    // Records this close to each other likely share a page, so they are written by the same thread.
+    private static final int NEIGHBOURHOOD_SHIFT = 6;
+
+    private final NeoStores neoStores;
+    private final CacheAccessBackDoor cacheAccess;
+    private final LockService lockService;
+    private final Executor executor;
+    private final RecordWriter recordWriter;
+    private final List<List<Command>> queues;
+    private final PrimitiveLongIntMap claimedBy = Primitive.longIntMap();
+    private long[] keys = new long[8];
+    private int keyCount;
+    private boolean writeBeforeIndexChanges;
+
+    public ParallelRecoveryBatchTransactionApplier( NeoStores neoStores, CacheAccessBackDoor cacheAccess,
+            LockService lockService, Executor executor, int parallelism )
+    {
+        this.neoStores = neoStores;
+        this.cacheAccess = cacheAccess;
+        this.lockService = lockService;
+        this.executor = executor;
+        this.recordWriter = new RecordWriter( neoStores );
+        this.queues = new ArrayList<>( parallelism );
+        for ( int i = 0; i < parallelism; i++ )
+        {
+            queues.add( new ArrayList<>() );
+        }
+    }
+
+    @Override
+    public TransactionApplier startTx( CommandsToApply transaction )
+    {
+        throw new RuntimeException( "ParallelRecoveryBatchTransactionApplier requires a LockGroup" );
+    }
+
+    @Override
+    public TransactionApplier startTx( CommandsToApply transaction, LockGroup lockGroup ) throws IOException
+    {
+        return new QueueingTransactionApplier( transaction.transactionId(), lockGroup );
+    }
+
+    @Override
+    public void close() throws Exception
+    {
+        writeQueued();
+    }
+
+    /**
+     * @return an applier that writes all queued commands when it is closed, or when a transaction that changes
+     * schema indexes is closed. Placed after the appliers that read the store, it is closed before them.
+     */
+    public BatchTransactionApplier writeBarrier()
+    {
+        return new BatchTransactionApplier.Adapter()
+        {
+            @Override
+            public TransactionApplier startTx( CommandsToApply transaction )
+            {
+                return new TransactionApplier.Adapter()
+                {
+                    @Override
+                    public void close() throws Exception
+                    {
+                        if ( writeBeforeIndexChanges )
+                        {
+                            writeQueued();
+                            writeBeforeIndexChanges = false;
+                        }
+                    }
+                };
+            }
+
+            @Override
+            public void close() throws Exception
+            {
+                writeQueued();
+            }
+        };
+    }
+
+    private void addKey( int kind, long id )
+    {
+        if ( keyCount == keys.length )
+        {
+            keys = Arrays.copyOf( keys, keyCount * 2 );
+        }
+        keys[keyCount++] = (id << KIND_BITS) | kind;
+    }
+
+    private void addKeys( int kind, AbstractBaseRecord record )
+    {
+        addKey( kind, record.getId() );
+        if ( record.hasSecondaryUnitId() )
+        {
+            addKey( kind, record.getSecondaryUnitId() );
+        }
+    }
+
+    private void addDynamicKeys( int kind, Iterable<DynamicRecord> records )
+    {
+        for ( DynamicRecord record : records )
+        {
+            addKey( kind, record.getId() );
+        }
+    }
+
+    private void addPropertyValueKeys( Iterable<DynamicRecord> records )
+    {
+        for ( DynamicRecord record : records )
+        {
+            addKey( record.getType() == PropertyType.STRING ? PROPERTY_STRING : PROPERTY_ARRAY, record.getId() );
+        }
+    }
+
+    /**
+     * Queue the command, with the keys of the records it writes collected with the {@code addKey} methods. The
+     * first key is that of the record of the command itself, and decides which queue the command goes to.
+     */
+    private void queue( Command command ) throws IOException
+    {
+        int queue = (int) (((keys[0] >>> KIND_BITS) >>> NEIGHBOURHOOD_SHIFT) % queues.size());
+        for ( int i = 0; i < keyCount; i++ )
+        {
+            int claim = claimedBy.get( keys[i] );
+            if ( claim != -1 && claim != queue )
+            {
+                writeQueued();
+                break;
+            }
+        }
+        for ( int i = 0; i < keyCount; i++ )
+        {
+            claimedBy.put( keys[i], queue );
+        }
+        keyCount = 0;
+        queues.get( queue ).add( command );
+    }
+
+    /**
+     * Write all queued commands, one thread per queue, and wait for them to be written. The writing threads count
+     * their page accesses under the {@link PageCursorOrigin} of the recovering thread.
+     */
+    private void writeQueued() throws IOException
+    {
+        PageCursorOrigin origin = PageCursorOrigin.current();
+        List<FutureTask<Void>> writes = new ArrayList<>( queues.size() );
+        for ( List<Command> queue : queues )
+        {
+            if ( !queue.isEmpty() )
+            {
+                FutureTask<Void> write = new FutureTask<>( () -> write( queue, origin ) );
+                writes.add( write );
+                executor.execute( write );
+            }
+        }
+        Throwable failure = null;
+        for ( FutureTask<Void> write : writes )
+        {
+            try
+            {
+                write.get();
+            }
+            catch ( ExecutionException e )
+            {
+                failure = failure == null ? e.getCause() : failure;
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                failure = failure == null ? e : failure;
+            }
+        }
+        for ( List<Command> queue : queues )
+        {
+            queue.clear();
+        }
+        claimedBy.clear();
+        if ( failure != null )
+        {
+            throw new IOException( "Failed to write recovered records", failure );
+        }
+    }
+
+    private Void write( List<Command> queue, PageCursorOrigin origin ) throws IOException
+    {
+        PageCursorOrigin previous = origin.enter();
+        try
+        {
+            return write( queue );
+        }
+        finally
+        {
+            previous.enter();
+        }
+    }
+
+    private Void write( List<Command> queue ) throws IOException
+    {
+        for ( Command command : queue )
+        {
+            command.handle( recordWriter );
+        }
+        return null;
+    }
+
+    /**
+     * Applies the commands of a transaction, except for the node, relationship, property and relationship group
+     * commands, which are queued. No locks are taken for the queued commands, since nothing reads the store while
+     * it is being recovered.
+     */
+    private class QueueingTransactionApplier extends NeoStoreTransactionApplier
+    {
+        QueueingTransactionApplier( long transactionId, LockGroup lockGroup )
+        {
+            super( neoStores, cacheAccess, lockService, transactionId, lockGroup );
+        }
+
+        @Override
+        public boolean visitNodeCommand( Command.NodeCommand command ) throws IOException
+        {
+            addKeys( NODE, command.getAfter() );
+            addDynamicKeys( NODE_LABEL, command.getAfter().getDynamicLabelRecords() );
+            queue( command );
+            return false;
+        }
+
+        @Override
+        public boolean visitRelationshipCommand( Command.RelationshipCommand command ) throws IOException
+        {
+            addKeys( RELATIONSHIP, command.getAfter() );
+            queue( command );
+            return false;
+        }
+
+        @Override
+        public boolean visitPropertyCommand( Command.PropertyCommand command ) throws IOException
+        {
+            PropertyRecord after = command.getAfter();
+            addKeys( PROPERTY, after );
+            if ( after.inUse() )
+            {
+                for ( PropertyBlock block : after )
+                {
+                    if ( !block.isLight() )
+                    {
+                        addPropertyValueKeys( block.getValueRecords() );
+                    }
+                }
+            }
+            addPropertyValueKeys( after.getDeletedRecords() );
+            queue( command );
+            return false;
+        }
+
+        @Override
+        public boolean visitRelationshipGroupCommand( Command.RelationshipGroupCommand command ) throws IOException
+        {
+            addKeys( RELATIONSHIP_GROUP, command.getAfter() );
+            queue( command );
+            return false;
+        }
+
+        @Override
+        public boolean visitSchemaRuleCommand( Command.SchemaRuleCommand command ) throws IOException
+        {
+            if ( command.getSchemaRule() instanceof IndexRule )
+            {
+                // The index applier creates, drops or activates the index as soon as it sees this command,
+                // and applies the pending index updates of the batch, so the store must be up to date by then.
+                // Created indexes are only handed over when the transaction closes, so write once more then.
+                writeQueued();
+                writeBeforeIndexChanges = true;
+            }
+            return super.visitSchemaRuleCommand( command );
+        }
+    }
+
+    /**
+     * Writes the records of the queued commands.
+     */
+    private static class RecordWriter extends TransactionApplier.Adapter
+    {
+        private final NeoStores neoStores;
+
+        RecordWriter( NeoStores neoStores )
+        {
+            this.neoStores = neoStores;
+        }
+
+        @Override
+        public boolean visitNodeCommand( Command.NodeCommand command ) throws IOException
+        {
+            neoStores.getNodeStore().updateRecord( command.getAfter() );
+            return false;
+        }
+
+        @Override
+        public boolean visitRelationshipCommand( Command.RelationshipCommand command ) throws IOException
+        {
+            neoStores.getRelationshipStore().updateRecord( command.getAfter() );
+            return false;
+        }
+
+        @Override
+        public boolean visitPropertyCommand( Command.PropertyCommand command ) throws IOException
+        {
+            neoStores.getPropertyStore().updateRecord( command.getAfter() );
+            return false;
+        }
+
+        @Override
+        public boolean visitRelationshipGroupCommand( Command.RelationshipGroupCommand command ) throws IOException
+        {
+            neoStores.getRelationshipGroupStore().updateRecord( command.getAfter() );
+            return false;
+        }
+    }
+}
@@ -65,6 +65,8 @@ public class BatchingTransactionAppender extends LifecycleAdapter implements Tra
     private final LogPositionMarker positionMarker = new LogPositionMarker();
     private final DatabaseHealth databaseHealth;
     private final Lock forceLock = new ReentrantLock();
+    private final boolean compressCommands;
+    private final TransactionLogPositionIndex positionIndex;
 
     private FlushablePositionAwareChannel writer;
     private TransactionLogWriter transactionLogWriter;
@@ -73,6 +75,15 @@ public class BatchingTransactionAppender extends LifecycleAdapter implements Tra
     public BatchingTransactionAppender( LogFile logFile, LogRotation logRotation,
             TransactionMetadataCache transactionMetadataCache, TransactionIdStore transactionIdStore,
             IdOrderingQueue legacyIndexTransactionOrdering, DatabaseHealth databaseHealth )
+    {
+        this( logFile, logRotation, transactionMetadataCache, transactionIdStore, legacyIndexTransactionOrdering,
+                databaseHealth, false, TransactionLogPositionIndex.NO_INDEX );
+    }
+
+    public BatchingTransactionAppender( LogFile logFile, LogRotation logRotation,
+            TransactionMetadataCache transactionMetadataCache, TransactionIdStore transactionIdStore,
+            IdOrderingQueue legacyIndexTransactionOrdering, DatabaseHealth databaseHealth, boolean compressCommands,
+            TransactionLogPositionIndex positionIndex )
     {
         this.logFile = logFile;
         this.logRotation = logRotation;
@@ -80,6 +91,8 @@ public class BatchingTransactionAppender extends LifecycleAdapter implements Tra
         this.legacyIndexTransactionOrdering = legacyIndexTransactionOrdering;
         this.databaseHealth = databaseHealth;
         this.transactionMetadataCache = transactionMetadataCache;
+        this.compressCommands = compressCommands;
+        this.positionIndex = positionIndex;
     }
 
     @Override
@@ -87,7 +100,13 @@ public class BatchingTransactionAppender extends LifecycleAdapter implements Tra
     {
         this.writer = logFile.getWriter();
         this.indexCommandDetector = new IndexCommandDetector();
-        this.transactionLogWriter = new TransactionLogWriter( new LogEntryWriter( writer ) );
+        this.transactionLogWriter = new TransactionLogWriter( new LogEntryWriter( writer, compressCommands ) );
+    }
+
+    @Override
+    public void stop() throws Throwable
+    {
+        transactionLogWriter.close();
     }
 
     @Override
@@ -213,6 +232,7 @@ public class BatchingTransactionAppender extends LifecycleAdapter implements Tra
             transactionMetadataCache
                     .cacheTransactionMetadata( transactionId, logPositionBeforeCommit, transaction.getMasterId(),
                             transaction.getAuthorId(), transactionChecksum, transaction.getTimeCommitted() );
+            positionIndex.transactionAppended( transactionId, logPositionBeforeCommit );
 
             transaction.accept( indexCommandDetector );
             boolean hasLegacyIndexChanges = indexCommandDetector.hasWrittenAnyLegacyIndexCommand();
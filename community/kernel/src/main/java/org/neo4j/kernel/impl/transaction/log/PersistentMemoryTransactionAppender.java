@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.log;
+
+import java.io.IOException;
+
+import org.neo4j.kernel.impl.transaction.log.rotation.LogRotation;
+import org.neo4j.kernel.impl.transaction.tracing.LogForceEvent;
+import org.neo4j.kernel.impl.transaction.tracing.LogForceEvents;
+import org.neo4j.kernel.impl.util.IdOrderingQueue;
+import org.neo4j.kernel.internal.DatabaseHealth;
+
+/**
+ * Appends transactions to a transaction log that lives on persistent memory, through the NVM file system.
+ * <p>
+ * Transactions are serialized exactly like with the {@link BatchingTransactionAppender}, into the same log buffer,
+ * so the log format, the log entry readers and recovery are all unchanged. What differs is how a batch is made
+ * durable. Writes to NVM files are failure-atomic, and persist the written bytes together with the new file size,
+ * which is the tail of the log. Emptying the log buffer into the file is thus both the persist barrier and the atomic
+ * advance of the tail, so committers do not have to park and piggy-back on a group force of the log channel. Each
+ * committer empties the buffer under the log file monitor, and its batch is durable once that returns.
+ * <p>
+ * This is only durable on a file system where writes are, so use it with the NVM file system only.
+ */
+public class PersistentMemoryTransactionAppender extends BatchingTransactionAppender
+{
+    private final LogFile logFile;
+    private final DatabaseHealth databaseHealth;
+
+    private FlushablePositionAwareChannel writer;
+
+    public PersistentMemoryTransactionAppender( LogFile logFile, LogRotation logRotation,
+            TransactionMetadataCache transactionMetadataCache, TransactionIdStore transactionIdStore,
+            IdOrderingQueue legacyIndexTransactionOrdering, DatabaseHealth databaseHealth, boolean compressCommands,
+            TransactionLogPositionIndex positionIndex )
+    {
+        super( logFile, logRotation, transactionMetadataCache, transactionIdStore, legacyIndexTransactionOrdering,
+                databaseHealth, compressCommands, positionIndex );
+        this.logFile = logFile;
+        this.databaseHealth = databaseHealth;
+    }
+
+    @Override
+    public void start() throws Throwable
+    {
+        super.start();
+        this.writer = logFile.getWriter();
+    }
+
+    @Override
+    protected void forceAfterAppend( LogForceEvents logForceEvents ) throws IOException
+    {
+        try ( LogForceEvent logForceEvent = logForceEvents.beginLogForce() )
+        {
+            // Synchronized with logFile, like the appends, so we don't race with rotation. If another committer
+            // emptied the buffer since we appended, then our bytes went with theirs, and that write has already
+            // returned, and thus been persisted, by the time we get the monitor.
+            synchronized ( logFile )
+            {
+                writer.prepareForFlush();
+            }
+        }
+        catch ( final Throwable panic )
+        {
+            databaseHealth.panic( panic );
+            throw panic;
+        }
+    }
+}
@@ -209,6 +209,12 @@ public class PhysicalLogFile extends LifecycleAdapter implements LogFile
          * "simply overhead" for continuing to work with the new file.
          */
         PhysicalLogVersionedStoreChannel newLog = createLogChannelForVersion( newLogVersion );
+        // A log rotated away before reaching the threshold gives back the space it was preallocated beyond its end
+        long logEnd = currentLog.position();
+        if ( logEnd < rotateAtSize )
+        {
+            currentLog.punchHole( logEnd, rotateAtSize - logEnd );
+        }
         currentLog.close();
         return newLog;
     }
@@ -227,6 +233,8 @@ public class PhysicalLogFile extends LifecycleAdapter implements LogFile
     {
         File toOpen = logFiles.getLogFileForVersion( forVersion );
         StoreChannel storeChannel = fileSystem.open( toOpen, "rw" );
+        // Reserve the space the log grows into before rotating, so appends do not have to allocate
+        storeChannel.preallocate( 0, rotateAtSize );
         LogHeader header = readLogHeader( headerBuffer, storeChannel, false, toOpen );
         if ( header == null )
         {
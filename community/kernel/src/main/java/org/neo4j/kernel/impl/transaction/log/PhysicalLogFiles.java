@@ -58,6 +58,8 @@ public class PhysicalLogFiles
         }
     }
 
+    public static final String POSITION_INDEX_SUFFIX = ".positions";
+
     private final File logBaseName;
     private final Pattern logFilePattern;
     private final FileSystemAbstraction fileSystem;
@@ -79,6 +81,14 @@ public class PhysicalLogFiles
         return new File( logBaseName.getPath() + DEFAULT_VERSION_SUFFIX + version );
     }
 
+    /**
+     * @return the file that the {@link PhysicalTransactionLogPositionIndex} for the given log version is written to.
+     */
+    public File getPositionIndexFileForVersion( long version )
+    {
+        return new File( getLogFileForVersion( version ).getPath() + POSITION_INDEX_SUFFIX );
+    }
+
     public boolean versionExists( long version )
     {
         return fileSystem.fileExists( getLogFileForVersion( version ) );
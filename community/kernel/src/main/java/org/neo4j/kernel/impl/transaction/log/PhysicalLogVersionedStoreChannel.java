@@ -92,6 +92,18 @@ public class PhysicalLogVersionedStoreChannel implements LogVersionedStoreChanne
         return delegateChannel.truncate( size );
     }
 
+    @Override
+    public void preallocate( long position, long length ) throws IOException
+    {
+        delegateChannel.preallocate( position, length );
+    }
+
+    @Override
+    public void punchHole( long position, long length ) throws IOException
+    {
+        delegateChannel.punchHole( position, length );
+    }
+
     @Override
     public int read( ByteBuffer dst ) throws IOException
     {
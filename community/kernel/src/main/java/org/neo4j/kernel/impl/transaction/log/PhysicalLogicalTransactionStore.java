@@ -42,13 +42,22 @@ public class PhysicalLogicalTransactionStore implements LogicalTransactionStore
     private final LogFile logFile;
     private final TransactionMetadataCache transactionMetadataCache;
     private final LogEntryReader<ReadableClosablePositionAwareChannel> logEntryReader;
+    private final TransactionLogPositionIndex positionIndex;
 
     public PhysicalLogicalTransactionStore( LogFile logFile, TransactionMetadataCache transactionMetadataCache,
             LogEntryReader<ReadableClosablePositionAwareChannel> logEntryReader )
+    {
+        this( logFile, transactionMetadataCache, logEntryReader, TransactionLogPositionIndex.NO_INDEX );
+    }
+
+    public PhysicalLogicalTransactionStore( LogFile logFile, TransactionMetadataCache transactionMetadataCache,
+            LogEntryReader<ReadableClosablePositionAwareChannel> logEntryReader,
+            TransactionLogPositionIndex positionIndex )
     {
         this.logFile = logFile;
         this.transactionMetadataCache = transactionMetadataCache;
         this.logEntryReader = logEntryReader;
+        this.positionIndex = positionIndex;
     }
 
     @Override
@@ -77,11 +86,24 @@ public class PhysicalLogicalTransactionStore implements LogicalTransactionStore
             LogVersionLocator headerVisitor = new LogVersionLocator( transactionIdToStartFrom );
             logFile.accept( headerVisitor );
 
-            // ask LogFile
-            TransactionPositionLocator transactionPositionLocator =
-                    new TransactionPositionLocator( transactionIdToStartFrom, logEntryReader );
-            logFile.accept( transactionPositionLocator, headerVisitor.getLogPosition() );
-            LogPosition position = transactionPositionLocator.getAndCacheFoundLogPosition( transactionMetadataCache );
+            // ask the position index where in that version to start looking, and then LogFile
+            LogPosition versionPosition = headerVisitor.getLogPosition();
+            LogPosition indexedPosition =
+                    positionIndex.closestPosition( versionPosition.getLogVersion(), transactionIdToStartFrom );
+            LogPosition position;
+            try
+            {
+                position = locateTransaction( transactionIdToStartFrom, indexedPosition );
+            }
+            catch ( IOException e )
+            {
+                if ( indexedPosition.equals( versionPosition ) )
+                {
+                    throw e;
+                }
+                // The index is only a hint, read the whole version if it led us astray
+                position = locateTransaction( transactionIdToStartFrom, versionPosition );
+            }
             return new PhysicalTransactionCursor<>( logFile.getReader( position ), logEntryReader );
         }
         catch ( FileNotFoundException e )
@@ -91,6 +113,14 @@ public class PhysicalLogicalTransactionStore implements LogicalTransactionStore
         }
     }
 
+    private LogPosition locateTransaction( long transactionId, LogPosition startFrom ) throws IOException
+    {
+        TransactionPositionLocator transactionPositionLocator =
+                new TransactionPositionLocator( transactionId, logEntryReader );
+        logFile.accept( transactionPositionLocator, startFrom );
+        return transactionPositionLocator.getAndCacheFoundLogPosition( transactionMetadataCache );
+    }
+
     private static final TransactionMetadataCache.TransactionMetadata METADATA_FOR_EMPTY_STORE =
             new TransactionMetadataCache.TransactionMetadata( -1, -1, LogPosition.start( 0 ), BASE_TX_CHECKSUM,
                     BASE_TX_COMMIT_TIMESTAMP );
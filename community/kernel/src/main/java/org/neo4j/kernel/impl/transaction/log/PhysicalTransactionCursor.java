@@ -27,6 +27,7 @@ import org.neo4j.kernel.impl.transaction.CommittedTransactionRepresentation;
 import org.neo4j.kernel.impl.transaction.log.entry.CheckPoint;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntry;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntryCommand;
+import org.neo4j.kernel.impl.transaction.log.entry.LogEntryCompressedCommands;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntryCommit;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntryReader;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntryStart;
@@ -91,6 +92,12 @@ public class PhysicalTransactionCursor<T extends ReadableClosablePositionAwareCh
                     break;
                 }
 
+                if ( entry instanceof LogEntryCompressedCommands )
+                {
+                    entries.addAll( entry.<LogEntryCompressedCommands>as().getCommands() );
+                    continue;
+                }
+
                 LogEntryCommand command = entry.as();
                 entries.add( command.getXaCommand() );
             }
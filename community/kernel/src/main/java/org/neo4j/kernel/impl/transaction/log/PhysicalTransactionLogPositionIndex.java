@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.neo4j.helpers.collection.LruCache;
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.fs.StoreChannel;
+import org.neo4j.kernel.impl.transaction.log.rotation.LogRotation;
+import org.neo4j.logging.Log;
+import org.neo4j.logging.LogProvider;
+
+import static org.neo4j.kernel.impl.transaction.log.entry.LogHeader.LOG_HEADER_SIZE;
+
+/**
+ * {@link TransactionLogPositionIndex} that keeps the start position of every {@code interval}th transaction.
+ * <p>
+ * Positions for the log version currently appended to are kept in memory. When that version is rotated away from,
+ * they are written to a file next to the log file, see {@link PhysicalLogFiles#getPositionIndexFileForVersion(long)},
+ * as pairs of transaction id and byte offset. Those files are read back, and cached, on lookups in older versions.
+ * <p>
+ * The index is only a hint of where to start reading. Missing or damaged index files, like for versions written
+ * before a restart or by a database without the index, make lookups fall back to the start of the log version.
+ */
+public class PhysicalTransactionLogPositionIndex implements TransactionLogPositionIndex, LogRotation.Monitor
+{
+    private final FileSystemAbstraction fileSystem;
+    private final PhysicalLogFiles logFiles;
+    private final int interval;
+    private final Log log;
+    private final LruCache<Long /*log version*/, long[] /*tx id and byte offset pairs*/> indexCache =
+            new LruCache<>( "Tx log position index cache", 16 );
+
+    private long currentVersion = -1;
+    private long[] current = new long[256];
+    private int currentSize;
+
+    public PhysicalTransactionLogPositionIndex( FileSystemAbstraction fileSystem, PhysicalLogFiles logFiles,
+            int interval, LogProvider logProvider )
+    {
+        this.fileSystem = fileSystem;
+        this.logFiles = logFiles;
+        this.interval = interval;
+        this.log = logProvider.getLog( getClass() );
+    }
+
+    @Override
+    public synchronized void transactionAppended( long transactionId, LogPosition startPosition )
+    {
+        if ( startPosition.getLogVersion() != currentVersion )
+        {
+            // Any index file there is for this version is left from a log that since has been removed
+            currentVersion = startPosition.getLogVersion();
+            currentSize = 0;
+            indexCache.remove( currentVersion );
+            File indexFile = logFiles.getPositionIndexFileForVersion( currentVersion );
+            if ( fileSystem.fileExists( indexFile ) )
+            {
+                fileSystem.deleteFile( indexFile );
+            }
+        }
+
+        if ( transactionId % interval == 0 )
+        {
+            if ( currentSize == current.length )
+            {
+                current = Arrays.copyOf( current, current.length * 2 );
+            }
+            current[currentSize++] = transactionId;
+            current[currentSize++] = startPosition.getByteOffset();
+        }
+    }
+
+    @Override
+    public LogPosition closestPosition( long logVersion, long transactionId )
+    {
+        synchronized ( this )
+        {
+            if ( logVersion == currentVersion )
+            {
+                return closestPosition( current, currentSize, logVersion, transactionId );
+            }
+        }
+
+        long[] entries = indexCache.get( logVersion );
+        if ( entries == null )
+        {
+            entries = readIndex( logVersion );
+            if ( entries == null )
+            {
+                return LogPosition.start( logVersion );
+            }
+            indexCache.put( logVersion, entries );
+        }
+        return closestPosition( entries, entries.length, logVersion, transactionId );
+    }
+
+    private static LogPosition closestPosition( long[] entries, int size, long logVersion, long transactionId )
+    {
+        int low = 0;
+        int high = size / 2 - 1;
+        int found = -1;
+        while ( low <= high )
+        {
+            int mid = (low + high) >>> 1;
+            if ( entries[mid * 2] <= transactionId )
+            {
+                found = mid;
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return found == -1 ? LogPosition.start( logVersion ) : new LogPosition( logVersion, entries[found * 2 + 1] );
+    }
+
+    @Override
+    public void startedRotating( long currentVersion )
+    {
+    }
+
+    @Override
+    public synchronized void finishedRotating( long version )
+    {
+        // Rotation forces the log, so all transactions indexed for this version are durable by now
+        if ( version == currentVersion && currentSize > 0 )
+        {
+            long[] entries = Arrays.copyOf( current, currentSize );
+            try
+            {
+                writeIndex( version, entries );
+                indexCache.put( version, entries );
+            }
+            catch ( IOException e )
+            {
+                log.warn( "Unable to write transaction log position index for log version " + version +
+                          ", lookups in that version will read it from the start", e );
+            }
+        }
+        currentSize = 0;
+    }
+
+    private void writeIndex( long version, long[] entries ) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( entries.length * 8 );
+        buffer.asLongBuffer().put( entries );
+        try ( StoreChannel channel = fileSystem.open( logFiles.getPositionIndexFileForVersion( version ), "rw" ) )
+        {
+            channel.truncate( 0 );
+            channel.writeAll( buffer, 0 );
+            channel.force( false );
+        }
+    }
+
+    private long[] readIndex( long version )
+    {
+        File indexFile = logFiles.getPositionIndexFileForVersion( version );
+        if ( !fileSystem.fileExists( indexFile ) )
+        {
+            return null;
+        }
+
+        try ( StoreChannel channel = fileSystem.open( indexFile, "r" ) )
+        {
+            long size = channel.size();
+            if ( size == 0 || size % 16 != 0 || size > Integer.MAX_VALUE )
+            {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate( (int) size );
+            while ( buffer.hasRemaining() && channel.read( buffer ) != -1 )
+            {
+                // keep reading
+            }
+            if ( buffer.hasRemaining() )
+            {
+                return null;
+            }
+            buffer.flip();
+            long[] entries = new long[(int) size / 8];
+            buffer.asLongBuffer().get( entries );
+
+            // Pairs must be increasing in both transaction id and offset, otherwise this isn't a complete index
+            for ( int i = 0; i < entries.length; i += 2 )
+            {
+                if ( entries[i + 1] < LOG_HEADER_SIZE ||
+                     (i > 0 && (entries[i] <= entries[i - 2] || entries[i + 1] <= entries[i - 1])) )
+                {
+                    return null;
+                }
+            }
+            return entries;
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Unable to read transaction log position index for log version " + version, e );
+            return null;
+        }
+    }
+}
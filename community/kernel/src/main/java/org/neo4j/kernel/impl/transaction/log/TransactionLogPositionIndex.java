@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.log;
+
+/**
+ * Sparse index from transaction id to the position of its start entry in the transaction log, so that a transaction
+ * can be found by reading from a position close to it, instead of from the start of the log version it is in.
+ */
+public interface TransactionLogPositionIndex
+{
+    TransactionLogPositionIndex NO_INDEX = new TransactionLogPositionIndex()
+    {
+        @Override
+        public void transactionAppended( long transactionId, LogPosition startPosition )
+        {
+        }
+
+        @Override
+        public LogPosition closestPosition( long logVersion, long transactionId )
+        {
+            return LogPosition.start( logVersion );
+        }
+    };
+
+    /**
+     * Called for every transaction appended to the log, in transaction id order.
+     *
+     * @param transactionId id of the appended transaction.
+     * @param startPosition position of the start entry of the appended transaction.
+     */
+    void transactionAppended( long transactionId, LogPosition startPosition );
+
+    /**
+     * @param logVersion the log version that contains the transaction.
+     * @param transactionId id of the transaction to find.
+     * @return the position of the start entry of the transaction, or of a transaction before it in the same log
+     * version. Returns the start of the log version if there's no such transaction in the index.
+     */
+    LogPosition closestPosition( long logVersion, long transactionId );
+}
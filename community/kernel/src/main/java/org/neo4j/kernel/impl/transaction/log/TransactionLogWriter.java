@@ -50,4 +50,9 @@ public class TransactionLogWriter
     {
         writer.writeCheckPointEntry( logPosition );
     }
+
+    public void close()
+    {
+        writer.close();
+    }
 }
@@ -48,8 +48,10 @@ public class CheckPointerImpl extends LifecycleAdapter implements CheckPointer
     private final Log msgLog;
     private final CheckPointTracer tracer;
     private final Lock lock;
+    private final boolean fuzzy;
 
     private long lastCheckPointedTx;
+    private FlushPoint previousFlushPoint;
 
     public CheckPointerImpl(
             TransactionIdStore transactionIdStore,
@@ -71,6 +73,36 @@ public class CheckPointerImpl extends LifecycleAdapter implements CheckPointer
                 logProvider,
                 tracer,
                 ioLimiter,
+                false );
+    }
+
+    /**
+     * @param fuzzy whether or not check points that are triggered by the {@link CheckPointThreshold} should be fuzzy.
+     * A fuzzy check point points at where the previous check point began, rather than where it begins itself, and
+     * only needs to flush the changes from before that. Forced check points are never fuzzy.
+     */
+    public CheckPointerImpl(
+            TransactionIdStore transactionIdStore,
+            CheckPointThreshold threshold,
+            StorageEngine storageEngine,
+            LogPruning logPruning,
+            TransactionAppender appender,
+            DatabaseHealth databaseHealth,
+            LogProvider logProvider,
+            CheckPointTracer tracer,
+            IOLimiter ioLimiter,
+            boolean fuzzy )
+    {
+        this( transactionIdStore,
+                threshold,
+                storageEngine,
+                logPruning,
+                appender,
+                databaseHealth,
+                logProvider,
+                tracer,
+                ioLimiter,
+                fuzzy,
                 new ReentrantLock() );
     }
 
@@ -85,6 +117,32 @@ public class CheckPointerImpl extends LifecycleAdapter implements CheckPointer
             CheckPointTracer tracer,
             IOLimiter ioLimiter,
             Lock lock )
+    {
+        this( transactionIdStore,
+                threshold,
+                storageEngine,
+                logPruning,
+                appender,
+                databaseHealth,
+                logProvider,
+                tracer,
+                ioLimiter,
+                false,
+                lock );
+    }
+
+    private CheckPointerImpl(
+            TransactionIdStore transactionIdStore,
+            CheckPointThreshold threshold,
+            StorageEngine storageEngine,
+            LogPruning logPruning,
+            TransactionAppender appender,
+            DatabaseHealth databaseHealth,
+            LogProvider logProvider,
+            CheckPointTracer tracer,
+            IOLimiter ioLimiter,
+            boolean fuzzy,
+            Lock lock )
     {
         this.appender = appender;
         this.transactionIdStore = transactionIdStore;
@@ -96,6 +154,7 @@ public class CheckPointerImpl extends LifecycleAdapter implements CheckPointer
         this.msgLog = logProvider.getLog( CheckPointerImpl.class );
         this.tracer = tracer;
         this.lock = lock;
+        this.fuzzy = fuzzy;
     }
 
     @Override
@@ -111,7 +170,7 @@ public class CheckPointerImpl extends LifecycleAdapter implements CheckPointer
         lock.lock();
         try
         {
-            return doCheckPoint( info, LogCheckPointEvent.NULL );
+            return doCheckPoint( info, LogCheckPointEvent.NULL, false );
         }
         finally
         {
@@ -130,7 +189,7 @@ public class CheckPointerImpl extends LifecycleAdapter implements CheckPointer
             {
                 try
                 {
-                    return doCheckPoint( info, LogCheckPointEvent.NULL );
+                    return doCheckPoint( info, LogCheckPointEvent.NULL, false );
                 }
                 finally
                 {
@@ -168,7 +227,7 @@ public class CheckPointerImpl extends LifecycleAdapter implements CheckPointer
             {
                 try ( LogCheckPointEvent event = tracer.beginCheckPoint() )
                 {
-                    return doCheckPoint( info, event );
+                    return doCheckPoint( info, event, fuzzy );
                 }
             }
             return -1;
@@ -179,13 +238,27 @@ public class CheckPointerImpl extends LifecycleAdapter implements CheckPointer
         }
     }
 
-    private long doCheckPoint( TriggerInfo triggerInfo, LogCheckPointEvent logCheckPointEvent ) throws IOException
+    private long doCheckPoint( TriggerInfo triggerInfo, LogCheckPointEvent logCheckPointEvent, boolean fuzzy )
+            throws IOException
     {
         long[] lastClosedTransaction = transactionIdStore.getLastClosedTransaction();
         long lastClosedTransactionId = lastClosedTransaction[0];
-        LogPosition logPosition = new LogPosition( lastClosedTransaction[1], lastClosedTransaction[2] );
+        LogPosition lastClosedPosition = new LogPosition( lastClosedTransaction[1], lastClosedTransaction[2] );
+
+        /*
+         * The flush epoch begins after we've read the last closed transaction, so all changes from the transactions
+         * up to it are from earlier epochs. Flushing those epochs is enough for a check point at that transaction.
+         * A fuzzy check point goes one step further back, to where the previous check point began. The changes from
+         * before that have had a whole check point interval to be written by eviction and background flushing, so
+         * there is usually little left to flush, and recovery still never has to go back more than two intervals.
+         */
+        FlushPoint flushPoint =
+                new FlushPoint( lastClosedTransactionId, lastClosedPosition, storageEngine.beginFlushEpoch() );
+        FlushPoint checkPointAt = fuzzy && previousFlushPoint != null ? previousFlushPoint : flushPoint;
+        long checkPointedTransactionId = checkPointAt.transactionId;
+        LogPosition logPosition = checkPointAt.logPosition;
 
-        String prefix = triggerInfo.describe( lastClosedTransactionId );
+        String prefix = triggerInfo.describe( checkPointedTransactionId );
         msgLog.info( prefix + " Starting check pointing..." );
 
         /*
@@ -200,7 +273,7 @@ public class CheckPointerImpl extends LifecycleAdapter implements CheckPointer
          * earlier check point and replay from there all the log entries. Everything will be ok.
          */
         msgLog.info( prefix + " Starting store flush..." );
-        storageEngine.flushAndForce( ioLimiter );
+        storageEngine.flushAndForce( checkPointAt.flushEpoch, ioLimiter );
         msgLog.info( prefix + " Store flush completed" );
 
         /*
@@ -213,6 +286,8 @@ public class CheckPointerImpl extends LifecycleAdapter implements CheckPointer
         msgLog.info( prefix + " Starting appending check point entry into the tx log..." );
         appender.checkPoint( logPosition, logCheckPointEvent );
         threshold.checkPointHappened( lastClosedTransactionId );
+        // A forced check point is newer than any fuzzy one we could write next, so start over after it
+        previousFlushPoint = fuzzy ? flushPoint : null;
         msgLog.info( prefix + " Appending check point entry into the tx log completed" );
 
         msgLog.info( prefix + " Check pointing completed" );
@@ -223,7 +298,21 @@ public class CheckPointerImpl extends LifecycleAdapter implements CheckPointer
          */
         logPruning.pruneLogs( logPosition.getLogVersion() );
 
-        lastCheckPointedTx = lastClosedTransactionId;
-        return lastClosedTransactionId;
+        lastCheckPointedTx = checkPointedTransactionId;
+        return checkPointedTransactionId;
+    }
+
+    private static class FlushPoint
+    {
+        private final long transactionId;
+        private final LogPosition logPosition;
+        private final long flushEpoch;
+
+        FlushPoint( long transactionId, LogPosition logPosition, long flushEpoch )
+        {
+            this.transactionId = transactionId;
+            this.logPosition = logPosition;
+            this.flushEpoch = flushEpoch;
+        }
     }
 }
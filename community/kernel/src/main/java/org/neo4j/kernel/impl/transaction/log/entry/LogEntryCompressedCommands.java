@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.log.entry;
+
+import java.util.List;
+
+import org.neo4j.storageengine.api.StorageCommand;
+
+import static org.neo4j.kernel.impl.transaction.log.entry.LogEntryByteCodes.COMPRESSED_COMMANDS;
+
+/**
+ * All the commands of a transaction, read from a single compressed log entry. Readers of transactions treat this
+ * like the sequence of {@link LogEntryCommand} entries it replaces.
+ */
+public class LogEntryCompressedCommands extends AbstractLogEntry
+{
+    private final List<StorageCommand> commands;
+
+    public LogEntryCompressedCommands( LogEntryVersion version, List<StorageCommand> commands )
+    {
+        super( version, COMPRESSED_COMMANDS );
+        this.commands = commands;
+    }
+
+    public List<StorageCommand> getCommands()
+    {
+        return commands;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CompressedCommands[" + commands + "]";
+    }
+
+    @Override
+    public <T extends LogEntry> T as()
+    {
+        return (T) this;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+        if ( this == o )
+        {
+            return true;
+        }
+        if ( o == null || getClass() != o.getClass() )
+        {
+            return false;
+        }
+
+        LogEntryCompressedCommands that = (LogEntryCompressedCommands) o;
+        return commands.equals( that.commands );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return commands.hashCode();
+    }
+}
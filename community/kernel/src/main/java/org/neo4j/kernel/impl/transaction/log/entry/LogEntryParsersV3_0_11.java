@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.log.entry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.neo4j.kernel.impl.transaction.log.InMemoryClosableChannel;
+import org.neo4j.kernel.impl.transaction.log.LogPositionMarker;
+import org.neo4j.kernel.impl.transaction.log.ReadableClosableChannel;
+import org.neo4j.storageengine.api.CommandReader;
+import org.neo4j.storageengine.api.CommandReaderFactory;
+import org.neo4j.storageengine.api.StorageCommand;
+
+// 3.0.11, the 2.3 layout plus an entry holding the compressed commands of a transaction
+public enum LogEntryParsersV3_0_11 implements LogEntryParser<LogEntry>
+{
+    EMPTY( LogEntryParsersV2_3.EMPTY ),
+    TX_START( LogEntryParsersV2_3.TX_START ),
+    COMMAND( LogEntryParsersV2_3.COMMAND ),
+    TX_1P_COMMIT( LogEntryParsersV2_3.TX_1P_COMMIT ),
+    CHECK_POINT( LogEntryParsersV2_3.CHECK_POINT ),
+    COMPRESSED_COMMANDS( null )
+            {
+                @Override
+                public LogEntry parse( LogEntryVersion version, ReadableClosableChannel channel,
+                        LogPositionMarker marker, CommandReaderFactory commandReader ) throws IOException
+                {
+                    int commandCount = channel.getInt();
+                    int length = channel.getInt();
+                    int compressedLength = channel.getInt();
+                    byte[] compressed = new byte[compressedLength];
+                    channel.get( compressed, compressedLength );
+
+                    byte[] bytes = new byte[length];
+                    Inflater inflater = new Inflater();
+                    try
+                    {
+                        inflater.setInput( compressed );
+                        int inflated = inflater.inflate( bytes );
+                        if ( inflated != length || !inflater.finished() )
+                        {
+                            throw new IOException( "Compressed commands inflated to " + inflated +
+                                                   " bytes, but expected " + length );
+                        }
+                    }
+                    catch ( DataFormatException e )
+                    {
+                        throw new IOException( "Compressed commands are corrupt", e );
+                    }
+                    finally
+                    {
+                        inflater.end();
+                    }
+
+                    // The commands are serialized back to back, without log entry headers.
+                    InMemoryClosableChannel commandChannel = new InMemoryClosableChannel( bytes, true );
+                    CommandReader reader = commandReader.byVersion( version.byteCode() );
+                    List<StorageCommand> commands = new ArrayList<>( commandCount );
+                    for ( int i = 0; i < commandCount; i++ )
+                    {
+                        StorageCommand command = reader.read( commandChannel );
+                        if ( command != null )
+                        {
+                            commands.add( command );
+                        }
+                    }
+                    return new LogEntryCompressedCommands( version, commands );
+                }
+
+                @Override
+                public byte byteCode()
+                {
+                    return LogEntryByteCodes.COMPRESSED_COMMANDS;
+                }
+            };
+
+    private final LogEntryParsersV2_3 delegate;
+
+    LogEntryParsersV3_0_11( LogEntryParsersV2_3 delegate )
+    {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public LogEntry parse( LogEntryVersion version, ReadableClosableChannel channel, LogPositionMarker marker,
+            CommandReaderFactory commandReader ) throws IOException
+    {
+        return delegate.parse( version, channel, marker, commandReader );
+    }
+
+    @Override
+    public byte byteCode()
+    {
+        return delegate.byteCode();
+    }
+
+    @Override
+    public boolean skip()
+    {
+        return delegate != null && delegate.skip();
+    }
+}
@@ -97,7 +97,10 @@ public enum LogEntryVersion
     // as of 2017-05-26: the records in command log entries include a bit that specifies if the command is serialised
     // using a fixed-width reference format, or not. This change is technically backwards compatible, so we bump the
     // log version to prevent mixed-version clusters from forming.
-    V3_0_10( -10, LogEntryParsersV2_3.class );
+    V3_0_10( -10, LogEntryParsersV2_3.class ),
+    // as of 2026-10-18: the commands of a transaction can be written as a single compressed entry. Only written
+    // when compression of command entries is configured, otherwise transactions are still written as V3_0_10.
+    V3_0_11( -11, LogEntryParsersV3_0_11.class );
 
     public static final LogEntryVersion CURRENT = V3_0_10;
     private static final LogEntryVersion[] ALL = values();
@@ -133,17 +136,15 @@ public enum LogEntryVersion
     }
 
     /**
-     * @param outType type of entry.
+     * @param type type of entry.
      * @return a {@link LogEntryParser} capable of reading a {@link LogEntry} of the given type for this
      * log entry version.
      */
-    public LogEntryParser<LogEntry> entryParser( byte outType )
+    public LogEntryParser<LogEntry> entryParser( byte type )
     {
-        byte type = 0;//1 6
         LogEntryParser<LogEntry> candidate = (type >= 0 && type < entryTypes.length) ? entryTypes[type] : null;
         if ( candidate == null )
         {
-            System.out.println("length"+entryTypes.length+" type(byte): "+type+" version "+version);
             throw new IllegalArgumentException( "Unknown entry type " + type + " for version " + version );
         }
         return candidate;
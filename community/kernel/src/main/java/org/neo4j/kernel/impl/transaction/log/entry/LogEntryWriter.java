@@ -20,29 +20,45 @@
 package org.neo4j.kernel.impl.transaction.log.entry;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collection;
+import java.util.zip.Deflater;
 
 import org.neo4j.helpers.collection.Visitor;
 import org.neo4j.kernel.impl.transaction.TransactionRepresentation;
 import org.neo4j.kernel.impl.transaction.log.FlushableChannel;
 import org.neo4j.kernel.impl.transaction.log.LogPosition;
 import org.neo4j.storageengine.api.StorageCommand;
+import org.neo4j.storageengine.api.WritableChannel;
 
 import static org.neo4j.kernel.impl.transaction.log.entry.LogEntryByteCodes.CHECK_POINT;
 import static org.neo4j.kernel.impl.transaction.log.entry.LogEntryByteCodes.COMMAND;
+import static org.neo4j.kernel.impl.transaction.log.entry.LogEntryByteCodes.COMPRESSED_COMMANDS;
 import static org.neo4j.kernel.impl.transaction.log.entry.LogEntryByteCodes.TX_1P_COMMIT;
 import static org.neo4j.kernel.impl.transaction.log.entry.LogEntryByteCodes.TX_START;
 import static org.neo4j.kernel.impl.transaction.log.entry.LogEntryVersion.CURRENT;
+import static org.neo4j.kernel.impl.transaction.log.entry.LogEntryVersion.V3_0_11;
 
 public class LogEntryWriter
 {
     private final FlushableChannel channel;
     private final Visitor<StorageCommand,IOException> serializer;
+    private final CommandCompressor compressor;
 
     public LogEntryWriter( FlushableChannel channel )
+    {
+        this( channel, false );
+    }
+
+    /**
+     * @param compressCommands whether or not to write the commands of each serialized transaction as one compressed
+     * entry, instead of one entry per command. Transactions that don't get smaller from it are written uncompressed.
+     */
+    public LogEntryWriter( FlushableChannel channel, boolean compressCommands )
     {
         this.channel = channel;
         this.serializer = new StorageCommandSerializer( channel );
+        this.compressor = compressCommands ? new CommandCompressor() : null;
     }
 
     private void writeLogEntryHeader( byte type ) throws IOException
@@ -66,7 +82,10 @@ public class LogEntryWriter
 
     public void serialize( TransactionRepresentation tx ) throws IOException
     {
-        tx.accept( serializer );
+        if ( compressor == null || !compressor.write( tx ) )
+        {
+            tx.accept( serializer );
+        }
     }
 
     public void serialize( Collection<StorageCommand> commands ) throws IOException
@@ -84,6 +103,18 @@ public class LogEntryWriter
                 putLong( logPosition.getByteOffset() );
     }
 
+    /**
+     * Releases the native memory held for compressing commands, if any. Nothing can be serialized with this
+     * writer afterwards.
+     */
+    public void close()
+    {
+        if ( compressor != null )
+        {
+            compressor.close();
+        }
+    }
+
     private class StorageCommandSerializer implements Visitor<StorageCommand,IOException>
     {
         private final FlushableChannel channel;
@@ -101,4 +132,148 @@ public class LogEntryWriter
             return false;
         }
     }
+
+    /**
+     * Serializes all commands of a transaction, without entry headers, into a buffer and writes them deflated in
+     * a single {@link LogEntryByteCodes#COMPRESSED_COMMANDS} entry. Buffers and the {@link Deflater} are kept
+     * between transactions, the writer is only used by one thread at a time.
+     */
+    private class CommandCompressor implements Visitor<StorageCommand,IOException>
+    {
+        private final GrowableChannel commands = new GrowableChannel( 4096 );
+        private final Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+        private byte[] compressed = new byte[4096];
+        private int commandCount;
+
+        /**
+         * @return {@code true} if the commands were written compressed, {@code false} if nothing was written
+         * since compressing them didn't make them smaller.
+         */
+        boolean write( TransactionRepresentation tx ) throws IOException
+        {
+            commands.clear();
+            commandCount = 0;
+            tx.accept( this );
+            int length = commands.position();
+            if ( compressed.length < length )
+            {
+                compressed = new byte[length];
+            }
+
+            deflater.reset();
+            deflater.setInput( commands.array(), 0, length );
+            deflater.finish();
+            int compressedLength = deflater.deflate( compressed );
+            // One entry header and three ints, compared to one entry header per command written uncompressed
+            if ( !deflater.finished() || 2 + 12 + compressedLength >= length + 2 * commandCount )
+            {
+                return false;
+            }
+
+            channel.put( V3_0_11.byteCode() ).put( COMPRESSED_COMMANDS );
+            channel.putInt( commandCount ).putInt( length ).putInt( compressedLength )
+                   .put( compressed, compressedLength );
+            return true;
+        }
+
+        @Override
+        public boolean visit( StorageCommand command ) throws IOException
+        {
+            command.serialize( commands );
+            commandCount++;
+            return false;
+        }
+
+        void close()
+        {
+            deflater.end();
+        }
+    }
+
+    private static class GrowableChannel implements WritableChannel
+    {
+        private ByteBuffer buffer;
+
+        GrowableChannel( int initialCapacity )
+        {
+            this.buffer = ByteBuffer.allocate( initialCapacity );
+        }
+
+        void clear()
+        {
+            buffer.clear();
+        }
+
+        int position()
+        {
+            return buffer.position();
+        }
+
+        byte[] array()
+        {
+            return buffer.array();
+        }
+
+        private ByteBuffer ensureRemaining( int bytes )
+        {
+            if ( buffer.remaining() < bytes )
+            {
+                int capacity = Math.max( buffer.capacity() * 2, buffer.position() + bytes );
+                ByteBuffer grown = ByteBuffer.allocate( capacity );
+                buffer.flip();
+                grown.put( buffer );
+                buffer = grown;
+            }
+            return buffer;
+        }
+
+        @Override
+        public WritableChannel put( byte value ) throws IOException
+        {
+            ensureRemaining( 1 ).put( value );
+            return this;
+        }
+
+        @Override
+        public WritableChannel putShort( short value ) throws IOException
+        {
+            ensureRemaining( 2 ).putShort( value );
+            return this;
+        }
+
+        @Override
+        public WritableChannel putInt( int value ) throws IOException
+        {
+            ensureRemaining( 4 ).putInt( value );
+            return this;
+        }
+
+        @Override
+        public WritableChannel putLong( long value ) throws IOException
+        {
+            ensureRemaining( 8 ).putLong( value );
+            return this;
+        }
+
+        @Override
+        public WritableChannel putFloat( float value ) throws IOException
+        {
+            ensureRemaining( 4 ).putFloat( value );
+            return this;
+        }
+
+        @Override
+        public WritableChannel putDouble( double value ) throws IOException
+        {
+            ensureRemaining( 8 ).putDouble( value );
+            return this;
+        }
+
+        @Override
+        public WritableChannel put( byte[] value, int length ) throws IOException
+        {
+            ensureRemaining( length ).put( value, 0, length );
+            return this;
+        }
+    }
 }
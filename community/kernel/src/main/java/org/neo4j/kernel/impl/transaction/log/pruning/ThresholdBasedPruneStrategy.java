@@ -107,6 +107,7 @@ public class ThresholdBasedPruneStrategy implements LogPruneStrategy
         for ( long version = lower; version <= upper; version++ )
         {
             fileSystem.deleteFile( files.getLogFileForVersion( version ) );
+            fileSystem.deleteFile( files.getPositionIndexFileForVersion( version ) );
         }
     }
 }
@@ -141,6 +141,26 @@ public interface JobScheduler extends Lifecycle
          */
         public static final Group checkPoint = new Group( "CheckPoint", POOLED );
 
+        /**
+         * Page cache warmup, both loading the profiled pages at startup and recording the profiles.
+         */
+        public static final Group pageCacheWarmup = new Group( "PageCacheWarmup", POOLED );
+
+        /**
+         * Background flushing of dirty pages in the page cache, between checkpoints.
+         */
+        public static final Group pageCacheFlush = new Group( "PageCacheFlush", POOLED );
+
+        /**
+         * Writing recovered records to the store files, in parallel.
+         */
+        public static final Group recovery = new Group( "Recovery", POOLED );
+
+        /**
+         * The log writer and store applier stages of the pipelined commit process.
+         */
+        public static final Group transactionCommitPipeline = new Group( "TransactionCommitPipeline", NEW_THREAD );
+
         /**
          * Network IO threads for the Bolt protocol.
          */
@@ -98,10 +98,10 @@ public class StoreLocker
             storeLockFileLock.release();
             storeLockFileLock = null;
         }*/
-        if(!storeLockFileLock)
+        if ( storeLockFileLock )
         {
             storeLockFileChannel.release();
-            //no null
+            storeLockFileLock = false;
         }
 
         if ( storeLockFileChannel != null )
@@ -97,6 +97,28 @@ public interface StorageEngine
      */
     void flushAndForce( IOLimiter limiter );
 
+    /**
+     * Begins a new flush epoch, which splits the changes applied to this storage engine into those applied before
+     * this call and those applied after it. Storage engines that can't tell the two apart need not override this.
+     * @return the epoch that begins with this call, to be given to {@link #flushAndForce(long, IOLimiter)}.
+     */
+    default long beginFlushEpoch()
+    {
+        return 0;
+    }
+
+    /**
+     * Flushes and forces the changes that were applied before the given flush epoch began. This is a blocking call
+     * and when it returns those changes will be durable. Changes applied since the epoch began may or may not be.
+     * By default this flushes everything, with {@link #flushAndForce(IOLimiter)}.
+     * @param epoch an epoch returned from {@link #beginFlushEpoch()}.
+     * @param limiter The {@link IOLimiter} used to moderate the rate of IO caused by the flush process.
+     */
+    default void flushAndForce( long epoch, IOLimiter limiter )
+    {
+        flushAndForce( limiter );
+    }
+
     /**
      * Registers diagnostics about the storage onto {@link DiagnosticsManager}.
      *
@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.kernel.api.exceptions.Status;
+import org.neo4j.kernel.api.exceptions.TransactionFailureException;
+import org.neo4j.kernel.impl.transaction.log.Commitment;
+import org.neo4j.kernel.impl.transaction.log.PhysicalTransactionRepresentation;
+import org.neo4j.kernel.impl.transaction.log.TransactionAppender;
+import org.neo4j.kernel.impl.transaction.tracing.CommitEvent;
+import org.neo4j.kernel.impl.transaction.tracing.LogAppendEvent;
+import org.neo4j.kernel.impl.transaction.tracing.StoreApplyEvent;
+import org.neo4j.kernel.impl.util.Neo4jJobScheduler;
+import org.neo4j.storageengine.api.CommandsToApply;
+import org.neo4j.storageengine.api.StorageEngine;
+import org.neo4j.storageengine.api.TransactionApplicationMode;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.neo4j.storageengine.api.TransactionApplicationMode.INTERNAL;
+
+public class PipelinedTransactionCommitProcessTest
+{
+    private static final int COMMITTERS = 8;
+
+    private final TransactionAppender appender = mock( TransactionAppender.class );
+    private final StorageEngine storageEngine = mock( StorageEngine.class );
+    private final List<Integer> appendedBatchSizes = new CopyOnWriteArrayList<>();
+    private final List<Integer> appliedBatchSizes = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextTxId = new AtomicLong();
+    private final CountDownLatch appendEntered = new CountDownLatch( 1 );
+    private volatile CountDownLatch appendRelease = new CountDownLatch( 0 );
+    private volatile int failOnAppend;
+    private volatile Thread lastAppendThread;
+    private volatile RuntimeException applyFailure;
+    private final Neo4jJobScheduler scheduler = new Neo4jJobScheduler();
+    private PipelinedTransactionCommitProcess commitProcess;
+    private boolean started;
+
+    @Before
+    public void setUp() throws Throwable
+    {
+        doAnswer( invocation -> append( invocation.getArgumentAt( 0, TransactionToApply.class ) ) )
+                .when( appender ).append( any( TransactionToApply.class ), any( LogAppendEvent.class ) );
+        doAnswer( invocation -> apply( invocation.getArgumentAt( 0, CommandsToApply.class ) ) )
+                .when( storageEngine ).apply( any( CommandsToApply.class ), any( TransactionApplicationMode.class ) );
+        scheduler.init();
+        commitProcess = new PipelinedTransactionCommitProcess( appender, storageEngine, scheduler, 16 );
+    }
+
+    @After
+    public void tearDown() throws Throwable
+    {
+        appendRelease.countDown();
+        if ( started )
+        {
+            commitProcess.stop();
+        }
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void shouldAppendApplyAndCloseTheTransaction() throws Throwable
+    {
+        start();
+        TransactionToApply tx = transaction();
+
+        assertEquals( 1, commitProcess.commit( tx, CommitEvent.NULL, INTERNAL ) );
+
+        assertEquals( asList( 1 ), appendedBatchSizes );
+        assertEquals( asList( 1 ), appliedBatchSizes );
+        assertEquals( 1, ((RecordingCommitment) tx.commitment()).closed.get() );
+        assertNotSame( Thread.currentThread(), lastAppendThread );
+    }
+
+    @Test
+    public void shouldGroupTheCommitsThatWaitWhileTheLogIsAppended() throws Throwable
+    {
+        start();
+        List<Committer> committers = holdFirstAppendAndQueue( COMMITTERS );
+
+        appendRelease.countDown();
+        awaitAll( committers );
+
+        assertEquals( asList( 1, COMMITTERS - 1 ), appendedBatchSizes );
+        assertEquals( 2, appliedBatchSizes.size() );
+        List<Long> txIds = new ArrayList<>();
+        for ( Committer committer : committers )
+        {
+            assertNull( committer.failure );
+            txIds.add( committer.txId );
+            // Every committer gets its own transaction back, unlinked from the group.
+            assertEquals( committer.txId, committer.tx.transactionId() );
+            assertNull( committer.tx.next() );
+            assertEquals( 1, ((RecordingCommitment) committer.tx.commitment()).closed.get() );
+            // Every committer traces the append and the application of its group.
+            assertEquals( 1, committer.commitEvent.logAppends.get() );
+            assertEquals( 1, committer.commitEvent.storeApplies.get() );
+        }
+        Collections.sort( txIds );
+        for ( int i = 0; i < COMMITTERS; i++ )
+        {
+            assertEquals( i + 1, (long) txIds.get( i ) );
+        }
+    }
+
+    @Test
+    public void failedAppendMustFailEveryCommitterOfTheGroup() throws Throwable
+    {
+        start();
+        List<Committer> committers = holdFirstAppendAndQueue( COMMITTERS );
+        failOnAppend = 2;
+
+        appendRelease.countDown();
+        awaitAll( committers );
+
+        assertNull( committers.get( 0 ).failure );
+        for ( Committer committer : committers.subList( 1, COMMITTERS ) )
+        {
+            assertFailure( Status.Transaction.TransactionLogError, committer.failure );
+            assertNull( committer.tx.next() );
+        }
+        assertEquals( 1, appliedBatchSizes.size() );
+    }
+
+    @Test
+    public void failedStoreApplicationMustFailTheCommitter() throws Throwable
+    {
+        start();
+        applyFailure = new RuntimeException( "apply" );
+        TransactionToApply tx = transaction();
+
+        try
+        {
+            commitProcess.commit( tx, CommitEvent.NULL, INTERNAL );
+            fail( "Should have failed" );
+        }
+        catch ( TransactionFailureException e )
+        {
+            assertFailure( Status.Transaction.TransactionCommitFailed, e );
+            assertSame( applyFailure, e.getCause() );
+        }
+        // The transaction is in the log, so it is closed all the same.
+        assertEquals( 1, ((RecordingCommitment) tx.commitment()).closed.get() );
+    }
+
+    @Test
+    public void shouldCommitOnTheCommittingThreadWhileThePipelineIsNotRunning() throws Throwable
+    {
+        commitProcess.commit( transaction(), CommitEvent.NULL, INTERNAL );
+        assertSame( Thread.currentThread(), lastAppendThread );
+
+        start();
+        commitProcess.commit( transaction(), CommitEvent.NULL, INTERNAL );
+        assertNotSame( Thread.currentThread(), lastAppendThread );
+
+        commitProcess.stop();
+        started = false;
+        commitProcess.commit( transaction(), CommitEvent.NULL, INTERNAL );
+        assertSame( Thread.currentThread(), lastAppendThread );
+        assertEquals( asList( 1, 1, 1 ), appendedBatchSizes );
+    }
+
+    @Test
+    public void stopMustFinishTheCommitsInThePipeline() throws Throwable
+    {
+        start();
+        List<Committer> committers = holdFirstAppendAndQueue( COMMITTERS );
+        Thread stopper = new Thread( () ->
+        {
+            try
+            {
+                commitProcess.stop();
+            }
+            catch ( Throwable throwable )
+            {
+                throw new RuntimeException( throwable );
+            }
+        } );
+        started = false;
+        stopper.start();
+
+        appendRelease.countDown();
+        awaitAll( committers );
+        stopper.join( TimeUnit.SECONDS.toMillis( 10 ) );
+        assertFalse( stopper.isAlive() );
+
+        for ( Committer committer : committers )
+        {
+            assertNull( committer.failure );
+        }
+        assertEquals( COMMITTERS, nextTxId.get() );
+    }
+
+    private void start() throws Throwable
+    {
+        commitProcess.start();
+        started = true;
+    }
+
+    /**
+     * Start the given number of committers, and let the first one hold up the log writer in the appender, until
+     * all the others are waiting in the queue of the pipeline.
+     */
+    private List<Committer> holdFirstAppendAndQueue( int count ) throws InterruptedException
+    {
+        appendRelease = new CountDownLatch( 1 );
+        List<Committer> committers = new ArrayList<>();
+        Committer first = new Committer();
+        committers.add( first );
+        first.start();
+        assertTrue( appendEntered.await( 10, TimeUnit.SECONDS ) );
+        for ( int i = 1; i < count; i++ )
+        {
+            Committer committer = new Committer();
+            committers.add( committer );
+            committer.start();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 10 );
+        for ( Committer committer : committers )
+        {
+            while ( committer.getState() != Thread.State.WAITING )
+            {
+                assertTrue( "Timed out waiting for the committers", System.nanoTime() < deadline );
+                Thread.sleep( 1 );
+            }
+        }
+        return committers;
+    }
+
+    private static void awaitAll( List<Committer> committers ) throws InterruptedException
+    {
+        for ( Committer committer : committers )
+        {
+            committer.join( TimeUnit.SECONDS.toMillis( 10 ) );
+            assertFalse( committer.isAlive() );
+        }
+    }
+
+    private static void assertFailure( Status expected, Throwable failure )
+    {
+        assertTrue( String.valueOf( failure ), failure instanceof TransactionFailureException );
+        assertEquals( expected, ((TransactionFailureException) failure).status() );
+    }
+
+    private long append( TransactionToApply batch ) throws IOException
+    {
+        lastAppendThread = Thread.currentThread();
+        appendEntered.countDown();
+        try
+        {
+            appendRelease.await();
+        }
+        catch ( InterruptedException e )
+        {
+            throw new IOException( e );
+        }
+        appendedBatchSizes.add( size( batch ) );
+        if ( appendedBatchSizes.size() == failOnAppend )
+        {
+            throw new IOException( "append" );
+        }
+        long txId = 0;
+        for ( TransactionToApply tx = batch; tx != null; tx = tx.next() )
+        {
+            txId = nextTxId.incrementAndGet();
+            RecordingCommitment commitment = new RecordingCommitment();
+            tx.commitment( commitment, txId );
+            commitment.publishAsCommitted();
+        }
+        return txId;
+    }
+
+    private Void apply( CommandsToApply batch )
+    {
+        appliedBatchSizes.add( size( batch ) );
+        if ( applyFailure != null )
+        {
+            throw applyFailure;
+        }
+        return null;
+    }
+
+    private static int size( CommandsToApply batch )
+    {
+        int size = 0;
+        for ( CommandsToApply tx = batch; tx != null; tx = tx.next() )
+        {
+            size++;
+        }
+        return size;
+    }
+
+    private static TransactionToApply transaction()
+    {
+        return new TransactionToApply( new PhysicalTransactionRepresentation( Collections.emptyList() ) );
+    }
+
+    private class Committer extends Thread
+    {
+        final TransactionToApply tx = transaction();
+        final RecordingCommitEvent commitEvent = new RecordingCommitEvent();
+        volatile long txId;
+        volatile Throwable failure;
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                txId = commitProcess.commit( tx, commitEvent, INTERNAL );
+            }
+            catch ( Throwable e )
+            {
+                failure = e;
+            }
+        }
+    }
+
+    private static class RecordingCommitment implements Commitment
+    {
+        final AtomicInteger closed = new AtomicInteger();
+        volatile boolean committed;
+
+        @Override
+        public void publishAsCommitted()
+        {
+            committed = true;
+        }
+
+        @Override
+        public void publishAsClosed()
+        {
+            closed.incrementAndGet();
+        }
+
+        @Override
+        public boolean markedAsCommitted()
+        {
+            return committed;
+        }
+
+        @Override
+        public boolean hasLegacyIndexChanges()
+        {
+            return false;
+        }
+    }
+
+    private static class RecordingCommitEvent implements CommitEvent
+    {
+        final AtomicInteger logAppends = new AtomicInteger();
+        final AtomicInteger storeApplies = new AtomicInteger();
+
+        @Override
+        public void close()
+        {
+        }
+
+        @Override
+        public LogAppendEvent beginLogAppend()
+        {
+            logAppends.incrementAndGet();
+            return LogAppendEvent.NULL;
+        }
+
+        @Override
+        public StoreApplyEvent beginStoreApply()
+        {
+            storeApplies.incrementAndGet();
+            return StoreApplyEvent.NULL;
+        }
+    }
+}
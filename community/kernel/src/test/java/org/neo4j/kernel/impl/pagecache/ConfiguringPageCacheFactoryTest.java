@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.pagecache;
+
+import org.junit.Test;
+
+import java.nio.file.FileSystems;
+
+import org.neo4j.io.fs.DelegateFileSystemAbstraction;
+import org.neo4j.io.pagecache.PageCache;
+import org.neo4j.io.pagecache.impl.muninn.SizeClassPageCache;
+import org.neo4j.io.pagecache.tracing.PageCacheTracer;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.logging.NullLog;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.neo4j.graphdb.factory.GraphDatabaseSettings.pagecache_memory;
+import static org.neo4j.graphdb.factory.GraphDatabaseSettings.pagecache_size_class_memory_share;
+import static org.neo4j.graphdb.factory.GraphDatabaseSettings.pagecache_size_classes;
+import static org.neo4j.helpers.collection.MapUtil.stringMap;
+
+public class ConfiguringPageCacheFactoryTest
+{
+    @Test
+    public void defaultPageSizeMustGetTheMemoryThatTheSizeClassesLeave() throws Exception
+    {
+        Config config = new Config( stringMap(
+                pagecache_memory.name(), "16m",
+                pagecache_size_classes.name(), "64k,256k",
+                pagecache_size_class_memory_share.name(), "0.25" ) );
+
+        try ( PageCache pageCache = factory( config ).getOrCreatePageCache() )
+        {
+            assertTrue( pageCache instanceof SizeClassPageCache );
+            SizeClassPageCache sizeClasses = (SizeClassPageCache) pageCache;
+            assertArrayEquals( new int[]{8192, 65536, 262144}, sizeClasses.pageSizes() );
+            assertEquals( 8192, sizeClasses.pageSize() );
+            assertEquals( 64, sizeClasses.sizeClass( 65536 ).maxCachedPages() );
+            assertEquals( 16, sizeClasses.sizeClass( 262144 ).maxCachedPages() );
+            assertEquals( 1024, sizeClasses.sizeClass( 8192 ).maxCachedPages() );
+        }
+    }
+
+    @Test
+    public void mustRefuseSizeClassSharesThatLeaveNoMemoryForTheDefaultPageSize() throws Exception
+    {
+        Config config = new Config( stringMap(
+                pagecache_memory.name(), "16m",
+                pagecache_size_classes.name(), "64k,256k,1m",
+                pagecache_size_class_memory_share.name(), "0.4" ) );
+
+        try
+        {
+            factory( config ).getOrCreatePageCache();
+            fail( "Three size classes with 40% of the memory each should not fit in the page cache" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( pagecache_size_class_memory_share.name() ) );
+        }
+    }
+
+    private static ConfiguringPageCacheFactory factory( Config config )
+    {
+        return new ConfiguringPageCacheFactory( new DelegateFileSystemAbstraction( FileSystems.getDefault() ),
+                config, PageCacheTracer.NULL, NullLog.getInstance() );
+    }
+}
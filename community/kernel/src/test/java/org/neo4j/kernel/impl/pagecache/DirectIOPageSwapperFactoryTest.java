@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.pagecache;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.NoSuchFileException;
+
+import org.neo4j.io.fs.DefaultFileSystemAbstraction;
+import org.neo4j.io.fs.DelegateFileSystemAbstraction;
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.pagecache.PageSwapper;
+import org.neo4j.io.pagecache.impl.DirectIOPageSwapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class DirectIOPageSwapperFactoryTest
+{
+    @Rule
+    public final TemporaryFolder directory = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp()
+    {
+        assumeTrue( DirectIOPageSwapper.isDirectIOSupported() );
+        file = new File( directory.getRoot(), "store" );
+    }
+
+    @Test
+    public void mustRefuseFilesThatAreNotKeptInAnOperatingSystemFile() throws Exception
+    {
+        DirectIOPageSwapperFactory factory = new DirectIOPageSwapperFactory();
+        factory.setFileSystemAbstraction( new DefaultFileSystemAbstraction() );
+
+        try
+        {
+            factory.createPageSwapper( file, 8192, null, true );
+            fail( "The nvm file system has no operating system file to open for direct IO" );
+        }
+        catch ( IOException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "DefaultFileSystemAbstraction" ) );
+        }
+    }
+
+    @Test( expected = NoSuchFileException.class )
+    public void mustNotCreateMissingFilesUnlessAsked() throws Exception
+    {
+        DirectIOPageSwapperFactory factory = new DirectIOPageSwapperFactory();
+        factory.setFileSystemAbstraction( nativeFileSystem() );
+
+        factory.createPageSwapper( file, 8192, null, false );
+    }
+
+    @Test
+    public void mustOpenTheOperatingSystemFileForDirectIO() throws Exception
+    {
+        DirectIOPageSwapperFactory factory = new DirectIOPageSwapperFactory();
+        factory.setFileSystemAbstraction( nativeFileSystem() );
+
+        PageSwapper swapper = factory.createPageSwapper( file, 8192, null, true );
+        try
+        {
+            assertTrue( swapper instanceof DirectIOPageSwapper );
+            assertTrue( file.exists() );
+            assertEquals( 4096, factory.getRequiredBufferAlignment() );
+        }
+        finally
+        {
+            swapper.closeAndDelete();
+        }
+    }
+
+    private static FileSystemAbstraction nativeFileSystem()
+    {
+        return new DelegateFileSystemAbstraction( FileSystems.getDefault() )
+        {
+            @Override
+            public File nativeFile( File fileName )
+            {
+                return fileName;
+            }
+        };
+    }
+}
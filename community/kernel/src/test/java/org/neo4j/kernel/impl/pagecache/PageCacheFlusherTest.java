@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.pagecache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.io.pagecache.IOLimiter;
+import org.neo4j.io.pagecache.impl.muninn.MuninnPageCache;
+import org.neo4j.kernel.impl.util.Neo4jJobScheduler;
+import org.neo4j.logging.Log;
+
+import static java.util.Arrays.asList;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PageCacheFlusherTest
+{
+    private static final long TIMEOUT = TimeUnit.SECONDS.toMillis( 10 );
+
+    private final MuninnPageCache first = mock( MuninnPageCache.class );
+    private final MuninnPageCache second = mock( MuninnPageCache.class );
+    private final IOLimiter limiter = IOLimiter.unlimited();
+    private final Log log = mock( Log.class );
+    private final Neo4jJobScheduler scheduler = new Neo4jJobScheduler();
+    private final PageCacheFlusher flusher =
+            new PageCacheFlusher( asList( first, second ), limiter, scheduler, 1, log );
+
+    @Before
+    public void setUp() throws Throwable
+    {
+        scheduler.init();
+    }
+
+    @After
+    public void tearDown() throws Throwable
+    {
+        flusher.stop();
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void mustKeepFlushingEveryPageCacheWhileStarted() throws Throwable
+    {
+        flusher.start();
+
+        verify( first, timeout( TIMEOUT ).atLeast( 3 ) ).flushInBackground( limiter );
+        verify( second, timeout( TIMEOUT ).atLeast( 3 ) ).flushInBackground( limiter );
+    }
+
+    @Test
+    public void mustStopFlushingWhenStopped() throws Throwable
+    {
+        flusher.start();
+        verify( first, timeout( TIMEOUT ).atLeast( 1 ) ).flushInBackground( limiter );
+
+        flusher.stop();
+        // A flush that was already running when we stopped may still be finishing.
+        Thread.sleep( 50 );
+        reset( first );
+        Thread.sleep( 50 );
+
+        verify( first, never() ).flushInBackground( any( IOLimiter.class ) );
+    }
+
+    @Test
+    public void mustLogFailedFlushesAndKeepFlushing() throws Throwable
+    {
+        when( first.flushInBackground( limiter ) ).thenThrow( new IOException( "flush" ) );
+
+        flusher.start();
+
+        verify( log, timeout( TIMEOUT ).atLeast( 2 ) ).warn( anyString(), any( IOException.class ) );
+        verify( first, atLeast( 2 ) ).flushInBackground( limiter );
+    }
+}
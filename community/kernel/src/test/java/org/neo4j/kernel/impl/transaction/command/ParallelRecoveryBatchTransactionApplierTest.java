@@ -0,0 +1,458 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.command;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongIterator;
+import org.neo4j.collection.primitive.PrimitiveLongSet;
+import org.neo4j.concurrent.WorkSync;
+import org.neo4j.io.fs.DefaultFileSystemAbstraction;
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.pagecache.PageCache;
+import org.neo4j.io.pagecache.monitoring.PageCursorOrigin;
+import org.neo4j.io.pagecache.tracing.DefaultPageCacheTracer;
+import org.neo4j.kernel.api.index.SchemaIndexProvider;
+import org.neo4j.kernel.api.labelscan.LabelScanWriter;
+import org.neo4j.kernel.api.labelscan.NodeLabelUpdate;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.impl.api.BatchTransactionApplier;
+import org.neo4j.kernel.impl.api.BatchTransactionApplierFacade;
+import org.neo4j.kernel.impl.api.TransactionApplier;
+import org.neo4j.kernel.impl.api.TransactionToApply;
+import org.neo4j.kernel.impl.api.index.IndexingService;
+import org.neo4j.kernel.impl.api.index.PropertyPhysicalToLogicalConverter;
+import org.neo4j.kernel.impl.core.CacheAccessBackDoor;
+import org.neo4j.kernel.impl.core.RelationshipTypeToken;
+import org.neo4j.storageengine.api.Token;
+import org.neo4j.kernel.impl.locking.LockGroup;
+import org.neo4j.kernel.impl.pagecache.StandalonePageCacheFactory;
+import org.neo4j.kernel.impl.store.DynamicNodeLabels;
+import org.neo4j.kernel.impl.store.InlineNodeLabels;
+import org.neo4j.kernel.impl.store.NeoStores;
+import org.neo4j.kernel.impl.store.NodeLabelsField;
+import org.neo4j.kernel.impl.store.NodeStore;
+import org.neo4j.kernel.impl.store.PropertyStore;
+import org.neo4j.kernel.impl.store.PropertyType;
+import org.neo4j.kernel.impl.store.SchemaStore;
+import org.neo4j.kernel.impl.store.StoreFactory;
+import org.neo4j.kernel.impl.store.record.DynamicRecord;
+import org.neo4j.kernel.impl.store.record.IndexRule;
+import org.neo4j.kernel.impl.store.record.NodeRecord;
+import org.neo4j.kernel.impl.store.record.PropertyBlock;
+import org.neo4j.kernel.impl.store.record.PropertyRecord;
+import org.neo4j.kernel.impl.store.record.RecordLoad;
+import org.neo4j.storageengine.api.schema.SchemaRule;
+import org.neo4j.kernel.impl.transaction.TransactionRepresentation;
+import org.neo4j.kernel.impl.transaction.log.PhysicalTransactionRepresentation;
+import org.neo4j.kernel.impl.transaction.state.IndexUpdates;
+import org.neo4j.kernel.impl.transaction.state.PropertyLoader;
+import org.neo4j.logging.NullLogProvider;
+import org.neo4j.storageengine.api.CommandsToApply;
+import org.neo4j.storageengine.api.StorageCommand;
+import org.neo4j.storageengine.api.TransactionApplicationMode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.neo4j.io.pagecache.monitoring.PageCursorOrigin.BACKUP;
+import static org.neo4j.io.pagecache.monitoring.PageCursorOrigin.KERNEL;
+import static org.neo4j.kernel.impl.locking.LockService.NO_LOCK_SERVICE;
+import static org.neo4j.kernel.impl.transaction.log.TransactionIdStore.BASE_TX_ID;
+
+public class ParallelRecoveryBatchTransactionApplierTest
+{
+    // Node ids this far apart fall in different neighbourhoods, and so go to different queues of the applier.
+    private static final long OTHER_QUEUE = 64;
+
+    @Rule
+    public final TemporaryFolder directory = new TemporaryFolder();
+
+    private final DefaultPageCacheTracer tracer = new DefaultPageCacheTracer();
+    private FileSystemAbstraction fs;
+    private PageCache pageCache;
+    private NeoStores neoStores;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp()
+    {
+        fs = new DefaultFileSystemAbstraction();
+        pageCache = StandalonePageCacheFactory.createPageCache( fs, tracer, Config.defaults() );
+        neoStores = new StoreFactory( directory.getRoot(), pageCache, fs, NullLogProvider.getInstance() )
+                .openAllNeoStores( true );
+        executor = Executors.newFixedThreadPool( 2 );
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        executor.shutdown();
+        neoStores.close();
+        pageCache.close();
+    }
+
+    @Test
+    public void shouldWriteTheLastVersionOfRecordsWrittenByManyTransactions() throws Exception
+    {
+        // given
+        List<TransactionRepresentation> transactions = new ArrayList<>();
+        for ( int version = 1; version <= 10; version++ )
+        {
+            List<StorageCommand> commands = new ArrayList<>();
+            for ( long nodeId = 0; nodeId < 200; nodeId++ )
+            {
+                commands.add( nodeCommand( new NodeRecord( nodeId, true, false, version, -1, 0 ) ) );
+            }
+            transactions.add( new PhysicalTransactionRepresentation( commands ) );
+        }
+
+        // when
+        recover( transactions );
+
+        // then
+        NodeStore nodeStore = neoStores.getNodeStore();
+        for ( long nodeId = 0; nodeId < 200; nodeId++ )
+        {
+            assertEquals( 10, nodeStore.getRecord( nodeId, nodeStore.newRecord(), RecordLoad.NORMAL ).getNextRel() );
+        }
+    }
+
+    @Test
+    public void shouldCountTheRecordsWrittenInParallelUnderTheOriginOfTheRecoveringThread() throws Exception
+    {
+        // given
+        List<StorageCommand> commands = new ArrayList<>();
+        for ( long nodeId = 0; nodeId < 200; nodeId++ )
+        {
+            commands.add( nodeCommand( new NodeRecord( nodeId, true, false, 1, -1, 0 ) ) );
+        }
+        long kernelPins = tracer.originCounters( KERNEL ).pins();
+
+        // when
+        PageCursorOrigin previous = BACKUP.enter();
+        try
+        {
+            recover( Collections.singletonList( new PhysicalTransactionRepresentation( commands ) ) );
+        }
+        finally
+        {
+            previous.enter();
+        }
+
+        // then
+        assertEquals( kernelPins, tracer.originCounters( KERNEL ).pins() );
+        assertTrue( tracer.originCounters( BACKUP ).pins() > 0 );
+    }
+
+    @Test
+    public void shouldWriteRecordsSharedBetweenQueuesInCommitOrder() throws Exception
+    {
+        // given the same dynamic label record written by nodes that go to different queues
+        long labelRecordId = 5;
+        byte[] first = {1, 1, 1, 1};
+        byte[] second = {2, 2, 2, 2};
+        byte[] third = {3, 3, 3, 3};
+        List<TransactionRepresentation> transactions = Arrays.asList(
+                transaction( nodeWithLabelRecord( 0, labelRecordId, first ) ),
+                transaction( nodeWithLabelRecord( OTHER_QUEUE, labelRecordId, second ) ),
+                transaction( nodeWithLabelRecord( 1, labelRecordId, third ),
+                        nodeCommand( new NodeRecord( OTHER_QUEUE + 1, true, false, 7, -1, 0 ) ) ) );
+
+        // when
+        recover( transactions );
+
+        // then
+        NodeStore nodeStore = neoStores.getNodeStore();
+        DynamicRecord labelRecord = nodeStore.getDynamicLabelStore().getRecord(
+                labelRecordId, new DynamicRecord( labelRecordId ), RecordLoad.NORMAL );
+        assertArrayEquals( third, labelRecord.getData() );
+        assertEquals( 7, nodeStore.getRecord(
+                OTHER_QUEUE + 1, nodeStore.newRecord(), RecordLoad.NORMAL ).getNextRel() );
+    }
+
+    @Test
+    public void shouldWriteQueuedRecordsBeforeTheAppliersInFrontOfTheWriteBarrierClose() throws Exception
+    {
+        // given
+        ParallelRecoveryBatchTransactionApplier applier = newApplier();
+        List<Boolean> inUseWhenClosed = new ArrayList<>();
+        BatchTransactionApplier indexApplier = new BatchTransactionApplier.Adapter()
+        {
+            @Override
+            public TransactionApplier startTx( CommandsToApply transaction )
+            {
+                return new TransactionApplier.Adapter();
+            }
+
+            @Override
+            public void close() throws Exception
+            {
+                inUseWhenClosed.add( nodeInUse( 0 ) );
+                inUseWhenClosed.add( nodeInUse( OTHER_QUEUE ) );
+            }
+        };
+
+        // when
+        recover( new BatchTransactionApplierFacade( applier, indexApplier, applier.writeBarrier() ), Arrays.asList(
+                transaction( nodeCommand( new NodeRecord( 0, true, false, -1, -1, 0 ) ) ),
+                transaction( nodeCommand( new NodeRecord( OTHER_QUEUE, true, false, -1, -1, 0 ) ) ) ) );
+
+        // then
+        assertEquals( Arrays.asList( true, true ), inUseWhenClosed );
+    }
+
+    @Test
+    public void shouldWriteQueuedRecordsBeforeIndexChangesAreApplied() throws Exception
+    {
+        // given
+        ParallelRecoveryBatchTransactionApplier applier = newApplier();
+        List<Boolean> inUseWhenIndexChanged = new ArrayList<>();
+        BatchTransactionApplier indexApplier = new BatchTransactionApplier.Adapter()
+        {
+            @Override
+            public TransactionApplier startTx( CommandsToApply transaction )
+            {
+                return new TransactionApplier.Adapter()
+                {
+                    @Override
+                    public boolean visitSchemaRuleCommand( Command.SchemaRuleCommand command ) throws IOException
+                    {
+                        inUseWhenIndexChanged.add( nodeInUse( 0 ) );
+                        return false;
+                    }
+
+                    @Override
+                    public void close() throws Exception
+                    {
+                        if ( !inUseWhenIndexChanged.isEmpty() )
+                        {
+                            inUseWhenIndexChanged.add( nodeInUse( OTHER_QUEUE ) );
+                        }
+                    }
+                };
+            }
+        };
+
+        // when the index is created in the same transaction as a node, and after another one
+        recover( new BatchTransactionApplierFacade( applier, indexApplier, applier.writeBarrier() ), Arrays.asList(
+                transaction( nodeCommand( new NodeRecord( 0, true, false, -1, -1, 0 ) ) ),
+                transaction( nodeCommand( new NodeRecord( OTHER_QUEUE, true, false, -1, -1, 0 ) ),
+                        createIndexCommand() ) ) );
+
+        // then
+        assertEquals( Arrays.asList( true, true ), inUseWhenIndexChanged );
+    }
+
+    @Test
+    public void shouldLeaveRecoveredRecordsInTheStoreForTheIndexesToBeRefreshedFrom() throws Exception
+    {
+        // given a node that gets a property in the transaction after the one it was created in, and another node
+        PropertyRecord property = new PropertyRecord( 3 );
+        property.setInUse( true );
+        property.setCreated();
+        property.setNodeId( 0 );
+        PropertyBlock block = new PropertyBlock();
+        PropertyStore.encodeValue( block, 2, 42, null, null );
+        property.addPropertyBlock( block );
+        List<TransactionRepresentation> transactions = Arrays.asList(
+                transaction( nodeCommand( labelled( new NodeRecord( 0, true, false, -1, -1, 0 ), 1 ) ) ),
+                transaction( new Command.NodeCommand( labelled( new NodeRecord( 0, true, false, -1, -1, 0 ), 1 ),
+                                labelled( new NodeRecord( 0, true, false, -1, property.getId(), 0 ), 1 ) ),
+                        new Command.PropertyCommand( new PropertyRecord( property.getId() ), property ) ),
+                transaction( nodeCommand(
+                        labelled( new NodeRecord( OTHER_QUEUE, true, false, -1, -1, 0 ), 1, 2 ) ) ) );
+
+        // and indexes that are refreshed from the store for the recovered nodes
+        List<String> refreshedNodes = new ArrayList<>();
+        IndexingService indexingService = mock( IndexingService.class );
+        doAnswer( invocation ->
+        {
+            PrimitiveLongSet nodeIds = Primitive.longSet();
+            ((IndexUpdates) invocation.getArguments()[0]).collectUpdatedNodeIds( nodeIds );
+            PrimitiveLongIterator iterator = nodeIds.iterator();
+            while ( iterator.hasNext() )
+            {
+                refreshedNodes.add( describeNode( iterator.next() ) );
+            }
+            return null;
+        } ).when( indexingService ).apply( any( IndexUpdates.class ) );
+        List<NodeLabelUpdate> labelUpdates = new ArrayList<>();
+        LabelScanWriter labelScanWriter = new LabelScanWriter()
+        {
+            @Override
+            public void write( NodeLabelUpdate update )
+            {
+                labelUpdates.add( update );
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+        ParallelRecoveryBatchTransactionApplier applier = newApplier();
+        IndexBatchTransactionApplier indexApplier = new IndexBatchTransactionApplier( indexingService,
+                new WorkSync<>( () -> labelScanWriter ), new WorkSync<>( indexingService ),
+                neoStores.getNodeStore(), new PropertyLoader( neoStores ),
+                new PropertyPhysicalToLogicalConverter( neoStores.getPropertyStore() ),
+                TransactionApplicationMode.RECOVERY );
+
+        // when
+        recover( new BatchTransactionApplierFacade( applier, indexApplier, applier.writeBarrier() ), transactions );
+
+        // then
+        Collections.sort( refreshedNodes );
+        assertEquals( Arrays.asList( "0 [1] 42", OTHER_QUEUE + " [1, 2] -" ), refreshedNodes );
+        assertEquals( Arrays.asList(
+                NodeLabelUpdate.labelChanges( 0, new long[0], new long[]{1} ),
+                NodeLabelUpdate.labelChanges( OTHER_QUEUE, new long[0], new long[]{1, 2} ) ), labelUpdates );
+    }
+
+    private ParallelRecoveryBatchTransactionApplier newApplier()
+    {
+        return new ParallelRecoveryBatchTransactionApplier(
+                neoStores, new NoCacheAccess(), NO_LOCK_SERVICE, executor, 2 );
+    }
+
+    private void recover( List<TransactionRepresentation> transactions ) throws Exception
+    {
+        recover( newApplier(), transactions );
+    }
+
+    private void recover( BatchTransactionApplier applier, List<TransactionRepresentation> transactions )
+            throws Exception
+    {
+        long transactionId = BASE_TX_ID;
+        for ( TransactionRepresentation transaction : transactions )
+        {
+            TransactionToApply tx = new TransactionToApply( transaction, ++transactionId );
+            try ( LockGroup locks = new LockGroup();
+                  TransactionApplier txApplier = applier.startTx( tx, locks ) )
+            {
+                tx.accept( txApplier );
+            }
+        }
+        applier.close();
+    }
+
+    private boolean nodeInUse( long nodeId )
+    {
+        NodeStore nodeStore = neoStores.getNodeStore();
+        return nodeStore.getRecord( nodeId, nodeStore.newRecord(), RecordLoad.FORCE ).inUse();
+    }
+
+    private String describeNode( long nodeId )
+    {
+        NodeStore nodeStore = neoStores.getNodeStore();
+        NodeRecord node = nodeStore.getRecord( nodeId, nodeStore.newRecord(), RecordLoad.NORMAL );
+        String labels = Arrays.toString( NodeLabelsField.parseLabelsField( node ).get( nodeStore ) );
+        if ( node.getNextProp() == -1 )
+        {
+            return nodeId + " " + labels + " -";
+        }
+        PropertyStore propertyStore = neoStores.getPropertyStore();
+        PropertyRecord property = propertyStore.getRecord( node.getNextProp(), propertyStore.newRecord(),
+                RecordLoad.NORMAL );
+        return nodeId + " " + labels + " " + property.getPropertyBlock( 2 ).getSingleValueInt();
+    }
+
+    private static NodeRecord labelled( NodeRecord node, long... labelIds )
+    {
+        InlineNodeLabels.putSorted( node, labelIds, null, null );
+        return node;
+    }
+
+    private Command.SchemaRuleCommand createIndexCommand()
+    {
+        SchemaStore schemaStore = neoStores.getSchemaStore();
+        IndexRule rule = IndexRule.indexRule(
+                schemaStore.nextId(), 1, 2, new SchemaIndexProvider.Descriptor( "test", "1.0" ) );
+        return new Command.SchemaRuleCommand( Collections.emptyList(), schemaStore.allocateFrom( rule ), rule );
+    }
+
+    private static TransactionRepresentation transaction( StorageCommand... commands )
+    {
+        return new PhysicalTransactionRepresentation( Arrays.asList( commands ) );
+    }
+
+    private static Command.NodeCommand nodeCommand( NodeRecord after )
+    {
+        return new Command.NodeCommand( new NodeRecord( after.getId() ), after );
+    }
+
+    private static Command.NodeCommand nodeWithLabelRecord( long nodeId, long labelRecordId, byte[] data )
+    {
+        DynamicRecord labelRecord = new DynamicRecord( labelRecordId );
+        labelRecord.setInUse( true );
+        labelRecord.setCreated();
+        labelRecord.setStartRecord( true );
+        labelRecord.setType( PropertyType.ARRAY.intValue() );
+        labelRecord.setData( data );
+        List<DynamicRecord> labelRecords = Collections.singletonList( labelRecord );
+        NodeRecord node = new NodeRecord( nodeId, true, false, -1, -1, 0 );
+        node.setLabelField( DynamicNodeLabels.dynamicPointer( labelRecords ), labelRecords );
+        return nodeCommand( node );
+    }
+
+    private static class NoCacheAccess implements CacheAccessBackDoor
+    {
+        @Override
+        public void addSchemaRule( SchemaRule schemaRule )
+        {
+        }
+
+        @Override
+        public void removeSchemaRuleFromCache( long id )
+        {
+        }
+
+        @Override
+        public void addRelationshipTypeToken( RelationshipTypeToken type )
+        {
+        }
+
+        @Override
+        public void addLabelToken( Token labelId )
+        {
+        }
+
+        @Override
+        public void addPropertyKeyToken( Token index )
+        {
+        }
+    }
+}
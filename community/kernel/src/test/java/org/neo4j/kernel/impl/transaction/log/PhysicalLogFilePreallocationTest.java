@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.log;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.fs.StoreChannel;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.neo4j.kernel.impl.transaction.log.entry.LogHeader.LOG_HEADER_SIZE;
+
+public class PhysicalLogFilePreallocationTest
+{
+    private static final long ROTATE_AT_SIZE = 1024;
+
+    private final FileSystemAbstraction fs = mock( FileSystemAbstraction.class );
+    private final LogVersionRepository logVersionRepository = mock( LogVersionRepository.class );
+    private final StoreChannel firstLog = newLogChannel();
+    private final StoreChannel secondLog = newLogChannel();
+    private PhysicalLogFile logFile;
+
+    @Before
+    public void setUp() throws Throwable
+    {
+        when( fs.open( any( File.class ), eq( "rw" ) ) ).thenReturn( firstLog, secondLog );
+        when( logVersionRepository.incrementAndGetVersion() ).thenReturn( 1L );
+        File directory = new File( getClass().getSimpleName() );
+        logFile = new PhysicalLogFile( fs, new PhysicalLogFiles( directory, fs ), ROTATE_AT_SIZE, () -> 1L,
+                logVersionRepository, new PhysicalLogFile.Monitor.Adapter(), new LogHeaderCache( 10 ) );
+        logFile.start();
+    }
+
+    @Test
+    public void shouldPreallocateLogsUpToTheRotationThreshold() throws Exception
+    {
+        verify( firstLog ).preallocate( 0, ROTATE_AT_SIZE );
+
+        logFile.rotate();
+
+        verify( secondLog ).preallocate( 0, ROTATE_AT_SIZE );
+    }
+
+    @Test
+    public void shouldGiveBackTheUnusedTailOfALogRotatedBeforeTheThreshold() throws Exception
+    {
+        logFile.getWriter().putLong( 42 );
+
+        logFile.rotate();
+
+        long logEnd = LOG_HEADER_SIZE + Long.BYTES;
+        verify( firstLog ).punchHole( logEnd, ROTATE_AT_SIZE - logEnd );
+    }
+
+    @Test
+    public void shouldNotPunchHolesIntoALogThatReachedTheThreshold() throws Exception
+    {
+        logFile.getWriter().put( new byte[(int) ROTATE_AT_SIZE], (int) ROTATE_AT_SIZE );
+        logFile.rotate();
+
+        verify( firstLog, never() ).punchHole( anyLong(), anyLong() );
+    }
+
+    private static StoreChannel newLogChannel()
+    {
+        try
+        {
+            // An empty file, so the log gets a fresh header and continues right after it
+            StoreChannel channel = mock( StoreChannel.class );
+            when( channel.read( any( ByteBuffer.class ) ) ).thenReturn( 0 );
+            when( channel.position() ).thenReturn( (long) LOG_HEADER_SIZE );
+            when( channel.size() ).thenReturn( (long) LOG_HEADER_SIZE );
+            return channel;
+        }
+        catch ( Exception e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+}
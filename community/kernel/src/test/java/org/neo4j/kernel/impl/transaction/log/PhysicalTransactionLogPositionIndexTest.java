@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.neo4j.io.fs.DefaultFileSystemAbstraction;
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.io.fs.StoreChannel;
+import org.neo4j.logging.NullLogProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.kernel.impl.transaction.log.entry.LogHeader.LOG_HEADER_SIZE;
+
+public class PhysicalTransactionLogPositionIndexTest
+{
+    private static final int INTERVAL = 4;
+
+    private FileSystemAbstraction fs;
+    private File directory;
+    private PhysicalLogFiles logFiles;
+    private PhysicalTransactionLogPositionIndex index;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        fs = new DefaultFileSystemAbstraction();
+        directory = new File( File.separator + getClass().getSimpleName() + "-" + System.nanoTime() );
+        fs.mkdirs( directory );
+        logFiles = new PhysicalLogFiles( directory, fs );
+        index = newIndex();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        fs.deleteRecursively( directory );
+    }
+
+    @Test
+    public void shouldFindTheClosestIndexedTransactionOfTheCurrentVersion() throws Exception
+    {
+        appendTransactions( 0, 1, 20 );
+
+        assertEquals( position( 0, 8 ), index.closestPosition( 0, 8 ) );
+        assertEquals( position( 0, 8 ), index.closestPosition( 0, 11 ) );
+        assertEquals( position( 0, 20 ), index.closestPosition( 0, 1000 ) );
+        assertEquals( LogPosition.start( 0 ), index.closestPosition( 0, 3 ) );
+    }
+
+    @Test
+    public void shouldReadRotatedVersionsBackFromTheirIndexFile() throws Exception
+    {
+        appendTransactions( 0, 1, 20 );
+        index.finishedRotating( 0 );
+        appendTransactions( 1, 21, 30 );
+        assertTrue( fs.fileExists( logFiles.getPositionIndexFileForVersion( 0 ) ) );
+        assertFalse( fs.fileExists( logFiles.getPositionIndexFileForVersion( 1 ) ) );
+
+        // A new index, as after a restart, has nothing but the file to go by.
+        index = newIndex();
+
+        assertEquals( position( 0, 12 ), index.closestPosition( 0, 14 ) );
+        assertEquals( LogPosition.start( 0 ), index.closestPosition( 0, 2 ) );
+        // The current version of the old index was never written, so it is read from the start.
+        assertEquals( LogPosition.start( 1 ), index.closestPosition( 1, 28 ) );
+    }
+
+    @Test
+    public void shouldReadFromTheStartOfVersionsWithoutIndexFile() throws Exception
+    {
+        assertEquals( LogPosition.start( 5 ), index.closestPosition( 5, 100 ) );
+    }
+
+    @Test
+    public void shouldIgnoreDamagedIndexFiles() throws Exception
+    {
+        writeIndexFile( 0, 13 );
+        assertEquals( LogPosition.start( 0 ), index.closestPosition( 0, 8 ) );
+
+        // Offsets that go backwards can not be from a complete index.
+        writeIndexFile( 1, 4, LOG_HEADER_SIZE + 200, 8, LOG_HEADER_SIZE + 100 );
+        assertEquals( LogPosition.start( 1 ), index.closestPosition( 1, 8 ) );
+
+        writeIndexFile( 2, 4, LOG_HEADER_SIZE + 100, 8, LOG_HEADER_SIZE + 200 );
+        assertEquals( new LogPosition( 2, LOG_HEADER_SIZE + 200 ), index.closestPosition( 2, 9 ) );
+    }
+
+    @Test
+    public void shouldDeleteTheIndexFileOfAVersionThatIsAppendedToAnew() throws Exception
+    {
+        appendTransactions( 0, 1, 20 );
+        index.finishedRotating( 0 );
+        File indexFile = logFiles.getPositionIndexFileForVersion( 0 );
+        assertTrue( fs.fileExists( indexFile ) );
+
+        index = newIndex();
+        appendTransactions( 0, 100, 101 );
+
+        assertFalse( fs.fileExists( indexFile ) );
+        assertEquals( position( 0, 100 ), index.closestPosition( 0, 101 ) );
+        assertEquals( LogPosition.start( 0 ), index.closestPosition( 0, 20 ) );
+    }
+
+    @Test
+    public void noIndexMustAlwaysReadFromTheStartOfTheVersion() throws Exception
+    {
+        TransactionLogPositionIndex noIndex = TransactionLogPositionIndex.NO_INDEX;
+        noIndex.transactionAppended( 8, position( 3, 8 ) );
+
+        assertEquals( LogPosition.start( 3 ), noIndex.closestPosition( 3, 8 ) );
+    }
+
+    private PhysicalTransactionLogPositionIndex newIndex()
+    {
+        return new PhysicalTransactionLogPositionIndex( fs, logFiles, INTERVAL, NullLogProvider.getInstance() );
+    }
+
+    private void appendTransactions( long logVersion, long firstTransactionId, long lastTransactionId )
+    {
+        for ( long transactionId = firstTransactionId; transactionId <= lastTransactionId; transactionId++ )
+        {
+            index.transactionAppended( transactionId, position( logVersion, transactionId ) );
+        }
+    }
+
+    private static LogPosition position( long logVersion, long transactionId )
+    {
+        return new LogPosition( logVersion, LOG_HEADER_SIZE + transactionId * 100 );
+    }
+
+    private void writeIndexFile( long logVersion, int length ) throws IOException
+    {
+        try ( StoreChannel channel = fs.open( logFiles.getPositionIndexFileForVersion( logVersion ), "rw" ) )
+        {
+            channel.writeAll( ByteBuffer.allocate( length ), 0 );
+        }
+    }
+
+    private void writeIndexFile( long logVersion, long... entries ) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( entries.length * 8 );
+        buffer.asLongBuffer().put( entries );
+        try ( StoreChannel channel = fs.open( logFiles.getPositionIndexFileForVersion( logVersion ), "rw" ) )
+        {
+            channel.writeAll( buffer, 0 );
+        }
+    }
+}
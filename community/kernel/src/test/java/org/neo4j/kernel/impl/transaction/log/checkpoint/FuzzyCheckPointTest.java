@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.log.checkpoint;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.neo4j.io.pagecache.IOLimiter;
+import org.neo4j.kernel.impl.core.DatabasePanicEventGenerator;
+import org.neo4j.kernel.impl.transaction.log.LogPosition;
+import org.neo4j.kernel.impl.transaction.log.TransactionAppender;
+import org.neo4j.kernel.impl.transaction.log.TransactionIdStore;
+import org.neo4j.kernel.impl.transaction.tracing.CheckPointTracer;
+import org.neo4j.kernel.impl.transaction.tracing.LogCheckPointEvent;
+import org.neo4j.kernel.internal.DatabaseHealth;
+import org.neo4j.kernel.internal.KernelEventHandlers;
+import org.neo4j.logging.NullLog;
+import org.neo4j.logging.NullLogProvider;
+import org.neo4j.storageengine.api.StorageEngine;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.neo4j.kernel.impl.transaction.log.entry.LogHeader.LOG_HEADER_SIZE;
+
+public class FuzzyCheckPointTest
+{
+    private final TransactionIdStore transactionIdStore = mock( TransactionIdStore.class );
+    private final CheckPointThreshold threshold = mock( CheckPointThreshold.class );
+    private final StorageEngine storageEngine = mock( StorageEngine.class );
+    private final TransactionAppender appender = mock( TransactionAppender.class );
+    private final List<Long> prunedUpTo = new ArrayList<>();
+
+    @Before
+    @SuppressWarnings( "unchecked" )
+    public void setUp()
+    {
+        when( threshold.isCheckPointingNeeded( anyLong(), any( Consumer.class ) ) ).thenReturn( true );
+        when( storageEngine.beginFlushEpoch() ).thenReturn( 1L, 2L, 3L, 4L );
+    }
+
+    @Test
+    public void periodicCheckPointMustPointAtWhereThePreviousOneBegan() throws Exception
+    {
+        CheckPointer checkPointer = checkPointer( true );
+
+        close( 10, 0 );
+        assertEquals( 10, checkPointer.checkPointIfNeeded( trigger() ) );
+        close( 20, 0 );
+        assertEquals( 10, checkPointer.checkPointIfNeeded( trigger() ) );
+        close( 30, 1 );
+        assertEquals( 20, checkPointer.checkPointIfNeeded( trigger() ) );
+
+        // The first one has nothing to go back to, so it is exact
+        assertEquals( asList( position( 10, 0 ), position( 10, 0 ), position( 20, 0 ) ), checkPoints() );
+        assertEquals( asList( 1L, 1L, 2L ), flushedBefore() );
+        // The threshold counts from the last closed transaction, not from the one that was check pointed
+        ArgumentCaptor<Long> happened = ArgumentCaptor.forClass( Long.class );
+        verify( threshold, atLeastOnce() ).checkPointHappened( happened.capture() );
+        assertEquals( asList( 10L, 20L, 30L ), happened.getAllValues() );
+    }
+
+    @Test
+    public void periodicCheckPointMustPruneUpToTheLogVersionItPointsAt() throws Exception
+    {
+        CheckPointer checkPointer = checkPointer( true );
+
+        close( 10, 0 );
+        checkPointer.checkPointIfNeeded( trigger() );
+        close( 20, 1 );
+        checkPointer.checkPointIfNeeded( trigger() );
+        close( 30, 2 );
+        checkPointer.checkPointIfNeeded( trigger() );
+
+        assertEquals( asList( 0L, 0L, 1L ), prunedUpTo );
+    }
+
+    @Test
+    public void forcedCheckPointMustBeExactAndStartPeriodicOnesOver() throws Exception
+    {
+        CheckPointer checkPointer = checkPointer( true );
+
+        close( 10, 0 );
+        checkPointer.checkPointIfNeeded( trigger() );
+        close( 20, 0 );
+        assertEquals( 20, checkPointer.forceCheckPoint( trigger() ) );
+        close( 30, 0 );
+        assertEquals( 30, checkPointer.checkPointIfNeeded( trigger() ) );
+        close( 40, 0 );
+        assertEquals( 30, checkPointer.checkPointIfNeeded( trigger() ) );
+
+        assertEquals( asList( position( 10, 0 ), position( 20, 0 ), position( 30, 0 ), position( 30, 0 ) ),
+                checkPoints() );
+        assertEquals( asList( 1L, 2L, 3L, 3L ), flushedBefore() );
+    }
+
+    @Test
+    public void tryCheckPointMustBeExact() throws Exception
+    {
+        CheckPointer checkPointer = checkPointer( true );
+
+        close( 10, 0 );
+        checkPointer.checkPointIfNeeded( trigger() );
+        close( 20, 0 );
+        assertEquals( 20, checkPointer.tryCheckPoint( trigger() ) );
+
+        assertEquals( asList( position( 10, 0 ), position( 20, 0 ) ), checkPoints() );
+        assertEquals( asList( 1L, 2L ), flushedBefore() );
+    }
+
+    @Test
+    public void checkPointsMustBeExactWhenNotFuzzy() throws Exception
+    {
+        CheckPointer checkPointer = checkPointer( false );
+
+        close( 10, 0 );
+        assertEquals( 10, checkPointer.checkPointIfNeeded( trigger() ) );
+        close( 20, 0 );
+        assertEquals( 20, checkPointer.checkPointIfNeeded( trigger() ) );
+
+        assertEquals( asList( position( 10, 0 ), position( 20, 0 ) ), checkPoints() );
+        assertEquals( asList( 1L, 2L ), flushedBefore() );
+    }
+
+    private CheckPointer checkPointer( boolean fuzzy )
+    {
+        DatabaseHealth health = new DatabaseHealth(
+                new DatabasePanicEventGenerator( new KernelEventHandlers( NullLog.getInstance() ) ),
+                NullLog.getInstance() );
+        return new CheckPointerImpl( transactionIdStore, threshold, storageEngine, prunedUpTo::add, appender,
+                health, NullLogProvider.getInstance(), CheckPointTracer.NULL, IOLimiter.unlimited(), fuzzy );
+    }
+
+    private void close( long transactionId, long logVersion )
+    {
+        LogPosition position = position( transactionId, logVersion );
+        when( transactionIdStore.getLastClosedTransactionId() ).thenReturn( transactionId );
+        when( transactionIdStore.getLastClosedTransaction() ).thenReturn(
+                new long[]{transactionId, position.getLogVersion(), position.getByteOffset()} );
+    }
+
+    private List<LogPosition> checkPoints() throws Exception
+    {
+        ArgumentCaptor<LogPosition> positions = ArgumentCaptor.forClass( LogPosition.class );
+        verify( appender, atLeastOnce() ).checkPoint( positions.capture(), any( LogCheckPointEvent.class ) );
+        return positions.getAllValues();
+    }
+
+    private List<Long> flushedBefore() throws Exception
+    {
+        ArgumentCaptor<Long> epochs = ArgumentCaptor.forClass( Long.class );
+        verify( storageEngine, atLeastOnce() ).flushAndForce( epochs.capture(), any( IOLimiter.class ) );
+        // Every check point flushes up to an epoch, never everything
+        verify( storageEngine, never() ).flushAndForce( any( IOLimiter.class ) );
+        return epochs.getAllValues();
+    }
+
+    private static LogPosition position( long transactionId, long logVersion )
+    {
+        return new LogPosition( logVersion, LOG_HEADER_SIZE + transactionId * 100 );
+    }
+
+    private static TriggerInfo trigger()
+    {
+        return new SimpleTriggerInfo( "test" );
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.log.entry;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.neo4j.kernel.impl.store.record.NodeRecord;
+import org.neo4j.kernel.impl.transaction.CommittedTransactionRepresentation;
+import org.neo4j.kernel.impl.transaction.command.Command;
+import org.neo4j.kernel.impl.transaction.log.InMemoryClosableChannel;
+import org.neo4j.kernel.impl.transaction.log.PhysicalTransactionCursor;
+import org.neo4j.kernel.impl.transaction.log.PhysicalTransactionRepresentation;
+import org.neo4j.storageengine.api.StorageCommand;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LogEntryCompressedCommandsTest
+{
+    private final InMemoryClosableChannel channel = new InMemoryClosableChannel( 100_000 );
+    private final VersionAwareLogEntryReader<InMemoryClosableChannel> reader = new VersionAwareLogEntryReader<>();
+
+    @Test
+    public void compressedCommandsMustReadBackAsTheCommandsOfTheTransaction() throws Exception
+    {
+        List<StorageCommand> commands = nodeCommands( 50 );
+        LogEntryWriter writer = new LogEntryWriter( channel, true );
+        writeTransaction( writer, commands, 42 );
+        writer.close();
+
+        assertTrue( reader.readLogEntry( channel ) instanceof LogEntryStart );
+        LogEntry entry = reader.readLogEntry( channel );
+        assertTrue( String.valueOf( entry ), entry instanceof LogEntryCompressedCommands );
+        assertEquals( LogEntryVersion.V3_0_11, entry.getVersion() );
+        assertSameNodeCommands( commands, ((LogEntryCompressedCommands) entry).getCommands() );
+        LogEntry commit = reader.readLogEntry( channel );
+        assertEquals( 42, ((LogEntryCommit) commit).getTxId() );
+    }
+
+    @Test
+    public void compressedCommandsMustTakeLessSpaceThanPlainCommands() throws Exception
+    {
+        List<StorageCommand> commands = nodeCommands( 50 );
+        InMemoryClosableChannel plainChannel = new InMemoryClosableChannel( 100_000 );
+        new LogEntryWriter( plainChannel ).serialize( new PhysicalTransactionRepresentation( commands ) );
+        LogEntryWriter writer = new LogEntryWriter( channel, true );
+        writer.serialize( new PhysicalTransactionRepresentation( commands ) );
+        writer.close();
+
+        assertTrue( channel.writerPosition() < plainChannel.writerPosition() );
+    }
+
+    @Test
+    public void commandsThatDoNotGetSmallerMustBeWrittenAsPlainCommandEntries() throws Exception
+    {
+        // A single command of arbitrary values has nothing to compress away.
+        Random random = new Random( 1 );
+        NodeRecord before = new NodeRecord( random.nextInt( 1 << 30 ), true, random.nextInt( 1 << 30 ),
+                random.nextInt( 1 << 30 ) );
+        NodeRecord after = new NodeRecord( before.getId(), false, random.nextInt( 1 << 30 ),
+                random.nextInt( 1 << 30 ) );
+        after.setInUse( true );
+        List<StorageCommand> commands = singletonList( new Command.NodeCommand( before, after ) );
+        LogEntryWriter writer = new LogEntryWriter( channel, true );
+        writeTransaction( writer, commands, 1 );
+        writer.close();
+
+        assertTrue( reader.readLogEntry( channel ) instanceof LogEntryStart );
+        LogEntry entry = reader.readLogEntry( channel );
+        assertTrue( String.valueOf( entry ), entry instanceof LogEntryCommand );
+        assertEquals( LogEntryVersion.CURRENT, entry.getVersion() );
+        assertTrue( reader.readLogEntry( channel ) instanceof LogEntryCommit );
+    }
+
+    @Test
+    public void transactionCursorMustExpandCompressedCommands() throws Exception
+    {
+        List<StorageCommand> commands = nodeCommands( 50 );
+        LogEntryWriter writer = new LogEntryWriter( channel, true );
+        writeTransaction( writer, commands, 7 );
+        writeTransaction( writer, nodeCommands( 30 ), 8 );
+        writer.close();
+
+        try ( PhysicalTransactionCursor<InMemoryClosableChannel> cursor =
+                      new PhysicalTransactionCursor<>( channel, reader ) )
+        {
+            assertTrue( cursor.next() );
+            CommittedTransactionRepresentation tx = cursor.get();
+            assertEquals( 7, tx.getCommitEntry().getTxId() );
+            List<StorageCommand> read = new ArrayList<>();
+            tx.accept( command ->
+            {
+                read.add( command );
+                return false;
+            } );
+            assertSameNodeCommands( commands, read );
+
+            assertTrue( cursor.next() );
+            assertEquals( 8, cursor.get().getCommitEntry().getTxId() );
+        }
+    }
+
+    @Test
+    public void corruptCompressedCommandsMustFailToParse() throws Exception
+    {
+        LogEntryWriter writer = new LogEntryWriter( channel, true );
+        writer.serialize( new PhysicalTransactionRepresentation( nodeCommands( 50 ) ) );
+        writer.close();
+        byte[] bytes = new byte[channel.writerPosition()];
+        channel.get( bytes, bytes.length );
+        // The entry header and the three ints of the entry come before the compressed bytes.
+        for ( int i = 2 + 12; i < bytes.length; i++ )
+        {
+            bytes[i] ^= 0x5A;
+        }
+
+        try
+        {
+            reader.readLogEntry( new InMemoryClosableChannel( bytes, true ) );
+            fail( "Should not parse corrupt compressed commands" );
+        }
+        catch ( IOException e )
+        {
+            // Good
+        }
+    }
+
+    private static void writeTransaction( LogEntryWriter writer, List<StorageCommand> commands, long txId )
+            throws IOException
+    {
+        writer.writeStartEntry( 1, 2, 3, txId - 1, new byte[0] );
+        writer.serialize( new PhysicalTransactionRepresentation( commands ) );
+        writer.writeCommitEntry( txId, 4 );
+    }
+
+    private static List<StorageCommand> nodeCommands( int count )
+    {
+        List<StorageCommand> commands = new ArrayList<>();
+        for ( int i = 0; i < count; i++ )
+        {
+            NodeRecord before = new NodeRecord( i, false, -1, -1 );
+            NodeRecord after = new NodeRecord( i, false, 100 + i, 200 + i );
+            after.setInUse( true );
+            commands.add( new Command.NodeCommand( before, after ) );
+        }
+        return commands;
+    }
+
+    private static void assertSameNodeCommands( List<StorageCommand> expected, List<StorageCommand> actual )
+    {
+        assertEquals( expected.size(), actual.size() );
+        for ( int i = 0; i < expected.size(); i++ )
+        {
+            NodeRecord expectedAfter = ((Command.NodeCommand) expected.get( i )).getAfter();
+            NodeRecord actualAfter = ((Command.NodeCommand) actual.get( i )).getAfter();
+            assertEquals( expectedAfter.getId(), actualAfter.getId() );
+            assertEquals( expectedAfter.inUse(), actualAfter.inUse() );
+            assertEquals( expectedAfter.getNextRel(), actualAfter.getNextRel() );
+            assertEquals( expectedAfter.getNextProp(), actualAfter.getNextProp() );
+        }
+    }
+}
@@ -19,12 +19,22 @@
  */
 package org.neo4j.unsafe.impl.internal.dragons;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
 /**
  * The memory manager is simple: it only allocates memory, until it itself is finalizable and frees it all in one go.
  *
  * The memory is allocated in large segments, and the memory returned by the memory manager is page aligned, and plays
  * well with transparent huge pages and other operating system optimisations.
  *
+ * The segments can also be explicitly backed by huge pages, by mapping them from files in a hugetlbfs mount. If that
+ * fails, for instance because the system has run out of reserved huge pages, then the memory manager falls back to
+ * ordinary memory.
+ *
  * The memory manager assumes that the memory claimed from it is evenly divisible in units of pages.
  */
 public final class MemoryManager
@@ -34,13 +44,32 @@ public final class MemoryManager
      */
     private static final long GRAB_SIZE = FeatureToggles.getInteger( MemoryManager.class, "GRAB_SIZE", 512 * 1024 ); // 512 KiB
 
+    /**
+     * The size of the huge pages in the hugetlbfs mount. Slabs mapped from the mount are multiples of this size.
+     */
+    private static final long HUGE_PAGE_SIZE = FeatureToggles.getLong(
+            MemoryManager.class, "HUGE_PAGE_SIZE", 2 * 1024 * 1024 ); // 2 MiB
+
+    /**
+     * The largest slab to allocate when allocating all the memory up front. Mapped slabs cannot be larger than 2 GiB.
+     */
+    private static final long MAX_PREALLOCATION_GRAB_SIZE = 1024 * 1024 * 1024; // 1 GiB
+
     /**
      * The amount of memory that this memory manager can still allocate.
      */
     private long memoryReserve;
+    /**
+     * The amount of memory that has been grabbed for slabs, not counting the alignment slack of each slab.
+     */
+    private long grabbedBytes;
     private final long alignment;
+    private File hugePageDirectory;
+    private long hugePageBytes;
 
     private Slab slabs;
+    // Slabs that have been preallocated, or partly used, and still have space left.
+    private Slab preallocatedSlabs;
 
     /**
      * Create a new MemoryManager that will allocate the given amount of memory, to pointers that are aligned to the
@@ -50,9 +79,19 @@ public final class MemoryManager
      * @param alignment The byte multiple that the allocated pointers have to be aligned at.
      */
     public MemoryManager( long expectedMaxMemory, long alignment )
+    {
+        this( expectedMaxMemory, alignment, null );
+    }
+
+    /**
+     * Create a new MemoryManager that will allocate its memory from huge pages in the given hugetlbfs directory.
+     * @param hugePageDirectory A directory in a hugetlbfs mount, or {@code null} to use ordinary memory.
+     */
+    public MemoryManager( long expectedMaxMemory, long alignment, File hugePageDirectory )
     {
         this.memoryReserve = expectedMaxMemory;
         this.alignment = alignment;
+        this.hugePageDirectory = hugePageDirectory;
     }
 
     /**
@@ -64,31 +103,165 @@ public final class MemoryManager
     {
         if ( slabs == null || !slabs.canAllocate( bytes ) )
         {
-            long slabGrab = Math.min( GRAB_SIZE, memoryReserve );
-            if ( slabGrab < bytes )
+            if ( slabs != null && slabs.hasSpace() )
+            {
+                // Keep what is left of the current slab around for allocations that fit in it.
+                Slab current = slabs;
+                slabs = current.next;
+                current.next = preallocatedSlabs;
+                preallocatedSlabs = current;
+            }
+            Slab slab = takePreallocatedSlab( bytes );
+            if ( slab == null )
             {
-                slabGrab = bytes;
-                Slab slab = new Slab( slabs, slabGrab, alignment );
-                if ( slab.canAllocate( bytes ) )
+                // Only grow beyond the reserve when the reserve is used up, or too small for the allocation.
+                long slabGrab = Math.max( bytes, Math.min( GRAB_SIZE, memoryReserve ) );
+                memoryReserve = Math.max( 0, memoryReserve - slabGrab );
+                slab = newSlab( null, slabGrab );
+            }
+            slab.next = slabs;
+            slabs = slab;
+        }
+        return slabs.allocate( bytes );
+    }
+
+    /**
+     * Take the first of the preallocated, or partly used, slabs that can fit the given number of bytes off the
+     * preallocated list.
+     * @return the slab, or {@code null} if none of the preallocated slabs can fit the allocation.
+     */
+    private Slab takePreallocatedSlab( long bytes )
+    {
+        Slab previous = null;
+        for ( Slab slab = preallocatedSlabs; slab != null; previous = slab, slab = slab.next )
+        {
+            if ( slab.canAllocate( bytes ) )
+            {
+                if ( previous == null )
+                {
+                    preallocatedSlabs = slab.next;
+                }
+                else
                 {
-                    memoryReserve -= slabGrab;
-                    slabs = slab;
-                    return slabs.allocate( bytes );
+                    previous.next = slab.next;
                 }
-                slab.free();
-                slabGrab = bytes + alignment;
+                return slab;
             }
-            memoryReserve -= slabGrab;
-            slabs = new Slab( slabs, slabGrab, alignment );
         }
-        return slabs.allocate( bytes );
+        return null;
+    }
+
+    /**
+     * Allocate all of the remaining memory reserve up front, optionally writing to all of it, so the operating system
+     * has to map and zero its pages now rather than when the memory is first used. The memory is allocated one slab at
+     * a time, and concurrent allocations are only blocked while each slab is handed over.
+     * @param touch {@code true} if all of the memory should be written to, once allocated.
+     */
+    public void preallocate( boolean touch )
+    {
+        preallocate( touch, MAX_PREALLOCATION_GRAB_SIZE );
+    }
+
+    void preallocate( boolean touch, long maxSlabSize )
+    {
+        for ( ;; )
+        {
+            long slabGrab;
+            synchronized ( this )
+            {
+                if ( memoryReserve <= 0 )
+                {
+                    return;
+                }
+                slabGrab = Math.min( maxSlabSize, memoryReserve );
+                memoryReserve -= slabGrab;
+            }
+            Slab slab = newSlab( null, slabGrab );
+            if ( touch )
+            {
+                slab.touch();
+            }
+            synchronized ( this )
+            {
+                slab.next = preallocatedSlabs;
+                preallocatedSlabs = slab;
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes grabbed for the slabs of this memory manager, not counting alignment slack.
+     */
+    synchronized long grabbedBytes()
+    {
+        return grabbedBytes;
+    }
+
+    /**
+     * @return the number of bytes allocated by this memory manager that are backed by explicit huge pages.
+     */
+    public synchronized long hugePageBytes()
+    {
+        return hugePageBytes;
+    }
+
+    private Slab newSlab( Slab next, long size )
+    {
+        File directory;
+        synchronized ( this )
+        {
+            directory = hugePageDirectory;
+            grabbedBytes += size;
+        }
+        if ( directory != null )
+        {
+            long mappedSize = ((size + HUGE_PAGE_SIZE - 1) / HUGE_PAGE_SIZE) * HUGE_PAGE_SIZE;
+            try
+            {
+                Slab slab = new Slab( next, mapHugePages( directory, mappedSize ), mappedSize, alignment );
+                synchronized ( this )
+                {
+                    hugePageBytes += mappedSize;
+                }
+                return slab;
+            }
+            catch ( IOException | RuntimeException e )
+            {
+                // The huge page pool is exhausted, or the directory is not usable. Don't keep trying.
+                synchronized ( this )
+                {
+                    hugePageDirectory = null;
+                }
+            }
+        }
+        return new Slab( next, size, alignment );
+    }
+
+    private static MappedByteBuffer mapHugePages( File directory, long size ) throws IOException
+    {
+        File file = File.createTempFile( "neo4j-pagecache-", ".mem", directory );
+        try ( RandomAccessFile raf = new RandomAccessFile( file, "rw" ); FileChannel channel = raf.getChannel() )
+        {
+            // The mapping outlives both the channel and the file name.
+            return channel.map( FileChannel.MapMode.READ_WRITE, 0, size );
+        }
+        finally
+        {
+            file.delete();
+        }
     }
 
     @Override
     protected synchronized void finalize() throws Throwable
     {
         super.finalize();
-        Slab current = slabs;
+        free( slabs );
+        free( preallocatedSlabs );
+    }
+
+    private static void free( Slab slab )
+    {
+        Slab current = slab;
 
         while ( current != null )
         {
@@ -99,16 +272,31 @@ public final class MemoryManager
 
     private static class Slab
     {
-        public final Slab next;
+        public Slab next;
         private final long address;
         private final long limit;
         private final long alignMask;
+        // Keeps the memory of a slab that is mapped from a file alive; it is unmapped when this is collected.
+        private MappedByteBuffer mapping;
         private long nextAlignedPointer;
 
         public Slab( Slab next, long size, long alignment )
+        {
+            // The allocated memory is not necessarily aligned, so grab enough slack to align the first pointer and
+            // still have the full size left.
+            this.next = next;
+            this.address = UnsafeUtil.allocateMemory( size + alignment - 1 );
+            this.limit = address + size + alignment - 1;
+            this.alignMask = alignment - 1;
+
+            nextAlignedPointer = nextAligned( address );
+        }
+
+        public Slab( Slab next, MappedByteBuffer mapping, long size, long alignment )
         {
             this.next = next;
-            this.address = UnsafeUtil.allocateMemory( size );
+            this.mapping = mapping;
+            this.address = UnsafeUtil.getDirectByteBufferAddress( mapping );
             this.limit = address + size;
             this.alignMask = alignment - 1;
 
@@ -131,9 +319,23 @@ public final class MemoryManager
             return allocation;
         }
 
+        public void touch()
+        {
+            UnsafeUtil.setMemory( address, limit - address, (byte) 0 );
+        }
+
         public void free()
         {
-            UnsafeUtil.free( address );
+            if ( mapping == null )
+            {
+                UnsafeUtil.free( address );
+            }
+            mapping = null;
+        }
+
+        public boolean hasSpace()
+        {
+            return nextAlignedPointer < limit;
         }
 
         public boolean canAllocate( long bytes )
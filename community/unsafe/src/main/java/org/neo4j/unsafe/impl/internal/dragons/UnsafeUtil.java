@@ -872,6 +872,14 @@ public final class UnsafeUtil
         unsafe.copyMemory( srcAddress, destAddress, bytes );
     }
 
+    /**
+     * Copy the given number of bytes from the source address to the beginning of the destination array.
+     */
+    public static void copyMemory( long srcAddress, byte[] dest, int bytes )
+    {
+        unsafe.copyMemory( null, srcAddress, dest, unsafe.arrayBaseOffset( byte[].class ), bytes );
+    }
+
     /**
      * Create a new DirectByteBuffer that wraps the given address and has the given capacity.
      * <p>
@@ -902,6 +910,14 @@ public final class UnsafeUtil
         unsafe.putLong( dbb, directByteBufferAddressOffset, addr );
     }
 
+    /**
+     * Get the native address that the given direct ByteBuffer, or MappedByteBuffer, wraps.
+     */
+    public static long getDirectByteBufferAddress( ByteBuffer dbb )
+    {
+        return unsafe.getLong( dbb, directByteBufferAddressOffset );
+    }
+
     /**
      * Change if native access checking is enabled by setting it to the given new setting, and returning the old
      * setting.
@@ -41,7 +41,9 @@ import org.neo4j.kernel.impl.transaction.log.PhysicalTransactionCursor;
 import org.neo4j.kernel.impl.transaction.log.PhysicalTransactionRepresentation;
 import org.neo4j.kernel.impl.transaction.log.ReadableClosableChannel;
 import org.neo4j.kernel.impl.transaction.log.ReadableClosablePositionAwareChannel;
+import org.neo4j.kernel.impl.transaction.log.entry.LogEntry;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntryCommand;
+import org.neo4j.kernel.impl.transaction.log.entry.LogEntryCompressedCommands;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntryReader;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntryWriter;
 import org.neo4j.storageengine.api.StorageCommand;
@@ -120,11 +122,18 @@ public abstract class Protocol
             byte[] header = new byte[headerLength];
             channel.get( header, headerLength );
 
-            LogEntryCommand entryRead;
+            LogEntry entryRead;
             List<StorageCommand> commands = new LinkedList<>();
-            while ( (entryRead = (LogEntryCommand) reader.readLogEntry( channel )) != null )
+            while ( (entryRead = reader.readLogEntry( channel )) != null )
             {
-                commands.add( entryRead.getXaCommand() );
+                if ( entryRead instanceof LogEntryCompressedCommands )
+                {
+                    commands.addAll( entryRead.<LogEntryCompressedCommands>as().getCommands() );
+                }
+                else
+                {
+                    commands.add( entryRead.<LogEntryCommand>as().getXaCommand() );
+                }
             }
 
             PhysicalTransactionRepresentation toReturn = new PhysicalTransactionRepresentation( commands );
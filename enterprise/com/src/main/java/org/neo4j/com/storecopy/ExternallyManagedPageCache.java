@@ -78,12 +78,30 @@ public class ExternallyManagedPageCache implements PageCache
         delegate.flushAndForce( limiter );
     }
 
+    @Override
+    public long beginFlushEpoch()
+    {
+        return delegate.beginFlushEpoch();
+    }
+
+    @Override
+    public void flushAndForce( long epoch, IOLimiter limiter ) throws IOException
+    {
+        delegate.flushAndForce( epoch, limiter );
+    }
+
     @Override
     public int pageSize()
     {
         return delegate.pageSize();
     }
 
+    @Override
+    public int[] pageSizes()
+    {
+        return delegate.pageSizes();
+    }
+
     @Override
     public int maxCachedPages()
     {
@@ -30,6 +30,7 @@ import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.io.ByteUnit;
 import org.neo4j.io.fs.FileSystemAbstraction;
 import org.neo4j.io.fs.StoreChannel;
+import org.neo4j.io.pagecache.monitoring.PageCursorOrigin;
 import org.neo4j.kernel.NeoStoreDataSource;
 import org.neo4j.kernel.impl.transaction.log.checkpoint.CheckPointer;
 import org.neo4j.kernel.impl.transaction.log.checkpoint.SimpleTriggerInfo;
@@ -140,6 +141,7 @@ public class StoreCopyServer
      */
     public RequestContext flushStoresAndStreamStoreFiles( String triggerName, StoreWriter writer, boolean includeLogs )
     {
+        PageCursorOrigin previousOrigin = PageCursorOrigin.BACKUP.enter();
         try
         {
             monitor.startTryCheckPoint();
@@ -174,5 +176,9 @@ public class StoreCopyServer
         {
             throw new ServerFailureException( e );
         }
+        finally
+        {
+            previousOrigin.enter();
+        }
     }
 }
@@ -57,4 +57,12 @@ public interface PageCache
                   "This number should be zero, or at least not growing, in a healthy database. " +
                   "Otherwise it could indicate drive failure, storage space, or permission problems." )
     public long getEvictionExceptions();
+
+    @Description( "Page accesses broken down by store file: pins, hits, faults, hit ratio, evictions, pages flushed, " +
+                  "and the median and 99th percentile page fault latencies. One entry per file that has been mapped." )
+    String[] getFileStatistics();
+
+    @Description( "Page accesses broken down by the kind of work the page cursors were opened for, such as " +
+                  "transactions, index population, consistency checking and backup." )
+    String[] getOriginStatistics();
 }
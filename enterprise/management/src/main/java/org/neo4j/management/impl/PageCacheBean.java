@@ -19,10 +19,14 @@
  */
 package org.neo4j.management.impl;
 
+import java.io.File;
+import java.util.Map;
 import javax.management.NotCompliantMBeanException;
 
 import org.neo4j.helpers.Service;
+import org.neo4j.io.pagecache.monitoring.PageAccessCounters;
 import org.neo4j.io.pagecache.monitoring.PageCacheCounters;
+import org.neo4j.io.pagecache.monitoring.PageCursorOrigin;
 import org.neo4j.jmx.impl.ManagementBeanProvider;
 import org.neo4j.jmx.impl.ManagementData;
 import org.neo4j.jmx.impl.Neo4jMBean;
@@ -105,5 +109,27 @@ public final class PageCacheBean extends ManagementBeanProvider
         {
             return pageCacheCounters.evictionExceptions();
         }
+
+        @Override
+        public String[] getFileStatistics()
+        {
+            Map<File,PageAccessCounters> fileCounters = pageCacheCounters.fileCounters();
+            return fileCounters.entrySet().stream()
+                    .map( entry -> entry.getKey().getName() + ": " + entry.getValue() )
+                    .sorted()
+                    .toArray( String[]::new );
+        }
+
+        @Override
+        public String[] getOriginStatistics()
+        {
+            PageCursorOrigin[] origins = PageCursorOrigin.values();
+            String[] statistics = new String[origins.length];
+            for ( int i = 0; i < origins.length; i++ )
+            {
+                statistics[i] = origins[i].name() + ": " + pageCacheCounters.originCounters( origins[i] );
+            }
+            return statistics;
+        }
     }
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.management.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import org.neo4j.graphdb.DependencyResolver;
+import org.neo4j.io.pagecache.monitoring.PageCacheCounters;
+import org.neo4j.io.pagecache.tracing.DefaultPageCacheTracer;
+import org.neo4j.jmx.impl.ManagementData;
+import org.neo4j.jmx.impl.ManagementSupport;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.internal.Version;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.kernel.internal.KernelData;
+import org.neo4j.management.PageCache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.neo4j.io.pagecache.monitoring.PageCursorOrigin.BACKUP;
+import static org.neo4j.io.pagecache.monitoring.PageCursorOrigin.CONSISTENCY_CHECK;
+import static org.neo4j.io.pagecache.monitoring.PageCursorOrigin.INDEX_POPULATION;
+import static org.neo4j.io.pagecache.monitoring.PageCursorOrigin.KERNEL;
+
+public class PageCacheBeanTest
+{
+    private final DefaultPageCacheTracer tracer = new DefaultPageCacheTracer();
+    private KernelData kernel;
+    private PageCache bean;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        DependencyResolver resolver = mock( DependencyResolver.class );
+        when( resolver.resolveDependency( eq( PageCacheCounters.class ),
+                any( DependencyResolver.SelectionStrategy.class ) ) ).thenReturn( tracer );
+        GraphDatabaseAPI db = mock( GraphDatabaseAPI.class );
+        when( db.getDependencyResolver() ).thenReturn( resolver );
+        kernel = new KernelData( null, null, null, Config.defaults() )
+        {
+            @Override
+            public Version version()
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public GraphDatabaseAPI graphDatabase()
+            {
+                return db;
+            }
+        };
+
+        PageCacheBean provider = new PageCacheBean();
+        bean = (PageCache) provider.createMBean( new ManagementData( provider, kernel, new ManagementSupport() ) );
+    }
+
+    @After
+    public void tearDown()
+    {
+        kernel.shutdown();
+    }
+
+    @Test
+    public void originStatisticsMustAttributeHitsAndFaultsToTheirOrigin() throws Exception
+    {
+        tracer.originCounters( INDEX_POPULATION ).hit();
+        tracer.originCounters( INDEX_POPULATION ).fault( 1000 );
+        tracer.originCounters( BACKUP ).fault( 1000 );
+
+        String[] statistics = bean.getOriginStatistics();
+
+        assertArrayEquals( new String[]{
+                KERNEL + ": " + tracer.originCounters( KERNEL ),
+                INDEX_POPULATION + ": " + tracer.originCounters( INDEX_POPULATION ),
+                CONSISTENCY_CHECK + ": " + tracer.originCounters( CONSISTENCY_CHECK ),
+                BACKUP + ": " + tracer.originCounters( BACKUP )}, statistics );
+        assertTrue( statistics[1], statistics[1].contains( "hits=1, faults=1" ) );
+        assertTrue( statistics[3], statistics[3].contains( "hits=0, faults=1" ) );
+        assertTrue( statistics[0], statistics[0].contains( "pins=0" ) );
+    }
+
+    @Test
+    public void fileStatisticsMustListTheMappedFilesByName() throws Exception
+    {
+        tracer.countersForFile( new File( "store", "neostore.relationshipstore.db" ) ).fault( 1000 );
+        tracer.countersForFile( new File( "store", "neostore.nodestore.db" ) ).hit();
+
+        String[] statistics = bean.getFileStatistics();
+
+        assertEquals( 2, statistics.length );
+        assertTrue( statistics[0], statistics[0].startsWith( "neostore.nodestore.db: pins=1, hits=1, faults=0" ) );
+        assertTrue( statistics[1],
+                statistics[1].startsWith( "neostore.relationshipstore.db: pins=1, hits=0, faults=1" ) );
+    }
+}
@@ -22,7 +22,14 @@ package org.neo4j.metrics.source.db;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.io.pagecache.monitoring.PageAccessCounters;
 import org.neo4j.io.pagecache.monitoring.PageCacheCounters;
+import org.neo4j.io.pagecache.monitoring.PageCursorOrigin;
 import org.neo4j.kernel.impl.annotations.Documented;
 import org.neo4j.kernel.lifecycle.LifecycleAdapter;
 
@@ -45,9 +52,15 @@ public class PageCacheMetrics extends LifecycleAdapter
     public static final String PC_EVICTIONS = name( PAGE_CACHE_PREFIX, "evictions" );
     @Documented( "The total number of page faults happened in the page cache" )
     public static final String PC_PAGE_FAULTS = name( PAGE_CACHE_PREFIX, "page_faults" );
+    @Documented( "The number of bytes of page cache memory that are backed by explicit huge pages" )
+    public static final String PC_HUGE_PAGE_BYTES = name( PAGE_CACHE_PREFIX, "huge_page_bytes" );
+
+    private static final String PAGE_CACHE_FILE_PREFIX = name( PAGE_CACHE_PREFIX, "file" );
+    private static final String PAGE_CACHE_ORIGIN_PREFIX = name( PAGE_CACHE_PREFIX, "origin" );
 
     private final MetricRegistry registry;
     private final PageCacheCounters pageCacheCounters;
+    private final List<String> accessMetrics = new ArrayList<>();
 
     public PageCacheMetrics( MetricRegistry registry, PageCacheCounters pageCacheCounters )
     {
@@ -64,6 +77,34 @@ public class PageCacheMetrics extends LifecycleAdapter
         registry.register( PC_UNPINS, (Gauge<Long>) pageCacheCounters::unpins );
         registry.register( PC_FLUSHES, (Gauge<Long>) pageCacheCounters::flushes );
         registry.register( PC_EVICTION_EXCEPTIONS, (Gauge<Long>) pageCacheCounters::evictionExceptions );
+        registry.register( PC_HUGE_PAGE_BYTES, (Gauge<Long>) pageCacheCounters::hugePageBytes );
+
+        // The store files are mapped by the time the metrics are started. Files mapped later on are only covered by
+        // the totals above.
+        for ( Map.Entry<File,PageAccessCounters> entry : pageCacheCounters.fileCounters().entrySet() )
+        {
+            registerAccessMetrics( name( PAGE_CACHE_FILE_PREFIX, entry.getKey().getName() ), entry.getValue() );
+        }
+        for ( PageCursorOrigin origin : PageCursorOrigin.values() )
+        {
+            registerAccessMetrics( name( PAGE_CACHE_ORIGIN_PREFIX, origin.name().toLowerCase() ),
+                    pageCacheCounters.originCounters( origin ) );
+        }
+    }
+
+    private void registerAccessMetrics( String prefix, PageAccessCounters counters )
+    {
+        register( name( prefix, "hits" ), (Gauge<Long>) counters::hits );
+        register( name( prefix, "page_faults" ), (Gauge<Long>) counters::faults );
+        register( name( prefix, "hit_ratio" ), (Gauge<Double>) counters::hitRatio );
+        register( name( prefix, "evictions" ), (Gauge<Long>) counters::evictions );
+        register( name( prefix, "fault_latency_p99_ns" ), (Gauge<Long>) () -> counters.faultLatencyPercentile( 99 ) );
+    }
+
+    private void register( String name, Gauge<?> gauge )
+    {
+        registry.register( name, gauge );
+        accessMetrics.add( name );
     }
 
     @Override
@@ -75,5 +116,8 @@ public class PageCacheMetrics extends LifecycleAdapter
         registry.remove( PC_UNPINS );
         registry.remove( PC_FLUSHES );
         registry.remove( PC_EVICTION_EXCEPTIONS );
+        registry.remove( PC_HUGE_PAGE_BYTES );
+        accessMetrics.forEach( registry::remove );
+        accessMetrics.clear();
     }
 }
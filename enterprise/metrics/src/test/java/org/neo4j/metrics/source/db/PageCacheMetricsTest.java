@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2002-2018 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.metrics.source.db;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.io.File;
+
+import org.neo4j.io.pagecache.tracing.DefaultPageCacheTracer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.io.pagecache.monitoring.PageCursorOrigin.BACKUP;
+import static org.neo4j.io.pagecache.monitoring.PageCursorOrigin.INDEX_POPULATION;
+
+public class PageCacheMetricsTest
+{
+    private final MetricRegistry registry = new MetricRegistry();
+    private final DefaultPageCacheTracer tracer = new DefaultPageCacheTracer();
+
+    @Test
+    public void originGaugesMustAttributeHitsAndFaultsToTheirOrigin() throws Exception
+    {
+        PageCacheMetrics metrics = new PageCacheMetrics( registry, tracer );
+        metrics.start();
+
+        tracer.originCounters( INDEX_POPULATION ).hit();
+        tracer.originCounters( INDEX_POPULATION ).hit();
+        tracer.originCounters( INDEX_POPULATION ).fault( 1000 );
+        tracer.originCounters( BACKUP ).fault( 1000 );
+
+        assertEquals( 2L, gauge( "neo4j.page_cache.origin.index_population.hits" ) );
+        assertEquals( 1L, gauge( "neo4j.page_cache.origin.index_population.page_faults" ) );
+        assertEquals( 2.0 / 3, (double) gauge( "neo4j.page_cache.origin.index_population.hit_ratio" ), 0.0001 );
+        assertEquals( 0L, gauge( "neo4j.page_cache.origin.backup.hits" ) );
+        assertEquals( 1L, gauge( "neo4j.page_cache.origin.backup.page_faults" ) );
+        assertEquals( 1023L, gauge( "neo4j.page_cache.origin.backup.fault_latency_p99_ns" ) );
+        assertEquals( 0L, gauge( "neo4j.page_cache.origin.kernel.page_faults" ) );
+        metrics.stop();
+    }
+
+    @Test
+    public void fileGaugesMustCoverTheFilesMappedWhenTheMetricsStart() throws Exception
+    {
+        tracer.countersForFile( new File( "store", "neostore.nodestore.db" ) ).hit();
+        PageCacheMetrics metrics = new PageCacheMetrics( registry, tracer );
+        metrics.start();
+
+        tracer.countersForFile( new File( "store", "neostore.nodestore.db" ) ).fault( 1000 );
+        tracer.countersForFile( new File( "store", "neostore.relationshipstore.db" ) ).fault( 1000 );
+
+        assertEquals( 1L, gauge( "neo4j.page_cache.file.neostore.nodestore.db.hits" ) );
+        assertEquals( 1L, gauge( "neo4j.page_cache.file.neostore.nodestore.db.page_faults" ) );
+        assertTrue( registry.getGauges().keySet().stream()
+                .noneMatch( name -> name.contains( "neostore.relationshipstore.db" ) ) );
+        metrics.stop();
+    }
+
+    @Test
+    public void stopMustRemoveAllTheGauges() throws Exception
+    {
+        tracer.countersForFile( new File( "store", "neostore.nodestore.db" ) );
+        PageCacheMetrics metrics = new PageCacheMetrics( registry, tracer );
+        metrics.start();
+        assertTrue( registry.getGauges().containsKey( "neo4j.page_cache.file.neostore.nodestore.db.hits" ) );
+
+        metrics.stop();
+
+        assertTrue( registry.getGauges().isEmpty() );
+        // The gauges can be registered again on the next start.
+        metrics.start();
+        metrics.stop();
+    }
+
+    private Object gauge( String name )
+    {
+        Gauge<?> gauge = registry.getGauges().get( name );
+        return gauge.getValue();
+    }
+}
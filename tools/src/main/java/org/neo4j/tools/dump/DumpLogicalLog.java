@@ -54,6 +54,7 @@ import org.neo4j.kernel.impl.transaction.log.TransactionLogEntryCursor;
 import org.neo4j.kernel.impl.transaction.log.entry.InvalidLogEntryHandler;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntry;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntryCommand;
+import org.neo4j.kernel.impl.transaction.log.entry.LogEntryCompressedCommands;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntryReader;
 import org.neo4j.kernel.impl.transaction.log.entry.LogHeader;
 import org.neo4j.kernel.impl.transaction.log.entry.VersionAwareLogEntryReader;
@@ -250,6 +251,16 @@ public class DumpLogicalLog
                     return true;
                 }
             }
+            else if ( logEntry instanceof LogEntryCompressedCommands )
+            {
+                for ( StorageCommand command : ((LogEntryCompressedCommands) logEntry).getCommands() )
+                {
+                    if ( matches( command ) )
+                    {
+                        return true;
+                    }
+                }
+            }
             return false;
         }
 
@@ -37,6 +37,7 @@ import org.neo4j.kernel.impl.transaction.log.LogEntryCursor;
 import org.neo4j.kernel.impl.transaction.log.PhysicalLogFiles;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntry;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntryCommand;
+import org.neo4j.kernel.impl.transaction.log.entry.LogEntryCompressedCommands;
 import org.neo4j.kernel.impl.transaction.log.entry.LogEntryCommit;
 import org.neo4j.storageengine.api.StorageCommand;
 import org.neo4j.test.LogTestUtils;
@@ -142,6 +143,17 @@ public class CheckTxLogs
                         txCommands.add( new CommandAndLogVersion( command, logVersion ) );
                     }
                 }
+                else if ( entry instanceof LogEntryCompressedCommands )
+                {
+                    for ( StorageCommand command : ((LogEntryCompressedCommands) entry).getCommands() )
+                    {
+                        if ( check.commandClass().isInstance( command ) )
+                        {
+                            long logVersion = logEntryCursor.getCurrentLogVersion();
+                            txCommands.add( new CommandAndLogVersion( command, logVersion ) );
+                        }
+                    }
+                }
                 else if ( entry instanceof LogEntryCommit )
                 {
                     long txId = ((LogEntryCommit) entry).getTxId();